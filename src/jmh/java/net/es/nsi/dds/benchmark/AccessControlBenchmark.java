@@ -0,0 +1,73 @@
+package net.es.nsi.dds.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.authorization.AccessControlList;
+import net.es.nsi.dds.jaxb.configuration.AccessControlPermission;
+import net.es.nsi.dds.jaxb.configuration.AccessControlType;
+import net.es.nsi.dds.jaxb.configuration.DistinguishedNameType;
+import net.es.nsi.dds.jaxb.configuration.ObjectFactory;
+import net.es.nsi.dds.jaxb.configuration.RuleType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request cost of AccessControlList.isAuthorized for authorized and
+ * unknown certificate subjects.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessControlBenchmark {
+    private static final String RESOURCE = "/dds/documents/urn%3Aogf%3Anetwork%3Ageant.net%3A2013%3Ansa/vnd.ogf.nsi.topology.v2%2Bxml";
+
+    // Number of rules in the access control list.
+    @Param({"10", "1000"})
+    private int rules;
+
+    private AccessControlList acl;
+    private String knownDn;
+    private String unknownDn;
+
+    @Setup
+    public void setup() {
+        ObjectFactory factory = new ObjectFactory();
+        AccessControlType ac = factory.createAccessControlType();
+        ac.setEnabled(true);
+        for (int i = 0; i < rules; i++) {
+            DistinguishedNameType dn = factory.createDistinguishedNameType();
+            dn.setValue("CN=peer" + i + ".example.net, OU=Network Services, O=Example, L=Amsterdam, C=NL");
+            RuleType rule = factory.createRuleType();
+            rule.setDn(dn);
+            rule.setAccess(AccessControlPermission.READ);
+            ac.getRule().add(rule);
+        }
+
+        acl = new AccessControlList(ac);
+        knownDn = "CN=peer" + (rules / 2) + ".example.net, OU=Network Services, O=Example, L=Amsterdam, C=NL";
+        unknownDn = "CN=unknown.example.org, OU=Network Services, O=Example, L=Amsterdam, C=NL";
+    }
+
+    @Benchmark
+    public boolean authorized() {
+        return acl.isAuthorized(knownDn, "GET", RESOURCE);
+    }
+
+    @Benchmark
+    public boolean unauthorized() {
+        return acl.isAuthorized(unknownDn, "GET", RESOURCE);
+    }
+}
@@ -0,0 +1,123 @@
+package net.es.nsi.dds.benchmark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import net.es.nsi.dds.config.Properties;
+import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.dao.DdsProfile;
+import net.es.nsi.dds.jaxb.DomParser;
+import net.es.nsi.dds.jaxb.dds.ContentType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * Shared fixtures for the DDS benchmarks.  Benchmarks are run from the
+ * project base directory so the unit test configuration can be reused.
+ *
+ * @author hacksaw
+ */
+final class BenchmarkData {
+    static final String CONFIG_FILE = "src/test/resources/config/dds.xml";
+    static final String TOPOLOGY_FILE = "src/test/resources/config/www/topologies/surfnet.nl:1990.xml";
+    static final String KEYSTORE_FILE = "src/test/resources/config/server.jks";
+    static final String KEYSTORE_PASSWORD = "changeit";
+    static final String KEYSTORE_TYPE = "JKS";
+    static final String KEYSTORE_ALIAS = "1";
+
+    static final String NSA_TYPE = "vnd.ogf.nsi.nsa.v1+xml";
+    static final String TOPOLOGY_TYPE = "vnd.ogf.nsi.topology.v2+xml";
+
+    // Number of distinct NSA that generated documents are spread over.
+    static final int NSA_COUNT = 100;
+
+    private static final ObjectFactory factory = new ObjectFactory();
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Load the unit test DDS configuration.
+     *
+     * @return The loaded configuration.
+     * @throws Exception
+     */
+    static DdsConfiguration configuration() throws Exception {
+        // Relative configuration paths are resolved against basedir which
+        // surefire sets for unit tests, but a forked benchmark JVM does not.
+        if (System.getProperty(Properties.SYSTEM_PROPERTY_BASEDIR) == null) {
+            System.setProperty(Properties.SYSTEM_PROPERTY_BASEDIR, System.getProperty("user.dir"));
+        }
+
+        DdsConfiguration config = new DdsConfiguration();
+        config.setFilename(CONFIG_FILE);
+        config.load();
+        return config;
+    }
+
+    /**
+     * Create a profile for a document cache.
+     *
+     * @param config The DDS configuration.
+     * @param directory The cache directory, or null for an in-memory cache.
+     * @return The profile.
+     */
+    static DdsProfile profile(DdsConfiguration config, File directory) {
+        return new DdsProfile(config) {
+            @Override
+            public String getDirectory() {
+                return directory == null ? null : directory.getAbsolutePath();
+            }
+        };
+    }
+
+    /**
+     * Get the nsa identifier used for generated document number i.
+     *
+     * @param i The document number.
+     * @return The nsa identifier.
+     */
+    static String nsa(int i) {
+        return "urn:ogf:network:example" + (i % NSA_COUNT) + ".net:2013:nsa";
+    }
+
+    /**
+     * Create a document with the given number of bytes of content.
+     *
+     * @param config The DDS configuration.
+     * @param i The document number.
+     * @param contentSize The size of the document content in bytes.
+     * @return The document.
+     */
+    static Document document(DdsConfiguration config, int i, int contentSize) {
+        DocumentType document = factory.createDocumentType();
+        document.setNsa(nsa(i));
+        document.setType(i % 2 == 0 ? NSA_TYPE : TOPOLOGY_TYPE);
+        document.setId(Integer.toString(i));
+
+        if (contentSize > 0) {
+            byte[] raw = new byte[contentSize];
+            Arrays.fill(raw, (byte) ('a' + i % 26));
+            ContentType content = factory.createContentType();
+            content.setContentType("application/xml");
+            content.setContentTransferEncoding("base64");
+            content.setValue(Base64.getEncoder().encodeToString(raw));
+            document.setContent(content);
+        }
+
+        return new Document(document, config.getBaseURL());
+    }
+
+    /**
+     * Load the sample topology document as a DOM.
+     *
+     * @return The DOM document.
+     * @throws Exception
+     */
+    static org.w3c.dom.Document topology() throws Exception {
+        byte[] xml = java.nio.file.Files.readAllBytes(new File(TOPOLOGY_FILE).toPath());
+        return DomParser.xml2Dom(new String(xml, StandardCharsets.UTF_8));
+    }
+}
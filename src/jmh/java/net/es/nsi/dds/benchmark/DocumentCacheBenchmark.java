@@ -0,0 +1,72 @@
+package net.es.nsi.dds.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.dao.DocumentCache;
+import net.es.nsi.dds.provider.Document;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of DocumentCache.put with the cache directory enabled, covering both
+ * new documents and replacement of existing documents.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentCacheBenchmark {
+    // Number of distinct documents cycled through.
+    @Param({"1000"})
+    private int documents;
+
+    // Size of document content in bytes.
+    @Param({"1024", "65536"})
+    private int contentSize;
+
+    private File directory;
+    private DocumentCache cache;
+    private Document[] pool;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        DdsConfiguration config = BenchmarkData.configuration();
+        directory = Files.createTempDirectory("dds-jmh-cache").toFile();
+        cache = new DocumentCache(BenchmarkData.profile(config, directory));
+
+        pool = new Document[documents];
+        for (int i = 0; i < documents; i++) {
+            pool[i] = BenchmarkData.document(config, i, contentSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Document put() throws Exception {
+        Document document = pool[next];
+        next = (next + 1) % pool.length;
+        return cache.put(document.getId(), document);
+    }
+}
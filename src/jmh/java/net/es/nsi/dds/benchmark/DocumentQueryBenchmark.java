@@ -0,0 +1,80 @@
+package net.es.nsi.dds.benchmark;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.dao.DocumentCache;
+import net.es.nsi.dds.provider.DdsProvider;
+import net.es.nsi.dds.provider.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Document query performance of DdsProvider.getDocuments against an
+ * in-memory document cache of varying size.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentQueryBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int documents;
+
+    private DdsProvider provider;
+    private String nsa;
+    private Date future;
+
+    @Setup
+    public void setup() throws Exception {
+        DdsConfiguration config = BenchmarkData.configuration();
+        DocumentCache cache = new DocumentCache(BenchmarkData.profile(config, null));
+        for (int i = 0; i < documents; i++) {
+            Document document = BenchmarkData.document(config, i, 0);
+            cache.put(document.getId(), document);
+        }
+
+        provider = new DdsProvider(config, cache, new DocumentCache(BenchmarkData.profile(config, null)), null);
+        nsa = BenchmarkData.nsa(documents / 2);
+        future = new Date(System.currentTimeMillis() + 60000);
+    }
+
+    @Benchmark
+    public Collection<Document> getAll() {
+        return provider.getDocuments(null, null, null, null);
+    }
+
+    @Benchmark
+    public Collection<Document> getByNsa() {
+        return provider.getDocuments(nsa, null, null, null);
+    }
+
+    @Benchmark
+    public Collection<Document> getByType() {
+        return provider.getDocuments(null, BenchmarkData.TOPOLOGY_TYPE, null, null);
+    }
+
+    @Benchmark
+    public Collection<Document> getByNsaAndType() {
+        return provider.getDocuments(nsa, BenchmarkData.NSA_TYPE, null, null);
+    }
+
+    @Benchmark
+    public Collection<Document> getModifiedSince() {
+        return provider.getDocuments(null, null, null, future);
+    }
+}
@@ -0,0 +1,51 @@
+package net.es.nsi.dds.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.lib.ContentTransferEncoding;
+import net.es.nsi.dds.lib.ContentType;
+import net.es.nsi.dds.lib.Decoder;
+import net.es.nsi.dds.lib.Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Document content encoding (serialize, gzip, base64) and decoding back to
+ * DOM using a sample NML topology document.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+    private Document topology;
+    private String encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        topology = BenchmarkData.topology();
+        encoded = Encoder.encode(topology);
+    }
+
+    @Benchmark
+    public String encode() throws Exception {
+        return Encoder.encode(topology);
+    }
+
+    @Benchmark
+    public Document decode2Dom() throws Exception {
+        return Decoder.decode2Dom(ContentTransferEncoding.BASE64, ContentType.XGZIP, encoded);
+    }
+}
@@ -0,0 +1,80 @@
+package net.es.nsi.dds.benchmark;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.NotificationListType;
+import net.es.nsi.dds.jaxb.dds.NotificationType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.provider.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DdsParser marshalling and unmarshalling of notification lists.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    // Number of notifications in the list.
+    @Param({"1", "40"})
+    private int notifications;
+
+    // Size of each document's content in bytes.
+    @Param({"4096"})
+    private int contentSize;
+
+    private final ObjectFactory factory = new ObjectFactory();
+    private NotificationListType list;
+    private String xml;
+
+    @Setup
+    public void setup() throws Exception {
+        DdsConfiguration config = BenchmarkData.configuration();
+        list = factory.createNotificationListType();
+        list.setId("benchmark");
+        list.setHref(config.getBaseURL() + "/subscriptions/benchmark");
+        list.setProviderId(config.getNsaId());
+        for (int i = 0; i < notifications; i++) {
+            Document document = BenchmarkData.document(config, i, contentSize);
+            NotificationType notification = factory.createNotificationType();
+            notification.setEvent(DocumentEventType.ALL);
+            notification.setDocument(document.getDocument());
+            list.getNotification().add(notification);
+        }
+
+        xml = DdsParser.getInstance().notifications2Xml(list);
+    }
+
+    @Benchmark
+    public String marshalString() throws Exception {
+        return DdsParser.getInstance().notifications2Xml(list);
+    }
+
+    @Benchmark
+    public void marshalStream() throws Exception {
+        DdsParser.getInstance().notifications2Xml(list, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public NotificationListType unmarshal() throws Exception {
+        return DdsParser.getInstance().xml2Notifications(xml);
+    }
+}
@@ -0,0 +1,75 @@
+package net.es.nsi.dds.benchmark;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.signing.KeyStoreHandler;
+import net.es.nsi.dds.signing.SignatureFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * XML digital signature cost over a sample NML topology document, and the
+ * cost of creating a SignatureFactory as is done today for every document.
+ *
+ * The external signature used in production dereferences a remote URI while
+ * signing, so the enveloped signature is measured instead to keep network
+ * latency out of the results.
+ *
+ * @author hacksaw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-exports=java.xml.crypto/org.jcp.xml.dsig.internal.dom=ALL-UNNAMED")
+public class SignatureBenchmark {
+    private static final String POLICY = "jdk.xml.dsig.secureValidationPolicy";
+
+    private KeyStoreHandler keyStore;
+    private SignatureFactory signatureFactory;
+    private Document topology;
+
+    // Enveloped signing modifies the document so each invocation gets a copy.
+    private Document unsigned;
+
+    @Setup
+    public void setup() throws Exception {
+        // SignatureFactory signs with RSA-SHA1 which the JDK secure validation
+        // policy rejects when the enveloped signature is validated.
+        String policy = Security.getProperty(POLICY);
+        if (policy != null) {
+            Security.setProperty(POLICY, policy.replaceAll("disallowAlg [^,]*#rsa-sha1\\s*,?", ""));
+        }
+
+        keyStore = new KeyStoreHandler(BenchmarkData.KEYSTORE_FILE, BenchmarkData.KEYSTORE_PASSWORD,
+                BenchmarkData.KEYSTORE_TYPE);
+        signatureFactory = new SignatureFactory(keyStore);
+        topology = BenchmarkData.topology();
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        unsigned = (Document) topology.cloneNode(true);
+    }
+
+    @Benchmark
+    public Document sign() throws Exception {
+        return signatureFactory.generateEnvelopedSignature(unsigned, BenchmarkData.KEYSTORE_ALIAS);
+    }
+
+    @Benchmark
+    public SignatureFactory createFactory() throws Exception {
+        return new SignatureFactory(keyStore);
+    }
+}
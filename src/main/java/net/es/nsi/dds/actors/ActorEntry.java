@@ -2,13 +2,14 @@ package net.es.nsi.dds.actors;
 
 /**
  * This class models whether an actor must be sent a start message upon system
- * startup.
+ * startup, and the dispatcher it runs on.
  * 
  * @author hacksaw
  */
 public class ActorEntry {
     private String actor;
     private boolean start;
+    private String dispatcher;
 
     public ActorEntry(String actor, boolean start) {
         this.actor = actor;
@@ -45,4 +46,18 @@ public class ActorEntry {
     public void setStart(boolean start) {
         this.start = start;
     }
+
+    /**
+     * @return the dispatcher, or null for the default dispatcher
+     */
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param dispatcher the dispatcher to set
+     */
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 }
@@ -0,0 +1,128 @@
+package net.es.nsi.dds.actors;
+
+import akka.actor.ActorContext;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.routing.ActorRefRoutee;
+import akka.routing.DefaultResizer;
+import akka.routing.Resizer;
+import akka.routing.RoutingLogic;
+import akka.routing.Router;
+
+/**
+ * The pool of worker actors behind a router actor.
+ *
+ * Workers are created as children of the router on the configured
+ * dispatcher so those making blocking HTTP calls to peers cannot starve the
+ * timer and housekeeping actors on the default dispatcher.  If a maximum
+ * pool size above the initial size is given the pool grows, driven by the
+ * number of workers busy or with messages waiting in their mailbox, up to
+ * that maximum.  The pool does not shrink again as a stopped worker would
+ * lose the result of any HTTP exchange it has in flight.  Workers that
+ * terminate are replaced.
+ *
+ * This class is not thread safe and must only be used by the router actor
+ * that created it.
+ *
+ * @author hacksaw
+ */
+public class ActorPool {
+    // The dispatcher for actors making blocking HTTP calls to peers.
+    public static final String DEFAULT_DISPATCHER = "dds-http-dispatcher";
+
+    private final ActorContext context;
+    private final LoggingAdapter log;
+    private final Props props;
+    private final Resizer resizer;
+    private Router router;
+    private long routed = 0;
+
+    /**
+     * Create the pool of workers.
+     *
+     * @param context The context of the router actor owning the pool.
+     * @param props The props used to create each worker.
+     * @param dispatcher The dispatcher to run workers on, or null for the
+     *      default dispatcher.
+     * @param logic The logic used to select a worker for each message.
+     * @param poolSize The initial number of workers.
+     * @param maxPoolSize The maximum number of workers, the pool is not
+     *      resized if this is not above poolSize.
+     */
+    public ActorPool(ActorContext context, Props props, String dispatcher, RoutingLogic logic,
+            int poolSize, int maxPoolSize) {
+        this.context = context;
+        this.log = Logging.getLogger(context.system(), this);
+
+        if (dispatcher != null && context.system().dispatchers().hasDispatcher(dispatcher)) {
+            this.props = props.withDispatcher(dispatcher);
+        } else {
+            if (dispatcher != null) {
+                log.warning("[ActorPool] dispatcher {} is not configured, using default for {}",
+                        dispatcher, props.actorClass().getSimpleName());
+            }
+            this.props = props;
+        }
+
+        poolSize = Math.max(poolSize, 1);
+        if (maxPoolSize > poolSize) {
+            // Grow when every worker is busy but never back off.
+            resizer = new DefaultResizer(poolSize, maxPoolSize, 1, 0.2, 0.0, 0.1, 10);
+        } else {
+            resizer = null;
+        }
+
+        router = new Router(logic);
+        for (int i = 0; i < poolSize; i++) {
+            add();
+        }
+    }
+
+    private void add() {
+        ActorRef r = context.actorOf(props);
+        context.watch(r);
+        router = router.addRoutee(new ActorRefRoutee(r));
+    }
+
+    /**
+     * Route a message to one of the workers, first growing the pool if the
+     * workers are busy.
+     *
+     * @param msg The message to route.
+     * @param sender The sender of the message.
+     */
+    public void route(Object msg, ActorRef sender) {
+        if (resizer != null && resizer.isTimeForResize(routed++)) {
+            int delta = resizer.resize(router.routees());
+            for (int i = 0; i < delta; i++) {
+                add();
+            }
+
+            if (delta > 0) {
+                log.info("[ActorPool] added {} {} to pool, size={}",
+                        delta, props.actorClass().getSimpleName(), size());
+            }
+        }
+
+        router.route(msg, sender);
+    }
+
+    /**
+     * Replace a worker that has terminated.
+     *
+     * @param actor The terminated actor.
+     */
+    public void terminated(ActorRef actor) {
+        router = router.removeRoutee(actor);
+        add();
+    }
+
+    /**
+     * @return the number of workers in the pool.
+     */
+    public int size() {
+        return router.routees().size();
+    }
+}
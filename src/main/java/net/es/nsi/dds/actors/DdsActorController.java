@@ -3,6 +3,7 @@ package net.es.nsi.dds.actors;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Cancellable;
+import akka.actor.Props;
 import akka.actor.Terminated;
 import jakarta.xml.bind.JAXBException;
 import java.io.FileNotFoundException;
@@ -75,7 +76,16 @@ public class DdsActorController implements ApplicationContextAware {
         actorEntries.forEach((ActorEntry entry) -> {
             try {
                 log.info("DdsActorController: Initializing {}", entry.getActor());
-                startList.add(actorSystem.actorOf(ext.props(entry.getActor()), "discovery-" + entry.getActor()));
+                Props props = ext.props(entry.getActor());
+                if (entry.getDispatcher() != null) {
+                    if (actorSystem.dispatchers().hasDispatcher(entry.getDispatcher())) {
+                        props = props.withDispatcher(entry.getDispatcher());
+                    } else {
+                        log.warn("DdsActorController: dispatcher {} is not configured, using default for {}",
+                                entry.getDispatcher(), entry.getActor());
+                    }
+                }
+                startList.add(actorSystem.actorOf(props, "discovery-" + entry.getActor()));
                 log.info("DdsActorController: Initialized {}", entry.getActor());
             } catch (Exception ex) {
                 log.error("DdsActorController: Failed to initialize {}", entry.getActor(), ex);
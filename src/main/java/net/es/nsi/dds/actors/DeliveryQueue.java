@@ -0,0 +1,139 @@
+package net.es.nsi.dds.actors;
+
+import akka.actor.Cancellable;
+import jakarta.xml.bind.JAXBException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * The document events waiting to be delivered to a single subscription.
+ *
+ * Events are held for a short linger time so a burst of changes is sent to
+ * the peer in a single notification.  While queued, an event for a document
+ * replaces any earlier event for the same document so a superseded version
+ * is never sent.  The queue tracks the encoded size of its documents so the
+ * router can deliver it early once the byte budget is reached.
+ *
+ * This class is not thread safe and is only used by the NotificationRouter.
+ *
+ * @author hacksaw
+ */
+class DeliveryQueue {
+    private final String subscriptionId;
+
+    // Queued events indexed by document id in the order last updated.
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long bytes = 0;
+    private int coalesced = 0;
+
+    // The scheduled delivery of this queue, if any.
+    private Cancellable flush;
+
+    /**
+     * A queued document event.
+     */
+    static class Entry {
+        final DocumentEventType event;
+        final Document document;
+        final long size;
+
+        Entry(DocumentEventType event, Document document, long size) {
+            this.event = event;
+            this.document = document;
+            this.size = size;
+        }
+    }
+
+    DeliveryQueue(String subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    /**
+     * Queue a document event, replacing any queued event for an older
+     * version of the document.
+     *
+     * @param event The document event.
+     * @param document The changed document.
+     * @return false if the event was for an older version than the one
+     *      already queued and was discarded.
+     */
+    boolean add(DocumentEventType event, Document document) {
+        Entry existing = entries.get(document.getId());
+        if (existing != null) {
+            coalesced++;
+            if (document.getVersionTime() < existing.document.getVersionTime()) {
+                return false;
+            }
+
+            // The peer has not been told about a new document yet.
+            if (existing.event == DocumentEventType.NEW) {
+                event = DocumentEventType.NEW;
+            }
+
+            entries.remove(document.getId());
+            bytes -= existing.size;
+        }
+
+        Entry entry = new Entry(event, document, size(document));
+        entries.put(document.getId(), entry);
+        bytes += entry.size;
+        return true;
+    }
+
+    private static long size(Document document) {
+        try {
+            return document.getEncoded(false).length;
+        } catch (JAXBException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Remove and return all queued events, cancelling any scheduled delivery.
+     *
+     * @return The queued events in the order they were last updated.
+     */
+    List<Entry> drain() {
+        if (flush != null) {
+            flush.cancel();
+            flush = null;
+        }
+
+        List<Entry> result = new ArrayList<>(entries.values());
+        entries.clear();
+        bytes = 0;
+        return result;
+    }
+
+    String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getCoalesced() {
+        return coalesced;
+    }
+
+    boolean isScheduled() {
+        return flush != null;
+    }
+
+    void setFlush(Cancellable flush) {
+        this.flush = flush;
+    }
+}
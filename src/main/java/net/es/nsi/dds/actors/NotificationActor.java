@@ -3,6 +3,7 @@ package net.es.nsi.dds.actors;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.client.Entity;
@@ -10,20 +11,34 @@ import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.xml.bind.JAXBException;
-import java.io.IOException;
-import javax.xml.datatype.XMLGregorianCalendar;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.DatatypeConfigurationException;
+import net.es.nsi.dds.client.ChunkedEntity;
+import net.es.nsi.dds.client.DeliveryPolicy;
 import net.es.nsi.dds.client.RestClient;
 import net.es.nsi.dds.config.ConfigurationManager;
 import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
 import net.es.nsi.dds.jaxb.dds.NotificationListType;
 import net.es.nsi.dds.jaxb.dds.NotificationType;
 import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.messages.HttpResult;
 import net.es.nsi.dds.messages.Message;
 import net.es.nsi.dds.messages.Notification;
 import net.es.nsi.dds.provider.DiscoveryProvider;
+import net.es.nsi.dds.provider.Document;
 import net.es.nsi.dds.util.XmlUtilities;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import scala.concurrent.duration.Duration;
 
 /**
  * The Notification Actor delivers notifications to a specific DDS peer based
@@ -36,9 +51,14 @@ import org.springframework.stereotype.Component;
 public class NotificationActor extends UntypedAbstractActor {
 
   private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
-  private final ObjectFactory factory = new ObjectFactory();
+  private static final ObjectFactory factory = new ObjectFactory();
   private final String providerId;
   private final RestClient restClient;
+  private final DeliveryPolicy deliveryPolicy;
+
+  // Notifications waiting on the in-flight delivery or pending retry to
+  // their subscription, indexed by subscription id.
+  private final Map<String, ArrayDeque<Notification>> inFlight = new HashMap<>();
 
   /**
    * Class constructor.  This class is a Spring managed bean.
@@ -48,6 +68,7 @@ public class NotificationActor extends UntypedAbstractActor {
   public NotificationActor(String providerId, RestClient restClient) {
     this.providerId = providerId;
     this.restClient = restClient;
+    this.deliveryPolicy = DeliveryPolicy.getInstance();
   }
 
   /**
@@ -68,62 +89,27 @@ public class NotificationActor extends UntypedAbstractActor {
   public void onReceive(Object msg) {
     log.debug("[NotificationActor] onReceive {}", Message.getDebug(msg));
 
-    // We only accept Notification messages.
     if (msg instanceof Notification) {
+      // Only one delivery to a subscription is in flight or waiting on a
+      // retry at a time so the peer sees notifications in the order they
+      // were sent.  A retry is the blocked delivery so goes straight out.
       Notification notification = (Notification) msg;
-      String requesterId = notification.getSubscription().getSubscription().getRequesterId();
       String id = notification.getSubscription().getId();
-      String callback = notification.getSubscription().getSubscription().getCallback();
-      String mediaType = notification.getSubscription().getEncoding();
-
-      log.debug("[NotificationActor] sending requesterId={}, id={}, mediaType={}, callback={}",
-              requesterId, id, mediaType, callback);
-
-      NotificationListType list = getNotificationList(notification);
-      final WebTarget webTarget = restClient.get().target(callback);
-
-      Response response = null;
-      boolean error = false;
-      try {
-        String encoded = DdsParser.getInstance().notifications2Xml(list);
-        response = webTarget.request(mediaType).header(HttpHeaders.CONTENT_ENCODING, "gzip")
-                .post(Entity.entity(encoded, mediaType));
-
-        if (response.getStatus() == Response.Status.ACCEPTED.getStatusCode()) {
-          log.debug("[NotificationActor] sent notification = {} to client = {}, result = {}",
-                  list.getId(), callback, response.getStatusInfo().getReasonPhrase());
-        } else {
-          log.error("[NotificationActor] failed notification = {} to client = {}, code = {}, result = {}",
-                  list.getId(), callback, response.getStatusInfo().getStatusCode(),
-                  response.getStatusInfo().getReasonPhrase());
-          // TODO: Tell discovery provider...
-          error = true;
-        }
-      } catch (Exception ex) {
-        // Do not change this to specific Exceptions unless you keep the
-        // generic catch due to underlying SSL exceptions from the SSL
-        // provider.
-        log.error(ex, "[NotificationActor] failed notification = {} to client = {}",
-                list.getId(), callback);
-        error = true;
-      } finally {
-        log.debug("[NotificationActor] finally - requesterId = {}, id = {}, callback = {}",
-                requesterId, id, callback);
-
-        if (response != null) {
-          response.close();
-        }
-
-        if (error) {
-          log.error("[NotificationActor] deleting requesterId={}, id={}, callback={}",
-              requesterId, id, callback);
-          DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
-          discoveryProvider.deleteSubscription(notification.getSubscription().getId());
-        }
+      ArrayDeque<Notification> waiting = inFlight.get(id);
+      if (waiting != null && notification.getAttempt() == 0) {
+        waiting.add(notification);
+      } else if (deliver(notification)) {
+        inFlight.putIfAbsent(id, new ArrayDeque<>());
+      } else {
+        next(id);
+      }
+    } else if (msg instanceof HttpResult) {
+      // A non-blocking delivery has completed.
+      HttpResult result = (HttpResult) msg;
+      Notification notification = (Notification) result.getRequest();
+      if (!completed(notification, result.getStatus(), getRetryAfter(result.getRetryAfter()), result.getError())) {
+        next(notification.getSubscription().getId());
       }
-
-      log.debug("[NotificationActor] notification sent requesterId={}, id={}, callback={}",
-              requesterId, id, callback);
     } else {
       log.error("[NotificationActor] onReceive unhandled message {} {}", this.getSender(), Message.getDebug(msg));
       unhandled(msg);
@@ -133,36 +119,311 @@ public class NotificationActor extends UntypedAbstractActor {
   }
 
   /**
-   * Return the list of notification targets.
+   * Deliver a notification to the subscription's callback.
+   *
+   * @param notification
+   * @return true if a non-blocking delivery was started and its result will
+   *      be sent to this actor, or a retry has been scheduled, false if the
+   *      delivery has been completed.
+   */
+  private boolean deliver(Notification notification) {
+    String requesterId = notification.getSubscription().getSubscription().getRequesterId();
+    String id = notification.getSubscription().getId();
+    String callback = notification.getSubscription().getSubscription().getCallback();
+    String mediaType = notification.getSubscription().getEncoding();
+
+    log.debug("[NotificationActor] sending requesterId={}, id={}, mediaType={}, callback={}",
+            requesterId, id, mediaType, callback);
+
+    // A retry is dropped if the peer has since unsubscribed.
+    if (notification.getAttempt() > 0 && !isSubscribed(id)) {
+      log.info("[NotificationActor] dropping retry for removed subscription requesterId={}, id={}, callback={}",
+              requesterId, id, callback);
+      discard(id);
+      return false;
+    }
+
+    // Fail fast while the peer is known to be down.
+    if (!deliveryPolicy.allow(callback)) {
+      log.debug("[NotificationActor] circuit open, deferring notification to callback={}", callback);
+      return retry(notification, 0);
+    }
+
+    // Assemble the notification list from the shared pre-serialized
+    // notifications if we have them, otherwise serialize them ourselves.
+    ChunkedEntity entity;
+    try {
+      entity = getNotificationEntity(notification);
+    } catch (JAXBException | DatatypeConfigurationException ex) {
+      return completed(notification, 0, 0, ex);
+    }
+
+    if (restClient.isAsync()) {
+      return deliverAsync(notification, entity, mediaType, callback);
+    }
+
+    final WebTarget webTarget = restClient.get().target(callback);
+
+    Response response = null;
+    int status = 0;
+    long retryAfter = 0;
+    Exception error = null;
+    try {
+      // Write the fragments straight to the chunked connection, request
+      // body compression is applied by the REST client.
+      response = webTarget.request(mediaType).post(Entity.entity(entity, mediaType));
+      status = response.getStatus();
+      retryAfter = getRetryAfter(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    } catch (Exception ex) {
+      // Do not change this to specific Exceptions unless you keep the
+      // generic catch due to underlying SSL exceptions from the SSL
+      // provider.
+      error = ex;
+    } finally {
+      log.debug("[NotificationActor] finally - requesterId = {}, id = {}, callback = {}",
+              requesterId, id, callback);
+
+      if (response != null) {
+        response.close();
+      }
+    }
+
+    return completed(notification, status, retryAfter, error);
+  }
+
+  /**
+   * Start a delivery on the non-blocking HTTP client, piping the result
+   * back to this actor so no thread waits on the peer.  The notification
+   * list is sent from its pre-serialized fragments.
    *
    * @param notification
+   * @param entity
+   * @param mediaType
+   * @param callback
+   * @return true if the delivery was started or a retry scheduled.
+   */
+  private boolean deliverAsync(Notification notification, ChunkedEntity entity, String mediaType, String callback) {
+    try {
+      CompletableFuture<HttpResult> result = restClient
+              .postAsync(URI.create(callback), mediaType, entity, HttpResponse.BodyHandlers.discarding())
+              .handle((response, ex) -> HttpResult.of(notification, response, ex));
+      Patterns.pipe(result, getContext().dispatcher()).to(getSelf());
+      return true;
+    } catch (Exception ex) {
+      return completed(notification, 0, 0, ex);
+    }
+  }
+
+  /**
+   * Start delivery of the next notification waiting on a subscription
+   * whose in-flight delivery, including any retries, has completed.
+   *
+   * @param id The subscription identifier.
+   */
+  private void next(String id) {
+    ArrayDeque<Notification> waiting = inFlight.get(id);
+    if (waiting == null) {
+      return;
+    }
+
+    Notification notification;
+    while ((notification = waiting.poll()) != null) {
+      if (deliver(notification)) {
+        return;
+      }
+    }
+
+    inFlight.remove(id);
+  }
+
+  /**
+   * Drop the notifications waiting on a subscription that has been removed.
+   *
+   * @param id The subscription identifier.
+   */
+  private void discard(String id) {
+    ArrayDeque<Notification> waiting = inFlight.remove(id);
+    if (waiting != null && !waiting.isEmpty()) {
+      log.info("[NotificationActor] dropping {} notifications for removed subscription id={}", waiting.size(), id);
+      waiting.clear();
+    }
+  }
+
+  /**
+   * Apply the delivery policy to the outcome of a delivery.
+   *
+   * @param notification
+   * @param status The HTTP status returned by the peer.
+   * @param retryAfter Milliseconds the peer asked us to wait, or 0.
+   * @param error The reason the delivery could not be made, or null.
+   * @return true if a retry of the delivery has been scheduled.
+   */
+  private boolean completed(Notification notification, int status, long retryAfter, Throwable error) {
+    String requesterId = notification.getSubscription().getSubscription().getRequesterId();
+    String id = notification.getSubscription().getId();
+    String callback = notification.getSubscription().getSubscription().getCallback();
+
+    boolean retry = false;
+    if (error != null) {
+      log.error(error, "[NotificationActor] failed notification = {} to client = {}", id, callback);
+      deliveryPolicy.failure(callback);
+      retry = retry(notification, 0);
+    } else if (status == Response.Status.ACCEPTED.getStatusCode()) {
+      log.debug("[NotificationActor] sent notification = {} to client = {}, result = {}",
+              id, callback, status);
+      deliveryPolicy.success(callback);
+    } else {
+      log.error("[NotificationActor] failed notification = {} to client = {}, code = {}",
+              id, callback, status);
+      if (isPermanent(status)) {
+        // The peer refused the notification so will not accept a retry.
+        deleteSubscription(notification);
+      } else {
+        deliveryPolicy.failure(callback);
+        retry = retry(notification, retryAfter);
+      }
+    }
+
+    log.debug("[NotificationActor] notification sent requesterId={}, id={}, callback={}",
+            requesterId, id, callback);
+    return retry;
+  }
+
+  /**
+   * Schedule another attempt to deliver a failed notification, or remove
+   * the subscription once the delivery policy gives up so the peer will
+   * register again and be sent the full document space.
+   *
+   * @param notification
+   * @param retryAfter Milliseconds the peer asked us to wait, or 0.
+   * @return true if a retry has been scheduled.
+   */
+  private boolean retry(Notification notification, long retryAfter) {
+    String callback = notification.getSubscription().getSubscription().getCallback();
+    int attempt = notification.getAttempt() + 1;
+    if (!deliveryPolicy.retry(attempt)) {
+      log.error("[NotificationActor] giving up after {} attempts to callback={}", attempt, callback);
+      deleteSubscription(notification);
+      return false;
+    }
+
+    long delay = deliveryPolicy.getBackoff(callback, attempt, retryAfter);
+    log.info("[NotificationActor] retrying notification id={} to callback={} in {} ms, attempt={}",
+            notification.getSubscription().getId(), callback, delay, attempt);
+    notification.setAttempt(attempt);
+    getContext().system().scheduler().scheduleOnce(Duration.create(delay, TimeUnit.MILLISECONDS),
+            getSelf(), notification, getContext().dispatcher(), getSelf());
+    return true;
+  }
+
+  private void deleteSubscription(Notification notification) {
+    String id = notification.getSubscription().getId();
+    String callback = notification.getSubscription().getSubscription().getCallback();
+    log.error("[NotificationActor] deleting requesterId={}, id={}, callback={}",
+        notification.getSubscription().getSubscription().getRequesterId(), id, callback);
+    deliveryPolicy.remove(callback);
+    discard(id);
+    try {
+      DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+      discoveryProvider.deleteSubscription(id);
+    } catch (WebApplicationException ex) {
+      log.debug("[NotificationActor] subscription already removed id={}", id);
+    }
+  }
+
+  private boolean isSubscribed(String id) {
+    try {
+      DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+      return discoveryProvider.getSubscription(id, null) != null;
+    } catch (WebApplicationException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Is a failure status one the peer will return again on retry?  Client
+   * errors other than a timeout or too many requests are permanent.
+   *
+   * @param status
    * @return
    */
-  private NotificationListType getNotificationList(Notification notification) {
-    NotificationListType list = factory.createNotificationListType();
+  private static boolean isPermanent(int status) {
+    return status >= 400 && status < 500
+            && status != Response.Status.REQUEST_TIMEOUT.getStatusCode()
+            && status != Response.Status.TOO_MANY_REQUESTS.getStatusCode();
+  }
 
-    notification.getDocuments().stream().map((document) -> {
-      log.debug("[NotificationActor] getNotificationList documentId={}", document.getDocument().getId());
-      return document;
-    }).map((document) -> {
-      NotificationType notify = factory.createNotificationType();
-      notify.setEvent(notification.getEvent());
-      notify.setDocument(document.getDocument());
-      try {
-        XMLGregorianCalendar discovered = XmlUtilities.longToXMLGregorianCalendar(document.getLastDiscovered().getTime());
-        notify.setDiscovered(discovered);
-      } catch (Exception ex) {
-        log.error("[NotificationActor] getNotificationList discovered date conversion failed", ex);
+  /**
+   * Get the delay in milliseconds requested by a Retry-After header given
+   * in seconds, or 0 if there is none.
+   *
+   * @param value
+   * @return
+   */
+  private static long getRetryAfter(String value) {
+    if (value == null) {
+      return 0;
+    }
+
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+
+  /**
+   * Return an entity that writes the notification envelope around the
+   * serialized notification elements, using the shared pre-serialized
+   * elements if the notification carries them.
+   *
+   * @param notification
+   * @return
+   * @throws JAXBException
+   * @throws DatatypeConfigurationException
+   */
+  private ChunkedEntity getNotificationEntity(Notification notification)
+          throws JAXBException, DatatypeConfigurationException {
+    List<byte[]> encoded = notification.getEncoded();
+    if (encoded == null) {
+      encoded = new ArrayList<>(notification.getDocuments().size());
+      for (Document document : notification.getDocuments()) {
+        log.debug("[NotificationActor] getNotificationEntity documentId={}", document.getDocument().getId());
+        encoded.add(DdsParser.getInstance().notification2Fragment(newNotification(notification.getEvent(), document)));
       }
-      return notify;
-    }).forEach((notify) -> {
-      list.getNotification().add(notify);
-    });
+    }
+
+    return new ChunkedEntity(DdsParser.getInstance().notifications2Chunks(getNotificationEnvelope(notification), encoded));
+  }
 
+  /**
+   * Return the notification list envelope for the target subscription
+   * without any notifications.
+   *
+   * @param notification
+   * @return
+   */
+  private NotificationListType getNotificationEnvelope(Notification notification) {
+    NotificationListType list = factory.createNotificationListType();
     list.setId(notification.getSubscription().getId());
     list.setHref(notification.getSubscription().getSubscription().getHref());
     list.setProviderId(providerId);
-
     return list;
   }
+
+  /**
+   * Create the notification element for a document.
+   *
+   * @param event
+   * @param document
+   * @return
+   * @throws DatatypeConfigurationException
+   */
+  static NotificationType newNotification(DocumentEventType event, Document document) throws DatatypeConfigurationException {
+    NotificationType notify = factory.createNotificationType();
+    notify.setEvent(event);
+    notify.setDocument(document.getDocument());
+    notify.setDiscovered(XmlUtilities.longToXMLGregorianCalendar(document.getLastDiscoveredTime()));
+    return notify;
+  }
 }
@@ -7,22 +7,29 @@ import akka.actor.Terminated;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.routing.ActorRefRoutee;
-import akka.routing.RoundRobinRoutingLogic;
-import akka.routing.Routee;
-import akka.routing.Router;
+import akka.routing.ConsistentHashingRouter.ConsistentHashableEnvelope;
+import akka.routing.ConsistentHashingRoutingLogic;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.xml.bind.JAXBException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.DatatypeConfigurationException;
 import net.es.nsi.dds.client.RestClient;
 import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.dao.DocumentCache;
+import net.es.nsi.dds.jaxb.DdsParser;
 import net.es.nsi.dds.jaxb.dds.DocumentEventType;
 import net.es.nsi.dds.messages.*;
 import net.es.nsi.dds.provider.DiscoveryProvider;
 import net.es.nsi.dds.provider.Document;
 import net.es.nsi.dds.provider.Subscription;
+import net.es.nsi.dds.provider.SubscriptionFilter;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import scala.concurrent.duration.Duration;
@@ -31,11 +38,21 @@ import scala.concurrent.duration.Duration;
  * This Notification Router will route notification messages to the target
  * actors based on notification type.
  *
+ * Document events are queued per subscription and delivered together once
+ * the linger time has passed or the queued documents reach maxBytes, with
+ * only the newest version of each document sent.  Notifications for a
+ * subscription are always routed to the same NotificationActor so they are
+ * delivered to the peer in order.
+ *
  * @author hacksaw
  */
 @Component
 @Scope("prototype")
 public class NotificationRouter extends UntypedAbstractActor {
+    // Defaults used if not configured in beans.xml.
+    public static final long DEFAULT_LINGER = 1000;
+    public static final long DEFAULT_MAX_BYTES = 1048576;
+
     private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
     private final DdsActorSystem ddsActorSystem;
     private final DdsConfiguration discoveryConfiguration;
@@ -44,7 +61,17 @@ public class NotificationRouter extends UntypedAbstractActor {
     private final RestClient restClient;
     private int poolSize;
     private int notificationSize;
-    private Router router;
+    private long linger = DEFAULT_LINGER;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private String dispatcher = ActorPool.DEFAULT_DISPATCHER;
+    private ActorPool router;
+
+    // Document events waiting to be delivered indexed by subscription id.
+    private final Map<String, DeliveryQueue> queues = new HashMap<>();
+
+    // Subscriptions queued for delivery of the full document space.
+    private final List<Subscription> pendingSubscriptions = new ArrayList<>();
+    private boolean fanOutPending = false;
 
     /**
      * Constructor called by Spring to instantiate a singleton instance.
@@ -69,18 +96,14 @@ public class NotificationRouter extends UntypedAbstractActor {
 
     /**
      * Initializes the router actor by creating a pool of NotificationActor to
-     * process notification workload.
+     * process notification workload.  The pool is not resized as that would
+     * move subscriptions between actors and could reorder their notifications.
      */
     @Override
     public void preStart() {
-        List<Routee> routees = new ArrayList<>();
-        for (int i = 0; i < getPoolSize(); i++) {
-            ActorRef r = getContext().actorOf(Props.create(NotificationActor.class,
-                discoveryConfiguration.getNsaId(), restClient));
-            getContext().watch(r);
-            routees.add(new ActorRefRoutee(r));
-        }
-        router = new Router(new RoundRobinRoutingLogic(), routees);
+        router = new ActorPool(getContext(),
+            Props.create(NotificationActor.class, discoveryConfiguration.getNsaId(), restClient),
+            getDispatcher(), new ConsistentHashingRoutingLogic(getContext().system()), getPoolSize(), 0);
     }
 
     /**
@@ -99,6 +122,17 @@ public class NotificationRouter extends UntypedAbstractActor {
             log.debug("[NotificationRouter] document event {}, id={}", de.getEvent(), de.getDocument().getId());
             routeDocumentEvent(de);
         }
+        else if (msg instanceof FlushMsg) {
+            // Deliver the events queued for a subscription.
+            DeliveryQueue queue = queues.get(((FlushMsg) msg).getSubscriptionId());
+            if (queue != null) {
+                flush(queue);
+            }
+        }
+        else if (msg instanceof FanOutMsg) {
+            // Deliver documents to all queued subscriptions.
+            fanOut();
+        }
         else if (msg instanceof SubscriptionEvent) {
             // We have a subscription event.
             SubscriptionEvent se = (SubscriptionEvent) msg;
@@ -109,10 +143,7 @@ public class NotificationRouter extends UntypedAbstractActor {
         else if (msg instanceof Terminated) {
             Terminated terminated = ((Terminated) msg);
             log.debug("[NotificationRouter] terminate event for {}", terminated.actor().path());
-            router = router.removeRoutee(terminated.actor());
-            ActorRef r = getContext().actorOf(Props.create(NotificationActor.class));
-            getContext().watch(r);
-            router = router.addRoutee(new ActorRefRoutee(r));
+            router.terminated(terminated.actor());
         }
         else if (msg instanceof StartMsg) {
             // We ignore these for now as we have no specific start task.
@@ -137,63 +168,216 @@ public class NotificationRouter extends UntypedAbstractActor {
         log.debug("routeDocumentEvent: event={}, documentId={}", de.getEvent(), de.getDocument().getId());
 
         // We need to sent the list of matching documents to the callback
-        // related to this subscription.  Only send if there is no pending
+        // related to this subscription.  Only queue if there is no pending
         // subscription event.
         subscriptions.stream().map((subscription) -> {
             log.debug("routeDocumentEvent: id={}, subscription={}, endpoint={}",
                 de.getDocument().getId(), subscription.getId(), subscription.getSubscription().getCallback());
             return subscription;
-        }).filter((subscription) -> (subscription.getAction() == null)).map((subscription) -> {
-            Notification notification = new Notification("routeDocumentEvent", this.getSelf().path());
-            notification.setEvent(de.getEvent());
-            notification.setSubscription(subscription);
-            return notification;
-        }).map((notification) -> {
-            Collection<Document> documents = new ArrayList<>();
-            documents.add(de.getDocument());
-            notification.setDocuments(documents);
-            return notification;
-        }).forEach((notification) -> {
-            router.route(notification, getSender());
+        }).filter((subscription) -> (subscription.getAction() == null)).forEach((subscription) -> {
+            DeliveryQueue queue = queues.computeIfAbsent(subscription.getId(), DeliveryQueue::new);
+            queue.add(de.getEvent(), de.getDocument());
+            if (linger <= 0 || queue.getBytes() >= maxBytes) {
+                flush(queue);
+            } else if (!queue.isScheduled()) {
+                FlushMsg flush = new FlushMsg("routeDocumentEvent", this.getSelf().path());
+                flush.setSubscriptionId(subscription.getId());
+                queue.setFlush(getContext().system().scheduler().scheduleOnce(
+                    Duration.create(linger, TimeUnit.MILLISECONDS), getSelf(), flush,
+                    getContext().dispatcher(), getSelf()));
+            }
         });
     }
 
+    /**
+     * Deliver the document events queued for a subscription, split into
+     * notifications of at most maxBytes of documents.  Events are dropped if
+     * the subscription has since been removed or is waiting for delivery of
+     * the full document space.
+     *
+     * @param queue
+     */
+    private void flush(DeliveryQueue queue) {
+        queues.remove(queue.getSubscriptionId());
+        long queued = queue.getBytes();
+        List<DeliveryQueue.Entry> entries = queue.drain();
+        Subscription subscription = getSubscription(queue.getSubscriptionId());
+        if (subscription == null || subscription.getAction() != null || entries.isEmpty()) {
+            log.debug("flush: dropping {} events for subscription={}", entries.size(), queue.getSubscriptionId());
+            return;
+        }
+
+        log.debug("flush: subscription={}, documents={}, bytes={}, coalesced={}",
+            subscription.getId(), entries.size(), queued, queue.getCoalesced());
+
+        List<Document> docs = new ArrayList<>();
+        List<byte[]> encoded = new ArrayList<>();
+        DocumentEventType event = null;
+        long bytes = 0;
+        for (DeliveryQueue.Entry entry : entries) {
+            if (!docs.isEmpty() && bytes + entry.size > maxBytes) {
+                send(subscription, event, docs, encoded);
+                docs = new ArrayList<>();
+                encoded = new ArrayList<>();
+                bytes = 0;
+            }
+
+            docs.add(entry.document);
+            bytes += entry.size;
+            event = entry.event;
+
+            // Each document keeps its own event when pre-serialized,
+            // otherwise the notification actor uses the last event.
+            byte[] fragment = encoded == null ? null : encode(entry.event, entry.document);
+            encoded = fragment == null ? null : encoded;
+            if (encoded != null) {
+                encoded.add(fragment);
+            }
+        }
+        send(subscription, event, docs, encoded);
+    }
+
+    private void send(Subscription subscription, DocumentEventType event, List<Document> docs, List<byte[]> encoded) {
+        Notification notification = new Notification("routeDocumentEvent", this.getSelf().path());
+        notification.setEvent(event);
+        notification.setSubscription(subscription);
+        notification.setDocuments(docs);
+        notification.setEncoded(encoded);
+        route(notification);
+    }
+
+    /**
+     * Route a notification to the notification actor for its subscription.
+     *
+     * @param notification
+     */
+    private void route(Notification notification) {
+        router.route(new ConsistentHashableEnvelope(notification, notification.getSubscription().getId()), getSelf());
+    }
+
+    private Subscription getSubscription(String id) {
+        try {
+            return discoveryProvider.getSubscription(id, null);
+        } catch (WebApplicationException ex) {
+            return null;
+        }
+    }
+
     /**
      * Provides the specific logic to route a subscription event to targets.
+     * Subscriptions are queued and a fan-out is triggered once all
+     * subscription events already in our mailbox have been queued, so
+     * subscriptions arriving together share a single serialization of the
+     * document space.
      *
      * @param se
      */
     private void routeSubscriptionEvent(SubscriptionEvent se) {
-        // TODO: Apply subscription filter to these documents.
-        Collection<Document> documents = documentCache.values();
-
         // Clean up our trigger event.
         log.debug("routeSubscriptionEvent: requesterId={}, id={}, action={}",
                 se.getSubscription().getSubscription().getRequesterId(),
                 se.getSubscription().getSubscription().getId(),
                 se.getSubscription().getAction().isCancelled());
-        log.debug("routeSubscriptionEvent: event={}, documents={}, postSize={}",
-                se.getSubscription().getSubscription().getId(),
-                se.getEvent(), documents.size(), notificationSize);
         se.getSubscription().setAction(null);
 
-        // Send documents in chunks of 10.
-        Object[] toArray = documents.toArray();
-        int current = 0;
-        while (current < toArray.length) {
-            // We need to sent the list of matching documents to the callback
-            // related to this subscription.
-            Notification notification = new Notification("routeSubscriptionEvent", this.getSelf().path());
-            notification.setEvent(DocumentEventType.ALL);
-            notification.setSubscription(se.getSubscription());
-            ArrayList<Document> docs = new ArrayList<>();
-            for (int i = 0; i < notificationSize
-                    && current < toArray.length; i++) {
-                docs.add((Document) toArray[current]);
-                current++;
+        pendingSubscriptions.add(se.getSubscription());
+        if (!fanOutPending) {
+            fanOutPending = true;
+            getSelf().tell(new FanOutMsg("routeSubscriptionEvent", getSelf().path()), getSelf());
+        }
+    }
+
+    /**
+     * Deliver the matching documents to all queued subscriptions.
+     * Subscriptions are grouped by filter, and the documents matching each
+     * group's filter are split into chunks of notificationSize.  Each chunk
+     * is serialized once, then shared by the notifications sent to every
+     * subscription in the group with only the notification envelope written
+     * per subscription.
+     */
+    private void fanOut() {
+        fanOutPending = false;
+
+        Map<SubscriptionFilter, List<Subscription>> groups = new LinkedHashMap<>();
+        for (Subscription subscription : pendingSubscriptions) {
+            groups.computeIfAbsent(SubscriptionFilter.compile(subscription.getSubscription().getFilter()),
+                    k -> new ArrayList<>()).add(subscription);
+        }
+        pendingSubscriptions.clear();
+
+        groups.values().forEach(this::fanOut);
+    }
+
+    /**
+     * Deliver the matching documents to a group of subscriptions sharing the
+     * same filter.
+     *
+     * @param subscriptions
+     */
+    private void fanOut(List<Subscription> subscriptions) {
+        Collection<Document> documents = discoveryProvider.getDocuments(
+                subscriptions.get(0).getSubscription().getFilter());
+
+        log.debug("fanOut: subscriptions={}, documents={}, postSize={}",
+                subscriptions.size(), documents.size(), notificationSize);
+
+        // Send documents in chunks of notificationSize.  The document
+        // collection is not shared with writers so we walk it directly.
+        Iterator<Document> iterator = documents.iterator();
+        while (iterator.hasNext()) {
+            ArrayList<Document> docs = new ArrayList<>(notificationSize);
+            for (int i = 0; i < notificationSize && iterator.hasNext(); i++) {
+                docs.add(iterator.next());
+            }
+
+            List<byte[]> encoded = encode(docs);
+            for (Subscription subscription : subscriptions) {
+                // We need to sent the list of matching documents to the callback
+                // related to this subscription.
+                Notification notification = new Notification("routeSubscriptionEvent", this.getSelf().path());
+                notification.setEvent(DocumentEventType.ALL);
+                notification.setSubscription(subscription);
+                notification.setDocuments(docs);
+                notification.setEncoded(encoded);
+                route(notification);
+            }
+        }
+    }
+
+    /**
+     * Serialize a chunk of documents into notification elements.
+     *
+     * @param documents
+     * @return The serialized notification elements, or null if serialization
+     *      failed and each notification actor should serialize for itself.
+     */
+    private List<byte[]> encode(Collection<Document> documents) {
+        List<byte[]> encoded = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            byte[] fragment = encode(DocumentEventType.ALL, document);
+            if (fragment == null) {
+                return null;
             }
-            notification.setDocuments(docs);
-            router.route(notification, getSender());
+            encoded.add(fragment);
+        }
+
+        return encoded;
+    }
+
+    /**
+     * Serialize the notification element for a document event.
+     *
+     * @param event
+     * @param document
+     * @return The serialized notification element, or null if serialization
+     *      failed.
+     */
+    private byte[] encode(DocumentEventType event, Document document) {
+        try {
+            return DdsParser.getInstance().notification2Fragment(NotificationActor.newNotification(event, document));
+        } catch (JAXBException | DatatypeConfigurationException ex) {
+            log.error(ex, "encode: failed to serialize notification documentId={}", document.getId());
+            return null;
         }
     }
 
@@ -215,6 +399,20 @@ public class NotificationRouter extends UntypedAbstractActor {
         this.poolSize = poolSize;
     }
 
+    /**
+     * @return the dispatcher the notification actors run on
+     */
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param dispatcher the dispatcher the notification actors run on
+     */
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     /**
      * Schedule a notification message delivery to an actor.
      *
@@ -237,6 +435,45 @@ public class NotificationRouter extends UntypedAbstractActor {
         this.getSelf().tell(message, ActorRef.noSender());
     }
 
+    /**
+     * Get the time document events are held for delivery together.
+     *
+     * @return the linger time in milliseconds
+     */
+    public long getLinger() {
+        return linger;
+    }
+
+    /**
+     * Set the time document events are held for delivery together.  A value
+     * of 0 delivers each document event immediately.
+     *
+     * @param linger the linger time in milliseconds
+     */
+    public void setLinger(long linger) {
+        this.linger = linger >= 0 ? linger : DEFAULT_LINGER;
+    }
+
+    /**
+     * Get the size of queued documents delivered without waiting for the
+     * linger time, and the most documents sent in a single notification.
+     *
+     * @return the maxBytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the size of queued documents delivered without waiting for the
+     * linger time, and the most documents sent in a single notification.
+     *
+     * @param maxBytes the maxBytes to set
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES;
+    }
+
     /**
      * Get the max notification message size.
      *
@@ -3,6 +3,7 @@ package net.es.nsi.dds.actors;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.client.WebTarget;
@@ -10,7 +11,10 @@ import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import net.es.nsi.dds.client.RestClient;
 import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.dao.RemoteSubscription;
@@ -27,6 +31,7 @@ import net.es.nsi.dds.jaxb.dds.SubscriptionType;
 import net.es.nsi.dds.management.logs.DdsErrors;
 import net.es.nsi.dds.management.logs.DdsLogger;
 import net.es.nsi.dds.management.logs.DdsLogs;
+import net.es.nsi.dds.messages.HttpResult;
 import net.es.nsi.dds.messages.Message;
 import net.es.nsi.dds.messages.RegistrationEvent;
 import net.es.nsi.dds.messages.RegistrationEvent.Event;
@@ -101,6 +106,9 @@ public class RegistrationActor extends UntypedAbstractActor {
                     unhandled(msg);
                     break;
             }
+        } else if (msg instanceof HttpResult) {
+            // A non-blocking request has completed.
+            completed((HttpResult) msg);
         } else {
             log.error("[RegistrationActor] onReceive unhandled message {} {}", this.getSender(), Message.getDebug(msg));
             unhandled(msg);
@@ -160,17 +168,63 @@ public class RegistrationActor extends UntypedAbstractActor {
         WebTarget webTarget = client.target(remoteDdsURL).path("subscriptions");
 
         Response response = null;
+        int status = 0;
+        String body = null;
+        Date lastModified = null;
+        Exception error = null;
         try {
             log.debug("RegistrationActor.register: registering with remote DDS {}", remoteDdsURL);
 
             String encoded = DdsParser.getInstance().subscriptionRequest2Xml(request);
+            if (restClient.isAsync()) {
+                send(event, restClient.newRequest(webTarget.getUri())
+                        .header(HttpHeaders.CONTENT_TYPE, NsiConstants.NSI_DDS_V1_XML)
+                        .header(HttpHeaders.ACCEPT, NsiConstants.NSI_DDS_V1_XML)
+                        .POST(HttpRequest.BodyPublishers.ofString(encoded)));
+                return;
+            }
+
+            // Request body compression is applied by the REST client.
             response = webTarget.request(NsiConstants.NSI_DDS_V1_XML)
-                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
                     .post(Entity.entity(encoded, NsiConstants.NSI_DDS_V1_XML));
+            status = response.getStatus();
+            body = response.hasEntity() ? response.readEntity(String.class) : null;
+            lastModified = response.getLastModified();
+        }
+        catch (Exception ex) {
+            error = ex;
+        }
+        finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+
+        registered(event, status, body, lastModified, error);
+    }
 
-            if (response.getStatusInfo().getStatusCode() == Response.Status.CREATED.getStatusCode()) {
+    /**
+     * Process the response to a subscription request on a remote DDS service.
+     *
+     * @param event
+     * @param status The HTTP status returned by the remote DDS.
+     * @param body The response body, or null if there was none.
+     * @param lastModified The Last-Modified header, or null if there was none.
+     * @param failure The reason the request could not be made, or null.
+     */
+    private void registered(RegistrationEvent event, int status, String body, Date lastModified, Throwable failure) {
+        final String remoteDdsURL = event.getUrl();
+
+        if (failure != null) {
+            log.error(failure, "RegistrationActor.register: error on endpoint {}", remoteDdsURL);
+            logger.error(DdsErrors.DDS_SUBSCRIPTION_ADD_FAILED, remoteDdsURL);
+            return;
+        }
+
+        try {
+            if (status == Response.Status.CREATED.getStatusCode()) {
                 // Looks like we were successful so save the subscription information.
-                SubscriptionType newSubscription = DdsParser.getInstance().xml2Subscription(response.readEntity(String.class));
+                SubscriptionType newSubscription = DdsParser.getInstance().xml2Subscription(body);
 
                 logger.log(DdsLogs.DDS_SUBSCRIPTION_CREATED, remoteDdsURL, newSubscription.getHref());
 
@@ -179,7 +233,7 @@ public class RegistrationActor extends UntypedAbstractActor {
                 RemoteSubscription remoteSubscription = new RemoteSubscription();
                 remoteSubscription.setDdsURL(remoteDdsURL);
                 remoteSubscription.setSubscription(newSubscription);
-                if (response.getLastModified() == null) {
+                if (lastModified == null) {
                     // We should have gotten a valid lastModified date back.  Fake one
                     // until we have worked out all the failure cases.  This will open
                     // a small window of inaccuracy.
@@ -187,7 +241,7 @@ public class RegistrationActor extends UntypedAbstractActor {
                     remoteSubscription.setCreated(new Date((System.currentTimeMillis() / 1000) * 1000 ));
                 }
                 else {
-                    remoteSubscription.setCreated(response.getLastModified());
+                    remoteSubscription.setCreated(lastModified);
                 }
 
                 remoteSubscriptionCache.add(remoteSubscription);
@@ -197,9 +251,9 @@ public class RegistrationActor extends UntypedAbstractActor {
                 deleteOldSubscriptions(remoteDdsURL, newSubscription.getId());
             }
             else {
-                log.error("RegistrationActor.register: failed to create subscription {}, result = {}", remoteDdsURL, response.getStatusInfo().getReasonPhrase());
+                log.error("RegistrationActor.register: failed to create subscription {}, result = {}", remoteDdsURL, getReasonPhrase(status));
 
-                ErrorType error = DdsParser.getInstance().xml2Error(response.readEntity(String.class));
+                ErrorType error = DdsParser.getInstance().xml2Error(body);
                 if (error != null) {
                     log.error("RegistrationActor.register: Error id={}, label={}, resource={}, description={}",
                             error.getId(), error.getLabel(), error.getResource(),
@@ -207,7 +261,7 @@ public class RegistrationActor extends UntypedAbstractActor {
                     logger.error(DdsErrors.DDS_SUBSCRIPTION_ADD_FAILED_DETAILED, remoteDdsURL, error.getId());
                 }
                 else {
-                    logger.error(DdsErrors.DDS_SUBSCRIPTION_ADD_FAILED_DETAILED, remoteDdsURL, response.getStatusInfo().getReasonPhrase());
+                    logger.error(DdsErrors.DDS_SUBSCRIPTION_ADD_FAILED_DETAILED, remoteDdsURL, getReasonPhrase(status));
                 }
             }
         }
@@ -215,11 +269,6 @@ public class RegistrationActor extends UntypedAbstractActor {
             log.error(ex, "RegistrationActor.register: error on endpoint {}", remoteDdsURL);
             logger.error(DdsErrors.DDS_SUBSCRIPTION_ADD_FAILED, remoteDdsURL);
         }
-        finally {
-            if (response != null) {
-                response.close();
-            }
-        }
     }
 
     /**
@@ -288,53 +337,89 @@ public class RegistrationActor extends UntypedAbstractActor {
             throw new IllegalArgumentException("update: invalid event type " + event.getEvent());
         }
 
-        Client client = restClient.get();
-
         // First we retrieve the remote subscription to see if it is still
         // valid.  If it is not then we register again, otherwise we leave it
         // alone for now.
         RemoteSubscription remoteSubscription = remoteSubscriptionCache.get(event.getUrl());
-        String remoteSubscriptionURL = remoteSubscription.getSubscription().getHref();
-
-        // Check to see if the remote subscription URL is absolute or relative.
-        WebTarget webTarget;
-        if (UrlHelper.isAbsolute(remoteSubscriptionURL)) {
-            webTarget = client.target(remoteSubscriptionURL);
-        }
-        else {
-            webTarget = client.target(remoteSubscription.getDdsURL()).path(remoteSubscriptionURL);
-        }
-
+        WebTarget webTarget = getSubscriptionTarget(remoteSubscription);
         String absoluteURL = webTarget.getUri().toASCIIString();
 
         // Read the remote subscription to determine existanxe and last update time.
         remoteSubscription.setLastAudit(new Date());
         Response response = null;
+        int status = 0;
+        String body = null;
+        Date lastModified = null;
+        Exception error = null;
         try {
             log.debug("RegistrationActor.update: getting subscription {},lastModified = {}",
                 absoluteURL, remoteSubscription.getLastModified());
+            String ifModifiedSince = DateUtils.formatDate(remoteSubscription.getLastModified(), DateUtils.PATTERN_RFC1123);
+            if (restClient.isAsync()) {
+                send(event, restClient.newRequest(webTarget.getUri())
+                        .header(HttpHeaders.ACCEPT, NsiConstants.NSI_DDS_V1_XML)
+                        .header("If-Modified-Since", ifModifiedSince)
+                        .GET());
+                return;
+            }
+
             response = webTarget.request(NsiConstants.NSI_DDS_V1_XML)
-                .header("If-Modified-Since",
-                    DateUtils.formatDate(remoteSubscription.getLastModified(), DateUtils.PATTERN_RFC1123)).get();
+                .header("If-Modified-Since", ifModifiedSince).get();
+            status = response.getStatus();
+            body = response.hasEntity() ? response.readEntity(String.class) : null;
+            lastModified = response.getLastModified();
+        }
+        catch (Exception ex) {
+            error = ex;
+        }
+        finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+
+        audited(event, remoteSubscription, absoluteURL, status, body, lastModified, error);
+    }
+
+    /**
+     * Process the response to an audit of a subscription on a remote nsi-dds
+     * peer.
+     *
+     * @param event
+     * @param remoteSubscription The subscription audited.
+     * @param absoluteURL The URL of the subscription on the peer.
+     * @param status The HTTP status returned by the peer.
+     * @param body The response body, or null if there was none.
+     * @param lastModified The Last-Modified header, or null if there was none.
+     * @param failure The reason the request could not be made, or null.
+     */
+    private void audited(RegistrationEvent event, RemoteSubscription remoteSubscription, String absoluteURL,
+            int status, String body, Date lastModified, Throwable failure) {
+        if (failure != null) {
+            log.error(failure,"GET failed for {}", absoluteURL);
+            logger.error(DdsErrors.DDS_SUBSCRIPTION_GET_FAILED, absoluteURL);
+            return;
+        }
 
+        try {
             // We found the subscription and it was not updated.
-            if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            if (status == Response.Status.NOT_MODIFIED.getStatusCode()) {
                 // The subscription exists and has not been modified.
                 log.debug("RegistrationActor.update: subscription {} exists (not modified).", absoluteURL);
                 remoteSubscription.setLastSuccessfulAudit(new Date());
             }
             // We found the subscription and it was updated.
-            else if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+            else if (status == Response.Status.OK.getStatusCode()) {
                 // The subscription exists but was modified since our last query.
                 // Save the new version even though we should have know about it.
-                remoteSubscription.setLastModified(response.getLastModified());
+                remoteSubscription.setLastModified(lastModified);
                 remoteSubscription.setLastSuccessfulAudit(new Date());
-                SubscriptionType update = DdsParser.getInstance().xml2Subscription(response.readEntity(String.class));
+                SubscriptionType update = DdsParser.getInstance().xml2Subscription(body);
                 remoteSubscription.setSubscription(update);
-                logger.log(DdsLogs.DDS_SUBSCRIPTION_UPDATE_DETECTED, absoluteURL, response.getLastModified().toString());
+                logger.log(DdsLogs.DDS_SUBSCRIPTION_UPDATE_DETECTED, absoluteURL, lastModified.toString());
             }
             // We did not find the subscription so will need to create a new one.
-            else if (response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+            else if (status == Response.Status.NOT_FOUND.getStatusCode()) {
                 // Looks like our subscription was removed. We need to add it back in.
                 logger.error(DdsErrors.DDS_SUBSCRIPTION_NOT_FOUND, absoluteURL);
 
@@ -346,12 +431,12 @@ public class RegistrationActor extends UntypedAbstractActor {
             // An unexpected error has occured.
             else {
                 // Some other error we cannot handle at the moment.
-                ErrorType error = DdsParser.getInstance().xml2Error(response.readEntity(String.class));
+                ErrorType error = DdsParser.getInstance().xml2Error(body);
                 if (error != null) {
                     logger.error(DdsErrors.DDS_SUBSCRIPTION_GET_FAILED_DETAILED, absoluteURL, error.getId());
                 }
                 else {
-                    logger.error(DdsErrors.DDS_SUBSCRIPTION_GET_FAILED_DETAILED, absoluteURL, response.getStatusInfo().getReasonPhrase());
+                    logger.error(DdsErrors.DDS_SUBSCRIPTION_GET_FAILED_DETAILED, absoluteURL, getReasonPhrase(status));
                 }
             }
         }
@@ -359,13 +444,69 @@ public class RegistrationActor extends UntypedAbstractActor {
             log.error(ex,"GET failed for {}", absoluteURL);
             logger.error(DdsErrors.DDS_SUBSCRIPTION_GET_FAILED, absoluteURL);
         }
-        finally {
-            if (response != null) {
-                response.close();
+    }
+
+    /**
+     * Get the target for a subscription on a remote nsi-dds peer.
+     *
+     * @param remoteSubscription
+     * @return
+     */
+    private WebTarget getSubscriptionTarget(RemoteSubscription remoteSubscription) {
+        Client client = restClient.get();
+        String remoteSubscriptionURL = remoteSubscription.getSubscription().getHref();
+
+        // Check to see if the remote subscription URL is absolute or relative.
+        if (UrlHelper.isAbsolute(remoteSubscriptionURL)) {
+            return client.target(remoteSubscriptionURL);
+        }
+
+        return client.target(remoteSubscription.getDdsURL()).path(remoteSubscriptionURL);
+    }
+
+    /**
+     * Send a request on the non-blocking HTTP client, piping the result back
+     * to this actor so no thread waits on the peer.
+     *
+     * @param event The event the request is made for.
+     * @param request The request to send.
+     */
+    private void send(RegistrationEvent event, HttpRequest.Builder request) {
+        CompletableFuture<HttpResult> result = restClient
+                .sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, ex) -> HttpResult.of(event, response, ex));
+        Patterns.pipe(result, getContext().dispatcher()).to(getSelf());
+    }
+
+    /**
+     * Complete a request made on the non-blocking HTTP client.
+     *
+     * @param result
+     */
+    private void completed(HttpResult result) {
+        RegistrationEvent event = (RegistrationEvent) result.getRequest();
+        Date lastModified = result.getLastModified() == null ? null : DateUtils.parseDate(result.getLastModified());
+
+        if (event.getEvent() == Event.Register) {
+            registered(event, result.getStatus(), result.getBody(), lastModified, result.getError());
+        }
+        else if (event.getEvent() == Event.Update) {
+            RemoteSubscription remoteSubscription = remoteSubscriptionCache.get(event.getUrl());
+            if (remoteSubscription == null) {
+                log.debug("RegistrationActor.update: subscription on {} removed during audit", event.getUrl());
+                return;
             }
+
+            audited(event, remoteSubscription, getSubscriptionTarget(remoteSubscription).getUri().toASCIIString(),
+                    result.getStatus(), result.getBody(), lastModified, result.getError());
         }
     }
 
+    private static String getReasonPhrase(int status) {
+        Response.StatusType type = Response.Status.fromStatusCode(status);
+        return type == null ? Integer.toString(status) : type.getReasonPhrase();
+    }
+
     /**
      * Remove a peer subscription from the local subscription cache.
      *
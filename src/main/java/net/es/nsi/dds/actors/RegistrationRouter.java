@@ -1,15 +1,11 @@
 package net.es.nsi.dds.actors;
 
-import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.actor.Terminated;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.routing.ActorRefRoutee;
-import akka.routing.RoundRobinRoutingLogic;
-import akka.routing.Routee;
-import akka.routing.Router;
+import akka.routing.SmallestMailboxRoutingLogic;
 import com.google.common.collect.Sets;
 
 import java.util.*;
@@ -41,8 +37,10 @@ public class RegistrationRouter extends UntypedAbstractActor {
     private final DdsActorSystem ddsActorSystem;
     private final DdsConfiguration discoveryConfiguration;
     private int poolSize = 5;
+    private int maxPoolSize = 0;
+    private String dispatcher = ActorPool.DEFAULT_DISPATCHER;
     private long interval = 600;
-    private Router router;
+    private ActorPool router;
     private final RemoteSubscriptionCache remoteSubscriptionCache;
 
     /**
@@ -74,14 +72,9 @@ public class RegistrationRouter extends UntypedAbstractActor {
      */
     @Override
     public void preStart() {
-        List<Routee> routees = new ArrayList<>();
-        for (int i = 0; i < getPoolSize(); i++) {
-            ActorRef r = getContext()
-                .actorOf(Props.create(RegistrationActor.class, discoveryConfiguration, remoteSubscriptionCache));
-            getContext().watch(r);
-            routees.add(new ActorRefRoutee(r));
-        }
-        router = new Router(new RoundRobinRoutingLogic(), routees);
+        router = new ActorPool(getContext(),
+            Props.create(RegistrationActor.class, discoveryConfiguration, remoteSubscriptionCache),
+            getDispatcher(), new SmallestMailboxRoutingLogic(), getPoolSize(), getMaxPoolSize());
     }
 
     /**
@@ -123,10 +116,7 @@ public class RegistrationRouter extends UntypedAbstractActor {
         }
         else if (msg instanceof Terminated terminated) {
             log.error("[RegistrationRouter] terminate event for {}", terminated.actor().path());
-            router = router.removeRoutee(terminated.actor());
-            ActorRef r = getContext().actorOf(Props.create(RegistrationActor.class, discoveryConfiguration));
-            getContext().watch(r);
-            router = router.addRoutee(new ActorRefRoutee(r));
+            router.terminated(terminated.actor());
         }
         else {
             log.error("[RegistrationRouter] unhandled event {}", Message.getDebug(msg));
@@ -244,6 +234,43 @@ public class RegistrationRouter extends UntypedAbstractActor {
         this.poolSize = poolSize;
     }
 
+    /**
+     * Get the maximum actor pool size.
+     *
+     * @return the maxPoolSize
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Set the maximum size the actor pool may grow to when all actors are
+     * busy, the pool is not resized if this is not above poolSize.
+     *
+     * @param maxPoolSize the maxPoolSize to set
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Get the dispatcher the pool actors run on.
+     *
+     * @return the dispatcher
+     */
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Set the dispatcher the pool actors run on.
+     *
+     * @param dispatcher the dispatcher to set
+     */
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     /**
      * Get the audit interval time.
      *
@@ -112,15 +112,7 @@ public class AgoleDiscoveryActor extends UntypedAbstractActor {
         message.setNsaId(nsa.getId());
 
         Collection<NmlTopologyType> nmlDocuments = parseTopology(nsa, nsaDocument);
-        nmlDocuments.forEach((nmlDocument) -> {
-            try {
-                DocHelper.addTopologyDocument(nmlDocument, lastDiscovered, nsa.getId());
-            }
-            catch (Exception ex) {
-                log.error("discoverTopology: Failed to topology document, nsaId={}, networkId={}",
-                    nsa.getId(), nmlDocument.getId());
-            }
-        });
+        DocHelper.addTopologyDocuments(nmlDocuments, lastDiscovered, nsa.getId());
 
         // Now we retrieve the associated topology document.
         log.debug("discoverTopology: exiting.");
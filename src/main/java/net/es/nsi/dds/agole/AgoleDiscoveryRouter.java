@@ -1,25 +1,20 @@
 package net.es.nsi.dds.agole;
 
-import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.actor.Terminated;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.routing.ActorRefRoutee;
-import akka.routing.RoundRobinRoutingLogic;
-import akka.routing.Routee;
-import akka.routing.Router;
+import akka.routing.SmallestMailboxRoutingLogic;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.xml.bind.JAXBException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.actors.ActorPool;
 import net.es.nsi.dds.actors.DdsActorSystem;
 import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.jaxb.configuration.PeerURLType;
@@ -50,7 +45,9 @@ public class AgoleDiscoveryRouter extends UntypedAbstractActor {
     private final DdsActorSystem ddsActorSystem;
     private long interval;
     private int poolSize;
-    private Router router = null;
+    private int maxPoolSize = 0;
+    private String dispatcher = ActorPool.DEFAULT_DISPATCHER;
+    private ActorPool router = null;
     private final Map<String, AgoleDiscoveryMsg> discovery = new ConcurrentHashMap<>();
 
     private TopologyManifest manifest;
@@ -82,13 +79,8 @@ public class AgoleDiscoveryRouter extends UntypedAbstractActor {
             return;
         }
 
-        List<Routee> routees = new ArrayList<>();
-        for (int i = 0; i < getPoolSize(); i++) {
-            ActorRef r = getContext().actorOf(Props.create(AgoleDiscoveryActor.class));
-            getContext().watch(r);
-            routees.add(new ActorRefRoutee(r));
-        }
-        router = new Router(new RoundRobinRoutingLogic(), routees);
+        router = new ActorPool(getContext(), Props.create(AgoleDiscoveryActor.class), getDispatcher(),
+                new SmallestMailboxRoutingLogic(), getPoolSize(), getMaxPoolSize());
     }
 
     @Override
@@ -129,10 +121,7 @@ public class AgoleDiscoveryRouter extends UntypedAbstractActor {
         else if (msg instanceof Terminated terminated) {
             log.error("[AgoleDiscoveryRouter] terminate event for {}", terminated.actor().path());
             if (router != null) {
-                router = router.removeRoutee(((Terminated) msg).actor());
-                ActorRef r = getContext().actorOf(Props.create(AgoleDiscoveryActor.class));
-                getContext().watch(r);
-                router = router.addRoutee(new ActorRefRoutee(r));
+                router.terminated(terminated.actor());
             }
         }
         else {
@@ -249,4 +238,33 @@ public class AgoleDiscoveryRouter extends UntypedAbstractActor {
     public void setPoolSize(int poolSize) {
         this.poolSize = poolSize;
     }
+
+    /**
+     * @return the maxPoolSize
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the maximum size the pool may grow to when all
+     *      actors are busy, the pool is not resized if not above poolSize.
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * @return the dispatcher the pool actors run on
+     */
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param dispatcher the dispatcher the pool actors run on
+     */
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 }
\ No newline at end of file
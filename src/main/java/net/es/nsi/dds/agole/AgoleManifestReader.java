@@ -19,6 +19,7 @@ import net.es.nsi.dds.jaxb.nml.NmlNetworkObject;
 import net.es.nsi.dds.jaxb.nml.NmlTopologyType;
 import net.es.nsi.dds.management.logs.DdsErrors;
 import net.es.nsi.dds.management.logs.DdsLogger;
+import net.es.nsi.dds.util.XmlUtilities;
 import org.apache.http.client.utils.DateUtils;
 
 /**
@@ -145,7 +146,7 @@ public class AgoleManifestReader {
                 TopologyManifest newManifest = new TopologyManifest();
                 newManifest.setId(topology.getId());
                 if (topology.getVersion() != null) {
-                    newManifest.setVersion(topology.getVersion().toGregorianCalendar().getTimeInMillis());
+                    newManifest.setVersion(XmlUtilities.xmlGregorianCalendarToLong(topology.getVersion(), 0));
                 }
 
                 // Pull out the indivdual network entries.
@@ -40,6 +40,10 @@ public enum DiscoveryError {
   // Subscription related errors.
   SUBSCRIPTION_DOES_NOT_EXIST(120, "SUBCRIPTION_DOES_NOT_EXIST", "Requested subscription identifier does not exist (%s)."),
 
+  // Load related errors.
+  TOO_MANY_REQUESTS(429, "TOO_MANY_REQUESTS", "Too many requests, retry later (%s)."),
+  SERVICE_UNAVAILABLE(503, "SERVICE_UNAVAILABLE", "The service is temporarily unable to process requests (%s)."),
+
   // Implementation related issues.
   INTERNAL_SERVER_ERROR(500, "INTERNAL_SERVER_ERROR", "There was an internal server processing error (%s)."),
   NOT_IMPLEMENTED(501, "NOT_IMPLEMENTED", "Parameter is for a feature that has not been implemented (%s)."),
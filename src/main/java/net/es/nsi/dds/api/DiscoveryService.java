@@ -18,20 +18,22 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.xml.bind.JAXBException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
 
 import lombok.extern.slf4j.Slf4j;
 import net.es.nsi.dds.actors.RegistrationRouter;
 import net.es.nsi.dds.config.ConfigurationManager;
 import net.es.nsi.dds.jaxb.DdsParser;
-import net.es.nsi.dds.jaxb.dds.CollectionType;
-import net.es.nsi.dds.jaxb.dds.DocumentListType;
 import net.es.nsi.dds.jaxb.dds.DocumentType;
 import net.es.nsi.dds.jaxb.dds.NotificationListType;
 import net.es.nsi.dds.jaxb.dds.NotificationType;
@@ -42,6 +44,7 @@ import net.es.nsi.dds.management.logs.DdsErrors;
 import net.es.nsi.dds.management.logs.DdsLogger;
 import net.es.nsi.dds.provider.DiscoveryProvider;
 import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.provider.NotificationQueue;
 import net.es.nsi.dds.provider.Source;
 import net.es.nsi.dds.provider.Subscription;
 import net.es.nsi.dds.util.NsiConstants;
@@ -56,6 +59,9 @@ import org.apache.http.client.utils.DateUtils;
 @Path("/dds")
 @Consumes(MediaType.APPLICATION_XML)
 public class DiscoveryService {
+    // Seconds a peer is asked to wait while the document cache is loading.
+    private static final int WARMING_RETRY_AFTER = 10;
+
     private final ObjectFactory factory = new ObjectFactory();
 
     //@Context SecurityContext securityContext;
@@ -84,6 +90,24 @@ public class DiscoveryService {
         return Response.ok().build();
     }
 
+    /**
+     * Get the discovery provider for a request that depends on the complete
+     * document space, refusing the request while the document cache is
+     * still loading so peers retry instead of seeing a partial view.
+     *
+     * @param resource The resource requested.
+     * @return The discovery provider.
+     * @throws WebApplicationException 503 if the cache is still loading.
+     */
+    private static DiscoveryProvider getReadyProvider(String resource) throws WebApplicationException {
+        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        if (discoveryProvider == null || !discoveryProvider.isReady()) {
+            log.info("{}: refusing request while document cache is warming", resource);
+            throw Exceptions.serviceUnavailableException(resource, "document cache warming", WARMING_RETRY_AFTER);
+        }
+        return discoveryProvider;
+    }
+
     @GET
     @Path("/error")
     @Produces({ MediaType.APPLICATION_XML, NsiConstants.NSI_DDS_V1_XML })
@@ -107,32 +131,25 @@ public class DiscoveryService {
 
         log.debug("getAll: summary={}, If-Modified-Since={}", summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
             lastDiscovered = DateUtils.parseDate(ifModifiedSince);
+
+            // Most pollers will find nothing new so avoid building results.
+            if (lastDiscovered != null && !discoveryProvider.isModifiedSince(lastDiscovered)) {
+                return Response.notModified().build();
+            }
         }
 
         // Get all the applicable documents.
         Collection<Document> documents = discoveryProvider.getDocuments(null, null, null, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType documentResults = factory.createDocumentListType();
-        if (documents.size() > 0) {
-            // Only the document meta data is required and not the document
-            // contents.
-            for (Document document : documents) {
-                if (discovered.before(document.getLastDiscovered())) {
-                    discovered = document.getLastDiscovered();
-                }
-
-                if (summary) {
-                    documentResults.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    documentResults.getDocument().add(document.getDocument());
-                }
+        for (Document document : documents) {
+            if (discovered.before(document.getLastDiscovered())) {
+                discovered = document.getLastDiscovered();
             }
         }
 
@@ -151,55 +168,38 @@ public class DiscoveryService {
             }
         }
 
-        DocumentListType localResults = factory.createDocumentListType();
-        if (local.size() > 0) {
-            // Only the document meta data is required and not the document
-            // contents.
-            for (Document document : local) {
-                if (discovered.before(document.getLastDiscovered())) {
-                    discovered = document.getLastDiscovered();
-                }
-
-                if (summary) {
-                    localResults.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    localResults.getDocument().add(document.getDocument());
-                }
+        for (Document document : local) {
+            if (discovered.before(document.getLastDiscovered())) {
+                discovered = document.getLastDiscovered();
             }
         }
 
         Collection<Subscription> subscriptions = discoveryProvider.getSubscriptions(null, lastDiscovered);
-
-        SubscriptionListType subscriptionsResults = factory.createSubscriptionListType();
-        if (subscriptions.size() > 0) {
-            // Only the document meta data is required and not the document
-            // contents.
-            for (Subscription subscription : subscriptions) {
-                if (discovered.before(subscription.getLastModified())) {
-                    discovered = subscription.getLastModified();
-                }
-
-                subscriptionsResults.getSubscription().add(subscription.getSubscription());
+        for (Subscription subscription : subscriptions) {
+            if (discovered.before(subscription.getLastModified())) {
+                discovered = subscription.getLastModified();
             }
         }
 
-        if (documentResults.getDocument().isEmpty() &&
-                localResults.getDocument().isEmpty() &&
-                subscriptionsResults.getSubscription().isEmpty()) {
+        if (documents.isEmpty() && local.isEmpty() && subscriptions.isEmpty()) {
             return Response.notModified().build();
         }
 
-        CollectionType all = factory.createCollectionType();
-        all.setDocuments(documentResults);
-        all.setLocal(localResults);
-        all.setSubscriptions(subscriptionsResults);
-
+        // Assemble the collection from the cached serialized form of each
+        // document, as with the document list endpoints.
         try {
+            List<byte[]> documentFragments = getFragments(documents, summary);
+            List<byte[]> localFragments = getFragments(local, summary);
+            List<byte[]> subscriptionFragments = new ArrayList<>(subscriptions.size());
+            for (Subscription subscription : subscriptions) {
+                subscriptionFragments.add(DdsParser.getInstance().subscription2Fragment(subscription.getSubscription()));
+            }
+
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
-            String encoded = DdsParser.getInstance().collection2Xml(all);
-            return Response.ok().header("Last-Modified", date).entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            StreamingOutput entity = (OutputStream os) -> DdsParser.getInstance()
+                    .collection2Xml(subscriptionFragments, documentFragments, localFragments, os);
+            return Response.ok().header("Last-Modified", date).entity(entity).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/", "Unable to format XML response " + ex.getMessage());
             log.error("getAll: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -228,7 +228,7 @@ public class DiscoveryService {
 
         log.debug("getDocuments: nsa={}, type{}, id={}, summary={}, If-Modified-Since={}", nsa, type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/documents");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -238,21 +238,14 @@ public class DiscoveryService {
         Collection<Document> documents = discoveryProvider.getDocuments(nsa, type, id, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType results = factory.createDocumentListType();
+        List<Document> results = new ArrayList<>();
         if (documents.size() > 0) {
             for (Document document : documents) {
                 if (discovered.before(document.getLastDiscovered())) {
                     discovered = document.getLastDiscovered();
                 }
 
-                // Check if only the document meta data is required and not
-                // the document contents.
-                if (summary) {
-                    results.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    results.getDocument().add(document.getDocument());
-                }
+                results.add(document);
             }
         }
         else {
@@ -261,7 +254,7 @@ public class DiscoveryService {
 
         // Now we need to determine what "Last-Modified" date we send back.
         Response.ResponseBuilder header;
-        if (results.getDocument().size() > 0) {
+        if (!results.isEmpty()) {
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
             header = Response.ok().header("Last-Modified", date);
         }
@@ -270,9 +263,9 @@ public class DiscoveryService {
         }
 
         try {
-            String encoded = DdsParser.getInstance().documents2Xml(results);
-            return header.entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            // Assemble the response from cached document serializations.
+            return header.entity(getDocumentsEntity(results, summary)).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/documents", "Unable to format XML response " + ex.getMessage());
             log.error("getDocuments: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -303,7 +296,7 @@ public class DiscoveryService {
 
         log.debug("getDocumentsByNsa: nsa={}, type{}, id={}, summary={}, If-Modified-Since={}", nsa, type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/documents/{nsa}");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -313,25 +306,20 @@ public class DiscoveryService {
         Collection<Document> documents = discoveryProvider.getDocumentsByNsa(nsa.trim(), type, id, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType results = factory.createDocumentListType();
+        List<Document> results = new ArrayList<>();
         if (documents.size() > 0) {
             for (Document document : documents) {
                 if (discovered.before(document.getLastDiscovered())) {
                     discovered = document.getLastDiscovered();
                 }
 
-                if (summary) {
-                    results.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    results.getDocument().add(document.getDocument());
-                }
+                results.add(document);
             }
         }
 
         // Now we need to determine what "Last-Modified" date we send back.
         Response.ResponseBuilder header;
-        if (results.getDocument().size() > 0) {
+        if (!results.isEmpty()) {
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
             header = Response.ok().header("Last-Modified", date);
         }
@@ -340,9 +328,9 @@ public class DiscoveryService {
         }
 
         try {
-            String encoded = DdsParser.getInstance().documents2Xml(results);
-            return header.entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            // Assemble the response from cached document serializations.
+            return header.entity(getDocumentsEntity(results, summary)).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/documents", "Unable to format XML response " + ex.getMessage());
             log.error("getDocuments: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -373,7 +361,7 @@ public class DiscoveryService {
 
         log.debug("getDocumentsByNsaAndType: nsa={}, type{}, id={}, summary={}, If-Modified-Since={}", nsa, type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/documents/{nsa}/{type}");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -384,25 +372,20 @@ public class DiscoveryService {
         documents = discoveryProvider.getDocumentsByNsaAndType(nsa.trim(), type.trim(), id, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType results = factory.createDocumentListType();
+        List<Document> results = new ArrayList<>();
         if (documents.size() > 0) {
             for (Document document : documents) {
                 if (discovered.before(document.getLastDiscovered())) {
                     discovered = document.getLastDiscovered();
                 }
 
-                if (summary) {
-                    results.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    results.getDocument().add(document.getDocument());
-                }
+                results.add(document);
             }
         }
 
         // Now we need to determine what "Last-Modified" date we send back.
         Response.ResponseBuilder header;
-        if (results.getDocument().size() > 0) {
+        if (!results.isEmpty()) {
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
             header = Response.ok().header("Last-Modified", date);
         }
@@ -411,9 +394,9 @@ public class DiscoveryService {
         }
 
         try {
-            String encoded = DdsParser.getInstance().documents2Xml(results);
-            return header.entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            // Assemble the response from cached document serializations.
+            return header.entity(getDocumentsEntity(results, summary)).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/documents", "Unable to format XML response " + ex.getMessage());
             log.error("getDocuments: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -531,7 +514,7 @@ public class DiscoveryService {
 
         log.debug("getLocalDocuments: type{}, id={}, summary={}, If-Modified-Since={}", type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/local");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -541,25 +524,20 @@ public class DiscoveryService {
         Collection<Document> documents = discoveryProvider.getLocalDocuments(type, id, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType results = factory.createDocumentListType();
+        List<Document> results = new ArrayList<>();
         if (documents.size() > 0) {
             for (Document document : documents) {
                 if (discovered.before(document.getLastDiscovered())) {
                     discovered = document.getLastDiscovered();
                 }
 
-                if (summary) {
-                    results.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    results.getDocument().add(document.getDocument());
-                }
+                results.add(document);
             }
         }
 
         // Now we need to determine what "Last-Modified" date we send back.
         Response.ResponseBuilder header;
-        if (results.getDocument().size() > 0) {
+        if (!results.isEmpty()) {
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
             header = Response.ok().header("Last-Modified", date);
         }
@@ -568,9 +546,9 @@ public class DiscoveryService {
         }
 
         try {
-            String encoded = DdsParser.getInstance().documents2Xml(results);
-            return header.entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            // Assemble the response from cached document serializations.
+            return header.entity(getDocumentsEntity(results, summary)).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/local", "Unable to format XML response " + ex.getMessage());
             log.error("getLocalDocuments: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -598,7 +576,7 @@ public class DiscoveryService {
 
         log.debug("getLocalDocumentsByType: type={}, id={}, summary={}, If-Modified-Since={}", type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/local/{type}");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -609,7 +587,7 @@ public class DiscoveryService {
         documents = discoveryProvider.getLocalDocumentsByType(type.trim(), id, lastDiscovered);
 
         Date discovered = new Date(0);
-        DocumentListType results = factory.createDocumentListType();
+        List<Document> results = new ArrayList<>();
         if (documents.size() > 0) {
             // Only the document meta data is required and not the document
             // contents.
@@ -618,18 +596,13 @@ public class DiscoveryService {
                     discovered = document.getLastDiscovered();
                 }
 
-                if (summary) {
-                    results.getDocument().add(document.getDocumentSummary());
-                }
-                else {
-                    results.getDocument().add(document.getDocument());
-                }
+                results.add(document);
             }
         }
 
         // Now we need to determine what "Last-Modified" date we send back.
         Response.ResponseBuilder header;
-        if (results.getDocument().size() > 0) {
+        if (!results.isEmpty()) {
             String date = DateUtils.formatDate(discovered, DateUtils.PATTERN_RFC1123);
             header = Response.ok().header("Last-Modified", date);
         }
@@ -638,9 +611,9 @@ public class DiscoveryService {
         }
 
         try {
-            String encoded = DdsParser.getInstance().documents2Xml(results);
-            return header.entity(encoded).build();
-        } catch (JAXBException | IOException ex) {
+            // Assemble the response from cached document serializations.
+            return header.entity(getDocumentsEntity(results, summary)).build();
+        } catch (JAXBException ex) {
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("/local/" + type, "Unable to format XML response " + ex.getMessage());
             log.error("getLocalDocumentsByType: Failed to format outgoing response.", invalidXmlException);
             throw invalidXmlException;
@@ -668,7 +641,7 @@ public class DiscoveryService {
 
         log.debug("getLocalDocument: type{}, id={}, summary={}, If-Modified-Since={}", type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/local/{type}/{id}");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -725,7 +698,7 @@ public class DiscoveryService {
 
         log.debug("getDocument: nsa={}, type={}, id={}, summary={}, If-Modified-Since={}", nsa, type, id, summary, ifModifiedSince);
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/documents/{nsa}/{type}/{id}");
 
         Date lastDiscovered = null;
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
@@ -908,7 +881,7 @@ public class DiscoveryService {
 
         log.debug("addSubscription: requesterId={}, callback={}", subscriptionRequest.getRequesterId(), subscriptionRequest.getCallback());
 
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        DiscoveryProvider discoveryProvider = getReadyProvider("/subscriptions");
         Subscription subscription = discoveryProvider.addSubscription(subscriptionRequest, accept);
 
         log.debug("addSubscription: requesterId={}, subscriptionId={}", subscriptionRequest.getRequesterId(), subscription.getId());
@@ -1053,6 +1026,11 @@ public class DiscoveryService {
      * Endpoint for incoming DDS document notifications.  This endpoint is
      * registered against peer DDS servers.
      *
+     * Notifications are queued and applied to the document space in the
+     * background, so 202 Accepted means the batch has been queued.  If the
+     * queue is full 429 Too Many Requests is returned with a Retry-After
+     * header, or 503 Service Unavailable if the queue is not running.
+     *
      * @param host
      * @param encoding
      * @param source
@@ -1068,52 +1046,87 @@ public class DiscoveryService {
 
         log.debug("notifications: Incoming notification from Host={}, X-Forwarded-For={}, Accept={}", host, source, encoding);
 
-        // Parse the XML into JAXB objects.
-        NotificationListType notifications;
+        // Notifications are queued for the apply stage as they are parsed
+        // and the request is accepted once the whole batch is queued.  If
+        // the queue is full the peer is asked to retry later.
+        NotificationQueue queue = NotificationQueue.getInstance();
+        if (!queue.isRunning()) {
+            log.error("notifications: notification queue is not running, host={}", host);
+            throw Exceptions.serviceUnavailableException("notifications", "notification queue not running", queue.getRetryAfter());
+        }
+
+        if (!queue.isAccepting()) {
+            log.error("notifications: notification queue full, host={}, {}", host, queue);
+            DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_QUEUE_FULL, "host", host);
+            throw Exceptions.tooManyRequestsException("notifications", "notification queue full", queue.getRetryAfter());
+        }
+
         try {
-            Object object = XmlUtilities.xmlToJaxb(NotificationListType.class, request);
-            if (object instanceof NotificationListType) {
-                notifications = (NotificationListType) object;
-            }
-            else {
-                DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_SUBSCRIPTION_PARSE_ERROR, source, encoding);
-                WebApplicationException invalidXmlException = Exceptions.invalidXmlException("notifications", "Expected NotificationListType but found " + object.getClass().getCanonicalName());
-                log.error("notifications: Failed to parse incoming notifications.", invalidXmlException);
-                throw invalidXmlException;
-            }
-        } catch (JAXBException | IOException ex) {
+            int count = DdsParser.getInstance().xml2Notifications(request, new DdsParser.NotificationHandler() {
+                private String subscriptionId;
+
+                @Override
+                public void start(NotificationListType notifications) {
+                    subscriptionId = notifications.getId();
+
+                    // Make sure this is still a valid subscription otherwise we ignore it
+                    // and remove the subscriptions on the remote DDS instance via and
+                    // exception thrown by this lookup.
+                    if (!RegistrationRouter.getInstance().isSubscription(notifications.getHref())) {
+                        log.error("notifications: Notification does not exist - provider={}, subscriptionId={}, href={}", notifications.getProviderId(), notifications.getId(), notifications.getHref());
+                        DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_SUBSCRIPTION_NOT_FOUND, "id", notifications.getId());
+                        throw Exceptions.doesNotExistException(DiscoveryError.SUBSCRIPTION_DOES_NOT_EXIST, "id", notifications.getId());
+                    }
+
+                    log.debug("notifications: provider={}, subscriptionId={}, href={}", notifications.getProviderId(), notifications.getId(), notifications.getHref());
+                }
+
+                @Override
+                public void notification(NotificationType notification) {
+                    log.debug("notifications: queuing notification event={}, documentId={}", notification.getEvent(),
+                            notification.getDocument() == null ? null : notification.getDocument().getId());
+
+                    // Notifications already queued will still be applied,
+                    // which is harmless when the peer resends the batch.
+                    if (!queue.offer(notification)) {
+                        log.error("notifications: notification queue full, subscriptionId={}, {}", subscriptionId, queue);
+                        DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_QUEUE_FULL, "id", subscriptionId);
+                        throw Exceptions.tooManyRequestsException("notifications", "notification queue full", queue.getRetryAfter());
+                    }
+                }
+            });
+            log.debug("notifications: queued {} notifications, {}", count, queue);
+        } catch (JAXBException | XMLStreamException ex) {
             DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_SUBSCRIPTION_PARSE_ERROR, source, encoding);
             WebApplicationException invalidXmlException = Exceptions.invalidXmlException("notifications", "Unable to process XML " + ex.getMessage());
             log.error("notifications: Failed to parse incoming notifications.", invalidXmlException);
             throw invalidXmlException;
         }
 
-        // Process the notification request.
-        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        return Response.accepted().build();
+    }
 
-        // Make sure this is still a valid subscription otherwise we ignore it
-        // and remove the subscriptions on the remote DDS instance via and
-        // exception thrown by this lookup.
-        if (!RegistrationRouter.getInstance().isSubscription(notifications.getHref())) {
-            log.error("notifications: Notification does not exist - provider={}, subscriptionId={}, href={}", notifications.getProviderId(), notifications.getId(), notifications.getHref());
-            DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_SUBSCRIPTION_NOT_FOUND, "id", notifications.getId());
-            throw Exceptions.doesNotExistException(DiscoveryError.SUBSCRIPTION_DOES_NOT_EXIST, "id", notifications.getId());
-        }
+    /**
+     * Build a response entity for a list of documents from the cached
+     * serialized form of each document.  The document fragments are resolved
+     * before the response is committed so an encoding failure can still be
+     * reported to the client.
+     *
+     * @param documents The documents to return.
+     * @param summary Return only the document meta data if true.
+     * @return The streaming response entity.
+     * @throws JAXBException If a document could not be serialized.
+     */
+    private StreamingOutput getDocumentsEntity(List<Document> documents, boolean summary) throws JAXBException {
+        List<byte[]> fragments = getFragments(documents, summary);
+        return (OutputStream os) -> DdsParser.getInstance().documents2Xml(fragments, os);
+    }
 
-        log.debug("notifications: provider={}, subscriptionId={}, href={}", notifications.getProviderId(), notifications.getId(), notifications.getHref());
-        for (NotificationType notification : notifications.getNotification()) {
-            log.debug("notifications: processing notification event=" + notification.getEvent() + ", documentId=" + notification.getDocument().getId());
-            try {
-                discoveryProvider.processNotification(notification);
-            }
-            catch (Exception ex) {
-                DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_PROCESSING_ERROR, "id", notifications.getId());
-                WebApplicationException internalServerErrorException = Exceptions.internalServerErrorException("notifications", "failed to process notification for documentId=" + notification.getDocument().getId());
-                log.error("notifications: failed to process notification for documentId={}", notification.getDocument().getId(), ex);
-                throw internalServerErrorException;
-            }
+    private static List<byte[]> getFragments(Collection<Document> documents, boolean summary) throws JAXBException {
+        List<byte[]> fragments = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            fragments.add(document.getEncoded(summary));
         }
-
-        return Response.accepted().build();
+        return fragments;
     }
 }
@@ -5,6 +5,7 @@
 package net.es.nsi.dds.api;
 
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.xml.bind.JAXBException;
 import java.io.IOException;
@@ -77,6 +78,20 @@ public class Exceptions {
     return new WebApplicationException(ex);
   }
 
+  public static WebApplicationException tooManyRequestsException(String resource, String parameter, int retryAfter) {
+    ErrorType error = DiscoveryError.getErrorType(DiscoveryError.TOO_MANY_REQUESTS, resource, parameter);
+    Response ex = Response.status(Response.Status.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, retryAfter)
+            .entity(format(error)).build();
+    return new WebApplicationException(ex);
+  }
+
+  public static WebApplicationException serviceUnavailableException(String resource, String parameter, int retryAfter) {
+    ErrorType error = DiscoveryError.getErrorType(DiscoveryError.SERVICE_UNAVAILABLE, resource, parameter);
+    Response ex = Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, retryAfter)
+            .entity(format(error)).build();
+    return new WebApplicationException(ex);
+  }
+
   public static InvalidVersionException invalidVersionException(DiscoveryError errorEnum, String resource, XMLGregorianCalendar request, XMLGregorianCalendar actual) {
     ErrorType error = DiscoveryError.getErrorType(errorEnum, resource, "request=" + request.toString() + ", actual=" + actual.toString());
     Response ex = Response.status(Response.Status.BAD_REQUEST).entity(format(error)).build();
@@ -0,0 +1,59 @@
+package net.es.nsi.dds.client;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request body made up of pre-serialized chunks that are written in order
+ * without being copied into a single buffer.
+ *
+ * The size of the body is known up front so it can be used to decide
+ * whether the body is worth compressing, and the chunks can be handed to
+ * the non-blocking HTTP client as is.
+ *
+ * @author hacksaw
+ */
+public class ChunkedEntity implements StreamingOutput {
+    private final List<byte[]> chunks;
+    private final long size;
+
+    /**
+     * Create an entity from a list of chunks.
+     *
+     * @param chunks The chunks making up the body in the order to be sent.
+     */
+    public ChunkedEntity(List<byte[]> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.size = chunks.stream().mapToLong(chunk -> chunk.length).sum();
+    }
+
+    /**
+     * Write each chunk of the body to the output stream.
+     *
+     * @param os The output stream.
+     * @throws IOException
+     */
+    @Override
+    public void write(OutputStream os) throws IOException {
+        for (byte[] chunk : chunks) {
+            os.write(chunk);
+        }
+    }
+
+    /**
+     * @return the chunks making up the body.
+     */
+    public List<byte[]> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return the size of the body in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,130 @@
+package net.es.nsi.dds.client;
+
+/**
+ * A circuit breaker tracking the health of a single peer endpoint.
+ *
+ * The circuit is closed while deliveries succeed.  After a run of
+ * consecutive failures it opens and deliveries fail fast without contacting
+ * the peer until the open interval has passed, at which point a single
+ * trial delivery is let through.  A successful trial closes the circuit,
+ * while a failed trial opens it again for twice as long up to a maximum.
+ *
+ * @author hacksaw
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openInterval;
+    private final long maxOpenInterval;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long interval;
+    private long openUntil = 0;
+    private long lastFailure = 0;
+
+    /**
+     * @param failureThreshold Consecutive failures before the circuit opens.
+     * @param openInterval Milliseconds the circuit first stays open.
+     * @param maxOpenInterval Maximum milliseconds the circuit stays open.
+     */
+    public CircuitBreaker(int failureThreshold, long openInterval, long maxOpenInterval) {
+        this.failureThreshold = failureThreshold;
+        this.openInterval = openInterval;
+        this.maxOpenInterval = Math.max(openInterval, maxOpenInterval);
+        this.interval = openInterval;
+    }
+
+    /**
+     * May a delivery be attempted now?  Once the open interval has passed
+     * only the first caller is allowed through to try the peer.
+     *
+     * @param now The current time in milliseconds.
+     * @return true if the delivery may be attempted.
+     */
+    public synchronized boolean allow(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                // While half open a trial delivery is in progress, and
+                // another is only let through if it never reported back.
+                if (now >= openUntil) {
+                    state = State.HALF_OPEN;
+                    openUntil = now + interval;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Record a successful delivery, closing the circuit.
+     */
+    public synchronized void success() {
+        state = State.CLOSED;
+        failures = 0;
+        interval = openInterval;
+    }
+
+    /**
+     * Record a failed delivery, opening the circuit if the failure threshold
+     * is reached or a trial delivery failed.
+     *
+     * @param now The current time in milliseconds.
+     */
+    public synchronized void failure(long now) {
+        lastFailure = now;
+        failures++;
+        if (state == State.HALF_OPEN) {
+            interval = Math.min(interval * 2, maxOpenInterval);
+            open(now);
+        } else if (state == State.CLOSED && failures >= failureThreshold) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + interval;
+    }
+
+    /**
+     * @param now The current time in milliseconds.
+     * @return milliseconds until a trial delivery will be allowed, or 0 if
+     *      deliveries are allowed now.
+     */
+    public synchronized long getRemaining(long now) {
+        return state == State.CLOSED ? 0 : Math.max(0, openUntil - now);
+    }
+
+    /**
+     * @return the current circuit state.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of consecutive failures.
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the time of the last failure in milliseconds.
+     */
+    public synchronized long getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("state=%s, failures=%d, interval=%d", state, failures, interval);
+    }
+}
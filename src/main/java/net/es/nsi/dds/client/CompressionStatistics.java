@@ -0,0 +1,75 @@
+package net.es.nsi.dds.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of request body compression for a single peer.
+ *
+ * @author hacksaw
+ */
+public class CompressionStatistics {
+    private final String peer;
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong rawBytes = new AtomicLong(0);
+    private final AtomicLong encodedBytes = new AtomicLong(0);
+
+    public CompressionStatistics(String peer) {
+        this.peer = peer;
+    }
+
+    /**
+     * Record the result of compressing a single request body.
+     *
+     * @param raw Number of bytes before compression.
+     * @param encoded Number of bytes sent on the wire.
+     */
+    public void record(long raw, long encoded) {
+        requests.incrementAndGet();
+        rawBytes.addAndGet(raw);
+        encodedBytes.addAndGet(encoded);
+    }
+
+    /**
+     * @return the peer these statistics are associated with.
+     */
+    public String getPeer() {
+        return peer;
+    }
+
+    /**
+     * @return the number of compressed requests sent to this peer.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the total number of bytes before compression.
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * @return the total number of bytes after compression.
+     */
+    public long getEncodedBytes() {
+        return encodedBytes.get();
+    }
+
+    /**
+     * Get the overall compression ratio for this peer (raw / encoded).
+     *
+     * @return The compression ratio, or 1.0 if nothing has been sent.
+     */
+    public double getRatio() {
+        long encoded = encodedBytes.get();
+        return encoded == 0 ? 1.0 : (double) rawBytes.get() / encoded;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("peer=%s, requests=%d, raw=%d, encoded=%d, ratio=%.2f",
+                peer, getRequests(), getRawBytes(), getEncodedBytes(), getRatio());
+    }
+}
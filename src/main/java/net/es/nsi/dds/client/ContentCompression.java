@@ -0,0 +1,533 @@
+package net.es.nsi.dds.client;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.configuration.CompressionType;
+import net.es.nsi.dds.jaxb.configuration.ContentEncodingType;
+
+/**
+ * Compresses HTTP request bodies sent by the REST client and decodes
+ * compressed response bodies.
+ *
+ * The request filter selects a content encoding for each request with a body
+ * based on the configured encoding and minimum size threshold, unless the
+ * caller has already set a Content-Encoding header.  The writer interceptor
+ * then applies the encoding at the configured compression level and records
+ * the achieved compression ratio against the target peer, reported per peer
+ * by the management health resource.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+@Priority(Priorities.ENTITY_CODER)
+public class ContentCompression implements ClientRequestFilter, WriterInterceptor, ReaderInterceptor {
+    // Default configuration values.
+    public static final ContentEncodingType DEFAULT_ENCODING = ContentEncodingType.GZIP;
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    // Encodings we understand.
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    // Size of the encoded chunks produced for the non-blocking HTTP client.
+    private static final int ENCODE_CHUNK_SIZE = 16 * 1024;
+
+    // Request property holding the peer the request is destined for.
+    private static final String PEER_PROPERTY = ContentCompression.class.getName() + ".peer";
+
+    private final ContentEncodingType encoding;
+    private final int threshold;
+    private final int level;
+
+    // Compression statistics indexed by peer.
+    private final Map<String, CompressionStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Create a compression component with default configuration.
+     */
+    public ContentCompression() {
+        this(DEFAULT_ENCODING, DEFAULT_THRESHOLD, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Create a compression component from the client configuration.
+     *
+     * @param config The compression configuration, or null for defaults.
+     */
+    public ContentCompression(CompressionType config) {
+        this(config == null ? DEFAULT_ENCODING : config.getEncoding(),
+                config == null ? DEFAULT_THRESHOLD : config.getThreshold(),
+                config == null ? DEFAULT_LEVEL : config.getLevel());
+    }
+
+    /**
+     * Create a compression component.
+     *
+     * @param encoding The content encoding to apply to request bodies.
+     * @param threshold Minimum request body size in bytes to compress.
+     * @param level The compression level (1-9).
+     */
+    public ContentCompression(ContentEncodingType encoding, int threshold, int level) {
+        this.encoding = encoding == null ? DEFAULT_ENCODING : encoding;
+
+        if (threshold < 0) {
+            log.error("ContentCompression: invalid threshold {}, using {}", threshold, DEFAULT_THRESHOLD);
+            this.threshold = DEFAULT_THRESHOLD;
+        } else {
+            this.threshold = threshold;
+        }
+
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            log.error("ContentCompression: invalid level {}, using default", level);
+            this.level = DEFAULT_LEVEL;
+        } else {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Select the content encoding for an outgoing request.
+     *
+     * @param request The outgoing request context.
+     * @throws IOException
+     */
+    @Override
+    public void filter(ClientRequestContext request) throws IOException {
+        request.setProperty(PEER_PROPERTY, getPeer(request.getUri()));
+
+        if (!request.hasEntity() || request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return;
+        }
+
+        if (encoding != ContentEncodingType.IDENTITY && isOverThreshold(request.getEntity())) {
+            request.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding.value());
+        }
+    }
+
+    /**
+     * Apply the selected content encoding to the request body.
+     *
+     * @param context The writer context.
+     * @throws IOException
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object header = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (header == null) {
+            context.proceed();
+            return;
+        }
+
+        String contentEncoding = header.toString();
+
+        CountingOutputStream encoded = new CountingOutputStream(context.getOutputStream());
+        DeflaterOutputStream compressor;
+        switch (contentEncoding.trim().toLowerCase()) {
+            case GZIP:
+            case X_GZIP:
+                compressor = new LevelGZIPOutputStream(encoded, level);
+                break;
+            case DEFLATE:
+                compressor = new LevelDeflaterOutputStream(encoded, level);
+                break;
+            default:
+                context.proceed();
+                return;
+        }
+
+        // The entity stream belongs to the caller so we finish the encoding
+        // and free the deflater without closing the stream beneath it.
+        CountingOutputStream raw = new CountingOutputStream(compressor);
+        try {
+            context.setOutputStream(raw);
+            context.proceed();
+            compressor.finish();
+        } finally {
+            ((Releasable) compressor).release();
+        }
+
+        String peer = (String) context.getProperty(PEER_PROPERTY);
+        if (peer != null) {
+            CompressionStatistics stats = statistics.computeIfAbsent(peer, CompressionStatistics::new);
+            stats.record(raw.getCount(), encoded.getCount());
+            log.debug("ContentCompression: {} encoded {} bytes to {}, {}",
+                    contentEncoding, raw.getCount(), encoded.getCount(), stats);
+        }
+    }
+
+    /**
+     * Decode a compressed response body.
+     *
+     * @param context The reader context.
+     * @return The decoded entity.
+     * @throws IOException
+     */
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        String contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null) {
+            InputStream decoded = null;
+            switch (contentEncoding.trim().toLowerCase()) {
+                case GZIP:
+                case X_GZIP:
+                    decoded = new GZIPInputStream(context.getInputStream());
+                    break;
+                case DEFLATE:
+                    decoded = new InflaterInputStream(context.getInputStream());
+                    break;
+                default:
+                    break;
+            }
+
+            if (decoded != null) {
+                context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+                context.setInputStream(decoded);
+            }
+        }
+
+        return context.proceed();
+    }
+
+    /**
+     * Select the content encoding for a request body sent outside of the
+     * JAX-RS client, such as by the asynchronous HTTP client.  The size of a
+     * chunked entity is the total size of its chunks, while bodies of unknown
+     * size, such as other streaming entities, are considered to be over the
+     * threshold.
+     *
+     * @param body The request body.
+     * @return The content encoding to apply, or null to send the body as is.
+     */
+    public String getContentEncoding(Object body) {
+        if (encoding != ContentEncodingType.IDENTITY && isOverThreshold(body)) {
+            return encoding.value();
+        }
+
+        return null;
+    }
+
+    /**
+     * Apply a content encoding to a request body sent outside of the JAX-RS
+     * client, recording the achieved compression against the target peer.
+     *
+     * @param uri The request URI.
+     * @param contentEncoding The content encoding to apply.
+     * @param body The request body.
+     * @return The encoded request body.
+     * @throws IOException
+     */
+    public byte[] encode(URI uri, String contentEncoding, byte[] body) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream os = encode(uri, contentEncoding, encoded)) {
+            os.write(body);
+        }
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Wrap a stream so a request body sent outside of the JAX-RS client is
+     * encoded as it is written.  Closing the returned stream finishes the
+     * encoding, records the achieved compression against the target peer,
+     * frees the compressor, and closes the underlying stream.
+     *
+     * @param uri The request URI.
+     * @param contentEncoding The content encoding to apply, or null.
+     * @param os The stream to write the encoded body to.
+     * @return The stream to write the request body to.
+     * @throws IOException
+     */
+    public OutputStream encode(URI uri, String contentEncoding, OutputStream os) throws IOException {
+        if (contentEncoding == null) {
+            return os;
+        }
+
+        CountingOutputStream encoded = new CountingOutputStream(os);
+        DeflaterOutputStream compressor;
+        switch (contentEncoding.trim().toLowerCase()) {
+            case GZIP:
+            case X_GZIP:
+                compressor = new LevelGZIPOutputStream(encoded, level);
+                break;
+            case DEFLATE:
+                compressor = new LevelDeflaterOutputStream(encoded, level);
+                break;
+            default:
+                return os;
+        }
+
+        return new CountingOutputStream(compressor) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+
+                try {
+                    compressor.finish();
+                    CompressionStatistics stats = statistics.computeIfAbsent(getPeer(uri), CompressionStatistics::new);
+                    stats.record(getCount(), encoded.getCount());
+                    log.debug("ContentCompression: {} encoded {} bytes to {}, {}",
+                            contentEncoding, getCount(), encoded.getCount(), stats);
+                } finally {
+                    ((Releasable) compressor).release();
+                    os.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Apply a content encoding to a request body made up of chunks as the
+     * encoded body is pulled by the non-blocking HTTP client.  Each
+     * iteration compresses the input chunks into encoded chunks of about
+     * ENCODE_CHUNK_SIZE bytes, so only the chunk being compressed is held in
+     * memory, and records the achieved compression against the target peer
+     * once the body has been encoded.
+     *
+     * @param uri The request URI.
+     * @param contentEncoding The content encoding to apply, or null.
+     * @param chunks The request body.
+     * @return The encoded request body.
+     */
+    public Iterable<byte[]> encode(URI uri, String contentEncoding, List<byte[]> chunks) {
+        if (contentEncoding == null) {
+            return chunks;
+        }
+
+        switch (contentEncoding.trim().toLowerCase()) {
+            case GZIP:
+            case X_GZIP:
+            case DEFLATE:
+                return () -> new EncodingIterator(uri, contentEncoding, chunks.iterator());
+            default:
+                return chunks;
+        }
+    }
+
+    /**
+     * @return the configured content encoding.
+     */
+    public ContentEncodingType getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return the minimum request body size to compress.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return the configured compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the compression statistics for a specific peer.
+     *
+     * @param peer The peer (host:port) to get statistics for.
+     * @return The statistics or null if nothing has been sent to the peer.
+     */
+    public CompressionStatistics getStatistics(String peer) {
+        return statistics.get(peer);
+    }
+
+    /**
+     * @return the compression statistics for all peers.
+     */
+    public Collection<CompressionStatistics> getStatistics() {
+        return Collections.unmodifiableCollection(statistics.values());
+    }
+
+    /**
+     * Get the peer key for a request URI.
+     *
+     * @param uri The request URI.
+     * @return The peer key (host:port).
+     */
+    public static String getPeer(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Determine if an entity is at least threshold bytes in size.  Entities
+     * of unknown size are considered to be over threshold.
+     */
+    private boolean isOverThreshold(Object entity) {
+        if (entity instanceof byte[]) {
+            return ((byte[]) entity).length >= threshold;
+        } else if (entity instanceof ChunkedEntity) {
+            return ((ChunkedEntity) entity).getSize() >= threshold;
+        } else if (entity instanceof String) {
+            // Each char encodes to at least one byte so only count bytes when needed.
+            String value = (String) entity;
+            return value.length() >= threshold || value.getBytes(StandardCharsets.UTF_8).length >= threshold;
+        }
+
+        return true;
+    }
+
+    /**
+     * Compresses the chunks of a request body on demand.  A body abandoned
+     * before it is fully encoded leaves its deflater to be freed by the
+     * garbage collector.
+     */
+    private class EncodingIterator implements Iterator<byte[]> {
+        private final Iterator<byte[]> chunks;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(ENCODE_CHUNK_SIZE);
+        private final OutputStream os;
+        private boolean done = false;
+
+        EncodingIterator(URI uri, String contentEncoding, Iterator<byte[]> chunks) {
+            this.chunks = chunks;
+            try {
+                this.os = encode(uri, contentEncoding, buffer);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !done;
+        }
+
+        @Override
+        public byte[] next() {
+            if (done) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                while (buffer.size() < ENCODE_CHUNK_SIZE && chunks.hasNext()) {
+                    os.write(chunks.next());
+                }
+
+                if (!chunks.hasNext()) {
+                    done = true;
+                    os.close();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            byte[] encoded = buffer.toByteArray();
+            buffer.reset();
+            return encoded;
+        }
+    }
+
+    /**
+     * A compressing stream whose native deflater can be freed without
+     * closing the underlying stream.
+     */
+    private interface Releasable {
+        void release();
+    }
+
+    /**
+     * A GZIP output stream with a configurable compression level.
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream implements Releasable {
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+
+        @Override
+        public void release() {
+            def.end();
+        }
+    }
+
+    /**
+     * A deflate output stream with a configurable compression level that
+     * releases its deflater on close.
+     */
+    private static class LevelDeflaterOutputStream extends DeflaterOutputStream implements Releasable {
+        LevelDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level));
+        }
+
+        @Override
+        public void release() {
+            def.end();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written through to the underlying stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package net.es.nsi.dds.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.spring.SpringApplicationContext;
+
+/**
+ * The retry and circuit breaker policy applied when delivering
+ * notifications to peer DDS servers.
+ *
+ * A failed delivery is retried a bounded number of times with exponential
+ * backoff and full jitter, honouring any Retry-After the peer returned, so
+ * a transient failure on one link no longer removes the peer's subscription
+ * and forces a full resynchronization.  Each callback endpoint has its own
+ * circuit breaker so deliveries to a peer known to be down fail fast
+ * without waiting on a connection timeout.  Only once the retries are
+ * exhausted, or the peer rejects the notification outright, is the
+ * subscription removed.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class DeliveryPolicy {
+    // Defaults used if not configured in beans.xml.
+    public static final int DEFAULT_MAX_RETRIES = 8;
+    public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    public static final long DEFAULT_MAX_BACKOFF = 60000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_OPEN_INTERVAL = 10000;
+    public static final long DEFAULT_MAX_OPEN_INTERVAL = 300000;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long openInterval = DEFAULT_OPEN_INTERVAL;
+    private long maxOpenInterval = DEFAULT_MAX_OPEN_INTERVAL;
+
+    // Circuit breakers indexed by callback endpoint.
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    // Delivery statistics.
+    private final AtomicLong delivered = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong retried = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong abandoned = new AtomicLong(0);
+
+    /**
+     * Get a reference to the delivery policy singleton bean.
+     *
+     * @return The delivery policy.
+     */
+    public static DeliveryPolicy getInstance() {
+        return SpringApplicationContext.getBean("deliveryPolicy", DeliveryPolicy.class);
+    }
+
+    /**
+     * May a delivery to the callback be attempted now?
+     *
+     * @param callback The peer callback endpoint.
+     * @return false if the circuit for the callback is open.
+     */
+    public boolean allow(String callback) {
+        if (getBreaker(callback).allow(System.currentTimeMillis())) {
+            return true;
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record a successful delivery to the callback.
+     *
+     * @param callback The peer callback endpoint.
+     */
+    public void success(String callback) {
+        delivered.incrementAndGet();
+        CircuitBreaker breaker = breakers.get(callback);
+        if (breaker != null) {
+            breaker.success();
+        }
+    }
+
+    /**
+     * Record a failed delivery to the callback.
+     *
+     * @param callback The peer callback endpoint.
+     */
+    public void failure(String callback) {
+        failed.incrementAndGet();
+        CircuitBreaker breaker = getBreaker(callback);
+        breaker.failure(System.currentTimeMillis());
+        if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+            log.info("[DeliveryPolicy] circuit open for callback={}, {}", callback, breaker);
+        }
+    }
+
+    /**
+     * Should a delivery that has failed the given number of times be tried
+     * again?  A delivery that will not be retried is counted as abandoned.
+     *
+     * @param attempt The number of failed attempts so far, starting at 1.
+     * @return true if the delivery should be retried.
+     */
+    public boolean retry(int attempt) {
+        if (attempt <= maxRetries) {
+            retried.incrementAndGet();
+            return true;
+        }
+
+        abandoned.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Get the delay before the next attempt of a failed delivery: an
+     * exponential backoff with full jitter, but never before the peer's
+     * circuit allows a trial or the time the peer asked us to wait.
+     *
+     * @param callback The peer callback endpoint.
+     * @param attempt The number of failed attempts so far, starting at 1.
+     * @param retryAfter Milliseconds the peer asked us to wait, or 0.
+     * @return The delay in milliseconds.
+     */
+    public long getBackoff(String callback, int attempt, long retryAfter) {
+        long ceiling = initialBackoff << Math.min(Math.max(attempt - 1, 0), 30);
+        if (ceiling <= 0 || ceiling > maxBackoff) {
+            ceiling = maxBackoff;
+        }
+
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        CircuitBreaker breaker = breakers.get(callback);
+        if (breaker != null) {
+            delay = Math.max(delay, breaker.getRemaining(System.currentTimeMillis()));
+        }
+        return Math.max(delay, retryAfter);
+    }
+
+    private CircuitBreaker getBreaker(String callback) {
+        return breakers.computeIfAbsent(callback,
+                k -> new CircuitBreaker(failureThreshold, openInterval, maxOpenInterval));
+    }
+
+    /**
+     * Forget the circuit for a callback no longer subscribed.
+     *
+     * @param callback The peer callback endpoint.
+     */
+    public void remove(String callback) {
+        breakers.remove(callback);
+    }
+
+    /**
+     * @return the number of callbacks with an open circuit.
+     */
+    public long getOpen() {
+        return breakers.values().stream().filter(b -> b.getState() != CircuitBreaker.State.CLOSED).count();
+    }
+
+    /**
+     * @return the maximum number of retries of a failed delivery.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries the maximum number of retries of a failed delivery.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries >= 0 ? maxRetries : DEFAULT_MAX_RETRIES;
+    }
+
+    /**
+     * @return the maximum delay in milliseconds before the first retry.
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @param initialBackoff the maximum delay in milliseconds before the
+     *      first retry, doubling for each retry after.
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff > 0 ? initialBackoff : DEFAULT_INITIAL_BACKOFF;
+    }
+
+    /**
+     * @return the maximum delay in milliseconds between retries.
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @param maxBackoff the maximum delay in milliseconds between retries.
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff > 0 ? maxBackoff : DEFAULT_MAX_BACKOFF;
+    }
+
+    /**
+     * @return the consecutive failures before a circuit opens.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * @param failureThreshold the consecutive failures before a circuit opens.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold > 0 ? failureThreshold : DEFAULT_FAILURE_THRESHOLD;
+    }
+
+    /**
+     * @return the milliseconds a circuit first stays open.
+     */
+    public long getOpenInterval() {
+        return openInterval;
+    }
+
+    /**
+     * @param openInterval the milliseconds a circuit first stays open.
+     */
+    public void setOpenInterval(long openInterval) {
+        this.openInterval = openInterval > 0 ? openInterval : DEFAULT_OPEN_INTERVAL;
+    }
+
+    /**
+     * @return the maximum milliseconds a circuit stays open.
+     */
+    public long getMaxOpenInterval() {
+        return maxOpenInterval;
+    }
+
+    /**
+     * @param maxOpenInterval the maximum milliseconds a circuit stays open.
+     */
+    public void setMaxOpenInterval(long maxOpenInterval) {
+        this.maxOpenInterval = maxOpenInterval > 0 ? maxOpenInterval : DEFAULT_MAX_OPEN_INTERVAL;
+    }
+
+    /**
+     * @return the number of notifications delivered.
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * @return the number of failed delivery attempts.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of delivery retries scheduled.
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * @return the number of deliveries failed fast by an open circuit.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of deliveries abandoned after exhausting retries.
+     */
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("open=%d, delivered=%d, failed=%d, retried=%d, rejected=%d, abandoned=%d",
+                getOpen(), getDelivered(), getFailed(), getRetried(), getRejected(), getAbandoned());
+    }
+}
@@ -0,0 +1,162 @@
+package net.es.nsi.dds.client;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs blocking HTTP requests on a shared pool of threads while limiting the
+ * number running at once against any one host.
+ *
+ * Requests over the per-host limit wait in a queue for that host without
+ * holding a thread, so a slow host cannot occupy the pool while requests to
+ * other hosts are waiting.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class HostLimitedExecutor {
+    // Defaults used if not configured.
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private final ExecutorService executor;
+    private final int maxPerHost;
+
+    // Requests running and waiting indexed by host.
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    private static class Host {
+        int running = 0;
+        final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    /**
+     * Create an executor.
+     *
+     * @param name The prefix for the names of the pool threads.
+     * @param threads The number of threads in the pool.
+     * @param maxPerHost The maximum number of requests run at once against
+     *      one host.
+     */
+    public HostLimitedExecutor(String name, int threads, int maxPerHost) {
+        this.maxPerHost = maxPerHost > 0 ? maxPerHost : DEFAULT_MAX_PER_HOST;
+
+        AtomicInteger count = new AtomicInteger(0);
+        executor = Executors.newFixedThreadPool(threads > 0 ? threads : DEFAULT_THREADS, r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a request once the target host is below its limit.
+     *
+     * @param <T> The request result type.
+     * @param url The URL the request is made against.
+     * @param request The request to run.
+     * @return A future completed with the result of the request.
+     */
+    public <T> CompletableFuture<T> submit(String url, Supplier<T> request) {
+        String host = getHost(url);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            // Release the host slot before completing the future so callers
+            // never see a finished request still counted as running.
+            T value = null;
+            Throwable error = null;
+            try {
+                value = request.get();
+            } catch (Throwable ex) {
+                error = ex;
+            } finally {
+                release(host);
+            }
+
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        };
+
+        synchronized (this) {
+            Host state = hosts.computeIfAbsent(host, k -> new Host());
+            if (state.running >= maxPerHost) {
+                state.waiting.add(task);
+                return result;
+            }
+            state.running++;
+        }
+
+        execute(host, task);
+        return result;
+    }
+
+    private void release(String host) {
+        Runnable next;
+        synchronized (this) {
+            Host state = hosts.get(host);
+            next = state.waiting.poll();
+            if (next == null && --state.running == 0) {
+                hosts.remove(host);
+            }
+        }
+
+        if (next != null) {
+            execute(host, next);
+        }
+    }
+
+    private void execute(String host, Runnable task) {
+        log.debug("HostLimitedExecutor: running request for host {}", host);
+        executor.execute(task);
+    }
+
+    private static String getHost(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() != null) {
+                return ContentCompression.getPeer(uri);
+            }
+        } catch (IllegalArgumentException ex) {
+            // Fall through and limit requests to the URL itself.
+        }
+        return url;
+    }
+
+    /**
+     * @return the maximum number of requests run at once against one host.
+     */
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * @param host The host (host:port) to get the count for.
+     * @return the number of requests running against the host.
+     */
+    public synchronized int getRunning(String host) {
+        Host state = hosts.get(host);
+        return state == null ? 0 : state.running;
+    }
+
+    /**
+     * Stop the pool threads.
+     *
+     * @throws InterruptedException
+     */
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
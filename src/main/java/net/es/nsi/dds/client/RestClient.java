@@ -7,20 +7,31 @@ import jakarta.ws.rs.client.ClientResponseContext;
 import jakarta.ws.rs.client.ClientResponseFilter;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
 import jakarta.xml.bind.JAXBElement;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 
 import lombok.extern.slf4j.Slf4j;
 import net.es.nsi.dds.config.http.HttpsContext;
@@ -43,7 +54,6 @@ import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.logging.LoggingFeature;
-import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.moxy.json.MoxyJsonFeature;
 import org.glassfish.jersey.moxy.xml.MoxyXmlFeature;
 
@@ -55,6 +65,17 @@ import org.glassfish.jersey.moxy.xml.MoxyXmlFeature;
 @Slf4j
 public class RestClient {
     private final Client client;
+    private final ContentCompression compression;
+
+    // Non-blocking client used by actors to exchange requests without
+    // holding a thread for the duration of the exchange.
+    public final static int DEFAULT_ASYNC_THREADS = 4;
+    private final SSLContext sslContext;
+    private final boolean verifyHostname;
+    private boolean async = false;
+    private int asyncThreads = DEFAULT_ASYNC_THREADS;
+    private HttpClient asyncClient;
+    private ExecutorService asyncExecutor;
 
     // Time for idle data timeout.
     private final static String TCP_SO_TIMEOUT = "tcpSoTimeout";
@@ -64,6 +85,11 @@ public class RestClient {
     private final static String TCP_CONNECT_TIMEOUT = "tcpConnectTimeout";
     private final static int CONNECT_TIMEOUT = 20 * 1000;
 
+    // Time allowed for the non-blocking client to send a request body and
+    // receive the response, which may be large for a notification post.
+    private final static String TCP_POST_TIMEOUT = "tcpPostTimeout";
+    private final static int POST_TIMEOUT = 10 * 60 * 1000;
+
     // Time to block for a socket from the connection manager.
     private final static String TCP_CONNECT_REQUEST_TIMEOUT = "tcpConnectRequestTimeout";
     private final static int CONNECT_REQUEST_TIMEOUT = 30 * 1000;
@@ -76,7 +102,11 @@ public class RestClient {
      * Default constructor uses default configuration values.
      */
     public RestClient() {
-        ClientConfig clientConfig = configureClient(MAX_CONNECTION_PER_ROUTE, MAX_CONNECTION_TOTAL);
+        sslContext = null;
+        verifyHostname = true;
+        compression = new ContentCompression();
+        ClientConfig clientConfig = getClientConfig(new PoolingHttpClientConnectionManager(),
+                MAX_CONNECTION_PER_ROUTE, MAX_CONNECTION_TOTAL, compression);
         client = ClientBuilder.newBuilder().withConfig(clientConfig).build();
         client.property(LoggingFeature.LOGGING_FEATURE_LOGGER_LEVEL_SERVER, "DEBUG");
         client.property(LoggingFeature.LOGGING_FEATURE_VERBOSITY_CLIENT, LoggingFeature.Verbosity.PAYLOAD_ANY);
@@ -100,14 +130,24 @@ public class RestClient {
         log.debug("RestClient: Initializing");
 
         if (config.getClientConfig() == null) {
-            ClientConfig clientConfig = configureClient(MAX_CONNECTION_PER_ROUTE, MAX_CONNECTION_TOTAL);
+            sslContext = null;
+            verifyHostname = true;
+            compression = new ContentCompression();
+            ClientConfig clientConfig = getClientConfig(new PoolingHttpClientConnectionManager(),
+                    MAX_CONNECTION_PER_ROUTE, MAX_CONNECTION_TOTAL, compression);
             client = ClientBuilder.newBuilder().withConfig(clientConfig).build();
         }
         else {
-            ClientConfig clientConfig = configureClient(config.getClientConfig());
+            sslContext = config.getClientConfig().isSecure() ? HttpsContext.getInstance().getSSLContext() : null;
+            verifyHostname = sslContext == null || HttpsContext.getInstance().isProduction();
+            compression = new ContentCompression(config.getClientConfig().getCompression());
+            ClientConfig clientConfig = configureClient(config.getClientConfig(), compression);
             client = ClientBuilder.newBuilder().withConfig(clientConfig).build();
         }
 
+        log.debug("RestClient: request compression encoding={}, threshold={}, level={}",
+                compression.getEncoding().value(), compression.getThreshold(), compression.getLevel());
+
         log.debug("RestClient: Initialized");
     }
 
@@ -125,6 +165,7 @@ public class RestClient {
      * Configure the client for TLS communications.
      *
      * @param config The HttpsContext object providing SLL/TLS configuration information.
+     * @param compression The request compression configuration.
      * @return a client configuration.
      * @throws java.security.KeyManagementException
      * @throws java.security.NoSuchAlgorithmException
@@ -134,7 +175,7 @@ public class RestClient {
      * @throws java.security.cert.CertificateException
      * @throws java.security.UnrecoverableKeyException
      */
-    public static ClientConfig configureSecureClient(ClientType config) throws KeyManagementException,
+    public static ClientConfig configureSecureClient(ClientType config, ContentCompression compression) throws KeyManagementException,
             NoSuchAlgorithmException, NoSuchProviderException, KeyStoreException, IOException, CertificateException,
             UnrecoverableKeyException {
         HostnameVerifier hostnameVerifier;
@@ -156,7 +197,7 @@ public class RestClient {
                 .build();
 
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
-        return getClientConfig(connectionManager, config.getMaxConnPerRoute(), config.getMaxConnTotal());
+        return getClientConfig(connectionManager, config.getMaxConnPerRoute(), config.getMaxConnTotal(), compression);
     }
 
     /**
@@ -175,6 +216,7 @@ public class RestClient {
      * Configure the client configuration for insecure communications.
      *
      * @param config
+     * @param compression The request compression configuration.
      * @return The default client configuration.
      * @throws java.security.KeyManagementException
      * @throws java.security.NoSuchAlgorithmException
@@ -184,14 +226,14 @@ public class RestClient {
      * @throws java.security.cert.CertificateException
      * @throws java.security.UnrecoverableKeyException
      */
-    public static ClientConfig configureClient(ClientType config) throws KeyManagementException,
+    public static ClientConfig configureClient(ClientType config, ContentCompression compression) throws KeyManagementException,
             NoSuchAlgorithmException, NoSuchProviderException, KeyStoreException, IOException,
             CertificateException, UnrecoverableKeyException {
       if (config.isSecure()) {
-        return configureSecureClient(config);
+        return configureSecureClient(config, compression);
       } else {
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
-        return getClientConfig(connectionManager, config.getMaxConnPerRoute(), config.getMaxConnTotal());
+        return getClientConfig(connectionManager, config.getMaxConnPerRoute(), config.getMaxConnTotal(), compression);
       }
     }
 
@@ -215,6 +257,20 @@ public class RestClient {
      */
     public static ClientConfig getClientConfig(PoolingHttpClientConnectionManager connectionManager,
                                                int maxPerRoute, int maxTotal) {
+        return getClientConfig(connectionManager, maxPerRoute, maxTotal, new ContentCompression());
+    }
+
+    /**
+     * Creates a client configuration based on the provided configuration.
+     *
+     * @param connectionManager Connection manager used to configure the client configuration.
+     * @param maxPerRoute  The max connections per destination.
+     * @param maxTotal The max connection total across all destinations.
+     * @param compression The request compression configuration.
+     * @return The new client configuration.
+     */
+    public static ClientConfig getClientConfig(PoolingHttpClientConnectionManager connectionManager,
+                                               int maxPerRoute, int maxTotal, ContentCompression compression) {
         ClientConfig clientConfig = new ClientConfig();
 
         // We want to use the Apache connector for chunk POST support.
@@ -224,7 +280,8 @@ public class RestClient {
         connectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
         clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
 
-        clientConfig.register(GZipEncoder.class);
+        // Compresses request bodies and decodes compressed responses.
+        clientConfig.register(compression);
         //clientConfig.register(new MoxyXmlFeature());
         //clientConfig.register(new MoxyJsonFeature());
 
@@ -257,51 +314,161 @@ public class RestClient {
     }
 
     /**
-     * Close the associated HTTP client.
+     * Getter returning the request compression component and its per peer
+     * statistics.
+     *
+     * @return The request compression component.
      */
-    public void close() {
-        client.close();
+    public ContentCompression getCompression() {
+        return compression;
     }
 
     /**
-     * Filter to allow for an HTTP redirect on an HTTP operation.
+     * Getter returning the non-blocking HTTP client, created on first use.
+     * Completion of each exchange is handled on a small fixed pool of
+     * threads so thousands of requests may be in flight at once.  The
+     * client uses the same TLS context as the blocking client but always
+     * verifies the peer's hostname, so is only used by actors when the
+     * blocking client would verify it too.
+     *
+     * @return The non-blocking HTTP client.
      */
-    @Slf4j
-    private static class FollowRedirectFilter implements ClientResponseFilter
-    {
-        @Override
-        public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException
-        {
-            if (requestContext == null || responseContext == null || responseContext.getStatus() != Response.Status.FOUND.getStatusCode()) {
-               return;
+    public synchronized HttpClient getAsync() {
+        if (asyncClient == null) {
+            AtomicInteger count = new AtomicInteger(0);
+            asyncExecutor = Executors.newFixedThreadPool(asyncThreads, r -> {
+                Thread thread = new Thread(r, "rest-client-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofMillis(Integer.parseInt(
+                            System.getProperty(TCP_CONNECT_TIMEOUT, Integer.toString(CONNECT_TIMEOUT)))))
+                    .executor(asyncExecutor);
+
+            if (sslContext != null) {
+                builder.sslContext(sslContext);
             }
 
-            log.debug("Processing redirect for " + requestContext.getMethod() + " " + requestContext.getUri().toASCIIString() + " to " + responseContext.getLocation().toASCIIString());
-
-            Client inClient = requestContext.getClient();
-            Object entity = requestContext.getEntity();
-            MultivaluedMap<String, Object> headers = requestContext.getHeaders();
-            String method = requestContext.getMethod();
-            Response resp;
-            if ("POST".equalsIgnoreCase(method) || "PUT".equalsIgnoreCase(method)) {
-                resp = inClient.target(responseContext.getLocation())
-                        .request(requestContext.getMediaType())
-                        .headers(headers)
-                        .method(requestContext.getMethod(), Entity.entity(new GenericEntity<JAXBElement<?>>((JAXBElement<?>)entity) {}, NsiConstants.NSI_DDS_V1_XML));
-            }
-            else {
-                resp = inClient.target(responseContext.getLocation())
-                        .request(requestContext.getMediaType())
-                        .headers(headers)
-                        .method(requestContext.getMethod());
-            }
+            asyncClient = builder.build();
+        }
+
+        return asyncClient;
+    }
+
+    /**
+     * Create a request builder for the non-blocking HTTP client.  The JDK
+     * client has no idle data timeout, so the blocking client's idle timeout
+     * is instead applied as the deadline for receiving the response headers,
+     * which suits the small registration requests this is used for.
+     *
+     * @param uri The target of the request.
+     * @return A new request builder.
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return newRequest(uri, Integer.parseInt(System.getProperty(TCP_SO_TIMEOUT, Integer.toString(SO_TIMEOUT))));
+    }
+
+    private HttpRequest.Builder newRequest(URI uri, int timeout) {
+        return HttpRequest.newBuilder(uri).timeout(Duration.ofMillis(timeout));
+    }
+
+    /**
+     * Send a request without blocking the caller.
+     *
+     * @param <T> The response body type.
+     * @param request The request to send.
+     * @param handler The response body handler.
+     * @return A future completed with the response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return getAsync().sendAsync(request, handler);
+    }
+
+    /**
+     * Post an entity without blocking the caller.  The entity's chunks are
+     * pulled by the client's own threads as the connection can accept them,
+     * and encoded as they are pulled, so no thread waits on a slow peer and
+     * the encoded body is never held in memory as a whole.  The post is
+     * given a longer deadline than other requests so a large body can be
+     * sent to a slow peer.
+     *
+     * @param <T> The response body type.
+     * @param uri The target of the request.
+     * @param mediaType The media type of the entity.
+     * @param entity The entity to post.
+     * @param handler The response body handler.
+     * @return A future completed with the response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> postAsync(URI uri, String mediaType, ChunkedEntity entity,
+            HttpResponse.BodyHandler<T> handler) {
+        int timeout = Integer.parseInt(System.getProperty(TCP_POST_TIMEOUT, Integer.toString(POST_TIMEOUT)));
+        HttpRequest.Builder request = newRequest(uri, timeout)
+                .header(HttpHeaders.CONTENT_TYPE, mediaType)
+                .header(HttpHeaders.ACCEPT, mediaType);
+
+        String contentEncoding = compression.getContentEncoding(entity);
+        if (contentEncoding != null) {
+            request.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+
+        // The client iterates the body again if it needs to resend it.
+        request.POST(HttpRequest.BodyPublishers.ofByteArrays(
+                compression.encode(uri, contentEncoding, entity.getChunks())));
 
-            responseContext.setEntityStream((InputStream) resp.getEntity());
-            responseContext.setStatusInfo(resp.getStatusInfo());
-            responseContext.setStatus(resp.getStatus());
-            responseContext.getHeaders().putAll(resp.getStringHeaders());
+        return sendAsync(request.build(), handler);
+    }
+
+    /**
+     * @return true if actors should exchange requests with peers using the
+     *      non-blocking HTTP client.
+     */
+    public boolean isAsync() {
+        return async;
+    }
 
-            log.debug("Processing redirect with result " + resp.getStatus());
+    /**
+     * The non-blocking client cannot skip hostname verification, so it is
+     * not used when the blocking client is configured to skip it.
+     *
+     * @param async true if actors should exchange requests with peers using
+     *      the non-blocking HTTP client.
+     */
+    public void setAsync(boolean async) {
+        if (async && !verifyHostname) {
+            log.info("RestClient: hostname verification is disabled, using the blocking client");
+            this.async = false;
+            return;
+        }
+
+        this.async = async;
+    }
+
+    /**
+     * @return the number of threads handling non-blocking exchanges.
+     */
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    /**
+     * @param asyncThreads the number of threads handling non-blocking
+     *      exchanges.
+     */
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads > 0 ? asyncThreads : DEFAULT_ASYNC_THREADS;
+    }
+
+    /**
+     * Close the associated HTTP clients.
+     */
+    public synchronized void close() {
+        client.close();
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
         }
     }
 }
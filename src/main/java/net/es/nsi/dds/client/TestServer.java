@@ -6,6 +6,8 @@ import net.es.nsi.dds.config.http.HttpConfig;
 import net.es.nsi.dds.jaxb.dds.NotificationListType;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.moxy.json.MoxyJsonFeature;
 import org.glassfish.jersey.moxy.xml.MoxyXmlFeature;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -76,6 +78,8 @@ public enum TestServer {
 
         return new ResourceConfig()
                 .packages(packageName)
+                .register(GZipEncoder.class)
+                .register(DeflateEncoder.class)
                 .register(DdsNotificationCallback.class) // Remove this if packages gets fixed.
                 .register(net.es.nsi.dds.management.api.ManagementService.class)
                 .register(net.es.nsi.dds.api.DiscoveryService.class)
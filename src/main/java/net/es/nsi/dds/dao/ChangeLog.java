@@ -0,0 +1,149 @@
+package net.es.nsi.dds.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * A sequence numbered log of document changes ordered by lastDiscovered time
+ * and then by sequence number.  Every document added to the cache appends a
+ * new entry to the log, while the entry for the version it supersedes is
+ * pruned, so the log holds exactly one entry per document currently in the
+ * cache.  This allows "discovered after" queries to be answered in
+ * O(log n + k) and "has anything changed" queries in constant time.
+ *
+ * Writers are serialized by the owning DocumentCache, while readers may query
+ * the log concurrently.
+ *
+ * @author hacksaw
+ */
+class ChangeLog {
+    // The change log ordered by lastDiscovered and then sequence.
+    private final ConcurrentNavigableMap<Change, String> log = new ConcurrentSkipListMap<>();
+
+    // The current log entry for each document identifier.
+    private final Map<String, Change> entries = new ConcurrentHashMap<>();
+
+    // Sequence number of the last change recorded.
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /**
+     * Record a new version of a document, superseding any previous entry for
+     * the same document identifier.
+     *
+     * @param document The document added to the cache.
+     * @return The sequence number assigned to this change.
+     */
+    long append(Document document) {
+        Change change = new Change(document.getLastDiscovered().getTime(), sequence.incrementAndGet());
+        Change previous = entries.put(document.getId(), change);
+        if (previous != null) {
+            log.remove(previous);
+        }
+        log.put(change, document.getId());
+        return change.getSequence();
+    }
+
+    /**
+     * Remove the entry for the specified document from the log.
+     *
+     * @param id Identifier of the document removed from the cache.
+     */
+    void remove(String id) {
+        Change previous = entries.remove(id);
+        if (previous != null) {
+            log.remove(previous);
+            sequence.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the identifiers of documents discovered strictly after the
+     * specified date, in the order they were discovered.
+     *
+     * @param lastDiscovered The date to compare against.
+     * @return Collection of matching document identifiers.
+     */
+    Collection<String> getDiscoveredAfter(Date lastDiscovered) {
+        return new ArrayList<>(log.tailMap(new Change(lastDiscovered.getTime(), Long.MAX_VALUE), false).values());
+    }
+
+    /**
+     * Get the lastDiscovered time of the most recently discovered document.
+     *
+     * @return Time in milliseconds, or zero if the log is empty.
+     */
+    long getLastDiscovered() {
+        Map.Entry<Change, String> last = log.lastEntry();
+        return last == null ? 0 : last.getKey().getLastDiscovered();
+    }
+
+    /**
+     * Get the sequence number of the last change recorded in this log.
+     *
+     * @return The current sequence number.
+     */
+    long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Drop all entries from the log.  The sequence number continues to
+     * increase so readers can still detect the change.
+     */
+    void clear() {
+        entries.clear();
+        log.clear();
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * A single change log key.
+     */
+    private static class Change implements Comparable<Change> {
+        private final long lastDiscovered;
+        private final long sequence;
+
+        Change(long lastDiscovered, long sequence) {
+            this.lastDiscovered = lastDiscovered;
+            this.sequence = sequence;
+        }
+
+        long getLastDiscovered() {
+            return lastDiscovered;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public int compareTo(Change other) {
+            int result = Long.compare(lastDiscovered, other.lastDiscovered);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Change)) {
+                return false;
+            }
+            Change other = (Change) obj;
+            return lastDiscovered == other.lastDiscovered && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lastDiscovered) * 31 + Long.hashCode(sequence);
+        }
+    }
+}
@@ -7,17 +7,21 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import lombok.extern.slf4j.Slf4j;
-import net.es.nsi.dds.jaxb.DdsParser;
 import net.es.nsi.dds.jaxb.dds.DocumentType;
 import net.es.nsi.dds.provider.Document;
 import net.es.nsi.dds.spring.SpringApplicationContext;
@@ -35,13 +39,52 @@ public class DocumentCache {
     // The holder of our configuration.
     private final DdsProfile ddsProfile;
 
-    // In-memory document cache indexed by nsa/type/id.
-    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    // In-memory document cache indexed by nsa/type/id.  A new immutable
+    // snapshot is published on every change so readers never need to copy.
+    private volatile DocumentSnapshot snapshot = DocumentSnapshot.EMPTY;
+
+    // Secondary indexes on nsa and type.
+    private final DocumentIndex index = new DocumentIndex();
+
+    // Time ordered log of document changes.
+    private final ChangeLog changeLog = new ChangeLog();
+
+    // Serializes updates to the document snapshot and its indexes.
+    private final Object lock = new Object();
 
     // Are we configured to use the temporary document cache directory?
     private boolean enabled = false;
     private String cachePath;
 
+    // Persists documents to the cache directory, opened on first use so
+    // the store can be set after construction.
+    private DocumentStore store = null;
+    private boolean opened = false;
+
+    // Warm-up of the cache from the store.
+    public enum LoadState { NOT_LOADED, WARMING, READY }
+    private static final int LOAD_PROGRESS = 1000;
+    private int loadThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private boolean loadAsync = false;
+    private volatile LoadState loadState = LoadState.NOT_LOADED;
+    private volatile long loadStart = 0;
+    private volatile long loadEnd = 0;
+    private final AtomicInteger loadCount = new AtomicInteger(0);
+    private final AtomicInteger discardCount = new AtomicInteger(0);
+    private final CompletableFuture<DocumentCache> loaded = new CompletableFuture<>();
+
+    // Periodic binary snapshot of the cache used to serve documents
+    // immediately on restart while the store is reconciled.
+    private static final String SNAPSHOT_FILE = "documents.snapshot";
+    private long snapshotInterval = 0;
+    private SnapshotFile snapshotFile = null;
+    private ScheduledExecutorService snapshotExecutor = null;
+    private final Object snapshotLock = new Object();
+    private volatile long snapshotVersion = -1;
+
+    // Documents restored from the snapshot not yet matched to the store.
+    private final Map<String, Document> restored = new ConcurrentHashMap<>();
+
     /**
      * Create an instance of the DocumentCache.  This is instantiated as a
      * singleton bean from Spring.
@@ -66,6 +109,7 @@ public class DocumentCache {
 
             // We will be using the cache for this deployment.
             enabled = true;
+            snapshotFile = new SnapshotFile(Paths.get(cachePath, SNAPSHOT_FILE));
         }
     }
 
@@ -86,7 +130,7 @@ public class DocumentCache {
      * @return
      */
     public Document get(String id) {
-        return documents.get(id);
+        return snapshot.get(id);
     }
 
     /**
@@ -101,12 +145,13 @@ public class DocumentCache {
      */
     public Document put(String id, Document doc) throws JAXBException, IOException {
         // Store the document.
-        Document result = documents.put(id, doc);
-        if (result == null) {
-            writeFile(doc, null);
-        }
-        else {
-            writeFile(doc, result.getFilename());
+        Document result = store(id, doc);
+        if (enabled) {
+            // The store replaces the previous version where it was stored.
+            if (result != null && (doc.getFilename() == null || doc.getFilename().isEmpty())) {
+                doc.setFilename(result.getFilename());
+            }
+            getStore().write(id, doc);
         }
         return result;
     }
@@ -132,124 +177,401 @@ public class DocumentCache {
      * @return Return the document removed from cache, null otherwise.
      */
     public Document remove(String id) {
-        Document doc = documents.remove(id);
+        Document doc;
+        synchronized (lock) {
+            doc = snapshot.get(id);
+            if (doc != null) {
+                index.remove(doc);
+                changeLog.remove(id);
+                snapshot = snapshot.without(changeLog.getSequence(), id);
+            }
+        }
+
         if (doc != null && enabled) {
-            deleteFile(doc.getFilename());
+            getStore().delete(id, doc);
         }
 
         return doc;
     }
 
+    /**
+     * Add all documents from the specified cache to this cache without
+     * writing them to temporary storage.
+     *
+     * @param cache The cache holding the documents to add.
+     */
     public void putAll(DocumentCache cache) {
-        this.documents.putAll(cache.getDocuments());
+        for (Document document : cache.snapshot()) {
+            store(document.getId(), document);
+        }
     }
 
     /**
      * Returns a collection of all documents currently in the document cache.
+     * This is an immutable view that will not reflect subsequent changes.
      *
      * @return
      */
     public Collection<Document> values() {
-        return Collections.unmodifiableCollection(new ArrayList<>(documents.values()));
+        return snapshot;
     }
 
     /**
-     * Load cache with all document files from local cache directory.
+     * Returns the current immutable snapshot of the document cache.
+     *
+     * @return The current document snapshot.
      */
-    public void load() {
-        loadDirectory(cachePath);
+    public DocumentSnapshot snapshot() {
+        return snapshot;
     }
 
     /**
-     * Load cache with all document files from local cache directory.
-     * @param path
-     * @return
+     * Find all documents matching the supplied criteria.  Any criteria that is
+     * null or empty is ignored.  The nsa, type, and id criteria are matched
+     * case-insensitively, while lastDiscovered will match documents discovered
+     * strictly after the specified date.
+     *
+     * The most selective secondary index available is used to seed the
+     * candidate list so the cost of this lookup is proportional to the number
+     * of candidate documents rather than the size of the cache.
+     *
+     * @param nsa Match documents with this nsa.
+     * @param type Match documents with this type.
+     * @param id Match documents with this id.
+     * @param lastDiscovered Match documents discovered after this date.
+     * @return Collection of matching documents.
      */
-    public Map<String, String> loadDirectory(String path) {
-        Map<String, String> list = new ConcurrentHashMap<>();
+    public Collection<Document> find(String nsa, String type, String id, Date lastDiscovered) {
+        DocumentSnapshot current = snapshot;
+        Collection<String> candidates;
+        if (isSet(nsa) && isSet(type)) {
+            candidates = index.getByNsaAndType(nsa, type);
+        }
+        else if (isSet(nsa)) {
+            candidates = index.getByNsa(nsa);
+        }
+        else if (isSet(type)) {
+            candidates = index.getByType(type);
+        }
+        else if (lastDiscovered != null) {
+            candidates = changeLog.getDiscoveredAfter(lastDiscovered);
+        }
+        else if (isSet(id)) {
+            Collection<Document> results = new ArrayList<>();
+            for (Document document : current) {
+                if (document.getMetadata().getId().equalsIgnoreCase(id)) {
+                    results.add(document);
+                }
+            }
+            return results;
+        }
+        else {
+            return current;
+        }
 
-        if (!enabled) {
-            log.info("load: cache directory not configured.");
-            return list;
+        Collection<Document> results = new ArrayList<>(candidates.size());
+        for (String key : candidates) {
+            Document document = current.get(key);
+            if (document != null && matches(document, nsa, type, id, lastDiscovered)) {
+                results.add(document);
+            }
         }
 
-        Collection<String> xmlFilenames = XmlUtilities.getXmlFilenames(path);
+        return results;
+    }
+
+    /**
+     * Is there at least one document in the cache for the specified nsa?
+     *
+     * @param nsa The nsa to look for (case-insensitive).
+     * @return true if a document exists for the nsa.
+     */
+    public boolean containsNsa(String nsa) {
+        return isSet(nsa) && index.containsNsa(nsa);
+    }
+
+    /**
+     * Has any document in the cache been discovered after the specified date?
+     * This is answered from the change log without visiting any documents.
+     *
+     * @param lastDiscovered The date to compare against.
+     * @return true if at least one document was discovered after the date.
+     */
+    public boolean isModifiedSince(Date lastDiscovered) {
+        return lastDiscovered == null || changeLog.getLastDiscovered() > lastDiscovered.getTime();
+    }
+
+    /**
+     * Get the lastDiscovered date of the most recently discovered document.
+     *
+     * @return The most recent lastDiscovered date, or the epoch if empty.
+     */
+    public Date getLastDiscovered() {
+        return new Date(changeLog.getLastDiscovered());
+    }
+
+    /**
+     * Get the sequence number of the last change applied to this cache.  The
+     * sequence number increases on every add, update, and removal.
+     *
+     * @return The current change sequence number.
+     */
+    public long getSequence() {
+        return changeLog.getSequence();
+    }
+
+    /**
+     * Load cache with all documents held in the local cache directory.  If
+     * configured for asynchronous loading this returns immediately and the
+     * cache warms in the background, otherwise it returns once loaded.
+     */
+    public void load() {
+        if (loadAsync) {
+            Thread thread = new Thread(this::warm, "document-cache-load-" + getLoadName());
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            warm();
+        }
+    }
+
+    /**
+     * Name the load threads after the cache directory so the loaders of
+     * different caches can be told apart.
+     */
+    private String getLoadName() {
+        return cachePath == null ? "memory" : new File(cachePath).getName();
+    }
+
+    /**
+     * Load the stored documents, parsing them in parallel on a bounded pool.
+     * Any failure is logged and the cache continues with the documents it
+     * managed to load.
+     *
+     * If a snapshot is available its documents are restored first and the
+     * cache is ready as soon as they are published.  The store is then
+     * loaded in the background to pick up changes made after the snapshot
+     * was written, and restored documents the store no longer holds are
+     * removed.
+     */
+    private void warm() {
+        loadState = LoadState.WARMING;
+        loadStart = System.currentTimeMillis();
+        try {
+            if (!enabled) {
+                log.info("load: cache directory not configured.");
+                return;
+            }
+
+            AtomicInteger threadCount = new AtomicInteger(0);
+            ExecutorService pool = Executors.newFixedThreadPool(loadThreads, r -> {
+                Thread thread = new Thread(r, "document-cache-load-" + getLoadName() + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
 
-        for (String filename : xmlFilenames) {
-            log.info("load: loading " + filename);
-            DocumentType document;
             try {
-                document = DdsParser.getInstance().readDocument(filename);
-                if (document == null) {
-                    log.error("load: Loaded empty document from " + filename);
-                    deleteFile(filename);
-                    continue;
+                boolean fromSnapshot = restore();
+                if (fromSnapshot) {
+                    ready();
+                }
+
+                getStore().load(this::loaded, pool);
+
+                if (fromSnapshot) {
+                    reconcile();
                 }
+            } finally {
+                pool.shutdown();
+                restored.clear();
             }
-            catch (JAXBException | IOException ex) {
-                log.error("load: Failed to load file " + filename, ex);
-                deleteFile(filename);
-                continue;
+        } catch (RuntimeException ex) {
+            log.error("load: failed to load {}, continuing with {} documents", cachePath, snapshot.size(), ex);
+        } finally {
+            ready();
+            if (enabled && snapshotInterval > 0) {
+                startSnapshots();
             }
+        }
+    }
 
-            // We need to determine if this document is still valid
-            // before proceding.
-            XMLGregorianCalendar expires = document.getExpires();
-            if (expires != null) {
-                Date expiresTime = expires.toGregorianCalendar().getTime();
-
-                // We take the current time and add the expiry buffer.
-                Date now = new Date();
-                now.setTime(now.getTime() + ddsProfile.getExpiryInterval() * 1000);
-                if (expiresTime.before(now)) {
-                    // This document is old and no longer valid.
-                    log.error("load: Loaded document has expired " + filename + ", expires=" + expires.toGregorianCalendar().getTime().toString());
-                    deleteFile(filename);
+    private synchronized void ready() {
+        if (loadState == LoadState.READY) {
+            return;
+        }
+
+        loadEnd = System.currentTimeMillis();
+        loadState = LoadState.READY;
+        log.info("load: loaded {} documents ({} discarded) from {} in {} ms, {} documents/s", getLoadCount(),
+                getDiscardCount(), cachePath, getLoadTime(), getLoadRate());
+        loaded.complete(this);
+    }
+
+    /**
+     * Publish the unexpired documents held in the snapshot file.
+     *
+     * @return true if a snapshot was restored.
+     */
+    private boolean restore() {
+        if (snapshotInterval <= 0 || !snapshotFile.exists()) {
+            return false;
+        }
+
+        List<Document> documents;
+        try {
+            documents = snapshotFile.read();
+        } catch (IOException ex) {
+            log.error("load: ignoring unreadable snapshot {}", snapshotFile.getPath(), ex);
+            return false;
+        }
+
+        long now = System.currentTimeMillis() + ddsProfile.getExpiryInterval() * 1000;
+        Map<String, Document> batch = new HashMap<>(documents.size());
+        synchronized (lock) {
+            long version = snapshot.getVersion();
+            for (Document document : documents) {
+                if (document.getExpiresTime() < now) {
                     continue;
                 }
+
+                // Never replace a document already updated by a peer.
+                if (snapshot.get(document.getId()) == null) {
+                    index.add(document);
+                    version = changeLog.append(document);
+                    batch.put(document.getId(), document);
+                }
             }
-            else {
-                // No expire value provided so make one.
-                Date date = new Date(System.currentTimeMillis() + XmlUtilities.ONE_YEAR);
-                XMLGregorianCalendar xmlGregorianCalendar;
-                try {
-                    xmlGregorianCalendar = XmlUtilities.xmlGregorianCalendar(date);
-                } catch (DatatypeConfigurationException ex) {
-                    log.error("load: Document does not contain an expires date and creation of one failed id=" + document.getId());
-                    continue;
+            snapshot = snapshot.withAll(version, batch);
+        }
+
+        restored.putAll(batch);
+        loadCount.addAndGet(batch.size());
+        log.info("load: restored {} documents from snapshot {} in {} ms", batch.size(), snapshotFile.getPath(),
+                System.currentTimeMillis() - loadStart);
+        return true;
+    }
+
+    /**
+     * Remove any restored documents that were not found in the store, as
+     * they were removed after the snapshot was written.
+     */
+    private void reconcile() {
+        int removed = 0;
+        for (Map.Entry<String, Document> entry : restored.entrySet()) {
+            synchronized (lock) {
+                if (snapshot.get(entry.getKey()) == entry.getValue()) {
+                    index.remove(entry.getValue());
+                    changeLog.remove(entry.getKey());
+                    snapshot = snapshot.without(changeLog.getSequence(), entry.getKey());
+                    removed++;
                 }
+            }
+        }
+        log.info("load: reconciled snapshot with {}, removed {} documents", cachePath, removed);
+    }
 
-                document.setExpires(xmlGregorianCalendar);
+    /**
+     * Add a document read from the store to the cache if it is still valid
+     * and newer than any version already loaded, discarding the stored copy
+     * that loses.  This may be called concurrently from the load pool.
+     *
+     * @param document The stored document.
+     * @param location The location of the stored copy.
+     */
+    private void loaded(DocumentType document, String location) {
+        if (document.getExpires() == null) {
+            // No expire value provided so make one.
+            Date date = new Date(System.currentTimeMillis() + XmlUtilities.ONE_YEAR);
+            XMLGregorianCalendar xmlGregorianCalendar;
+            try {
+                xmlGregorianCalendar = XmlUtilities.xmlGregorianCalendar(date);
+            } catch (DatatypeConfigurationException ex) {
+                log.error("load: Document does not contain an expires date and creation of one failed id=" + document.getId());
+                return;
             }
 
-            Document entry = new Document(document, ddsProfile.getBaseURL());
-            entry.setFilename(filename);
+            document.setExpires(xmlGregorianCalendar);
+        }
 
-            // Make sure the file we are loading does not overwrite a newer
-            // version of the document.  If it is an older version then remove
-            // it from the cache and disk.
-            Document result = documents.get(entry.getId());
+        Document entry = new Document(document, ddsProfile.getBaseURL());
+        entry.setFilename(location);
+
+        // We need to determine if this document is still valid before
+        // proceding, taking the current time and adding the expiry buffer.
+        long now = System.currentTimeMillis() + ddsProfile.getExpiryInterval() * 1000;
+        if (entry.getExpiresTime() < now) {
+            // This document is old and no longer valid.
+            log.error("load: Loaded document has expired " + location + ", expires=" + new Date(entry.getExpiresTime()));
+            discard(entry);
+            return;
+        }
 
-            if (result == null) {
-                documents.put(entry.getId(), entry);
-                log.debug("load: added document id=" + entry.getId() + ", filename=" + filename);
-                list.put(entry.getId(), entry.getFilename());
-            }
-            else if (entry.getDocument().getVersion().compare(result.getDocument().getVersion()) == DatatypeConstants.GREATER) {
-                log.info("load: new document found so removing old cached document id=" + result.getId() + ", filename="+ result.getFilename());
-                documents.remove(result.getId());
-                deleteFile(result.getFilename());
-                documents.put(entry.getId(), entry);
-                log.info("load: added new document id=" + entry.getId() + ", filename=" + filename);
-                list.put(entry.getId(), entry.getFilename());
+        // Make sure the document we are loading does not overwrite a newer
+        // version of the document.  Most documents have a single stored
+        // version so check against the published snapshot before taking the
+        // update lock.
+        Document result = snapshot.get(entry.getId());
+        if (result != null && restored.get(entry.getId()) != result && !isNewer(entry, result)) {
+            log.info("load: document currently in cache is newer, removing old document id=" + entry.getId() + ", location=" + location);
+            discard(entry);
+            return;
+        }
+
+        Document loser;
+        Document unsaved = null;
+        synchronized (lock) {
+            result = snapshot.get(entry.getId());
+            if (result != null && restored.remove(entry.getId(), result)) {
+                // Match a document restored from the snapshot to its stored copy.
+                int compare = Long.compare(entry.getVersionTime(), result.getVersionTime());
+                if (compare == 0) {
+                    result.setFilename(location);
+                    return;
+                } else if (compare > 0) {
+                    store(entry.getId(), entry);
+                    return;
+                }
+
+                // The store missed the newer version in the snapshot.
+                loser = entry;
+                unsaved = result;
+            } else if (result == null || isNewer(entry, result)) {
+                store(entry.getId(), entry);
+                loser = result;
+            } else {
+                loser = entry;
             }
-            else {
-                log.info("load: document currently in cache is newer, removing old document id=" + entry.getId() + ", filename=" + filename);
-                deleteFile(filename);
+        }
+
+        if (unsaved != null) {
+            try {
+                getStore().write(unsaved.getId(), unsaved);
+            } catch (JAXBException | IOException ex) {
+                log.error("load: failed to store restored document id=" + unsaved.getId(), ex);
             }
         }
 
-        return list;
+        if (loser != null) {
+            log.info("load: removing older document id=" + loser.getId() + ", location=" + loser.getFilename());
+            discard(loser);
+            return;
+        }
+
+        int count = loadCount.incrementAndGet();
+        if (count % LOAD_PROGRESS == 0) {
+            log.info("load: {} documents loaded from {}, {} documents/s", count, cachePath, getLoadRate());
+        }
+    }
+
+    private static boolean isNewer(Document entry, Document result) {
+        return entry.getVersionTime() > result.getVersionTime();
+    }
+
+    private void discard(Document document) {
+        discardCount.incrementAndGet();
+        if (document.getFilename() != null) {
+            getStore().discard(document.getId(), document.getFilename());
+        }
     }
 
     /**
@@ -260,23 +582,16 @@ public class DocumentCache {
      */
     public void expire() {
         // We take the current time and add the expiry buffer.
-        Date now = new Date();
-        now.setTime(now.getTime() + ddsProfile.getExpiryInterval() * 1000);
+        long now = System.currentTimeMillis() + ddsProfile.getExpiryInterval() * 1000;
 
-        Collection<Document> values = Collections.unmodifiableCollection(new ArrayList<>(documents.values()));
-        for (Document document : values) {
+        for (Document document : snapshot) {
             // We need to determine if this document is still valid
             // before proceeding.
-            DocumentType doc = document.getDocument();
-            XMLGregorianCalendar expires = doc.getExpires();
-            if (expires != null) {
-                Date expiresTime = expires.toGregorianCalendar().getTime();
-                if (expiresTime.before(now)) {
-                    // This document is old and no longer valid.
-                    log.debug("[DocumentCache] document has expired " + document.getId() + ", expires=" +
-                        expires.toGregorianCalendar().getTime());
-                    this.remove(document.getId());
-                }
+            if (document.getExpiresTime() < now) {
+                // This document is old and no longer valid.
+                log.debug("[DocumentCache] document has expired " + document.getId() + ", expires=" +
+                    new Date(document.getExpiresTime()));
+                this.remove(document.getId());
             }
         }
     }
@@ -292,35 +607,254 @@ public class DocumentCache {
     }
 
     /**
-     * Delete specified file from document cache.
+     * @return the number of threads used to parse documents when loading.
+     */
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    /**
+     * @param loadThreads the number of threads used to parse documents when
+     *      loading.
+     */
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads > 0 ? loadThreads : Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return true if the cache is loaded in the background.
+     */
+    public boolean isLoadAsync() {
+        return loadAsync;
+    }
+
+    /**
+     * @param loadAsync true to load the cache in the background so startup
+     *      can continue while it warms.
+     */
+    public void setLoadAsync(boolean loadAsync) {
+        this.loadAsync = loadAsync;
+    }
+
+    /**
+     * @return the milliseconds between snapshots of the cache, zero if
+     *      snapshots are disabled.
+     */
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * @param snapshotInterval the milliseconds between snapshots of the
+     *      cache, zero to disable snapshots.
+     */
+    public void setSnapshotInterval(long snapshotInterval) {
+        this.snapshotInterval = Math.max(0, snapshotInterval);
+    }
+
+    /**
+     * @return the number of documents still to be matched to the store
+     *      after restoring from a snapshot.
+     */
+    public int getRestored() {
+        return restored.size();
+    }
+
+    /**
+     * @return the state of the cache load.
+     */
+    public LoadState getLoadState() {
+        return loadState;
+    }
+
+    /**
+     * @return a future completed once the cache has been loaded.
+     */
+    public CompletableFuture<DocumentCache> getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the number of documents loaded so far.
+     */
+    public int getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * @return the number of stored documents discarded as expired or
+     *      superseded while loading.
+     */
+    public int getDiscardCount() {
+        return discardCount.get();
+    }
+
+    /**
+     * @return milliseconds spent loading, so far if still warming.
+     */
+    public long getLoadTime() {
+        if (loadStart == 0) {
+            return 0;
+        }
+        return (loadEnd == 0 ? System.currentTimeMillis() : loadEnd) - loadStart;
+    }
+
+    /**
+     * @return the number of documents loaded per second.
+     */
+    public long getLoadRate() {
+        return getLoadCount() * 1000L / Math.max(1, getLoadTime());
+    }
+
+    /**
+     * @return the store used to persist documents to the cache directory.
+     */
+    public synchronized DocumentStore getStore() {
+        if (store == null) {
+            store = new FileDocumentStore();
+        }
+
+        if (!opened) {
+            try {
+                store.open(cachePath);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot open document store in " + cachePath, ex);
+            }
+            opened = true;
+        }
+
+        return store;
+    }
+
+    /**
+     * Set the store used to persist documents to the cache directory.  A
+     * FileDocumentStore writing documents synchronously is used if not set.
      *
-     * @param filename File to delete.
+     * @param store the document store.
      */
-    public void deleteFile(String filename) {
-        File file = new File(filename);
-        if(!file.delete()) {
-            log.error("DocumentCache: Delete failed for file  " + filename);
+    public synchronized void setStore(DocumentStore store) {
+        if (opened) {
+            throw new IllegalStateException("Document store already opened for " + cachePath);
         }
-        else {
-            log.info("DocumentCache: Deleted old document " + filename);
+        this.store = store;
+    }
+
+    /**
+     * Write any pending documents to the cache directory.
+     */
+    public synchronized void flush() {
+        if (opened) {
+            store.flush();
         }
     }
 
-    private void writeFile(Document doc, String filename) throws JAXBException, IOException {
-        // We need to write this new document to disk.
-        if (enabled) {
-            if (filename == null || filename.isEmpty()) {
-                filename = Paths.get(cachePath, UUID.randomUUID().toString() + ".xml").toString();
+    /**
+     * Write a snapshot of the cache if it has changed since the last one.
+     * A snapshot is not written until the cache has been loaded so a
+     * partially loaded cache never replaces a complete snapshot.
+     */
+    public void writeSnapshot() {
+        if (!enabled || loadState != LoadState.READY) {
+            return;
+        }
+
+        synchronized (snapshotLock) {
+            DocumentSnapshot current = snapshot;
+            if (current.getVersion() == snapshotVersion) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                long size = snapshotFile.write(current);
+                snapshotVersion = current.getVersion();
+                log.info("[DocumentCache] wrote snapshot of {} documents, {} bytes, to {} in {} ms", current.size(),
+                        size, snapshotFile.getPath(), System.currentTimeMillis() - start);
+            } catch (JAXBException | IOException | RuntimeException ex) {
+                log.error("[DocumentCache] failed to write snapshot {}", snapshotFile.getPath(), ex);
+            }
+        }
+    }
+
+    private synchronized void startSnapshots() {
+        if (snapshotExecutor == null) {
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "document-cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshot, snapshotInterval, snapshotInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Close the document store after writing any pending documents and a
+     * final snapshot.
+     */
+    public synchronized void shutdown() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            snapshotExecutor = null;
+            writeSnapshot();
+        }
+
+        if (opened) {
+            store.close();
+            log.info("[DocumentCache] shutdown {}", store);
+            opened = false;
+        }
+    }
+
+    /**
+     * Store a document in the map and update the secondary indexes.
+     *
+     * @param id Unique identifier of the document to store.
+     * @param doc The document object to store.
+     * @return The previous document object associated with id or null.
+     */
+    private Document store(String id, Document doc) {
+        synchronized (lock) {
+            Document result = snapshot.get(id);
+            if (result != null) {
+                index.remove(result);
             }
-            doc.setFilename(filename);
-            DdsParser.getInstance().writeDocument(doc.getFilename(), doc.getDocument());
+            index.add(doc);
+            snapshot = snapshot.with(changeLog.append(doc), id, doc);
+            return result;
+        }
+    }
+
+    /**
+     * Verify a candidate document against all supplied criteria.  Index
+     * lookups are not atomic with respect to updates so candidates are always
+     * checked against the document itself.
+     */
+    private static boolean matches(Document document, String nsa, String type, String id, Date lastDiscovered) {
+        DocumentType doc = document.getMetadata();
+        if (isSet(nsa) && !doc.getNsa().equalsIgnoreCase(nsa)) {
+            return false;
         }
+
+        if (isSet(type) && !doc.getType().equalsIgnoreCase(type)) {
+            return false;
+        }
+
+        if (isSet(id) && !doc.getId().equalsIgnoreCase(id)) {
+            return false;
+        }
+
+        return lastDiscovered == null || document.getLastDiscoveredTime() > lastDiscovered.getTime();
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.isEmpty();
     }
 
     /**
-     * @return the documents
+     * @return A read-only map view of the current document snapshot.
      */
     public Map<String, Document> getDocuments() {
-        return Collections.unmodifiableMap(new ConcurrentHashMap<String, Document>(documents));
+        return snapshot.asMap();
     }
 }
@@ -0,0 +1,144 @@
+package net.es.nsi.dds.dao;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * Secondary indexes over the documents held in a DocumentCache.  Lookups on
+ * nsa and type are case-insensitive to match the DDS query semantics.  The
+ * time ordered lastDiscovered index is maintained separately by the ChangeLog.
+ *
+ * Each index maps a key to the set of document identifiers stored under that
+ * key.  Writers are serialized by the owning DocumentCache, while readers may
+ * query the index concurrently and must verify the candidates they get back.
+ *
+ * @author hacksaw
+ */
+class DocumentIndex {
+    // Documents indexed by case-folded nsa.
+    private final Map<String, Set<String>> byNsa = new ConcurrentHashMap<>();
+
+    // Documents indexed by case-folded type.
+    private final Map<String, Set<String>> byType = new ConcurrentHashMap<>();
+
+    // Documents indexed by case-folded nsa and type pair.
+    private final Map<String, Set<String>> byNsaAndType = new ConcurrentHashMap<>();
+
+    /**
+     * Add the document to all indexes.
+     *
+     * @param document The document to index.
+     */
+    void add(Document document) {
+        DocumentType doc = document.getMetadata();
+        String id = document.getId();
+        add(byNsa, fold(doc.getNsa()), id);
+        add(byType, fold(doc.getType()), id);
+        add(byNsaAndType, key(doc.getNsa(), doc.getType()), id);
+    }
+
+    /**
+     * Remove the document from all indexes.
+     *
+     * @param document The document to remove.
+     */
+    void remove(Document document) {
+        DocumentType doc = document.getMetadata();
+        String id = document.getId();
+        remove(byNsa, fold(doc.getNsa()), id);
+        remove(byType, fold(doc.getType()), id);
+        remove(byNsaAndType, key(doc.getNsa(), doc.getType()), id);
+    }
+
+    /**
+     * Drop the contents of all indexes.
+     */
+    void clear() {
+        byNsa.clear();
+        byType.clear();
+        byNsaAndType.clear();
+    }
+
+    /**
+     * Is there at least one document indexed for the specified nsa?
+     *
+     * @param nsa The nsa to look for (case-insensitive).
+     * @return true if a document exists for the nsa.
+     */
+    boolean containsNsa(String nsa) {
+        return byNsa.containsKey(fold(nsa));
+    }
+
+    /**
+     * Get the identifiers of documents with the specified nsa.
+     *
+     * @param nsa The nsa to look for (case-insensitive).
+     * @return Set of matching document identifiers.
+     */
+    Set<String> getByNsa(String nsa) {
+        return unmodifiable(byNsa.get(fold(nsa)));
+    }
+
+    /**
+     * Get the identifiers of documents with the specified type.
+     *
+     * @param type The type to look for (case-insensitive).
+     * @return Set of matching document identifiers.
+     */
+    Set<String> getByType(String type) {
+        return unmodifiable(byType.get(fold(type)));
+    }
+
+    /**
+     * Get the identifiers of documents with the specified nsa and type.
+     *
+     * @param nsa The nsa to look for (case-insensitive).
+     * @param type The type to look for (case-insensitive).
+     * @return Set of matching document identifiers.
+     */
+    Set<String> getByNsaAndType(String nsa, String type) {
+        return unmodifiable(byNsaAndType.get(key(nsa, type)));
+    }
+
+    /**
+     * Case-fold an index key.
+     *
+     * @param value The value to fold.
+     * @return The folded value.
+     */
+    static String fold(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Build the compound nsa and type key.  A NUL separator cannot appear in
+     * an XML string value so the compound key is unambiguous.
+     *
+     * @param nsa The document nsa.
+     * @param type The document type.
+     * @return The compound key.
+     */
+    static String key(String nsa, String type) {
+        return fold(nsa) + '\u0000' + fold(type);
+    }
+
+    private static void add(Map<String, Set<String>> index, String key, String id) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private static void remove(Map<String, Set<String>> index, String key, String id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static Set<String> unmodifiable(Set<String> ids) {
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+}
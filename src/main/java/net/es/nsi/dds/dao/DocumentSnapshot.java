@@ -0,0 +1,237 @@
+package net.es.nsi.dds.dao;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * An immutable, versioned view of the documents held in a DocumentCache.
+ *
+ * Documents are partitioned by identifier hash into a fixed number of
+ * copy-on-write segments.  A mutation copies only the segment holding the
+ * affected document and shares all other segments with the previous
+ * snapshot, so readers can iterate a stable view of the cache without
+ * copying it while writers pay a cost proportional to a single segment.
+ *
+ * @author hacksaw
+ */
+public final class DocumentSnapshot extends AbstractCollection<Document> {
+    // Number of segments, must be a power of two.
+    private static final int SEGMENTS = 64;
+
+    // An empty snapshot to seed a new cache.
+    static final DocumentSnapshot EMPTY = new DocumentSnapshot();
+
+    private final long version;
+    private final Map<String, Document>[] segments;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    private DocumentSnapshot() {
+        this.version = 0;
+        this.segments = new Map[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = Collections.emptyMap();
+        }
+        this.size = 0;
+    }
+
+    private DocumentSnapshot(long version, Map<String, Document>[] segments, int size) {
+        this.version = version;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Get the version of this snapshot.  This is the DocumentCache change
+     * sequence number at the time the snapshot was published.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the document object associated with id.
+     *
+     * @param id Unique identifier of the document to get.
+     * @return The document or null if not present in this snapshot.
+     */
+    public Document get(String id) {
+        return segments[segment(id)].get(id);
+    }
+
+    /**
+     * Does this snapshot contain a document with the specified id?
+     *
+     * @param id Unique identifier of the document.
+     * @return true if present.
+     */
+    public boolean containsKey(String id) {
+        return segments[segment(id)].containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Document> iterator() {
+        return new SegmentIterator<>(segments, m -> m.values().iterator());
+    }
+
+    /**
+     * Get a read-only map view of this snapshot indexed by document id.
+     *
+     * @return Map view of the snapshot.
+     */
+    public Map<String, Document> asMap() {
+        return new AbstractMap<String, Document>() {
+            @Override
+            public Document get(Object key) {
+                return key instanceof String ? DocumentSnapshot.this.get((String) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String && DocumentSnapshot.this.containsKey((String) key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<String, Document>> entrySet() {
+                return new AbstractSet<Entry<String, Document>>() {
+                    @Override
+                    public Iterator<Entry<String, Document>> iterator() {
+                        return new SegmentIterator<>(segments, m -> m.entrySet().iterator());
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Create a new snapshot with the document added or replaced.
+     *
+     * @param version Version of the new snapshot.
+     * @param id Unique identifier of the document.
+     * @param document The document to store.
+     * @return The new snapshot.
+     */
+    DocumentSnapshot with(long version, String id, Document document) {
+        int index = segment(id);
+        Map<String, Document> segment = new HashMap<>(segments[index]);
+        int newSize = segment.put(id, document) == null ? size + 1 : size;
+        return new DocumentSnapshot(version, replace(index, segment), newSize);
+    }
+
+    /**
+     * Create a new snapshot with a batch of documents added or replaced,
+     * copying each affected segment only once.
+     *
+     * @param version Version of the new snapshot.
+     * @param documents The documents to store indexed by unique identifier.
+     * @return The new snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    DocumentSnapshot withAll(long version, Map<String, Document> documents) {
+        Map<String, Document>[] copy = new Map[SEGMENTS];
+        int newSize = size;
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            int index = segment(entry.getKey());
+            if (copy[index] == null) {
+                copy[index] = new HashMap<>(segments[index]);
+            }
+            if (copy[index].put(entry.getKey(), entry.getValue()) == null) {
+                newSize++;
+            }
+        }
+
+        Map<String, Document>[] result = segments.clone();
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (copy[i] != null) {
+                result[i] = Collections.unmodifiableMap(copy[i]);
+            }
+        }
+        return new DocumentSnapshot(version, result, newSize);
+    }
+
+    /**
+     * Create a new snapshot with the document removed.
+     *
+     * @param version Version of the new snapshot.
+     * @param id Unique identifier of the document to remove.
+     * @return The new snapshot, or this snapshot if the document was absent.
+     */
+    DocumentSnapshot without(long version, String id) {
+        int index = segment(id);
+        if (!segments[index].containsKey(id)) {
+            return this;
+        }
+
+        Map<String, Document> segment = new HashMap<>(segments[index]);
+        segment.remove(id);
+        return new DocumentSnapshot(version, replace(index, segment), size - 1);
+    }
+
+    private Map<String, Document>[] replace(int index, Map<String, Document> segment) {
+        Map<String, Document>[] copy = segments.clone();
+        copy[index] = Collections.unmodifiableMap(segment);
+        return copy;
+    }
+
+    private static int segment(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (SEGMENTS - 1);
+    }
+
+    /**
+     * Iterates the elements of each segment in turn.
+     */
+    private static class SegmentIterator<T> implements Iterator<T> {
+        private final Map<String, Document>[] segments;
+        private final Function<Map<String, Document>, Iterator<T>> source;
+        private int next = 0;
+        private Iterator<T> current = Collections.emptyIterator();
+
+        SegmentIterator(Map<String, Document>[] segments, Function<Map<String, Document>, Iterator<T>> source) {
+            this.segments = segments;
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && next < segments.length) {
+                current = source.apply(segments[next++]);
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
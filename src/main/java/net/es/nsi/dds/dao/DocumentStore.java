@@ -0,0 +1,101 @@
+package net.es.nsi.dds.dao;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.provider.Document;
+
+/**
+ * The persistence interface used by a DocumentCache to save documents in
+ * its cache directory so they survive a restart.
+ *
+ * A store is opened on a directory, replays the documents it holds through
+ * load, and is then told about every document written or removed.  The
+ * location of a stored document is opaque to the cache, which keeps it in
+ * the document's filename and hands it back when discarding a stored copy.
+ *
+ * @author hacksaw
+ */
+public interface DocumentStore {
+    /**
+     * When to force written data to stable storage.
+     */
+    public enum SyncPolicy {
+        // Leave it to the operating system.
+        NONE,
+        // Force each write to disk.
+        FILE,
+        // Also force the directory so new and renamed files are durable.
+        DIRECTORY
+    }
+
+    /**
+     * Receives each document replayed from the store.
+     */
+    public interface Loader {
+        /**
+         * @param document The stored document.
+         * @param location The location of the stored copy.
+         */
+        void loaded(DocumentType document, String location);
+    }
+
+    /**
+     * Open the store on the specified directory, creating it if needed.
+     *
+     * @param directory The cache directory.
+     * @throws IOException If the directory could not be opened.
+     */
+    void open(String directory) throws IOException;
+
+    /**
+     * Replay all stored documents to the loader, parsing them in parallel
+     * on the supplied executor.  The loader may be called concurrently and
+     * a document that cannot be read is skipped rather than failing the
+     * load.
+     *
+     * @param loader Receives the stored documents.
+     * @param executor Runs the document parsing tasks.
+     * @return The number of documents replayed.
+     */
+    int load(Loader loader, Executor executor);
+
+    /**
+     * Save a new version of a document.  The document's filename holds the
+     * location of the previous version, if any, and is updated to the new
+     * location.
+     *
+     * @param id The document id.
+     * @param document The document to save.
+     * @throws JAXBException If the document could not be serialized.
+     * @throws IOException If the document could not be written.
+     */
+    void write(String id, Document document) throws JAXBException, IOException;
+
+    /**
+     * Remove a document from the store.
+     *
+     * @param id The document id.
+     * @param document The document being removed.
+     */
+    void delete(String id, Document document);
+
+    /**
+     * Remove a stored copy of a document rejected during load.
+     *
+     * @param id The document id.
+     * @param location The location of the stored copy.
+     */
+    void discard(String id, String location);
+
+    /**
+     * Write any buffered changes.
+     */
+    void flush();
+
+    /**
+     * Flush and release all resources held by the store.
+     */
+    void close();
+}
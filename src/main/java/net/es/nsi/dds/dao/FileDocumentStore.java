@@ -0,0 +1,440 @@
+package net.es.nsi.dds.dao;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.util.XmlUtilities;
+
+/**
+ * Stores each document as an XML file in the cache directory.
+ *
+ * With a flush interval of zero every write and delete is performed on the
+ * caller's thread.  Otherwise operations are queued per document id, with a
+ * newer operation replacing any pending operation for the same id, and a
+ * background thread applies the pending operations in batches every flush
+ * interval.  A burst of updates to one document therefore results in a
+ * single write of the latest version.  A replaced operation on a different
+ * file, such as the delete of a removed document's file before the document
+ * is added again under a new file, is carried by the newer operation so the
+ * old file is still deleted.  A failed write is queued again for the next
+ * flush unless a newer operation has been queued in the meantime.
+ *
+ * Documents are written to a temporary file in the cache directory and then
+ * renamed over the target file so a crash never leaves a partially written
+ * document behind.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class FileDocumentStore implements DocumentStore {
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private Path directory;
+    private long flushInterval = 0;
+    private SyncPolicy syncPolicy = SyncPolicy.NONE;
+
+    // Pending operations indexed by document id.
+    private final Map<String, Operation> pending = new ConcurrentHashMap<>();
+
+    // Serializes batches between the flush thread and explicit flushes.
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService executor = null;
+
+    // Store statistics.
+    private final AtomicLong scheduled = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong deleted = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    /**
+     * A pending write (document is not null) or delete of a file, and the
+     * files of replaced operations that are no longer needed.
+     */
+    private static class Operation {
+        final String id;
+        final String filename;
+        final Document document;
+        final Set<String> superseded = new LinkedHashSet<>();
+
+        Operation(String id, String filename, Document document) {
+            this.id = id;
+            this.filename = filename;
+            this.document = document;
+        }
+
+        /**
+         * Take over the files of an operation this one replaces.
+         *
+         * @param previous The replaced operation.
+         * @return this operation.
+         */
+        Operation supersede(Operation previous) {
+            superseded.addAll(previous.superseded);
+            superseded.add(previous.filename);
+            superseded.remove(filename);
+            return this;
+        }
+    }
+
+    /**
+     * Open the store on the cache directory and start the background flush
+     * thread if writes are deferred.
+     *
+     * @param directory The cache directory.
+     * @throws IOException If the directory could not be created.
+     */
+    @Override
+    public synchronized void open(String directory) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory).toAbsolutePath());
+
+        if (flushInterval > 0 && executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "document-store-" + this.directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Parse every XML file in the cache directory in parallel, deleting any
+     * that cannot be parsed.
+     *
+     * @param loader Receives the stored documents.
+     * @param executor Runs the file parsing tasks.
+     * @return The number of documents loaded.
+     */
+    @Override
+    public int load(Loader loader, Executor executor) {
+        AtomicInteger count = new AtomicInteger(0);
+        Collection<String> xmlFilenames = XmlUtilities.getXmlFilenames(directory.toString());
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(xmlFilenames.size());
+        for (String filename : xmlFilenames) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                if (loadFile(loader, filename)) {
+                    count.incrementAndGet();
+                }
+            }, executor));
+        }
+
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        return count.get();
+    }
+
+    private boolean loadFile(Loader loader, String filename) {
+        log.debug("load: loading " + filename);
+        DocumentType document;
+        try {
+            document = DdsParser.getInstance().readDocument(filename);
+            if (document == null) {
+                log.error("load: Loaded empty document from " + filename);
+                deleteFile(filename);
+                return false;
+            }
+        }
+        catch (JAXBException | IOException ex) {
+            log.error("load: Failed to load file " + filename, ex);
+            deleteFile(filename);
+            return false;
+        }
+
+        try {
+            loader.loaded(document, filename);
+        } catch (RuntimeException ex) {
+            log.error("load: Failed to add document from " + filename, ex);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Write a document to the file named in the document, assigning a new
+     * file if the document has not been stored before.
+     *
+     * @param id The document id.
+     * @param document The document to write.
+     * @throws JAXBException If the document could not be marshalled when
+     *      writing synchronously.
+     * @throws IOException If the file could not be written when writing
+     *      synchronously.
+     */
+    @Override
+    public void write(String id, Document document) throws JAXBException, IOException {
+        String filename = document.getFilename();
+        if (filename == null || filename.isEmpty()) {
+            filename = directory.resolve(UUID.randomUUID().toString() + ".xml").toString();
+            document.setFilename(filename);
+        }
+
+        if (executor == null) {
+            writeFile(filename, document);
+            written.incrementAndGet();
+            sync();
+        } else {
+            schedule(new Operation(id, filename, document));
+        }
+    }
+
+    /**
+     * Delete the file holding a document.
+     *
+     * @param id The document id.
+     * @param document The document being removed.
+     */
+    @Override
+    public void delete(String id, Document document) {
+        if (document.getFilename() == null) {
+            return;
+        }
+
+        if (executor == null) {
+            deleteFile(document.getFilename());
+        } else {
+            schedule(new Operation(id, document.getFilename(), null));
+        }
+    }
+
+    /**
+     * Delete a file rejected during load.
+     *
+     * @param id The document id.
+     * @param location The file to delete.
+     */
+    @Override
+    public void discard(String id, String location) {
+        deleteFile(location);
+    }
+
+    private void schedule(Operation operation) {
+        scheduled.incrementAndGet();
+        pending.merge(operation.id, operation, (previous, newer) -> {
+            coalesced.incrementAndGet();
+            return newer.supersede(previous);
+        });
+    }
+
+    /**
+     * Apply all pending operations.
+     */
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<Operation> batch = new ArrayList<>(pending.size());
+            for (String id : new ArrayList<>(pending.keySet())) {
+                Operation operation = pending.remove(id);
+                if (operation != null) {
+                    batch.add(operation);
+                }
+            }
+
+            for (Operation operation : batch) {
+                if (operation.document == null) {
+                    deleteFile(operation.filename);
+                } else {
+                    try {
+                        writeFile(operation.filename, operation.document);
+                        written.incrementAndGet();
+                    } catch (JAXBException | IOException ex) {
+                        failed.incrementAndGet();
+                        log.error("[FileDocumentStore] failed to write document id={}, filename={}",
+                                operation.id, operation.filename, ex);
+
+                        // Retry on the next flush unless a newer operation replaced it.
+                        pending.merge(operation.id, operation, (newer, retry) -> newer.supersede(retry));
+                        continue;
+                    }
+                }
+
+                operation.superseded.forEach(this::deleteFile);
+            }
+
+            sync();
+            log.debug("[FileDocumentStore] flushed {} operations, {}", batch.size(), this);
+        }
+    }
+
+    /**
+     * Stop the background flush thread after writing all pending operations.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(flushInterval + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                log.debug("[FileDocumentStore] interrupted waiting for flush thread");
+            }
+            executor = null;
+        }
+
+        flush();
+    }
+
+    private void writeFile(String filename, Document document) throws JAXBException, IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+
+        // The directory may have been removed out from under us.
+        Path parent = Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(parent, ".", TMP_SUFFIX);
+        try {
+            DdsParser.getInstance().writeDocument(tmp.toString(), document.getDocument());
+            if (syncPolicy != SyncPolicy.NONE) {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void deleteFile(String filename) {
+        try {
+            if (Files.deleteIfExists(Paths.get(filename))) {
+                deleted.incrementAndGet();
+                log.info("[FileDocumentStore] deleted old document " + filename);
+            }
+        } catch (IOException ex) {
+            failed.incrementAndGet();
+            log.error("[FileDocumentStore] delete failed for file " + filename, ex);
+        }
+    }
+
+    private void sync() {
+        if (syncPolicy == SyncPolicy.DIRECTORY) {
+            syncDirectory(directory);
+        }
+    }
+
+    /**
+     * Force a directory to stable storage so file creation, rename, and
+     * deletion are durable.
+     *
+     * @param directory The directory to sync.
+     */
+    static void syncDirectory(Path directory) {
+        // Not all platforms allow a directory to be opened for sync.
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            log.debug("[DocumentStore] directory sync not supported for {}", directory, ex);
+        }
+    }
+
+    /**
+     * @return the number of operations waiting to be flushed.
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of operations scheduled for a background flush.
+     */
+    public long getScheduled() {
+        return scheduled.get();
+    }
+
+    /**
+     * @return the number of scheduled operations replaced by a newer operation.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of documents written.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of files deleted.
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return the number of failed writes and deletes.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the milliseconds between background flushes, zero if synchronous.
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval the milliseconds between background flushes, zero
+     *      to write documents synchronously.  Takes effect when opened.
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = Math.max(0, flushInterval);
+    }
+
+    /**
+     * @return the sync policy.
+     */
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    /**
+     * @param syncPolicy the policy for forcing files to stable storage.
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy == null ? SyncPolicy.NONE : syncPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("directory=%s, pending=%d, scheduled=%d, coalesced=%d, written=%d, deleted=%d, failed=%d",
+                directory, getPending(), getScheduled(), getCoalesced(), getWritten(), getDeleted(), getFailed());
+    }
+}
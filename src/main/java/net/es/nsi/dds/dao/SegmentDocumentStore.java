@@ -0,0 +1,796 @@
+package net.es.nsi.dds.dao;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.util.XmlUtilities;
+
+/**
+ * Stores documents in a log of append-only segment files.
+ *
+ * Every new document version and every removal is appended to the active
+ * segment as a length prefixed, checksummed record, optionally compressed.
+ * An in-memory index maps each document id to the segment and offset of its
+ * current record, so a restart reads a handful of segment files
+ * sequentially instead of listing the directory and opening one file per
+ * document.
+ *
+ * When the active segment reaches segmentSize a new segment is started.
+ * A background task compacts the sealed segments once the fraction of
+ * their bytes holding superseded versions, removals, or expired documents
+ * reaches compactionRatio, copying the remaining live records into a single
+ * segment that atomically replaces them.
+ *
+ * Segment file layout:
+ * <pre>
+ *   header: int magic, byte flags (1 = compacted)
+ *   record: int bodyLength, int crc32(body), body
+ *   body:   byte flags (1 = removed, 2 = gzip), long expires (epoch ms or 0),
+ *           short idLength, id (UTF-8), payload (document XML)
+ * </pre>
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SegmentDocumentStore implements DocumentStore {
+    // Defaults used if not configured in beans.xml.
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_COMPACTION_INTERVAL = 300000;
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    private static final int MAGIC = 0x44445331;
+    private static final byte SEGMENT_COMPACTED = 1;
+    private static final int SEGMENT_HEADER = 5;
+
+    private static final byte RECORD_REMOVED = 1;
+    private static final byte RECORD_GZIP = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_HEADER = 11;
+    private static final int MAX_BODY = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private boolean compress = false;
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+    private SyncPolicy syncPolicy = SyncPolicy.NONE;
+
+    private Path directory;
+
+    // Location of the current record for each document id.
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    // All segments indexed by number, the highest being the active segment.
+    // Guarded by this.
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active = null;
+    private FileChannel activeChannel = null;
+
+    // Only one compaction runs at a time.
+    private final Object compactLock = new Object();
+
+    private ScheduledExecutorService executor = null;
+
+    // Store statistics.
+    private final AtomicLong appended = new AtomicLong(0);
+    private final AtomicLong compactions = new AtomicLong(0);
+
+    /**
+     * Location of a record in the log.
+     */
+    private static final class Entry {
+        final int segment;
+        final long offset;
+        final int length;
+        final long expires;
+
+        Entry(int segment, long offset, int length, long expires) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires != 0 && expires < now;
+        }
+    }
+
+    /**
+     * A segment file and the number of bytes written to it.
+     */
+    private static final class Segment {
+        final int number;
+        final Path path;
+        long size;
+
+        Segment(int number, Path path, long size) {
+            this.number = number;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Receives each valid record read from a segment.
+     */
+    private interface RecordVisitor {
+        void visit(long offset, int crc, byte[] body, byte flags, long expires, String id, int payload) throws IOException;
+    }
+
+    /**
+     * Open the segment log in the cache directory, rebuilding the index from
+     * the record headers and discarding any partially written record left
+     * at the end of a segment.
+     *
+     * @param directory The cache directory.
+     * @throws IOException If the segments could not be opened.
+     */
+    @Override
+    public synchronized void open(String directory) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory).toAbsolutePath());
+
+        // Find our segments, removing anything left by an interrupted compaction.
+        TreeMap<Integer, Boolean> found = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(COMPACT_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    int number = number(name);
+                    int flags = readHeader(path);
+                    if (number < 0 || flags < 0) {
+                        log.error("[SegmentDocumentStore] ignoring invalid segment {}", path);
+                        Files.move(path, path.resolveSibling(name + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+                        continue;
+                    }
+                    found.put(number, (flags & SEGMENT_COMPACTED) != 0);
+                }
+            }
+        }
+
+        // Segments older than the newest compacted segment were already
+        // copied into it but not yet deleted.
+        Integer compacted = found.descendingMap().entrySet().stream()
+                .filter(Map.Entry::getValue).map(Map.Entry::getKey).findFirst().orElse(null);
+        for (int number : new ArrayList<>(found.keySet())) {
+            if (compacted != null && number < compacted) {
+                log.info("[SegmentDocumentStore] removing compacted segment {}", name(number));
+                Files.deleteIfExists(segmentPath(number));
+                found.remove(number);
+            }
+        }
+
+        // Rebuild the index by replaying records in order.
+        for (int number : found.keySet()) {
+            Path path = segmentPath(number);
+            long end = scan(number, path, (offset, crc, body, flags, expires, id, payload) -> {
+                if ((flags & RECORD_REMOVED) != 0) {
+                    index.remove(id);
+                } else {
+                    index.put(id, new Entry(number, offset, RECORD_HEADER + body.length, expires));
+                }
+            });
+
+            long size = Files.size(path);
+            if (end < size) {
+                log.error("[SegmentDocumentStore] truncating {} bytes of incomplete records from {}", size - end, path);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                }
+            }
+            segments.put(number, new Segment(number, path, end));
+        }
+
+        if (segments.isEmpty()) {
+            newSegment(1, false);
+        } else {
+            active = segments.lastEntry().getValue();
+            activeChannel = FileChannel.open(active.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        if (compactionInterval > 0 && executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "document-store-" + this.directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::compact, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+        }
+
+        log.info("[SegmentDocumentStore] opened {}", this);
+    }
+
+    /**
+     * Parse the current version of every stored document.  Segments are
+     * read sequentially while the records are parsed in parallel, and
+     * records that cannot be parsed are removed from the store.
+     *
+     * @param loader Receives the stored documents.
+     * @param executor Runs the record parsing tasks.
+     * @return The number of documents loaded.
+     */
+    @Override
+    public int load(Loader loader, Executor executor) {
+        List<Segment> current;
+        synchronized (this) {
+            current = new ArrayList<>(segments.values());
+        }
+
+        AtomicInteger count = new AtomicInteger(0);
+        for (Segment segment : current) {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            Set<String> failed = ConcurrentHashMap.newKeySet();
+            try {
+                scan(segment.number, segment.path, (offset, crc, body, flags, expires, id, payload) -> {
+                    Entry entry = index.get(id);
+                    if ((flags & RECORD_REMOVED) != 0 || entry == null
+                            || entry.segment != segment.number || entry.offset != offset) {
+                        return;
+                    }
+
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        DocumentType document;
+                        try (InputStream is = payload(body, payload, flags)) {
+                            document = DdsParser.getInstance().xml2Document(is);
+                        } catch (JAXBException | IOException ex) {
+                            log.error("load: Failed to load document id={} from {}", id, segment.path, ex);
+                            failed.add(id);
+                            return;
+                        }
+
+                        try {
+                            loader.loaded(document, location(entry));
+                            count.incrementAndGet();
+                        } catch (RuntimeException ex) {
+                            log.error("load: Failed to add document id={} from {}", id, segment.path, ex);
+                        }
+                    }, executor));
+                });
+            } catch (IOException ex) {
+                log.error("load: Failed to read segment {}", segment.path, ex);
+            }
+
+            // Wait for each segment so at most one segment of records is
+            // held in memory.
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+            synchronized (this) {
+                failed.forEach(this::remove);
+            }
+        }
+
+        return count.get();
+    }
+
+    /**
+     * Append a new version of a document to the log.
+     *
+     * @param id The document id.
+     * @param document The document to write.
+     * @throws JAXBException If the document could not be serialized.
+     * @throws IOException If the record could not be written.
+     */
+    @Override
+    public synchronized void write(String id, Document document) throws JAXBException, IOException {
+        byte flags = 0;
+        byte[] payload = document.getEncoded(false);
+        if (compress) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(payload.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(os)) {
+                gzip.write(payload);
+            }
+            payload = os.toByteArray();
+            flags |= RECORD_GZIP;
+        }
+
+        Entry entry = append(flags, expires(document.getMetadata()), id, payload);
+        index.put(id, entry);
+        document.setFilename(location(entry));
+    }
+
+    /**
+     * Append a removal record for a document.
+     *
+     * @param id The document id.
+     * @param document The document being removed.
+     */
+    @Override
+    public synchronized void delete(String id, Document document) {
+        remove(id);
+    }
+
+    /**
+     * Remove a document rejected during load if the location is still its
+     * current version.
+     *
+     * @param id The document id.
+     * @param location The location of the rejected version.
+     */
+    @Override
+    public synchronized void discard(String id, String location) {
+        Entry entry = index.get(id);
+        if (entry != null && location(entry).equals(location)) {
+            remove(id);
+        }
+    }
+
+    private void remove(String id) {
+        if (index.remove(id) == null) {
+            return;
+        }
+
+        try {
+            append(RECORD_REMOVED, 0, id, new byte[0]);
+        } catch (IOException ex) {
+            log.error("[SegmentDocumentStore] failed to write removal of document id={}", id, ex);
+        }
+    }
+
+    /**
+     * Force the active segment to stable storage.
+     */
+    @Override
+    public synchronized void flush() {
+        if (activeChannel != null) {
+            try {
+                activeChannel.force(false);
+            } catch (IOException ex) {
+                log.error("[SegmentDocumentStore] failed to sync {}", active.path, ex);
+            }
+        }
+    }
+
+    /**
+     * Stop background compaction and close the active segment.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                log.debug("[SegmentDocumentStore] interrupted waiting for compaction");
+            }
+            executor = null;
+        }
+
+        synchronized (this) {
+            flush();
+            if (activeChannel != null) {
+                try {
+                    activeChannel.close();
+                } catch (IOException ex) {
+                    log.error("[SegmentDocumentStore] failed to close {}", active.path, ex);
+                }
+                activeChannel = null;
+            }
+            log.info("[SegmentDocumentStore] closed {}", this);
+        }
+    }
+
+    /**
+     * Compact the sealed segments if enough of their contents is garbage.
+     * Live records are copied without holding the store lock so writes to
+     * the active segment continue, and the index is only switched to the
+     * copies of records that were not replaced in the meantime.
+     */
+    public void compact() {
+        synchronized (compactLock) {
+            List<Segment> sealed;
+            Map<String, Entry> candidates = new HashMap<>();
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (activeChannel == null) {
+                    return;
+                }
+
+                sealed = new ArrayList<>(segments.headMap(active.number).values());
+                long total = sealed.stream().mapToLong(s -> s.size - SEGMENT_HEADER).sum();
+                if (total <= 0) {
+                    return;
+                }
+
+                long live = 0;
+                for (Map.Entry<String, Entry> e : index.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (entry.segment < active.number && !entry.isExpired(now)) {
+                        candidates.put(e.getKey(), entry);
+                        live += entry.length;
+                    }
+                }
+
+                if (1.0 - (double) live / total < compactionRatio) {
+                    return;
+                }
+            }
+
+            try {
+                compact(sealed, candidates);
+            } catch (IOException ex) {
+                log.error("[SegmentDocumentStore] compaction failed", ex);
+            }
+        }
+    }
+
+    private void compact(List<Segment> sealed, Map<String, Entry> candidates) throws IOException {
+        long start = System.currentTimeMillis();
+        int number = sealed.get(sealed.size() - 1).number;
+        Path tmp = directory.resolve(name(number) + COMPACT_SUFFIX);
+        Map<String, Entry> moved = new HashMap<>();
+        long[] position = { SEGMENT_HEADER };
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(out, header(SEGMENT_COMPACTED), 0);
+            for (Segment segment : sealed) {
+                scan(segment.number, segment.path, (offset, crc, body, flags, expires, id, payload) -> {
+                    Entry entry = candidates.get(id);
+                    if (entry == null || entry.segment != segment.number || entry.offset != offset) {
+                        return;
+                    }
+
+                    ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + body.length);
+                    buffer.putInt(body.length).putInt(crc).put(body).flip();
+                    writeFully(out, buffer, position[0]);
+                    moved.put(id, new Entry(number, position[0], buffer.limit(), expires));
+                    position[0] += buffer.limit();
+                });
+            }
+
+            if (syncPolicy != SyncPolicy.NONE) {
+                out.force(true);
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+
+        synchronized (this) {
+            if (activeChannel == null) {
+                Files.deleteIfExists(tmp);
+                return;
+            }
+
+            // The compacted segment must replace the newest sealed segment
+            // before the others are deleted.
+            Path target = segmentPath(number);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            FileDocumentStore.syncDirectory(directory);
+
+            Set<Integer> numbers = new HashSet<>();
+            for (Segment segment : sealed) {
+                numbers.add(segment.number);
+                segments.remove(segment.number);
+                if (segment.number != number) {
+                    Files.deleteIfExists(segment.path);
+                }
+            }
+            segments.put(number, new Segment(number, target, position[0]));
+
+            // Expired documents were not copied, and documents replaced
+            // during the copy already point at the active segment.
+            index.entrySet().removeIf(e -> numbers.contains(e.getValue().segment) && !moved.containsKey(e.getKey()));
+            moved.forEach((id, entry) -> index.replace(id, candidates.get(id), entry));
+            compactions.incrementAndGet();
+        }
+
+        log.info("[SegmentDocumentStore] compacted {} segments into {} in {} ms, {}", sealed.size(), name(number),
+                System.currentTimeMillis() - start, this);
+    }
+
+    private Entry append(byte flags, long expires, String id, byte[] payload) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > 0xffff) {
+            throw new IOException("Document id too long: " + idBytes.length);
+        }
+
+        int bodyLength = BODY_HEADER + idBytes.length + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+        buffer.putInt(bodyLength).putInt(0).put(flags).putLong(expires).putShort((short) idBytes.length)
+                .put(idBytes).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+
+        if (active.size > SEGMENT_HEADER && active.size + buffer.limit() > segmentSize) {
+            roll();
+        }
+
+        long offset = active.size;
+        writeFully(activeChannel, buffer, offset);
+        active.size += buffer.limit();
+        if (syncPolicy != SyncPolicy.NONE) {
+            activeChannel.force(false);
+        }
+
+        appended.incrementAndGet();
+        return new Entry(active.number, offset, buffer.limit(), expires);
+    }
+
+    private void roll() throws IOException {
+        // Drop anything past the last complete record from a failed write.
+        activeChannel.truncate(active.size);
+        if (syncPolicy != SyncPolicy.NONE) {
+            activeChannel.force(true);
+        }
+        activeChannel.close();
+        newSegment(active.number + 1, syncPolicy == SyncPolicy.DIRECTORY);
+    }
+
+    private void newSegment(int number, boolean sync) throws IOException {
+        Path path = segmentPath(number);
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeFully(activeChannel, header((byte) 0), 0);
+        active = new Segment(number, path, SEGMENT_HEADER);
+        segments.put(number, active);
+        if (sync) {
+            FileDocumentStore.syncDirectory(directory);
+        }
+    }
+
+    /**
+     * Read the valid records of a segment in order.
+     *
+     * @return The offset following the last valid record.
+     */
+    private static long scan(int number, Path path, RecordVisitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            in.skipNBytes(SEGMENT_HEADER);
+            long offset = SEGMENT_HEADER;
+            CRC32 crc = new CRC32();
+            while (true) {
+                try {
+                    int bodyLength = in.readInt();
+                    int checksum = in.readInt();
+                    if (bodyLength < BODY_HEADER || bodyLength > MAX_BODY) {
+                        return offset;
+                    }
+
+                    byte[] body = new byte[bodyLength];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum) {
+                        return offset;
+                    }
+
+                    ByteBuffer header = ByteBuffer.wrap(body);
+                    byte flags = header.get();
+                    long expires = header.getLong();
+                    int idLength = header.getShort() & 0xffff;
+                    if (idLength > bodyLength - BODY_HEADER) {
+                        return offset;
+                    }
+
+                    String id = new String(body, BODY_HEADER, idLength, StandardCharsets.UTF_8);
+                    visitor.visit(offset, checksum, body, flags, expires, id, BODY_HEADER + idLength);
+                    offset += RECORD_HEADER + bodyLength;
+                } catch (EOFException ex) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    private static InputStream payload(byte[] body, int offset, byte flags) throws IOException {
+        InputStream is = new ByteArrayInputStream(body, offset, body.length - offset);
+        return (flags & RECORD_GZIP) != 0 ? new GZIPInputStream(is) : is;
+    }
+
+    private static int readHeader(Path path) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            if (in.readInt() != MAGIC) {
+                return -1;
+            }
+            return in.readByte();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private static ByteBuffer header(byte flags) {
+        ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_HEADER);
+        buffer.putInt(MAGIC).put(flags).flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static long expires(DocumentType document) {
+        return XmlUtilities.xmlGregorianCalendarToLong(document.getExpires(), 0);
+    }
+
+    private static String name(int number) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static int number(String name) {
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            return -1;
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(name(number));
+    }
+
+    private static String location(Entry entry) {
+        return name(entry.segment) + "#" + entry.offset;
+    }
+
+    /**
+     * @return the number of documents in the store.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of segment files.
+     */
+    public synchronized int getSegments() {
+        return segments.size();
+    }
+
+    /**
+     * @return the total bytes in all segment files.
+     */
+    public synchronized long getTotalBytes() {
+        return segments.values().stream().mapToLong(s -> s.size).sum();
+    }
+
+    /**
+     * @return the bytes holding the current version of each document.
+     */
+    public long getLiveBytes() {
+        return index.values().stream().mapToLong(e -> e.length).sum();
+    }
+
+    /**
+     * @return the number of records appended since opened.
+     */
+    public long getAppended() {
+        return appended.get();
+    }
+
+    /**
+     * @return the number of compactions performed since opened.
+     */
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    /**
+     * @return the size in bytes at which a new segment is started.
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @param segmentSize the size in bytes at which a new segment is started.
+     */
+    public void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize > SEGMENT_HEADER ? segmentSize : DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * @return true if document records are gzip compressed.
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * @param compress true to gzip compress document records.
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * @return the milliseconds between compaction checks, zero if disabled.
+     */
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    /**
+     * @param compactionInterval the milliseconds between compaction checks,
+     *      zero to disable background compaction.  Takes effect when opened.
+     */
+    public void setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = Math.max(0, compactionInterval);
+    }
+
+    /**
+     * @return the fraction of garbage in sealed segments triggering compaction.
+     */
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * @param compactionRatio the fraction of garbage in sealed segments
+     *      triggering compaction.
+     */
+    public void setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = compactionRatio >= 0 && compactionRatio <= 1 ? compactionRatio : DEFAULT_COMPACTION_RATIO;
+    }
+
+    /**
+     * @return the sync policy.
+     */
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    /**
+     * @param syncPolicy the policy for forcing records to stable storage.
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy == null ? SyncPolicy.NONE : syncPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("directory=%s, documents=%d, segments=%d, totalBytes=%d, liveBytes=%d, appended=%d, compactions=%d",
+                directory, size(), getSegments(), getTotalBytes(), getLiveBytes(), getAppended(), getCompactions());
+    }
+}
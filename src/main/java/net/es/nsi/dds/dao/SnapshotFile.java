@@ -0,0 +1,242 @@
+package net.es.nsi.dds.dao;
+
+import jakarta.xml.bind.JAXBException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.util.XmlUtilities;
+
+/**
+ * Reads and writes a binary snapshot of the complete contents of a
+ * DocumentCache so it can serve documents immediately after a restart.
+ *
+ * The snapshot holds the meta data of each document (id, nsa, type, href,
+ * version, expires, and lastDiscovered) followed by its serialized XML.  On
+ * read the file is memory-mapped and each document is restored from its
+ * meta data, with the full document only unmarshalled from the mapped bytes
+ * when it is first needed.
+ *
+ * The file layout is a header (magic, format, created, count), the document
+ * records, and a CRC32 of everything before it.  Each string is a length
+ * prefixed UTF-8 encoding.  A snapshot is written to a temporary file and
+ * renamed over the previous snapshot so readers never see a partial file.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SnapshotFile {
+    private static final int MAGIC = 0x44445353;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int TRAILER_SIZE = 8;
+    private static final ObjectFactory factory = new ObjectFactory();
+
+    private final Path path;
+
+    /**
+     * @param path The snapshot file.
+     */
+    public SnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the snapshot file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if a snapshot has been written.
+     */
+    public boolean exists() {
+        return Files.isRegularFile(path);
+    }
+
+    /**
+     * Write a snapshot of the supplied documents, replacing any previous
+     * snapshot once the new one is safely on disk.
+     *
+     * @param documents The documents to write.
+     * @return The number of bytes written.
+     * @throws JAXBException If a document could not be serialized.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public long write(Collection<Document> documents) throws JAXBException, IOException {
+        Path parent = Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(parent, ".", ".snapshot");
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                CRC32 crc = new CRC32();
+                OutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(documents.size());
+
+                // The collection must not change while written so the
+                // header count matches the records.
+                for (Document document : documents) {
+                    DocumentType meta = document.getMetadata();
+                    writeString(out, document.getId());
+                    writeString(out, meta.getNsa());
+                    writeString(out, meta.getType());
+                    writeString(out, meta.getId());
+                    writeString(out, meta.getHref());
+                    writeString(out, meta.getVersion() == null ? null : meta.getVersion().toXMLFormat());
+                    writeString(out, meta.getExpires() == null ? null : meta.getExpires().toXMLFormat());
+                    out.writeLong(document.getLastDiscovered().getTime());
+                    byte[] content = document.getEncoded(false);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+                out.flush();
+
+                DataOutputStream trailer = new DataOutputStream(buffered);
+                trailer.writeLong(crc.getValue());
+                trailer.flush();
+                size = channel.size();
+                channel.force(true);
+            }
+
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            FileDocumentStore.syncDirectory(parent);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Map the snapshot and restore its documents.  The restored documents
+     * reference the mapped file, which remains valid after the snapshot is
+     * replaced.
+     *
+     * @return The restored documents.
+     * @throws IOException If the snapshot could not be read or is corrupt.
+     */
+    public List<Document> read() throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size " + size + " in " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int end = buffer.limit() - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, end));
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IOException("Snapshot checksum mismatch in " + path);
+        }
+
+        DatatypeFactory datatypeFactory;
+        try {
+            datatypeFactory = XmlUtilities.getDatatypeFactory();
+        } catch (DatatypeConfigurationException ex) {
+            throw new IOException("Cannot create DatatypeFactory", ex);
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("Unsupported snapshot format in " + path);
+            }
+            long created = buffer.getLong();
+            int count = buffer.getInt();
+
+            List<Document> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString(buffer);
+                DocumentType meta = factory.createDocumentType();
+                meta.setNsa(readString(buffer));
+                meta.setType(readString(buffer));
+                meta.setId(readString(buffer));
+                meta.setHref(readString(buffer));
+                meta.setVersion(readCalendar(datatypeFactory, buffer));
+                meta.setExpires(readCalendar(datatypeFactory, buffer));
+                Date lastDiscovered = new Date(buffer.getLong());
+                int length = buffer.getInt();
+                ByteBuffer content = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                documents.add(new Document(id, meta, lastDiscovered, content));
+            }
+
+            if (buffer.position() != end) {
+                throw new IOException("Snapshot record count mismatch in " + path);
+            }
+
+            log.info("[SnapshotFile] mapped {} documents written {} from {}", count, new Date(created), path);
+            return documents;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IOException("Malformed snapshot " + path, ex);
+        }
+    }
+
+    /**
+     * Remove the snapshot.
+     *
+     * @throws IOException If the snapshot could not be deleted.
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static XMLGregorianCalendar readCalendar(DatatypeFactory datatypeFactory, ByteBuffer buffer) {
+        String value = readString(buffer);
+        return value == null ? null : datatypeFactory.newXMLGregorianCalendar(value);
+    }
+}
@@ -3,6 +3,7 @@ package net.es.nsi.dds.gangofthree;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.WebTarget;
@@ -11,9 +12,13 @@ import jakarta.ws.rs.core.Response;
 import jakarta.xml.bind.JAXBException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.XMLGregorianCalendar;
+import net.es.nsi.dds.client.HostLimitedExecutor;
 import net.es.nsi.dds.client.RestClient;
 import net.es.nsi.dds.jaxb.NmlParser;
 import net.es.nsi.dds.jaxb.NsaParser;
@@ -41,8 +46,23 @@ public class Gof3DiscoveryActor extends UntypedAbstractActor {
 
   private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
 
+  // Runs the topology fetches for an NSA concurrently, or null to fetch
+  // them one at a time.
+  private final HostLimitedExecutor executor;
+
   private Client client;
 
+  public Gof3DiscoveryActor() {
+    this(null);
+  }
+
+  /**
+   * @param executor Runs the topology fetches for an NSA concurrently.
+   */
+  public Gof3DiscoveryActor(HostLimitedExecutor executor) {
+    this.executor = executor;
+  }
+
   /**
    *
    */
@@ -69,6 +89,11 @@ public class Gof3DiscoveryActor extends UntypedAbstractActor {
         return;
       }
 
+      if (executor != null) {
+        discoverTopology(message);
+        return;
+      }
+
       // Read the associated Topology document.
       for (Map.Entry<String, Long> entry : message.getTopology().entrySet()) {
         Long result = discoverTopology(message.getNsaId(), entry.getKey(), entry.getValue());
@@ -211,6 +236,40 @@ public class Gof3DiscoveryActor extends UntypedAbstractActor {
     return true;
   }
 
+  /**
+   * Read the topology documents of an NSA concurrently, limited per host by
+   * the executor.  The updated discovery message is sent back to the router
+   * once the last read completes, leaving this actor free to discover the
+   * next NSA in the meantime.
+   *
+   * @param message Discovery instructions for the target NSA.
+   */
+  private void discoverTopology(Gof3DiscoveryMsg message) {
+    String nsaId = message.getNsaId();
+    Map<String, CompletableFuture<Long>> results = new LinkedHashMap<>();
+    message.getTopology().forEach((url, lastModifiedTime) -> {
+      results.put(url, executor.submit(url, () -> discoverTopology(nsaId, url, lastModifiedTime)));
+    });
+
+    CompletableFuture<Gof3DiscoveryMsg> merged = CompletableFuture
+            .allOf(results.values().toArray(new CompletableFuture<?>[0]))
+            .handle((v, ex) -> {
+              results.forEach((url, result) -> {
+                try {
+                  Long time = result.join();
+                  if (time != null) {
+                    message.setTopologyLastModified(url, time);
+                  }
+                } catch (CompletionException ce) {
+                  log.error(ce.getCause(), "discoverTopology: failed to retrieve Topology document from endpoint {}", url);
+                }
+              });
+              return message;
+            });
+
+    Patterns.pipe(merged, getContext().dispatcher()).to(getSender(), getSelf());
+  }
+
   /**
    *
    */
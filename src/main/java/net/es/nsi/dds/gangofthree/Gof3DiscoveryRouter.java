@@ -4,24 +4,20 @@
  */
 package net.es.nsi.dds.gangofthree;
 
-import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.actor.Terminated;
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.routing.ActorRefRoutee;
-import akka.routing.RoundRobinRoutingLogic;
-import akka.routing.Routee;
-import akka.routing.Router;
+import akka.routing.SmallestMailboxRoutingLogic;
 import com.google.common.collect.Sets;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import net.es.nsi.dds.actors.ActorPool;
 import net.es.nsi.dds.actors.DdsActorSystem;
+import net.es.nsi.dds.client.HostLimitedExecutor;
 import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.jaxb.configuration.PeerURLType;
 import net.es.nsi.dds.messages.Message;
@@ -43,9 +39,14 @@ public class Gof3DiscoveryRouter extends UntypedAbstractActor {
     private final DdsActorSystem ddsActorSystem;
     private final DdsConfiguration discoveryConfiguration;
     private int poolSize;
+    private int maxPoolSize = 0;
+    private String dispatcher = ActorPool.DEFAULT_DISPATCHER;
+    private int topologyThreads = HostLimitedExecutor.DEFAULT_THREADS;
+    private int maxPerHost = HostLimitedExecutor.DEFAULT_MAX_PER_HOST;
+    private HostLimitedExecutor executor;
     private long interval;
     private long refresh;
-    private Router router;
+    private ActorPool router;
     private final Map<String, Gof3DiscoveryMsg> discovery = new ConcurrentHashMap<>();
 
     public Gof3DiscoveryRouter(DdsActorSystem ddsActorSystem, DdsConfiguration discoveryConfiguration) {
@@ -55,13 +56,18 @@ public class Gof3DiscoveryRouter extends UntypedAbstractActor {
 
     @Override
     public void preStart() {
-        List<Routee> routees = new ArrayList<>();
-        for (int i = 0; i < getPoolSize(); i++) {
-            ActorRef r = getContext().actorOf(Props.create(Gof3DiscoveryActor.class));
-            getContext().watch(r);
-            routees.add(new ActorRefRoutee(r));
+        // Topology documents for an NSA are read concurrently on a pool
+        // shared by all discovery actors.
+        executor = new HostLimitedExecutor("gof3-topology", getTopologyThreads(), getMaxPerHost());
+        router = new ActorPool(getContext(), Props.create(Gof3DiscoveryActor.class, executor), getDispatcher(),
+                new SmallestMailboxRoutingLogic(), getPoolSize(), getMaxPoolSize());
+    }
+
+    @Override
+    public void postStop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
         }
-        router = new Router(new RoundRobinRoutingLogic(), routees);
     }
 
     @Override
@@ -95,10 +101,7 @@ public class Gof3DiscoveryRouter extends UntypedAbstractActor {
         else if (msg instanceof Terminated) {
             Terminated terminated = ((Terminated) msg);
             log.error("[Gof3DiscoveryRouter] terminate event for {}", terminated.actor().path());
-            router = router.removeRoutee(terminated.actor());
-            ActorRef r = getContext().actorOf(Props.create(Gof3DiscoveryActor.class));
-            getContext().watch(r);
-            router = router.addRoutee(new ActorRefRoutee(r));
+            router.terminated(terminated.actor());
         }
         else {
             log.error("[Gof3DiscoveryRouter] unhandled event {}", Message.getDebug(msg));
@@ -161,6 +164,63 @@ public class Gof3DiscoveryRouter extends UntypedAbstractActor {
         this.poolSize = poolSize;
     }
 
+    /**
+     * @return the maxPoolSize
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the maximum size the pool may grow to when all
+     *      actors are busy, the pool is not resized if not above poolSize.
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * @return the dispatcher the pool actors run on
+     */
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param dispatcher the dispatcher the pool actors run on
+     */
+    public void setDispatcher(String dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return the number of threads reading topology documents
+     */
+    public int getTopologyThreads() {
+        return topologyThreads;
+    }
+
+    /**
+     * @param topologyThreads the number of threads reading topology documents
+     */
+    public void setTopologyThreads(int topologyThreads) {
+        this.topologyThreads = topologyThreads;
+    }
+
+    /**
+     * @return the maximum topology documents read at once from one host
+     */
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * @param maxPerHost the maximum topology documents read at once from one host
+     */
+    public void setMaxPerHost(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+    }
+
     /**
      * @return the interval
      */
@@ -13,6 +13,7 @@ import net.es.nsi.dds.jaxb.nml.NmlSwitchingServiceType;
 import net.es.nsi.dds.jaxb.nml.NmlTopologyRelationType;
 import net.es.nsi.dds.jaxb.nml.NmlTopologyType;
 import net.es.nsi.dds.jaxb.nml.ServiceDefinitionType;
+import net.es.nsi.dds.util.XmlUtilities;
 
 /**
  *
@@ -53,7 +54,7 @@ public class ServiceDefinitionConverter {
 
             Duration fiveSeconds;
             try {
-                fiveSeconds = DatatypeFactory.newInstance().newDuration(5000);
+                fiveSeconds = XmlUtilities.getDatatypeFactory().newDuration(5000);
             } catch (DatatypeConfigurationException ex) {
                 log.error("Failed converting id=" + nml.getId() + ", version=" + version);
                 log.error("Could not create DatatypeFactory for a Duration of 5 seconds", ex);
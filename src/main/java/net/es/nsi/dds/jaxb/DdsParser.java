@@ -1,9 +1,20 @@
 package net.es.nsi.dds.jaxb;
 
+import com.google.common.xml.XmlEscapers;
 import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import net.es.nsi.dds.jaxb.dds.CollectionType;
 import net.es.nsi.dds.jaxb.dds.DocumentListType;
 import net.es.nsi.dds.jaxb.dds.DocumentType;
@@ -24,6 +35,39 @@ public class DdsParser extends JaxbParser {
     private static final String PACKAGES = "net.es.nsi.dds.jaxb.dds";
     private static final ObjectFactory factory = new ObjectFactory();
 
+    // XML declaration used when assembling documents from fragments.
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    // The enclosing documents element used when assembling document fragments.
+    private static final QName DOCUMENTS = factory.createDocuments(null).getName();
+    private static final byte[] DOCUMENTS_START = (XML_DECLARATION
+            + "<dds:" + DOCUMENTS.getLocalPart() + " xmlns:dds=\"" + DOCUMENTS.getNamespaceURI() + "\">")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DOCUMENTS_END = ("</dds:" + DOCUMENTS.getLocalPart() + ">").getBytes(StandardCharsets.UTF_8);
+
+    // The collection element and its lists used when assembling a
+    // collection from fragments.
+    private static final QName COLLECTION = factory.createCollection(null).getName();
+    private static final QName SUBSCRIPTIONS = factory.createSubscriptions(null).getName();
+    private static final QName LOCAL = factory.createLocal(null).getName();
+    private static final byte[] COLLECTION_START = (XML_DECLARATION
+            + "<dds:" + COLLECTION.getLocalPart() + " xmlns:dds=\"" + COLLECTION.getNamespaceURI() + "\">")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COLLECTION_END = ("</dds:" + COLLECTION.getLocalPart() + ">").getBytes(StandardCharsets.UTF_8);
+
+    // The notifications and notification elements used when assembling and
+    // streaming notification lists.
+    private static final QName NOTIFICATIONS = factory.createNotifications(null).getName();
+    private static final QName NOTIFICATION = factory.createNotification(null).getName();
+    private static final byte[] NOTIFICATIONS_END = ("</dds:" + NOTIFICATIONS.getLocalPart() + ">").getBytes(StandardCharsets.UTF_8);
+
+    // StAX factory for streamed parsing with external entities disabled.
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     private DdsParser() {
         super(PACKAGES);
     }
@@ -77,6 +121,35 @@ public class DdsParser extends JaxbParser {
         return this.jaxb2Xml(jaxb);
     }
 
+    /**
+     * Serialize a document to a compact UTF-8 encoded XML fragment that can
+     * later be assembled into a document list using documents2Xml.
+     *
+     * @param document The document to serialize.
+     * @return The UTF-8 encoded document element.
+     * @throws JAXBException The document could not be marshaled.
+     */
+    public byte[] document2Fragment(DocumentType document) throws JAXBException {
+        return this.jaxb2Fragment(factory.createDocument(document));
+    }
+
+    /**
+     * Write a documents element to the output stream containing the supplied
+     * pre-serialized document fragments.  Each fragment declares its own
+     * namespaces so the enclosing element declares only its own prefix.
+     *
+     * @param fragments The document fragments created by document2Fragment.
+     * @param os The stream to write the XML document to.
+     * @throws IOException The document could not be written.
+     */
+    public void documents2Xml(Collection<byte[]> fragments, OutputStream os) throws IOException {
+        os.write(DOCUMENTS_START);
+        for (byte[] fragment : fragments) {
+            os.write(fragment);
+        }
+        os.write(DOCUMENTS_END);
+    }
+
     public DocumentListType xml2Documents(String input) throws JAXBException, IllegalArgumentException {
         return this.xml2Jaxb(DocumentListType.class, input);
     }
@@ -86,6 +159,33 @@ public class DdsParser extends JaxbParser {
         return this.jaxb2Xml(jaxb);
     }
 
+    /**
+     * Write a collection element to the output stream containing lists of
+     * pre-serialized subscription and document fragments.
+     *
+     * @param subscriptions The subscription fragments created by subscription2Fragment.
+     * @param documents The document fragments created by document2Fragment.
+     * @param local The fragments of documents published by the local provider.
+     * @param os The stream to write the XML document to.
+     * @throws IOException The document could not be written.
+     */
+    public void collection2Xml(Collection<byte[]> subscriptions, Collection<byte[]> documents,
+            Collection<byte[]> local, OutputStream os) throws IOException {
+        os.write(COLLECTION_START);
+        list2Xml(SUBSCRIPTIONS, subscriptions, os);
+        list2Xml(DOCUMENTS, documents, os);
+        list2Xml(LOCAL, local, os);
+        os.write(COLLECTION_END);
+    }
+
+    private static void list2Xml(QName list, Collection<byte[]> fragments, OutputStream os) throws IOException {
+        os.write(("<dds:" + list.getLocalPart() + ">").getBytes(StandardCharsets.UTF_8));
+        for (byte[] fragment : fragments) {
+            os.write(fragment);
+        }
+        os.write(("</dds:" + list.getLocalPart() + ">").getBytes(StandardCharsets.UTF_8));
+    }
+
     public CollectionType xml2Collection(String input) throws JAXBException, IllegalArgumentException {
         return this.xml2Jaxb(CollectionType.class, input);
     }
@@ -104,6 +204,18 @@ public class DdsParser extends JaxbParser {
         return this.jaxb2Xml(jaxb);
     }
 
+    /**
+     * Serialize a subscription to a compact UTF-8 encoded XML fragment that
+     * can later be assembled into a collection using collection2Xml.
+     *
+     * @param subscription The subscription to serialize.
+     * @return The UTF-8 encoded subscription element.
+     * @throws JAXBException The subscription could not be marshaled.
+     */
+    public byte[] subscription2Fragment(SubscriptionType subscription) throws JAXBException {
+        return this.jaxb2Fragment(factory.createSubscription(subscription));
+    }
+
     public SubscriptionType xml2Subscription(String input) throws JAXBException, IllegalArgumentException {
         return this.xml2Jaxb(SubscriptionType.class, input);
     }
@@ -113,10 +225,177 @@ public class DdsParser extends JaxbParser {
         return this.jaxb2Xml(jaxb);
     }
 
+    /**
+     * Marshal a notification list directly to an output stream without
+     * building an intermediate string representation.
+     *
+     * @param list The notification list to marshal.
+     * @param os The stream to write the XML document to.
+     * @throws JAXBException The notification list could not be marshaled.
+     */
+    public void notifications2Xml(NotificationListType list, OutputStream os) throws JAXBException {
+        JAXBElement<NotificationListType> jaxb = factory.createNotifications(list);
+        this.jaxb2Xml(jaxb, os);
+    }
+
+    /**
+     * Serialize a notification to a compact UTF-8 encoded XML fragment that
+     * can later be assembled into a notification list using notifications2Xml.
+     *
+     * @param notification The notification to serialize.
+     * @return The UTF-8 encoded notification element.
+     * @throws JAXBException The notification could not be marshaled.
+     */
+    public byte[] notification2Fragment(NotificationType notification) throws JAXBException {
+        return this.jaxb2Fragment(factory.createNotification(notification));
+    }
+
+    /**
+     * Write a notifications element to the output stream using the envelope
+     * attributes of the supplied list and the pre-serialized notification
+     * fragments as contents.  Any notifications already in the list are
+     * ignored.
+     *
+     * @param envelope The list providing the id, href and providerId attributes.
+     * @param fragments The notification fragments created by notification2Fragment.
+     * @param os The stream to write the XML document to.
+     * @throws IOException The document could not be written.
+     */
+    public void notifications2Xml(NotificationListType envelope, Collection<byte[]> fragments, OutputStream os) throws IOException {
+        os.write(getNotificationsStart(envelope));
+
+        for (byte[] fragment : fragments) {
+            os.write(fragment);
+        }
+
+        os.write(NOTIFICATIONS_END);
+    }
+
+    /**
+     * Assemble a notifications document as a list of UTF-8 encoded chunks
+     * using the envelope attributes of the supplied list and the
+     * pre-serialized notification fragments as contents.  The fragments are
+     * not copied, so the document can be sent without building it in a
+     * single buffer.  Any notifications already in the list are ignored.
+     *
+     * @param envelope The list providing the id, href and providerId attributes.
+     * @param fragments The notification fragments created by notification2Fragment.
+     * @return The chunks making up the XML document in order.
+     */
+    public List<byte[]> notifications2Chunks(NotificationListType envelope, Collection<byte[]> fragments) {
+        List<byte[]> chunks = new ArrayList<>(fragments.size() + 2);
+        chunks.add(getNotificationsStart(envelope));
+        chunks.addAll(fragments);
+        chunks.add(NOTIFICATIONS_END);
+        return chunks;
+    }
+
+    private static byte[] getNotificationsStart(NotificationListType envelope) {
+        StringBuilder sb = new StringBuilder(XML_DECLARATION);
+        sb.append("<dds:").append(NOTIFICATIONS.getLocalPart())
+                .append(" xmlns:dds=\"").append(NOTIFICATIONS.getNamespaceURI()).append('"');
+        appendAttribute(sb, "providerId", envelope.getProviderId());
+        appendAttribute(sb, "id", envelope.getId());
+        appendAttribute(sb, "href", envelope.getHref());
+        sb.append('>');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendAttribute(StringBuilder sb, String name, String value) {
+        if (value != null) {
+            sb.append(' ').append(name).append("=\"")
+                    .append(XmlEscapers.xmlAttributeEscaper().escape(value)).append('"');
+        }
+    }
+
     public NotificationListType xml2Notifications(String input) throws JAXBException, IllegalArgumentException {
         return this.xml2Jaxb(NotificationListType.class, input);
     }
 
+    /**
+     * Receives the contents of a notifications document as it is parsed.
+     */
+    public interface NotificationHandler {
+        /**
+         * Called once the notifications element has been read and before any
+         * notification is delivered.  Throwing an exception stops parsing.
+         *
+         * @param envelope The id, href and providerId of the notification
+         *      list, which contains no notifications.
+         */
+        void start(NotificationListType envelope);
+
+        /**
+         * Called for each notification in document order.  Throwing an
+         * exception stops parsing.
+         *
+         * @param notification The notification.
+         */
+        void notification(NotificationType notification);
+    }
+
+    /**
+     * Parse a notifications document from a stream, unmarshalling and
+     * delivering one notification element at a time so only a single
+     * notification is held in memory, and notifications are handled while
+     * the remainder of the document is still being received.
+     *
+     * @param is The stream containing the notifications document.
+     * @param handler The handler receiving the envelope and notifications.
+     * @return The number of notifications delivered to the handler.
+     * @throws JAXBException The document is not a valid notifications document.
+     * @throws XMLStreamException The document is not well formed XML.
+     */
+    public int xml2Notifications(InputStream is, NotificationHandler handler) throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+        try {
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !NOTIFICATIONS.equals(reader.getName())) {
+                throw new JAXBException("Expected " + NOTIFICATIONS + " but found " + reader.getName());
+            }
+
+            NotificationListType envelope = factory.createNotificationListType();
+            envelope.setProviderId(reader.getAttributeValue(null, "providerId"));
+            envelope.setId(reader.getAttributeValue(null, "id"));
+            envelope.setHref(reader.getAttributeValue(null, "href"));
+            handler.start(envelope);
+
+            int count = 0;
+            reader.nextTag();
+            while (reader.isStartElement()) {
+                if (NOTIFICATION.equals(reader.getName())) {
+                    JAXBElement<NotificationType> element = getUnmarshallers().execute(
+                            u -> u.unmarshal(reader, NotificationType.class));
+                    handler.notification(element.getValue());
+                    count++;
+                } else {
+                    skipElement(reader);
+                }
+
+                // The unmarshaller leaves the reader on the event following
+                // the element, which may already be the next start tag.
+                while (reader.hasNext() && !reader.isStartElement() && !reader.isEndElement()) {
+                    reader.next();
+                }
+            }
+
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        do {
+            if (reader.isStartElement()) {
+                depth++;
+            } else if (reader.isEndElement()) {
+                depth--;
+            }
+            reader.next();
+        } while (depth > 0);
+    }
+
     public String notification2Xml(NotificationType notification) throws JAXBException, IOException {
         JAXBElement<NotificationType> jaxb = factory.createNotification(notification);
         return this.jaxb2Xml(jaxb);
@@ -0,0 +1,151 @@
+package net.es.nsi.dds.jaxb;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A process wide registry of JAXB contexts.
+ *
+ * Creating a JAXBContext is very expensive (tens of milliseconds) while a
+ * created context is thread safe, so contexts are created once on first use
+ * and shared by the JAXB parsers and XmlUtilities.  Contexts are keyed by
+ * the colon separated list of packages they were created from, with the
+ * context for a single JAXB class being the context of its package so the
+ * class shares a context with the parser for that package.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class JaxbContextRegistry {
+    // The JAXB packages generated for the DDS schemas.
+    public static final String[] PACKAGES = {
+        "net.es.nsi.dds.jaxb.configuration",
+        "net.es.nsi.dds.jaxb.dds",
+        "net.es.nsi.dds.jaxb.management",
+        "net.es.nsi.dds.jaxb.nml",
+        "net.es.nsi.dds.jaxb.nsa"
+    };
+
+    // Contexts indexed by package list, or class name for classes outside
+    // of a JAXB generated package.
+    private static final Map<String, JAXBContext> contexts = new ConcurrentHashMap<>();
+
+    private JaxbContextRegistry() {
+    }
+
+    /**
+     * Get the JAXB context for a colon separated list of packages, creating
+     * it if needed.
+     *
+     * @param packages The packages to include in the context.
+     * @return The shared JAXB context.
+     * @throws JAXBException If the context could not be created.
+     */
+    public static JAXBContext getContext(String packages) throws JAXBException {
+        JAXBContext jc = contexts.get(packages);
+        if (jc != null) {
+            return jc;
+        }
+
+        try {
+            return contexts.computeIfAbsent(packages, p -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    JAXBContext context = JAXBContext.newInstance(p);
+                    log.debug("[JaxbContextRegistry] created context for {} in {} ms", p,
+                            System.currentTimeMillis() - start);
+                    return context;
+                } catch (JAXBException ex) {
+                    throw new ContextException(ex);
+                }
+            });
+        } catch (ContextException ex) {
+            throw ex.getJaxbException();
+        }
+    }
+
+    /**
+     * Get the JAXB context for a JAXB class.  Classes generated into a JAXB
+     * package share the context of the package, otherwise a context is
+     * created for the class alone.
+     *
+     * @param xmlClass The JAXB class.
+     * @return The shared JAXB context.
+     * @throws JAXBException If the context could not be created.
+     */
+    public static JAXBContext getContext(Class<?> xmlClass) throws JAXBException {
+        Package pkg = xmlClass.getPackage();
+        if (pkg != null && hasObjectFactory(xmlClass, pkg.getName())) {
+            return getContext(pkg.getName());
+        }
+
+        JAXBContext jc = contexts.get(xmlClass.getName());
+        if (jc != null) {
+            return jc;
+        }
+
+        try {
+            return contexts.computeIfAbsent(xmlClass.getName(), c -> {
+                try {
+                    return JAXBContext.newInstance(xmlClass);
+                } catch (JAXBException ex) {
+                    throw new ContextException(ex);
+                }
+            });
+        } catch (ContextException ex) {
+            throw ex.getJaxbException();
+        }
+    }
+
+    /**
+     * Create the contexts for all DDS JAXB packages so no request has to pay
+     * the cost of context creation.  Failures are logged and the context will
+     * be created again on first use.
+     */
+    public static void warm() {
+        long start = System.currentTimeMillis();
+        for (String packages : PACKAGES) {
+            try {
+                getContext(packages);
+            } catch (JAXBException ex) {
+                log.error("[JaxbContextRegistry] failed to create context for {}", packages, ex);
+            }
+        }
+        log.info("[JaxbContextRegistry] warmed {} contexts in {} ms", contexts.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the number of contexts in the registry.
+     */
+    public static int size() {
+        return contexts.size();
+    }
+
+    private static boolean hasObjectFactory(Class<?> xmlClass, String pkg) {
+        try {
+            Class.forName(pkg + ".ObjectFactory", false, xmlClass.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Carries a JAXBException out of a computeIfAbsent mapping function.
+     */
+    private static class ContextException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ContextException(JAXBException cause) {
+            super(cause);
+        }
+
+        JAXBException getJaxbException() {
+            return (JAXBException) getCause();
+        }
+    }
+}
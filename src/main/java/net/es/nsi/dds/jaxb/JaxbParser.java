@@ -7,14 +7,21 @@ import jakarta.xml.bind.Marshaller;
 import jakarta.xml.bind.Unmarshaller;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -30,8 +37,17 @@ import org.w3c.dom.Document;
  */
 @Slf4j
 public class JaxbParser {
+    // All parsers created so their pools can be reported.
+    private static final Queue<JaxbParser> parsers = new ConcurrentLinkedQueue<>();
+
     private JAXBContext jc = null;
 
+    // Pools of pre-configured marshallers and unmarshallers for this context.
+    private final JaxbPool<Marshaller> formattedMarshallers;
+    private final JaxbPool<Marshaller> compactMarshallers;
+    private final JaxbPool<Marshaller> fragmentMarshallers;
+    private final JaxbPool<Unmarshaller> unmarshallers;
+
     /**
      * Private constructor loads the JAXB context once and prevents
      * instantiation from other classes.
@@ -40,22 +56,77 @@ public class JaxbParser {
      */
     public JaxbParser(String packages) {
         try {
-            // Load a JAXB context.
-            jc = JAXBContext.newInstance(packages);
+            // Load the shared JAXB context.
+            jc = JaxbContextRegistry.getContext(packages);
         }
         catch (JAXBException jaxb) {
             log.error("JaxbParser: Failed to load JAXB instance for packages " + packages, jaxb);
         }
+
+        formattedMarshallers = new JaxbPool<>(packages + ":formatted", JaxbPool.DEFAULT_SIZE, () -> marshaller(true));
+        compactMarshallers = new JaxbPool<>(packages + ":compact", JaxbPool.DEFAULT_SIZE, () -> marshaller(false));
+        fragmentMarshallers = new JaxbPool<>(packages + ":fragment", JaxbPool.DEFAULT_SIZE, () -> {
+            Marshaller marshaller = marshaller(false);
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            return marshaller;
+        });
+        unmarshallers = new JaxbPool<>(packages + ":unmarshaller", JaxbPool.DEFAULT_SIZE, () -> jc.createUnmarshaller());
+        parsers.add(this);
+    }
+
+    /**
+     * @return all parsers created, for reporting their pools.
+     */
+    public static Collection<JaxbParser> getParsers() {
+        return Collections.unmodifiableCollection(parsers);
     }
 
-    private Marshaller marshaller() throws JAXBException {
+    private Marshaller marshaller(boolean formatted) throws JAXBException {
         Marshaller marshaller = jc.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formatted);
         return marshaller;
     }
 
-    private Unmarshaller unmarshaller() throws JAXBException {
-        return jc.createUnmarshaller();
+    /**
+     * @return the shared JAXB context used by this parser.
+     */
+    public JAXBContext getContext() {
+        return jc;
+    }
+
+    /**
+     * @return the pool of marshallers producing formatted output.
+     */
+    public JaxbPool<Marshaller> getFormattedMarshallers() {
+        return formattedMarshallers;
+    }
+
+    /**
+     * @return the pool of marshallers producing compact output.
+     */
+    public JaxbPool<Marshaller> getCompactMarshallers() {
+        return compactMarshallers;
+    }
+
+    /**
+     * @return the pool of marshallers producing compact XML fragments.
+     */
+    public JaxbPool<Marshaller> getFragmentMarshallers() {
+        return fragmentMarshallers;
+    }
+
+    /**
+     * @return the pool of unmarshallers.
+     */
+    public JaxbPool<Unmarshaller> getUnmarshallers() {
+        return unmarshallers;
+    }
+
+    /**
+     * @return all marshaller and unmarshaller pools of this parser.
+     */
+    public List<JaxbPool<?>> getPools() {
+        return List.of(formattedMarshallers, compactMarshallers, fragmentMarshallers, unmarshallers);
     }
 
     /**
@@ -104,7 +175,10 @@ public class JaxbParser {
 
         // Write the specified file.
         try (FileOutputStream fileOutputStream = new FileOutputStream(file); BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream)) {
-            marshaller().marshal(jaxbElement, bufferedOutputStream);
+            formattedMarshallers.execute(m -> {
+                m.marshal(jaxbElement, bufferedOutputStream);
+                return null;
+            });
         }
     }
 
@@ -122,7 +196,10 @@ public class JaxbParser {
         dbf.setNamespaceAware(true);
         DocumentBuilder db = dbf.newDocumentBuilder();
         Document doc = db.newDocument();
-        marshaller().marshal(jaxbElement, doc);
+        formattedMarshallers.execute(m -> {
+            m.marshal(jaxbElement, doc);
+            return null;
+        });
         return doc;
     }
 
@@ -134,7 +211,7 @@ public class JaxbParser {
      * @throws JAXBException JAXBException JAXB object could not be created.
      */
     public JAXBElement<?> dom2Jaxb(Document doc) throws JAXBException {
-        return (JAXBElement<?>) unmarshaller().unmarshal(doc);
+        return unmarshallers.execute(u -> (JAXBElement<?>) u.unmarshal(doc));
     }
 
     /**
@@ -149,7 +226,10 @@ public class JaxbParser {
         StringWriter writer = new StringWriter();
         String result;
         try {
-            marshaller().marshal(jaxbElement, writer);
+            formattedMarshallers.execute(m -> {
+                m.marshal(jaxbElement, writer);
+                return null;
+            });
             result = writer.toString();
         } catch (JAXBException ex) {
             // Something went wrong so get out of here.
@@ -164,14 +244,61 @@ public class JaxbParser {
         return result;
     }
 
+    /**
+     * Marshal the specified JAXB object directly to an output stream as
+     * compact UTF-8 encoded XML.  Elements are written to the stream as they
+     * are marshaled so the serialized document is never held in memory.  The
+     * stream is not closed.
+     *
+     * @param jaxbElement JAXB object to convert.
+     * @param os The stream to write the XML document to.
+     * @throws JAXBException JAXB object could not be marshaled.
+     */
+    public void jaxb2Xml(JAXBElement<?> jaxbElement, OutputStream os) throws JAXBException {
+        try {
+            compactMarshallers.execute(m -> {
+                m.marshal(jaxbElement, os);
+                return null;
+            });
+        } catch (JAXBException ex) {
+            log.error("Failed to serialize JAXB structure to stream.", ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Convert the specified JAXB object to a compact UTF-8 encoded XML
+     * fragment without an XML declaration, suitable for embedding within an
+     * enclosing document.
+     *
+     * @param jaxbElement JAXB object to convert.
+     * @return The UTF-8 encoded XML fragment.
+     * @throws JAXBException JAXB object could not be marshaled.
+     */
+    public byte[] jaxb2Fragment(JAXBElement<?> jaxbElement) throws JAXBException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            fragmentMarshallers.execute(m -> {
+                m.marshal(jaxbElement, os);
+                return null;
+            });
+        } catch (JAXBException ex) {
+            log.error("Failed to serialize JAXB structure to fragment.", ex);
+            throw ex;
+        }
+
+        return os.toByteArray();
+    }
+
     public String jaxb2XmlFormatter(JAXBElement<?> jaxbElement) throws JAXBException {
         // We will write the XML encoding into a string.
         StringWriter writer = new StringWriter();
         String result;
         try {
-            Marshaller marshaller = marshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            marshaller.marshal(jaxbElement, writer);
+            formattedMarshallers.execute(m -> {
+                m.marshal(jaxbElement, writer);
+                return null;
+            });
             result = writer.toString();
         } catch (JAXBException ex) {
             // Something went wrong so get out of here.
@@ -198,7 +325,7 @@ public class JaxbParser {
     public <T extends Object> T xml2Jaxb(Class<T> xmlClass, String xml) throws JAXBException, IllegalArgumentException {
         Optional<JAXBElement<T>> element;
         try (StringReader reader = new StringReader(xml)) {
-            element = Optional.ofNullable((JAXBElement<T>) unmarshaller().unmarshal(reader));
+            element = Optional.ofNullable(unmarshallers.execute(u -> (JAXBElement<T>) u.unmarshal(reader)));
         }
 
         if (!element.isPresent()) {
@@ -222,7 +349,7 @@ public class JaxbParser {
      * @throws IOException InputStream could not be read.
      */
     public <T extends Object> T xml2Jaxb(Class<T> xmlClass, InputStream is) throws JAXBException, IOException {
-        JAXBElement<T> element = (JAXBElement<T>) unmarshaller().unmarshal(is);
+        JAXBElement<T> element = unmarshallers.execute(u -> (JAXBElement<T>) u.unmarshal(is));
         if (element == null) {
             throw new IllegalArgumentException("Unable to convert stream to JAXB, class=" + xmlClass.getName());
         }
@@ -244,7 +371,7 @@ public class JaxbParser {
      * @throws IOException BufferedInputStream could not be read.
      */
     public <T extends Object> T xml2Jaxb(Class<T> xmlClass, BufferedInputStream is) throws JAXBException, IOException {
-        JAXBElement<T> element = (JAXBElement<T>) unmarshaller().unmarshal(is);
+        JAXBElement<T> element = unmarshallers.execute(u -> (JAXBElement<T>) u.unmarshal(is));
         if (element.getDeclaredType() == xmlClass) {
             return xmlClass.cast(element.getValue());
         }
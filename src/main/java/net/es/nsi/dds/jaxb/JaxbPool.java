@@ -0,0 +1,144 @@
+package net.es.nsi.dds.jaxb;
+
+import jakarta.xml.bind.JAXBException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of pre-configured JAXB marshallers or unmarshallers.
+ *
+ * JAXB marshallers and unmarshallers are not thread safe but are expensive
+ * to create and configure, so instances are borrowed for the duration of a
+ * single operation and then returned for reuse.  If the pool is empty a new
+ * instance is created (a miss), and if the pool is full on return the
+ * instance is discarded, so callers never block.
+ *
+ * @author hacksaw
+ * @param <T> The pooled Marshaller or Unmarshaller type.
+ */
+public class JaxbPool<T> {
+    // Default number of idle instances retained by a pool.
+    public static final int DEFAULT_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final String name;
+    private final Factory<T> factory;
+    private final BlockingQueue<T> idle;
+
+    // Pool metrics.
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Creates new instances for the pool.
+     *
+     * @param <T> The pooled type.
+     */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create() throws JAXBException;
+    }
+
+    /**
+     * An operation performed with a pooled instance.
+     *
+     * @param <T> The pooled type.
+     * @param <R> The operation result type.
+     */
+    @FunctionalInterface
+    public interface Operation<T, R> {
+        R apply(T instance) throws JAXBException;
+    }
+
+    /**
+     * Create a pool.
+     *
+     * @param name Name of this pool for reporting.
+     * @param size Maximum number of idle instances to retain.
+     * @param factory Factory used to create new instances.
+     */
+    public JaxbPool(String name, int size, Factory<T> factory) {
+        this.name = name;
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(size > 0 ? size : DEFAULT_SIZE);
+    }
+
+    /**
+     * Perform an operation using an instance from the pool.  The instance is
+     * returned to the pool only if the operation completes successfully so a
+     * marshaller left in an undefined state by a failure is never reused.
+     *
+     * @param <R> The operation result type.
+     * @param operation The operation to perform.
+     * @return The result of the operation.
+     * @throws JAXBException If the operation or instance creation failed.
+     */
+    public <R> R execute(Operation<T, R> operation) throws JAXBException {
+        T instance = borrow();
+        R result = operation.apply(instance);
+        release(instance);
+        return result;
+    }
+
+    /**
+     * Take an instance from the pool, creating a new one if none are idle.
+     *
+     * @return A pooled instance.
+     * @throws JAXBException If a new instance could not be created.
+     */
+    public T borrow() throws JAXBException {
+        T instance = idle.poll();
+        if (instance != null) {
+            hits.incrementAndGet();
+            return instance;
+        }
+
+        misses.incrementAndGet();
+        return factory.create();
+    }
+
+    /**
+     * Return an instance to the pool.  The instance is discarded if the pool
+     * is already full.
+     *
+     * @param instance The instance to return.
+     */
+    public void release(T instance) {
+        if (instance != null) {
+            idle.offer(instance);
+        }
+    }
+
+    /**
+     * @return the name of this pool.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of borrows satisfied by an idle instance.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of borrows that required a new instance.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of idle instances currently in the pool.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pool=%s, hits=%d, misses=%d, idle=%d", name, getHits(), getMisses(), getIdle());
+    }
+}
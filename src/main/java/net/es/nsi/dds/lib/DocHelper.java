@@ -2,10 +2,13 @@ package net.es.nsi.dds.lib;
 
 import jakarta.xml.bind.JAXBException;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.security.KeyStoreException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import javax.xml.crypto.dsig.XMLSignatureException;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -22,7 +25,7 @@ import net.es.nsi.dds.jaxb.nml.NmlLifeTimeType;
 import net.es.nsi.dds.jaxb.nml.NmlTopologyType;
 import net.es.nsi.dds.jaxb.nsa.NsaType;
 import net.es.nsi.dds.provider.DdsProvider;
-import net.es.nsi.dds.signing.SignatureFactory;
+import net.es.nsi.dds.signing.SigningEngine;
 import net.es.nsi.dds.util.NsiConstants;
 import net.es.nsi.dds.util.XmlUtilities;
 
@@ -79,9 +82,9 @@ public class DocHelper {
         if (config.isSign()) {
             Optional<org.w3c.dom.Document> sig = Optional.empty();
             try {
-                SignatureFactory signatureFactory = new SignatureFactory(config.getSigningStore());
-                sig = Optional.of(signatureFactory.generateExternalSignature(doc.get(), config.getSigningAlias()));
-            } catch (XMLSignatureException | KeyStoreException | RuntimeException | NoSuchMethodException | InvocationTargetException ex) {
+                sig = Optional.of(SigningEngine.getInstance().generateExternalSignature(config.getSigningStore(),
+                        config.getSigningAlias(), doc.get()));
+            } catch (XMLSignatureException | KeyStoreException | RuntimeException ex) {
                 log.error("build: unable to create signature document", ex);
                 throw new IllegalArgumentException(ex);
             }
@@ -109,6 +112,45 @@ public class DocHelper {
         return true;
     }
 
+    /**
+     * Add a set of topology documents from a single NSA.  When signing is
+     * enabled the documents are built and signed in parallel on the signing
+     * engine's executor.
+     *
+     * @param topologies The topology documents to add.
+     * @param discovered When the documents were discovered.
+     * @param nsaId The NSA owning the topology documents.
+     * @return The number of documents added.
+     */
+    public static int addTopologyDocuments(Collection<NmlTopologyType> topologies, XMLGregorianCalendar discovered, String nsaId) {
+        if (!DdsConfiguration.getInstance().isSign() || topologies.size() < 2) {
+            int count = 0;
+            for (NmlTopologyType topology : topologies) {
+                if (tryAddTopologyDocument(topology, discovered, nsaId)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(topologies.size());
+        for (NmlTopologyType topology : topologies) {
+            results.add(CompletableFuture.supplyAsync(() -> tryAddTopologyDocument(topology, discovered, nsaId),
+                    SigningEngine.getInstance().getExecutor()));
+        }
+
+        return (int) results.stream().filter(CompletableFuture::join).count();
+    }
+
+    private static boolean tryAddTopologyDocument(NmlTopologyType topology, XMLGregorianCalendar discovered, String nsaId) {
+        try {
+            return addTopologyDocument(topology, discovered, nsaId);
+        } catch (RuntimeException ex) {
+            log.error("addTopologyDocuments: Failed to add topology document, nsaId={}, networkId={}", nsaId, topology.getId(), ex);
+            return false;
+        }
+    }
+
     public static boolean addTopologyDocument(NmlTopologyType topology, XMLGregorianCalendar discovered, String nsaId) {
         // If there is no expires time specified then it is infinite.
         if (topology.getLifetime() == null || topology.getLifetime().getEnd() == null || !topology.getLifetime().getEnd().isValid()) {
@@ -151,9 +193,9 @@ public class DocHelper {
         if (config.isSign()) {
             Optional<org.w3c.dom.Document> sig = Optional.empty();
             try {
-                SignatureFactory signatureFactory = new SignatureFactory(config.getSigningStore());
-                sig = Optional.of(signatureFactory.generateExternalSignature(doc.get(), config.getSigningAlias()));
-            } catch (XMLSignatureException | KeyStoreException | RuntimeException | NoSuchMethodException | InvocationTargetException ex) {
+                sig = Optional.of(SigningEngine.getInstance().generateExternalSignature(config.getSigningStore(),
+                        config.getSigningAlias(), doc.get()));
+            } catch (XMLSignatureException | KeyStoreException | RuntimeException ex) {
                 log.error("build: unable to create signature document", ex);
                 throw new IllegalArgumentException(ex);
             }
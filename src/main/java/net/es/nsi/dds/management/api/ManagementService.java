@@ -13,17 +13,25 @@ import java.net.URISyntaxException;
 import java.util.*;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
-import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import lombok.extern.slf4j.Slf4j;
 import net.es.nsi.dds.api.Error;
+import net.es.nsi.dds.client.CompressionStatistics;
+import net.es.nsi.dds.client.DeliveryPolicy;
+import net.es.nsi.dds.client.RestClient;
+import net.es.nsi.dds.config.ConfigurationManager;
 import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.dao.DocumentCache;
+import net.es.nsi.dds.jaxb.JaxbParser;
+import net.es.nsi.dds.jaxb.JaxbPool;
 import net.es.nsi.dds.jaxb.ManagementParser;
 import net.es.nsi.dds.jaxb.dds.ErrorType;
 import net.es.nsi.dds.jaxb.management.*;
 import net.es.nsi.dds.management.logs.DdsErrors;
 import net.es.nsi.dds.management.logs.DdsLogger;
+import net.es.nsi.dds.provider.DiscoveryProvider;
+import net.es.nsi.dds.spring.SpringApplicationContext;
 import net.es.nsi.dds.util.NsiConstants;
 import net.es.nsi.dds.util.UrlTransform;
 import net.es.nsi.dds.util.XmlUtilities;
@@ -140,16 +148,123 @@ public class ManagementService {
         final URI location = info.getAbsolutePath();
         log.info("[ManagementService] health check = {}", location);
 
+        // Report the document caches, which are out of service while they
+        // are warming after a restart.
+        ComponentsType components = managementFactory.createComponentsType();
+        components.getComponent().add(getCacheComponent("documentCache"));
+        components.getComponent().add(getCacheComponent("documentRepository"));
+        components.getComponent().add(getDeliveryComponent());
+        components.getComponent().add(getCompressionComponent());
+        components.getComponent().add(getJaxbComponent());
+
         HealthStatusType status = managementFactory.createHealthStatusType();
-        status.setStatus(HealthStatus.UP);
+        status.setComponents(components);
+        DiscoveryProvider discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+        if (discoveryProvider != null && discoveryProvider.isReady()) {
+            status.setStatus(HealthStatus.UP);
+        } else {
+            status.setStatus(HealthStatus.OUT_OF_SERVICE);
+        }
 
-        return Response.ok(new GenericEntity<JAXBElement<HealthStatusType>>(managementFactory.createHealth(status)) {})
+        Response.ResponseBuilder builder = status.getStatus() == HealthStatus.UP ? Response.ok()
+                : Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        return builder.entity(new GenericEntity<JAXBElement<HealthStatusType>>(managementFactory.createHealth(status)) {})
             .header(HttpHeaders.CONTENT_LOCATION, location.toASCIIString())
             .header(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, max-age=0, must-revalidate")
             .header("Pragma", "no-cache")
             .build();
     }
 
+    private ComponentType getCacheComponent(String name) {
+        ComponentType component = managementFactory.createComponentType();
+        component.setName(name);
+
+        DocumentCache cache = SpringApplicationContext.getBean(name, DocumentCache.class);
+        if (cache == null) {
+            component.setStatus(HealthStatus.UNKNOWN);
+            return component;
+        }
+
+        component.setStatus(cache.getLoadState() == DocumentCache.LoadState.READY ? HealthStatus.UP : HealthStatus.OUT_OF_SERVICE);
+        DetailsType details = managementFactory.createDetailsType();
+        details.getDetail().add(getDetail("state", cache.getLoadState().name()));
+        details.getDetail().add(getDetail("documents", Integer.toString(cache.values().size())));
+        details.getDetail().add(getDetail("loaded", Integer.toString(cache.getLoadCount())));
+        details.getDetail().add(getDetail("discarded", Integer.toString(cache.getDiscardCount())));
+        details.getDetail().add(getDetail("restored", Integer.toString(cache.getRestored())));
+        details.getDetail().add(getDetail("loadTime", Long.toString(cache.getLoadTime())));
+        details.getDetail().add(getDetail("loadRate", Long.toString(cache.getLoadRate())));
+        component.setDetails(details);
+        return component;
+    }
+
+    private ComponentType getDeliveryComponent() {
+        ComponentType component = managementFactory.createComponentType();
+        component.setName("notificationDelivery");
+
+        // Peers failing delivery are a warning as notifications to them are
+        // being retried.
+        DeliveryPolicy policy = DeliveryPolicy.getInstance();
+        long open = policy.getOpen();
+        component.setStatus(open == 0 ? HealthStatus.UP : HealthStatus.WARNING);
+        DetailsType details = managementFactory.createDetailsType();
+        details.getDetail().add(getDetail("open", Long.toString(open)));
+        details.getDetail().add(getDetail("delivered", Long.toString(policy.getDelivered())));
+        details.getDetail().add(getDetail("failed", Long.toString(policy.getFailed())));
+        details.getDetail().add(getDetail("retried", Long.toString(policy.getRetried())));
+        details.getDetail().add(getDetail("rejected", Long.toString(policy.getRejected())));
+        details.getDetail().add(getDetail("abandoned", Long.toString(policy.getAbandoned())));
+        component.setDetails(details);
+        return component;
+    }
+
+    private ComponentType getCompressionComponent() {
+        ComponentType component = managementFactory.createComponentType();
+        component.setName("requestCompression");
+
+        RestClient restClient = SpringApplicationContext.getBean("restClient", RestClient.class);
+        if (restClient == null) {
+            component.setStatus(HealthStatus.UNKNOWN);
+            return component;
+        }
+
+        // One detail per peer we have sent compressed requests to.
+        component.setStatus(HealthStatus.UP);
+        DetailsType details = managementFactory.createDetailsType();
+        for (CompressionStatistics stats : restClient.getCompression().getStatistics()) {
+            details.getDetail().add(getDetail(stats.getPeer(),
+                    String.format("requests=%d, raw=%d, encoded=%d, ratio=%.2f", stats.getRequests(),
+                            stats.getRawBytes(), stats.getEncodedBytes(), stats.getRatio())));
+        }
+        component.setDetails(details);
+        return component;
+    }
+
+    private ComponentType getJaxbComponent() {
+        ComponentType component = managementFactory.createComponentType();
+        component.setName("jaxbPools");
+
+        // One detail per marshaller or unmarshaller pool, where a miss is a
+        // borrow that had to create a new instance.
+        component.setStatus(HealthStatus.UP);
+        DetailsType details = managementFactory.createDetailsType();
+        for (JaxbParser parser : JaxbParser.getParsers()) {
+            for (JaxbPool<?> pool : parser.getPools()) {
+                details.getDetail().add(getDetail(pool.getName(),
+                        String.format("hits=%d, misses=%d, idle=%d", pool.getHits(), pool.getMisses(), pool.getIdle())));
+            }
+        }
+        component.setDetails(details);
+        return component;
+    }
+
+    private DetailType getDetail(String name, String value) {
+        DetailType detail = managementFactory.createDetailType();
+        detail.setName(name);
+        detail.setValue(value);
+        return detail;
+    }
+
     /**
      * Get this DDS instance version information.
      *
@@ -303,7 +418,7 @@ public class ManagementService {
         if (ifModifiedSince != null && !ifModifiedSince.isEmpty()) {
             GregorianCalendar cal = new GregorianCalendar();
             cal.setTimeInMillis(DateUtils.parseDate(ifModifiedSince).getTime());
-            XMLGregorianCalendar modified = DatatypeFactory.newInstance().newXMLGregorianCalendar(cal);
+            XMLGregorianCalendar modified = XmlUtilities.getDatatypeFactory().newXMLGregorianCalendar(cal);
 
             topologyLogs.getLog().removeIf(result -> !(modified.compare(result.getDate()) == DatatypeConstants.LESSER));
 
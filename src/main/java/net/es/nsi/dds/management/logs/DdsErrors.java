@@ -29,6 +29,8 @@ public enum DdsErrors {
     DDS_NOTIFICATION_SUBSCRIPTION_PARSE_ERROR(7001, "DDS_NOTIFICATION_SUBSCRIPTION_PARSE_ERROR", "Unable to parse incoming subscription (%s)."),
     DDS_NOTIFICATION_SUBSCRIPTION_NOT_FOUND(7002, "DDS_NOTIFICATION_SUBSCRIPTION_NOT_FOUND", "Subscription for incoming notification not found (%s)."),
     DDS_NOTIFICATION_PROCESSING_ERROR(7003, "DDS_NOTIFICATION_PROCESSING_ERROR", "Unable to process incoming subscription (%s)."),
+    DDS_NOTIFICATION_QUEUE_FULL(7004, "DDS_NOTIFICATION_QUEUE_FULL", "Notification queue full, incoming notification refused (%s)."),
+    DDS_NOTIFICATION_SIGNATURE_INVALID(7005, "DDS_NOTIFICATION_SIGNATURE_INVALID", "Incoming document signature invalid or missing (%s)."),
 
     // Topology audit errors - specifically around the discovery of topology from NSA.
     AUDIT(2000, "AUDIT", "The topology audit failed."),
@@ -0,0 +1,33 @@
+package net.es.nsi.dds.messages;
+
+import akka.actor.ActorPath;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * Triggers delivery of the document space to all subscriptions that have
+ * been queued for a full notification.
+ *
+ * @author hacksaw
+ */
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper=true)
+@Data
+public class FanOutMsg extends Message implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public FanOutMsg() {
+        super();
+    }
+
+    public FanOutMsg(String initiator) {
+        super(initiator);
+    }
+
+    public FanOutMsg(String initiator, ActorPath path) {
+        super(initiator, path);
+    }
+}
@@ -0,0 +1,35 @@
+package net.es.nsi.dds.messages;
+
+import akka.actor.ActorPath;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * Triggers delivery of the document events queued for a subscription once
+ * its linger time has passed.
+ *
+ * @author hacksaw
+ */
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper=true)
+@Data
+public class FlushMsg extends Message implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String subscriptionId;
+
+    public FlushMsg() {
+        super();
+    }
+
+    public FlushMsg(String initiator) {
+        super(initiator);
+    }
+
+    public FlushMsg(String initiator, ActorPath path) {
+        super(initiator, path);
+    }
+}
@@ -0,0 +1,70 @@
+package net.es.nsi.dds.messages;
+
+import akka.actor.ActorPath;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The outcome of a non-blocking HTTP exchange, piped back to the actor that
+ * started it together with the message the exchange was made for.
+ *
+ * @author hacksaw
+ */
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper=true)
+@Data
+public class HttpResult extends Message implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Object request;
+    private int status;
+    @ToString.Exclude
+    private String body;
+    private String retryAfter;
+    private String lastModified;
+    private Throwable error;
+
+    public HttpResult() {
+        super();
+    }
+
+    public HttpResult(String initiator) {
+        super(initiator);
+    }
+
+    public HttpResult(String initiator, ActorPath path) {
+        super(initiator, path);
+    }
+
+    /**
+     * Create the result of a completed exchange.
+     *
+     * @param request The message the exchange was made for.
+     * @param response The response, or null if the exchange failed.
+     * @param error The reason the exchange failed, or null.
+     * @return The exchange result.
+     */
+    public static HttpResult of(Object request, HttpResponse<?> response, Throwable error) {
+        HttpResult result = new HttpResult("HttpResult");
+        result.setRequest(request);
+
+        if (error != null) {
+            result.setError(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+        } else if (response != null) {
+            result.setStatus(response.statusCode());
+            result.setRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+            result.setLastModified(response.headers().firstValue("Last-Modified").orElse(null));
+            if (response.body() instanceof String) {
+                result.setBody((String) response.body());
+            }
+        }
+
+        return result;
+    }
+}
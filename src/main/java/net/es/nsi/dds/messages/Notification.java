@@ -6,6 +6,7 @@ package net.es.nsi.dds.messages;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 import akka.actor.ActorPath;
 import lombok.Data;
@@ -29,6 +30,16 @@ public class Notification extends Message implements Serializable {
     private Subscription subscription;
     private Collection<Document> documents;
 
+    // Pre-serialized notification elements for the documents, shared between
+    // all subscribers receiving this chunk, or null if not yet serialized.
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<byte[]> encoded;
+
+    // The number of failed attempts to deliver this notification.
+    @EqualsAndHashCode.Exclude
+    private int attempt = 0;
+
     public Notification() {
         super();
     }
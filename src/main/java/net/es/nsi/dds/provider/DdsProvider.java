@@ -13,13 +13,15 @@ import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.dao.DocumentCache;
 import net.es.nsi.dds.jaxb.DdsParser;
 import net.es.nsi.dds.jaxb.dds.*;
+import net.es.nsi.dds.management.logs.DdsErrors;
+import net.es.nsi.dds.management.logs.DdsLogger;
 import net.es.nsi.dds.messages.DocumentEvent;
 import net.es.nsi.dds.messages.SubscriptionEvent;
+import net.es.nsi.dds.signing.SignatureValidator;
 import net.es.nsi.dds.spring.SpringApplicationContext;
 import net.es.nsi.dds.util.XmlUtilities;
 
 import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.io.IOException;
 import java.net.URLDecoder;
@@ -28,6 +30,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -54,6 +57,15 @@ public class DdsProvider implements DiscoveryProvider {
   // subscriptions from remote DDS servers.
   private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
 
+  // Inverted index of subscription filters used to route document events.
+  private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+
+  // Validates the signature of documents received from peers.
+  private SignatureValidator signatureValidator = null;
+
+  // Completed once the document caches have been loaded and merged.
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
   public DdsProvider(DdsConfiguration configuration, DocumentCache documentCache, DocumentCache documentRepository, DdsActorController ddsActorController) {
     this.configReader = configuration;
     this.documentCache = documentCache;
@@ -67,6 +79,19 @@ public class DdsProvider implements DiscoveryProvider {
 
   @Override
   public void init() {
+    // The caches may still be loading in the background, so the repository
+    // documents are merged into the cache once both have finished.
+    CompletableFuture.allOf(documentCache.getLoaded(), documentRepository.getLoaded())
+            .thenRun(this::warmed)
+            .whenComplete((result, ex) -> {
+              if (ex != null) {
+                log.error("init: failed to complete document cache warm-up", ex);
+              }
+              ready.complete(null);
+            });
+  }
+
+  private void warmed() {
     log.debug("Starting DDS Service with cached documents:");
     for (Document document : documentCache.values()) {
       try {
@@ -88,12 +113,23 @@ public class DdsProvider implements DiscoveryProvider {
     // Copy documents from permanent repository to cache before we start
     // processing requests.
     documentCache.putAll(documentRepository);
+    log.info("DDS Service ready with {} documents after {} ms", documentCache.values().size(),
+            Math.max(documentCache.getLoadTime(), documentRepository.getLoadTime()));
+  }
 
+  @Override
+  public boolean isReady() {
+    return ready.isDone();
   }
 
   @Override
   public void start() {
-    ddsActorController.start();
+    // Actors that publish the document space wait for it to be loaded.
+    ready.thenRun(ddsActorController::start).whenComplete((result, ex) -> {
+      if (ex != null) {
+        log.error("start: failed to start actors", ex);
+      }
+    });
   }
 
   @Override
@@ -105,6 +141,7 @@ public class DdsProvider implements DiscoveryProvider {
 
     // Save the subscription.
     subscriptions.put(subscription.getId(), subscription);
+    subscriptionIndex.put(subscription.getId(), subscription.getSubscription().getFilter());
 
     log.debug("DdsProvider.addSubscription: requesterId={}, id={}",
             request.getRequesterId(), subscription.getId());
@@ -133,6 +170,7 @@ public class DdsProvider implements DiscoveryProvider {
     }
 
     Subscription subscription = subscriptions.remove(id);
+    subscriptionIndex.remove(id);
     if (subscription == null) {
       log.debug("DdsProvider.deleteSubscription: id={} does not exist", id);
       throw Exceptions.doesNotExistException(DiscoveryError.SUBSCRIPTION_DOES_NOT_EXIST, "id", id);
@@ -177,6 +215,7 @@ public class DdsProvider implements DiscoveryProvider {
     SubscriptionType sub = subscription.getSubscription();
     sub.setRequesterId(request.getRequesterId());
     sub.setFilter(request.getFilter());
+    subscriptionIndex.put(id, request.getFilter());
     sub.setCallback(request.getCallback());
     sub.getAny().addAll(request.getAny());
     sub.getOtherAttributes().putAll(request.getOtherAttributes());
@@ -271,6 +310,12 @@ public class DdsProvider implements DiscoveryProvider {
 
     String documentId = Document.documentId(document);
 
+    if (signatureValidator != null && signatureValidator.isEnforce() && !signatureValidator.isValid(document)) {
+      log.error("processNotification: discarding document with invalid signature documentId=" + documentId);
+      DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_SIGNATURE_INVALID, "documentId", documentId);
+      return;
+    }
+
     Document entry = documentCache.get(documentId);
     if (entry == null) {
       // This must be the first time we have seen the document so add it
@@ -420,15 +465,15 @@ public class DdsProvider implements DiscoveryProvider {
     }
 
     // Validate basic fields.
-    if (request.getNsa() == null || request.getNsa().isEmpty() || !request.getNsa().equalsIgnoreCase(document.getDocument().getNsa())) {
+    if (request.getNsa() == null || request.getNsa().isEmpty() || !request.getNsa().equalsIgnoreCase(document.getMetadata().getNsa())) {
       throw Exceptions.missingParameterException(documentId, "nsa");
     }
 
-    if (request.getType() == null || request.getType().isEmpty() || !request.getType().equalsIgnoreCase(document.getDocument().getType())) {
+    if (request.getType() == null || request.getType().isEmpty() || !request.getType().equalsIgnoreCase(document.getMetadata().getType())) {
       throw Exceptions.missingParameterException(documentId, "type");
     }
 
-    if (request.getId() == null || request.getId().isEmpty() || !request.getId().equalsIgnoreCase(document.getDocument().getId())) {
+    if (request.getId() == null || request.getId().isEmpty() || !request.getId().equalsIgnoreCase(document.getMetadata().getId())) {
       throw Exceptions.missingParameterException(documentId, "id");
     }
 
@@ -441,12 +486,13 @@ public class DdsProvider implements DiscoveryProvider {
     }
 
     // Make sure this is a new version of the document.
-    if (request.getVersion().compare(document.getDocument().getVersion()) == DatatypeConstants.EQUAL) {
+    long version = XmlUtilities.xmlGregorianCalendarToLong(request.getVersion(), 0);
+    if (version == document.getVersionTime()) {
       log.debug("updateDocument: received document is a duplicate id=" + documentId);
-      throw Exceptions.invalidVersionException(DiscoveryError.DOCUMENT_VERSION, request.getId(), request.getVersion(), document.getDocument().getVersion());
-    } else if (request.getVersion().compare(document.getDocument().getVersion()) == DatatypeConstants.LESSER) {
+      throw Exceptions.invalidVersionException(DiscoveryError.DOCUMENT_VERSION, request.getId(), request.getVersion(), document.getMetadata().getVersion());
+    } else if (version < document.getVersionTime()) {
       log.debug("updateDocument: received document is an old version id=" + documentId);
-      throw Exceptions.invalidVersionException(DiscoveryError.DOCUMENT_VERSION, request.getId(), request.getVersion(), document.getDocument().getVersion());
+      throw Exceptions.invalidVersionException(DiscoveryError.DOCUMENT_VERSION, request.getId(), request.getVersion(), document.getMetadata().getVersion());
     }
 
     Document newDoc = new Document(request, configReader.getBaseURL());
@@ -481,69 +527,26 @@ public class DdsProvider implements DiscoveryProvider {
 
   @Override
   public Collection<Document> getDocuments(String nsa, String type, String id, Date lastDiscovered) {
-    // We need to search for matching documents using the supplied criteria.
-    // We will do this linearly now, but we will need multiple indicies later
-    // to make this faster (perhaps a database).
-
-    // Seed the results.
-    Collection<Document> results = documentCache.values();
-
-    // This may be the most often used so filter by this first.
-    if (lastDiscovered != null) {
-      results = getDocumentsByDate(lastDiscovered, results);
-    }
-
-    if (nsa != null && !nsa.isEmpty()) {
-      results = getDocumentsByNsa(nsa, results);
-    }
-
-    if (type != null && !type.isEmpty()) {
-      results = getDocumentsByType(type, results);
-    }
-
-    if (id != null && !id.isEmpty()) {
-      results = getDocumentsById(id, results);
-    }
-
-    return results;
+    // The document cache maintains secondary indicies on nsa, type, and
+    // lastDiscovered so we let it choose the best one for these criteria.
+    return documentCache.find(nsa, type, id, lastDiscovered);
   }
 
   @Override
   public Collection<Document> getDocumentsByNsa(String nsa, String type, String id, Date lastDiscovered) throws WebApplicationException {
-    // Seed the results.
-    Collection<Document> results = documentCache.values();
-
     // This is the primary search value.  Make sure it is present.
-    if (nsa != null && !nsa.isEmpty()) {
-      results = getDocumentsByNsa(nsa, results);
-      if (results == null || results.isEmpty()) {
-        throw Exceptions.doesNotExistException(DiscoveryError.NOT_FOUND, "nsa", nsa);
-      }
-    } else {
+    if (nsa == null || nsa.isEmpty()) {
       throw Exceptions.illegalArgumentException(DiscoveryError.MISSING_PARAMETER, "document", "nsa");
+    } else if (!documentCache.containsNsa(nsa)) {
+      throw Exceptions.doesNotExistException(DiscoveryError.NOT_FOUND, "nsa", nsa);
     }
 
     // The rest are additional filters.
-    if (lastDiscovered != null) {
-      results = getDocumentsByDate(lastDiscovered, results);
-    }
-
-    if (type != null && !type.isEmpty()) {
-      results = getDocumentsByType(type, results);
-    }
-
-    if (id != null && !id.isEmpty()) {
-      results = getDocumentsById(id, results);
-    }
-
-    return results;
+    return documentCache.find(nsa, type, id, lastDiscovered);
   }
 
   @Override
   public Collection<Document> getDocumentsByNsaAndType(String nsa, String type, String id, Date lastDiscovered) throws WebApplicationException {
-    // Seed the results.
-    Collection<Document> results = documentCache.values();
-
     // This is the primary search value.  Make sure it is present.
     if (nsa == null || nsa.isEmpty()) {
       throw Exceptions.illegalArgumentException(DiscoveryError.MISSING_PARAMETER, "document", "nsa");
@@ -553,19 +556,7 @@ public class DdsProvider implements DiscoveryProvider {
       throw Exceptions.illegalArgumentException(DiscoveryError.MISSING_PARAMETER, "document", "type");
     }
 
-    results = getDocumentsByNsa(nsa, results);
-    results = getDocumentsByType(type, results);
-
-    if (id != null && !id.isEmpty()) {
-      results = getDocumentsById(id, results);
-    }
-
-    // The rest are additional filters.
-    if (lastDiscovered != null) {
-      results = getDocumentsByDate(lastDiscovered, results);
-    }
-
-    return results;
+    return documentCache.find(nsa, type, id, lastDiscovered);
   }
 
   @Override
@@ -578,7 +569,7 @@ public class DdsProvider implements DiscoveryProvider {
     }
 
     // Check to see if the document was modified after provided date.
-    if (lastDiscovered != null && lastDiscovered.compareTo(document.getLastDiscovered()) >= 0) {
+    if (lastDiscovered != null && lastDiscovered.getTime() >= document.getLastDiscoveredTime()) {
       // NULL will represent not modified.
       return null;
     }
@@ -596,30 +587,12 @@ public class DdsProvider implements DiscoveryProvider {
   public Collection<Document> getLocalDocuments(String type, String id, Date lastDiscovered) throws IllegalArgumentException {
     String nsaId = getConfigReader().getNsaId();
 
-    // Seed the results.
-    Collection<Document> results = documentCache.values();
-
     // This is the primary search value.  Make sure it is present.
-    if (nsaId != null && !nsaId.isEmpty()) {
-      results = getDocumentsByNsa(nsaId, results);
-    } else {
+    if (nsaId == null || nsaId.isEmpty()) {
       throw Exceptions.illegalArgumentException(DiscoveryError.MISSING_PARAMETER, "document", "nsa");
     }
 
-    // The rest are additional filters.
-    if (lastDiscovered != null) {
-      results = getDocumentsByDate(lastDiscovered, results);
-    }
-
-    if (type != null && !type.isEmpty()) {
-      results = getDocumentsByType(type, results);
-    }
-
-    if (id != null && !id.isEmpty()) {
-      results = getDocumentsById(id, results);
-    }
-
-    return results;
+    return documentCache.find(nsaId, type, id, lastDiscovered);
   }
 
   @Override
@@ -632,50 +605,46 @@ public class DdsProvider implements DiscoveryProvider {
     return getDocument(getConfigReader().getNsaId(), type, id, lastDiscovered);
   }
 
-  public Collection<Document> getDocumentsByDate(Date lastDiscovered, Collection<Document> input) {
-    Collection<Document> output = new ArrayList<>();
-    input.stream().filter((document) -> (document.getLastDiscovered().after(lastDiscovered)))
-            .forEach(output::add);
+  @Override
+  public boolean isModifiedSince(Date lastDiscovered) {
+    // The document cache answers this from its change log, and there are
+    // few enough subscriptions to check them directly.
+    if (documentCache.isModifiedSince(lastDiscovered)) {
+      return true;
+    }
 
-    return output;
+    return getSubscriptions().stream()
+            .anyMatch((subscription) -> subscription.getLastModified().after(lastDiscovered));
   }
 
-  public Collection<Document> getDocumentsByNsa(String nsa, Collection<Document> input) {
-    Collection<Document> output = new ArrayList<>();
-    input.stream().filter((document) -> (document.getDocument().getNsa().equalsIgnoreCase(nsa)))
-            .forEach(output::add);
-
-    return output;
-  }
+  @Override
+  public Collection<Document> getDocuments(FilterType filter) {
+    SubscriptionFilter compiled = SubscriptionFilter.compile(filter);
+    if (compiled == SubscriptionFilter.ALL) {
+      return documentCache.values();
+    }
 
-  public Collection<Document> getDocumentsByType(String type, Collection<Document> input) {
+    // Match on the metadata so documents restored from a snapshot are not
+    // materialised unless they are returned.
     Collection<Document> output = new ArrayList<>();
-    input.stream().filter((document) -> (document.getDocument().getType().equalsIgnoreCase(type)))
+    documentCache.values().stream()
+            .filter((document) -> compiled.matches(null, document.getMetadata()))
             .forEach(output::add);
 
     return output;
   }
 
-  public Collection<Document> getDocumentsById(String id, Collection<Document> input) {
-    Collection<Document> output = new ArrayList<>();
-    input.stream().filter((document) -> (document.getDocument().getId().equalsIgnoreCase(id)))
+  @Override
+  public Collection<Subscription> getSubscriptions(DocumentEvent event) {
+    Collection<Subscription> output = new ArrayList<>();
+    subscriptionIndex.match(event.getEvent(), event.getDocument().getMetadata()).stream()
+            .map(subscriptions::get)
+            .filter(Objects::nonNull)
             .forEach(output::add);
 
     return output;
   }
 
-  @Override
-  public Collection<Document> getDocuments(FilterType filter) {
-    // TODO: Match everything for demo.  Need to fix later.
-    return documentCache.values();
-  }
-
-  @Override
-  public Collection<Subscription> getSubscriptions(DocumentEvent event) {
-    // TODO: Match everything for demo.  Need to fix later.
-    return getSubscriptions();
-  }
-
   @Override
   public void shutdown() throws InterruptedException {
     ddsActorController.shutdown();
@@ -695,6 +664,13 @@ public class DdsProvider implements DiscoveryProvider {
     this.configReader = configReader;
   }
 
+  /**
+   * @param signatureValidator the validator used for documents received from peers.
+   */
+  public void setSignatureValidator(SignatureValidator signatureValidator) {
+    this.signatureValidator = signatureValidator;
+  }
+
   /**
    * Audit the contents of the local document directory for an new additions. This directory contains documents
    * administrators want to locally add through the file system (as an alternative to the REST API ADD).
@@ -718,18 +694,15 @@ public class DdsProvider implements DiscoveryProvider {
 
       // We need to determine if this document is still valid
       // before proceeding.
-      XMLGregorianCalendar expires = document.getExpires();
-      if (expires != null) {
-        Date expiresTime = expires.toGregorianCalendar().getTime();
-
+      long expires = XmlUtilities.xmlGregorianCalendarToLong(document.getExpires(), Long.MAX_VALUE);
+      if (expires != Long.MAX_VALUE) {
         // We take the current time and add the expiry buffer.
-        Date now = new Date();
-        now.setTime(now.getTime() + this.getConfigReader().getExpiryInterval() * 1000);
-        if (expiresTime.before(now)) {
+        long now = System.currentTimeMillis() + this.getConfigReader().getExpiryInterval() * 1000;
+        if (expires < now) {
           // This document has expired.  Remove from directory but add
           // to document space just in case this is a delete of an
           // existing document.
-          log.error("loadDocuments: Loaded document has expired " + filename + ", expires=" + expires.toGregorianCalendar().getTime().toString());
+          log.error("loadDocuments: Loaded document has expired " + filename + ", expires=" + new Date(expires));
 
           // Remove from documents directory.
           try {
@@ -756,9 +729,8 @@ public class DdsProvider implements DiscoveryProvider {
         log.info("loadDocuments: added document " + filename);
       } else {
         // We need to check if this is a new version of the document.
-        XMLGregorianCalendar existingVersion = existingDocument.getDocument().getVersion();
-        if (existingVersion != null
-                && existingVersion.compare(document.getVersion()) == DatatypeConstants.LESSER) {
+        if (existingDocument.getMetadata().getVersion() != null
+                && existingDocument.getVersionTime() < XmlUtilities.xmlGregorianCalendarToLong(document.getVersion(), 0)) {
           // The existing version is older so add the new one.
           try {
             this.updateDocument(document, Source.LOCAL);
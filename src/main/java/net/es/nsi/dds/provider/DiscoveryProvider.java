@@ -17,6 +17,7 @@ public interface DiscoveryProvider {
 
     public void init() throws Exception;
     public void start();
+    public boolean isReady();
     public void shutdown() throws InterruptedException;
 
     public Subscription addSubscription(SubscriptionRequestType request, String encoding);
@@ -40,6 +41,7 @@ public interface DiscoveryProvider {
     public Collection<Document> getLocalDocuments(String type, String id, Date lastDiscovered) throws WebApplicationException;
     public Collection<Document> getLocalDocumentsByType(String type, String id, Date lastDiscovered) throws WebApplicationException;
     public Document getLocalDocument(String type, String id, Date lastDiscovered) throws WebApplicationException;
+    public boolean isModifiedSince(Date lastDiscovered);
 
     public void processNotification(NotificationType notification);
 
@@ -1,16 +1,23 @@
 package net.es.nsi.dds.provider;
 
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.util.Date;
 import net.es.nsi.dds.api.DiscoveryError;
 import net.es.nsi.dds.api.Exceptions;
+import net.es.nsi.dds.jaxb.DdsParser;
 import net.es.nsi.dds.jaxb.dds.DocumentType;
 import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.util.XmlUtilities;
 
 /**
  *
@@ -23,9 +30,23 @@ public class Document implements Serializable {
 
     private String id;
     private String filename;
-    private DocumentType document;
+    private volatile DocumentType document;
     private Date lastDiscovered;
 
+    // The version and expires times in milliseconds since the epoch so they
+    // can be compared without converting calendars.
+    private long versionTime;
+    private long expiresTime;
+
+    // Meta data and serialized form of a document restored from a cache
+    // snapshot, which is only unmarshalled when the full document is needed.
+    private transient DocumentType metadata;
+    private transient ByteBuffer content;
+
+    // Cached compact XML serializations of the full and summary document.
+    private transient volatile byte[] encoded;
+    private transient volatile byte[] encodedSummary;
+
     public Document(DocumentType document, String baseURL) throws WebApplicationException {
         this.id = documentId(document.getNsa(), document.getType(), document.getId());
         this.document = document;
@@ -33,11 +54,35 @@ public class Document implements Serializable {
         this.document.setType(document.getType().trim());
         this.document.setId(document.getId().trim());
         this.document.setHref(getDocumentURL(baseURL));
+        setTimes(document);
 
         lastDiscovered = new Date();
         lastDiscovered.setTime(lastDiscovered.getTime() - lastDiscovered.getTime() % 1000);
     }
 
+    /**
+     * Create a document restored from a cache snapshot.  The document is
+     * described by its meta data and the full document is unmarshalled from
+     * its serialized form on first use.
+     *
+     * @param id The unique document identifier.
+     * @param metadata The document meta data without content.
+     * @param lastDiscovered When the document was discovered.
+     * @param content The document element as created by getEncoded(false).
+     */
+    public Document(String id, DocumentType metadata, Date lastDiscovered, ByteBuffer content) {
+        this.id = id;
+        this.metadata = metadata;
+        this.lastDiscovered = lastDiscovered;
+        this.content = content;
+        setTimes(metadata);
+    }
+
+    private void setTimes(DocumentType meta) {
+        versionTime = XmlUtilities.xmlGregorianCalendarToLong(meta.getVersion(), 0);
+        expiresTime = XmlUtilities.xmlGregorianCalendarToLong(meta.getExpires(), Long.MAX_VALUE);
+    }
+
     public static String documentId(String nsa, String type, String id) throws WebApplicationException {
         if (nsa == null || nsa.trim().isEmpty()) {
             throw Exceptions.missingParameterException("document", "nsa");
@@ -99,28 +144,126 @@ public class Document implements Serializable {
      * @return the document
      */
     public DocumentType getDocument() {
-        return document;
+        DocumentType result = document;
+        if (result == null) {
+            synchronized (this) {
+                result = document;
+                if (result == null) {
+                    result = materialize();
+                    document = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private DocumentType materialize() {
+        byte[] bytes = getContent();
+        try {
+            return DdsParser.getInstance().xml2Document(new ByteArrayInputStream(bytes));
+        } catch (JAXBException | IOException ex) {
+            throw new IllegalStateException("Cannot unmarshal restored document " + id, ex);
+        }
+    }
+
+    private byte[] getContent() {
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Get the document meta data (nsa, type, id, href, version, and expires)
+     * without unmarshalling a restored document.  The returned object is
+     * shared and must not be modified.
+     *
+     * @return the document meta data
+     */
+    public DocumentType getMetadata() {
+        DocumentType result = document;
+        return result != null ? result : metadata;
     }
 
     /**
      * @return the document
      */
     public DocumentType getDocumentSummary() {
+        DocumentType meta = getMetadata();
         DocumentType newDocType = factory.createDocumentType();
-        newDocType.setExpires(document.getExpires());
-        newDocType.setHref(document.getHref());
-        newDocType.setId(document.getId());
-        newDocType.setNsa(document.getNsa());
-        newDocType.setType(document.getType());
-        newDocType.setVersion(document.getVersion());
+        newDocType.setExpires(meta.getExpires());
+        newDocType.setHref(meta.getHref());
+        newDocType.setId(meta.getId());
+        newDocType.setNsa(meta.getNsa());
+        newDocType.setType(meta.getType());
+        newDocType.setVersion(meta.getVersion());
         return newDocType;
     }
 
+    /**
+     * Get the compact UTF-8 encoded XML serialization of this document,
+     * serializing and caching it on first use.
+     *
+     * @param summary Return only the document meta data if true.
+     * @return The serialized document element.
+     * @throws JAXBException If the document could not be serialized.
+     */
+    public byte[] getEncoded(boolean summary) throws JAXBException {
+        byte[] result = summary ? encodedSummary : encoded;
+        if (result == null) {
+            if (summary) {
+                result = DdsParser.getInstance().document2Fragment(getDocumentSummary());
+                encodedSummary = result;
+            }
+            else if (document == null) {
+                // A restored document is already serialized, and copying it
+                // out of the snapshot each time keeps it off the heap.
+                result = getContent();
+            }
+            else {
+                result = DdsParser.getInstance().document2Fragment(document);
+                encoded = result;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * @param document the document to set
      */
     public void setDocument(DocumentType document) {
         this.document = document;
+        setTimes(document);
+        this.metadata = null;
+        this.content = null;
+        this.encoded = null;
+        this.encodedSummary = null;
+    }
+
+    /**
+     * Has the full document been unmarshalled?  This is false for a document
+     * restored from a cache snapshot until the full document is first used.
+     *
+     * @return true if the document has been unmarshalled.
+     */
+    public boolean isMaterialized() {
+        return document != null;
+    }
+
+    /**
+     * @return the document version in milliseconds since the epoch, or 0 if
+     *      the document has no version.
+     */
+    public long getVersionTime() {
+        return versionTime;
+    }
+
+    /**
+     * @return the document expires time in milliseconds since the epoch, or
+     *      Long.MAX_VALUE if the document does not expire.
+     */
+    public long getExpiresTime() {
+        return expiresTime;
     }
 
     /**
@@ -130,6 +273,13 @@ public class Document implements Serializable {
         return lastDiscovered;
     }
 
+    /**
+     * @return the lastModified in milliseconds since the epoch.
+     */
+    public long getLastDiscoveredTime() {
+        return lastDiscovered.getTime();
+    }
+
     /**
      * @param lastModified the lastModified to set
      */
@@ -150,4 +300,10 @@ public class Document implements Serializable {
     public void setFilename(String filename) {
         this.filename = filename;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // Only the unmarshalled document is serialized.
+        getDocument();
+        out.defaultWriteObject();
+    }
 }
@@ -0,0 +1,292 @@
+package net.es.nsi.dds.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.NotificationType;
+import net.es.nsi.dds.management.logs.DdsErrors;
+import net.es.nsi.dds.management.logs.DdsLogger;
+import net.es.nsi.dds.signing.SignatureValidator;
+import net.es.nsi.dds.spring.SpringApplicationContext;
+
+/**
+ * A bounded queue decoupling the receipt of peer notifications from their
+ * application to the document space.
+ *
+ * The notifications endpoint queues each incoming notification and returns
+ * once the batch has been accepted, while a fixed set of apply workers call
+ * DiscoveryProvider.processNotification in the background.  Notifications
+ * are partitioned across workers by document identifier so the updates to a
+ * single document are always applied in the order they were received.  When
+ * a worker's queue is full the notification is refused so the endpoint can
+ * push back on the sending peer rather than tie up HTTP worker threads.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class NotificationQueue {
+    // Defaults used if not configured in beans.xml.
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_RETRY_AFTER = 10;
+
+    private final DiscoveryProvider discoveryProvider;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int workers = DEFAULT_WORKERS;
+    private int retryAfter = DEFAULT_RETRY_AFTER;
+    private SignatureValidator signatureValidator = null;
+
+    // Per worker queues, replaced as a whole on start and shutdown.
+    private volatile List<BlockingQueue<NotificationType>> queues = List.of();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = false;
+
+    // Queue statistics.
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong processed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    /**
+     * Create a notification queue applying notifications to the provided
+     * discovery provider.
+     *
+     * @param discoveryProvider The provider to apply notifications to.
+     */
+    public NotificationQueue(DiscoveryProvider discoveryProvider) {
+        this.discoveryProvider = discoveryProvider;
+    }
+
+    /**
+     * Get a reference to the notification queue singleton bean.
+     *
+     * @return The notification queue.
+     */
+    public static NotificationQueue getInstance() {
+        return SpringApplicationContext.getBean("notificationQueue", NotificationQueue.class);
+    }
+
+    /**
+     * Create the worker queues and start the apply workers.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        int capacity = Math.max(1, queueSize / workers);
+        List<BlockingQueue<NotificationType>> created = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<NotificationType> queue = new ArrayBlockingQueue<>(capacity);
+            Thread thread = new Thread(() -> apply(queue), "notification-queue-" + i);
+            thread.setDaemon(true);
+            created.add(queue);
+            threads.add(thread);
+        }
+
+        queues = List.copyOf(created);
+        running = true;
+        threads.forEach(Thread::start);
+        log.info("[NotificationQueue] started {} workers with capacity {}", workers, capacity * workers);
+    }
+
+    /**
+     * Stop accepting notifications and wait up to retryAfter seconds for
+     * queued notifications to be applied before stopping the workers.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfter);
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+
+        // Only interrupt workers that did not drain in time.
+        threads.stream().filter(Thread::isAlive).forEach(Thread::interrupt);
+
+        log.info("[NotificationQueue] stopped with {} notifications unapplied", getQueued());
+        threads.clear();
+        queues = List.of();
+    }
+
+    /**
+     * Queue a notification for application without blocking.
+     *
+     * @param notification The notification to queue.
+     * @return true if the notification was queued, false if the queue is
+     *      full or stopped.
+     */
+    public boolean offer(NotificationType notification) {
+        List<BlockingQueue<NotificationType>> current = queues;
+        if (!running || current.isEmpty()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        if (current.get(partition(notification, current.size())).offer(notification)) {
+            accepted.incrementAndGet();
+
+            // Verify the signature while the notification waits so workers
+            // applying it in order find the result already cached.
+            if (signatureValidator != null && signatureValidator.isEnforce()
+                    && notification.getDocument() != null) {
+                signatureValidator.validateAsync(notification.getDocument());
+            }
+            return true;
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Is the queue running and able to accept at least one more
+     * notification for every worker?
+     *
+     * @return true if notifications can be accepted.
+     */
+    public boolean isAccepting() {
+        List<BlockingQueue<NotificationType>> current = queues;
+        return running && !current.isEmpty() && current.stream().allMatch(q -> q.remainingCapacity() > 0);
+    }
+
+    /**
+     * @return true if the apply workers are running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static int partition(NotificationType notification, int partitions) {
+        DocumentType document = notification.getDocument();
+        int hash = document == null ? 0 : Objects.hash(document.getNsa(), document.getType(), document.getId());
+        return Math.floorMod(hash, partitions);
+    }
+
+    private void apply(BlockingQueue<NotificationType> queue) {
+        while (running || !queue.isEmpty()) {
+            NotificationType notification;
+            try {
+                notification = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                log.debug("[NotificationQueue] worker interrupted");
+                return;
+            }
+
+            if (notification == null) {
+                continue;
+            }
+
+            String documentId = notification.getDocument() == null ? null : notification.getDocument().getId();
+            try {
+                discoveryProvider.processNotification(notification);
+                processed.incrementAndGet();
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                DdsLogger.getInstance().error(DdsErrors.DDS_NOTIFICATION_PROCESSING_ERROR, "documentId", documentId);
+                log.error("[NotificationQueue] failed to process notification for documentId={}", documentId, ex);
+            }
+        }
+    }
+
+    /**
+     * @return the total number of notifications queued across all workers.
+     */
+    public int getQueued() {
+        return queues.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    /**
+     * @return the number of notifications accepted into the queue.
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * @return the number of notifications refused because the queue was full.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of notifications successfully applied.
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return the number of notifications that failed to apply.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the maximum number of queued notifications.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param queueSize the maximum number of queued notifications.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE;
+    }
+
+    /**
+     * @return the number of apply workers.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @param workers the number of apply workers.
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers > 0 ? workers : DEFAULT_WORKERS;
+    }
+
+    /**
+     * @return the number of seconds a rejected peer should wait before retrying.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @param retryAfter the number of seconds a rejected peer should wait
+     *      before retrying.
+     */
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter > 0 ? retryAfter : DEFAULT_RETRY_AFTER;
+    }
+
+    /**
+     * @param signatureValidator the validator used to verify the signature
+     *      of queued documents ahead of being applied.
+     */
+    public void setSignatureValidator(SignatureValidator signatureValidator) {
+        this.signatureValidator = signatureValidator;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%d, accepted=%d, rejected=%d, processed=%d, failed=%d",
+                getQueued(), getAccepted(), getRejected(), getProcessed(), getFailed());
+    }
+}
@@ -0,0 +1,254 @@
+package net.es.nsi.dds.provider;
+
+import jakarta.xml.bind.JAXBElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import lombok.Value;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.FilterAndType;
+import net.es.nsi.dds.jaxb.dds.FilterCriteriaType;
+import net.es.nsi.dds.jaxb.dds.FilterOrType;
+import net.es.nsi.dds.jaxb.dds.FilterType;
+
+/**
+ * A compiled form of a subscription FilterType that can be evaluated
+ * efficiently against document events.
+ *
+ * A document event matches the filter if it matches at least one include
+ * criteria (or there are no include criteria), and does not match any
+ * exclude criteria.  A criteria matches if the event is one of its event
+ * types and the document matches at least one of its or/and clauses, or the
+ * criteria has no clauses.  Each value of an or element is an independent
+ * clause, while an and element is a single clause requiring all of its
+ * values to match.  All nsa, type, and id comparisons are case-insensitive.
+ *
+ * Compiled filters with the same criteria are equal so subscriptions sharing
+ * a filter can be grouped.
+ *
+ * @author hacksaw
+ */
+public final class SubscriptionFilter {
+    // A filter matching every document event.
+    public static final SubscriptionFilter ALL = new SubscriptionFilter(
+            Collections.emptyList(), Collections.emptyList());
+
+    // Prefixes for inverted index keys.
+    static final String NSA_KEY = "nsa:";
+    static final String TYPE_KEY = "type:";
+    static final String ID_KEY = "id:";
+
+    private final List<Criteria> includes;
+    private final List<Criteria> excludes;
+
+    private SubscriptionFilter(List<Criteria> includes, List<Criteria> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Compile a subscription filter.
+     *
+     * @param filter The filter to compile, or null to match everything.
+     * @return The compiled filter.
+     */
+    public static SubscriptionFilter compile(FilterType filter) {
+        if (filter == null || (filter.getInclude().isEmpty() && filter.getExclude().isEmpty())) {
+            return ALL;
+        }
+
+        return new SubscriptionFilter(compile(filter.getInclude()), compile(filter.getExclude()));
+    }
+
+    private static List<Criteria> compile(List<FilterCriteriaType> criteria) {
+        List<Criteria> result = new ArrayList<>(criteria.size());
+        for (FilterCriteriaType c : criteria) {
+            // No event or an All event matches any event.
+            Set<DocumentEventType> events = EnumSet.noneOf(DocumentEventType.class);
+            events.addAll(c.getEvent());
+            if (events.isEmpty() || events.contains(DocumentEventType.ALL)) {
+                events = EnumSet.allOf(DocumentEventType.class);
+            }
+
+            List<Clause> clauses = new ArrayList<>();
+            for (FilterOrType or : c.getOr()) {
+                for (JAXBElement<String> value : or.getNsaOrTypeOrId()) {
+                    switch (value.getName().getLocalPart()) {
+                        case "nsa":
+                            clauses.add(new Clause(fold(value.getValue()), null, null));
+                            break;
+                        case "type":
+                            clauses.add(new Clause(null, fold(value.getValue()), null));
+                            break;
+                        case "id":
+                            clauses.add(new Clause(null, null, fold(value.getValue())));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+
+            for (FilterAndType and : c.getAnd()) {
+                clauses.add(new Clause(fold(and.getNsa()), fold(and.getType()), fold(and.getId())));
+            }
+
+            result.add(new Criteria(Collections.unmodifiableSet(events), Collections.unmodifiableList(clauses)));
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Does this filter match the document event?
+     *
+     * @param event The document event type, or null to match the document
+     *      regardless of event (for example an initial document load).
+     * @param document The document to match.
+     * @return true if the document event matches this filter.
+     */
+    public boolean matches(DocumentEventType event, DocumentType document) {
+        String nsa = fold(document.getNsa());
+        String type = fold(document.getType());
+        String id = fold(document.getId());
+
+        boolean included = includes.isEmpty();
+        for (Criteria criteria : includes) {
+            if (criteria.matches(event, nsa, type, id)) {
+                included = true;
+                break;
+            }
+        }
+
+        if (!included) {
+            return false;
+        }
+
+        for (Criteria criteria : excludes) {
+            if (criteria.matches(event, nsa, type, id)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Does this filter potentially match documents regardless of their nsa,
+     * type, or id?  Such filters cannot be located through the inverted
+     * index keys.
+     *
+     * @return true if this filter is not restricted by document content.
+     */
+    boolean isWildcard() {
+        return includes.isEmpty() || includes.stream().anyMatch(c -> c.getClauses().isEmpty()
+                || c.getClauses().stream().anyMatch(Clause::isEmpty));
+    }
+
+    /**
+     * Get the inverted index keys for the include clauses of this filter.  A
+     * document matching the filter is guaranteed to produce at least one of
+     * these keys from getKeys(DocumentType) unless the filter is a wildcard.
+     *
+     * @return The set of index keys.
+     */
+    Set<String> getKeys() {
+        Set<String> keys = new HashSet<>();
+        for (Criteria criteria : includes) {
+            for (Clause clause : criteria.getClauses()) {
+                if (clause.getId() != null) {
+                    keys.add(ID_KEY + clause.getId());
+                } else if (clause.getNsa() != null) {
+                    keys.add(NSA_KEY + clause.getNsa());
+                } else if (clause.getType() != null) {
+                    keys.add(TYPE_KEY + clause.getType());
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Get the inverted index keys for a document.
+     *
+     * @param document The document.
+     * @return The index keys under which matching filters may be found.
+     */
+    static List<String> getKeys(DocumentType document) {
+        return List.of(NSA_KEY + fold(document.getNsa()), TYPE_KEY + fold(document.getType()),
+                ID_KEY + fold(document.getId()));
+    }
+
+    private static String fold(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SubscriptionFilter)) {
+            return false;
+        }
+        SubscriptionFilter other = (SubscriptionFilter) o;
+        return includes.equals(other.includes) && excludes.equals(other.excludes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * includes.hashCode() + excludes.hashCode();
+    }
+
+    /**
+     * A compiled filter criteria.
+     */
+    @Value
+    private static class Criteria {
+        Set<DocumentEventType> events;
+        List<Clause> clauses;
+
+        boolean matches(DocumentEventType event, String nsa, String type, String id) {
+            if (event != null && event != DocumentEventType.ALL && !events.contains(event)) {
+                return false;
+            }
+
+            if (clauses.isEmpty()) {
+                return true;
+            }
+
+            for (Clause clause : clauses) {
+                if (clause.matches(nsa, type, id)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A single match clause, null values match anything.
+     */
+    @Value
+    private static class Clause {
+        String nsa;
+        String type;
+        String id;
+
+        boolean isEmpty() {
+            return nsa == null && type == null && id == null;
+        }
+
+        boolean matches(String nsa, String type, String id) {
+            return (this.nsa == null || this.nsa.equals(nsa))
+                    && (this.type == null || this.type.equals(type))
+                    && (this.id == null || this.id.equals(id));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.es.nsi.dds.provider;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.FilterType;
+
+/**
+ * An inverted index from subscription filter criteria to subscriptions.
+ *
+ * Each subscription filter is compiled and registered under the nsa, type,
+ * or id keys of its include clauses, while filters that can match any
+ * document are held in a wildcard set.  Matching a document event then only
+ * evaluates the filters of subscriptions registered under one of the
+ * document's keys plus the wildcard subscriptions.
+ *
+ * Writers are serialized while readers may query the index concurrently.
+ *
+ * @author hacksaw
+ */
+class SubscriptionIndex {
+    // Compiled filters indexed by subscription id.
+    private final Map<String, SubscriptionFilter> filters = new ConcurrentHashMap<>();
+
+    // Subscription ids indexed by filter key.
+    private final Map<String, Set<String>> byKey = new ConcurrentHashMap<>();
+
+    // Subscriptions whose filters may match any document.
+    private final Set<String> wildcard = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Add or replace the filter for a subscription.
+     *
+     * @param id The subscription id.
+     * @param filter The subscription filter, null matches everything.
+     */
+    synchronized void put(String id, FilterType filter) {
+        remove(id);
+
+        SubscriptionFilter compiled = SubscriptionFilter.compile(filter);
+        filters.put(id, compiled);
+        if (compiled.isWildcard()) {
+            wildcard.add(id);
+        } else {
+            for (String key : compiled.getKeys()) {
+                byKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Remove a subscription from the index.
+     *
+     * @param id The subscription id.
+     */
+    synchronized void remove(String id) {
+        SubscriptionFilter compiled = filters.remove(id);
+        if (compiled == null) {
+            return;
+        }
+
+        wildcard.remove(id);
+        for (String key : compiled.getKeys()) {
+            byKey.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Get the compiled filter for a subscription.
+     *
+     * @param id The subscription id.
+     * @return The compiled filter or null if the subscription is not indexed.
+     */
+    SubscriptionFilter getFilter(String id) {
+        return filters.get(id);
+    }
+
+    /**
+     * Get the ids of subscriptions matching a document event.
+     *
+     * @param event The document event type.
+     * @param document The document.
+     * @return The set of matching subscription ids.
+     */
+    Set<String> match(DocumentEventType event, DocumentType document) {
+        Set<String> candidates = new HashSet<>(wildcard);
+        for (String key : SubscriptionFilter.getKeys(document)) {
+            Set<String> ids = byKey.get(key);
+            if (ids != null) {
+                candidates.addAll(ids);
+            }
+        }
+
+        candidates.removeIf(id -> {
+            SubscriptionFilter filter = filters.get(id);
+            return filter == null || !filter.matches(event, document);
+        });
+
+        return candidates;
+    }
+}
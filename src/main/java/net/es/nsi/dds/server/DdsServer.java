@@ -14,6 +14,7 @@ import net.es.nsi.dds.api.Portal;
 import net.es.nsi.dds.client.DdsNotificationCallback;
 import net.es.nsi.dds.config.http.HttpConfig;
 import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.jaxb.JaxbContextRegistry;
 import net.es.nsi.dds.management.api.ManagementService;
 import net.es.nsi.dds.spring.SpringApplicationContext;
 import org.glassfish.jersey.message.DeflateEncoder;
@@ -77,6 +78,9 @@ public class DdsServer {
             NoSuchProviderException, KeyStoreException, CertificateException, UnrecoverableKeyException {
         synchronized(this) {
             if (server == null) {
+                // Create the JAXB contexts before accepting any requests.
+                JaxbContextRegistry.warm();
+
                 if (http.isSecure()) {
                     // Start a HTTPS secure server.
                     server = new RestServer(http.getAddress(), http.getPort(), http.getHttpsContext().getSSLContext());
@@ -0,0 +1,81 @@
+package net.es.nsi.dds.signing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import javax.xml.crypto.Data;
+import javax.xml.crypto.OctetStreamData;
+import javax.xml.crypto.URIDereferencer;
+import javax.xml.crypto.URIReference;
+import javax.xml.crypto.URIReferenceException;
+import javax.xml.crypto.XMLCryptoContext;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+
+/**
+ * A URIDereferencer that caches the contents of external http references
+ * so signing and validating many documents referencing the same external
+ * resource only retrieves it once an hour.  Same document references are
+ * passed to the default dereferencer.
+ *
+ * @author hacksaw
+ */
+public class CachingURIDereferencer implements URIDereferencer {
+    private static final CachingURIDereferencer INSTANCE = new CachingURIDereferencer();
+
+    private final URIDereferencer dereferencer = XMLSignatureFactory.getInstance("DOM").getURIDereferencer();
+    private final Cache<String, Contents> cache = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    /**
+     * The retrieved contents of an external reference.
+     */
+    private static class Contents {
+        final byte[] bytes;
+        final String uri;
+        final String mimeType;
+
+        Contents(byte[] bytes, String uri, String mimeType) {
+            this.bytes = bytes;
+            this.uri = uri;
+            this.mimeType = mimeType;
+        }
+    }
+
+    /**
+     * @return the shared dereferencer.
+     */
+    public static CachingURIDereferencer getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Data dereference(URIReference reference, XMLCryptoContext context) throws URIReferenceException {
+        String uri = reference.getURI();
+        if (uri == null || !(uri.startsWith("http://") || uri.startsWith("https://"))) {
+            return dereferencer.dereference(reference, context);
+        }
+
+        Contents contents = cache.getIfPresent(uri);
+        if (contents == null) {
+            Data data = dereferencer.dereference(reference, context);
+            if (!(data instanceof OctetStreamData)) {
+                return data;
+            }
+
+            OctetStreamData octets = (OctetStreamData) data;
+            try {
+                contents = new Contents(octets.getOctetStream().readAllBytes(), octets.getURI(), octets.getMimeType());
+            } catch (IOException ex) {
+                throw new URIReferenceException("Failed to read " + uri, ex);
+            }
+            cache.put(uri, contents);
+        }
+
+        // Each caller gets its own stream over the cached contents.
+        return new OctetStreamData(new ByteArrayInputStream(contents.bytes), contents.uri, contents.mimeType);
+    }
+}
@@ -6,6 +6,7 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.CertificateException;
@@ -37,21 +38,63 @@ import org.w3c.dom.Document;
  */
 @Slf4j
 public class SignatureFactory {
+    // The jsr105 provider is stateless so a single instance is shared.
+    private static volatile Provider provider = null;
+
     private final XMLSignatureFactory fac;
     private final KeyStoreHandler keyStoreHandler;
 
-    public SignatureFactory() throws KeyStoreException, RuntimeException, NoSuchMethodException, IllegalArgumentException, InvocationTargetException {
-        // We are going to use the jsr105 provider to generate our digital signature.
-        String providerName = System.getProperty("jsr105Provider", "org.jcp.xml.dsig.internal.dom.XMLDSigRI");
+    /**
+     * Get the jsr105 provider used to generate digital signatures,
+     * instantiating it on first use.
+     *
+     * @return The jsr105 provider.
+     * @throws NoSuchMethodException
+     * @throws InvocationTargetException
+     */
+    static Provider getProvider() throws NoSuchMethodException, InvocationTargetException {
+        Provider result = provider;
+        if (result == null) {
+            // We are going to use the jsr105 provider to generate our digital
+            // signature.  The platform provider is not exported from its module
+            // so is located through the factory unless another is configured.
+            String providerName = System.getProperty("jsr105Provider");
+            if (providerName == null) {
+                result = XMLSignatureFactory.getInstance("DOM").getProvider();
+            } else {
+                try {
+                    result = (Provider) Class.forName(providerName).getDeclaredConstructor().newInstance();
+                } catch (ClassNotFoundException | InstantiationException| IllegalAccessException ex) {
+                    log.error("SignatureFactory: could not instantiate a jsr105Provider", ex);
+                    throw new RuntimeException(ex);
+                }
+            }
+            provider = result;
+        }
+        return result;
+    }
 
+    /**
+     * Determine the signature method for the signing key.
+     *
+     * @param key The private signing key.
+     * @return The signature method URI.
+     */
+    static String getSignatureMethod(PrivateKey key) {
+        String algorithm = key.getAlgorithm();
+        if (algorithm.equalsIgnoreCase("RSA")) {
+            return SignatureMethod.RSA_SHA1;
+        }
+        else if (algorithm.equalsIgnoreCase("DSA")) {
+            return SignatureMethod.DSA_SHA1;
+        }
+        return SignatureMethod.HMAC_SHA1;
+    }
+
+    public SignatureFactory() throws KeyStoreException, RuntimeException, NoSuchMethodException, IllegalArgumentException, InvocationTargetException {
         // Create a DOM XMLSignatureFactory that will be used to
         // generate the enveloped signature.
-        try {
-            fac = XMLSignatureFactory.getInstance("DOM", (Provider) Class.forName(providerName).getDeclaredConstructor().newInstance());
-        } catch (ClassNotFoundException | InstantiationException| IllegalAccessException ex) {
-            log.error("SignatureFactory: could not instantiate a jsr105Provider", ex);
-            throw new RuntimeException(ex);
-        }
+        fac = XMLSignatureFactory.getInstance("DOM", getProvider());
 
         try {
             keyStoreHandler = new KeyStoreHandler();
@@ -62,17 +105,9 @@ public class SignatureFactory {
     }
 
     public SignatureFactory(KeyStoreHandler keyStoreHandler) throws RuntimeException, NoSuchMethodException, IllegalArgumentException, InvocationTargetException {
-        // We are going to use the jsr105 provider to generate our digital signature.
-        String providerName = System.getProperty("jsr105Provider", "org.jcp.xml.dsig.internal.dom.XMLDSigRI");
-
         // Create a DOM XMLSignatureFactory that will be used to
         // generate the enveloped signature.
-        try {
-            fac = XMLSignatureFactory.getInstance("DOM", (Provider) Class.forName(providerName).getDeclaredConstructor().newInstance());
-        } catch (ClassNotFoundException | InstantiationException| IllegalAccessException ex) {
-            log.error("SignatureFactory: could not instantiate a jsr105Provider", ex);
-            throw new RuntimeException(ex);
-        }
+        fac = XMLSignatureFactory.getInstance("DOM", getProvider());
 
         this.keyStoreHandler = keyStoreHandler;
     }
@@ -100,14 +135,7 @@ public class SignatureFactory {
         }
 
         // Determine the signature method we will use.
-        String algorithm = keyEntry.getPrivateKey().getAlgorithm();
-        String method = SignatureMethod.HMAC_SHA1;
-        if (algorithm.equalsIgnoreCase("RSA")) {
-            method = SignatureMethod.RSA_SHA1;
-        }
-        else if (algorithm.equalsIgnoreCase("DSA")) {
-            method = SignatureMethod.DSA_SHA1;
-        }
+        String method = getSignatureMethod(keyEntry.getPrivateKey());
 
         // Create the SignedInfo.
         SignedInfo si;
@@ -178,14 +206,7 @@ public class SignatureFactory {
         }
 
         // Determine the signature method we will use.
-        String algorithm = keyEntry.getPrivateKey().getAlgorithm();
-        String method = SignatureMethod.HMAC_SHA1;
-        if (algorithm.equalsIgnoreCase("RSA")) {
-            method = SignatureMethod.RSA_SHA1;
-        }
-        else if (algorithm.equalsIgnoreCase("DSA")) {
-            method = SignatureMethod.DSA_SHA1;
-        }
+        String method = getSignatureMethod(keyEntry.getPrivateKey());
 
         // Create the SignedInfo.
         SignedInfo si;
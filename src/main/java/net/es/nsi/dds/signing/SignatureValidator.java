@@ -0,0 +1,257 @@
+package net.es.nsi.dds.signing;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.ContentType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.lib.Decoder;
+import net.es.nsi.dds.spring.SpringApplicationContext;
+import org.w3c.dom.Document;
+
+/**
+ * Validates the signatures of documents received from peers, remembering
+ * the result so a document is only verified once.
+ *
+ * Results are cached by document id, version, and a digest of the encoded
+ * signature, so re-delivered and duplicate notifications of a document skip
+ * signature verification entirely while any change to the document version
+ * or signature is verified again.  Concurrent requests to validate the same
+ * document wait for a single verification.
+ *
+ * Documents can be validated ahead of use on the validator's executor so a
+ * batch of incoming documents is verified in parallel while they wait to be
+ * applied in order.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SignatureValidator {
+    // Defaults used if not configured in beans.xml.
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private boolean enforce = false;
+    private boolean secureValidation = true;
+    private int threads = DEFAULT_THREADS;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    private volatile Cache<String, Boolean> results = null;
+    private ExecutorService executor = null;
+
+    // Validator statistics.
+    private final AtomicLong verified = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * Get a reference to the signature validator singleton bean.
+     *
+     * @return The signature validator.
+     */
+    public static SignatureValidator getInstance() {
+        return SpringApplicationContext.getBean("signatureValidator", SignatureValidator.class);
+    }
+
+    /**
+     * Does the document carry a valid signature?  A document without a
+     * signature is not valid.
+     *
+     * @param document The document to validate.
+     * @return true if the document signature is valid.
+     */
+    public boolean isValid(DocumentType document) {
+        ContentType signature = document.getSignature();
+        if (signature == null || Strings.isNullOrEmpty(signature.getValue())) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        boolean valid;
+        try {
+            valid = getResults().get(key(document, signature), () -> verify(document, signature));
+        } catch (ExecutionException | RuntimeException ex) {
+            log.error("[SignatureValidator] failed to validate document nsa={}, type={}, id={}",
+                    document.getNsa(), document.getType(), document.getId(), ex);
+            valid = false;
+        }
+
+        if (!valid) {
+            rejected.incrementAndGet();
+        }
+        return valid;
+    }
+
+    /**
+     * Validate a document on the validator's executor.
+     *
+     * @param document The document to validate.
+     * @return A future completed with the result of isValid.
+     */
+    public CompletableFuture<Boolean> validateAsync(DocumentType document) {
+        try {
+            return CompletableFuture.supplyAsync(() -> isValid(document), getExecutor());
+        } catch (RejectedExecutionException ex) {
+            return CompletableFuture.completedFuture(isValid(document));
+        }
+    }
+
+    // A signature that fails to verify is remembered, while an error such as
+    // failing to retrieve a referenced resource is not so the document will
+    // be verified again.
+    private boolean verify(DocumentType document, ContentType signature) throws Exception {
+        verified.incrementAndGet();
+        Document sig = Decoder.decode2Dom(signature.getContentTransferEncoding(), signature.getContentType(),
+                signature.getValue());
+        boolean valid = Validate.validateExternal(sig, secureValidation);
+        if (!valid) {
+            log.error("[SignatureValidator] invalid signature for document nsa={}, type={}, id={}",
+                    document.getNsa(), document.getType(), document.getId());
+        }
+        return valid;
+    }
+
+    private static String key(DocumentType document, ContentType signature) {
+        return String.join("|", document.getNsa(), document.getType(), document.getId(),
+                document.getVersion() == null ? "" : document.getVersion().toXMLFormat(),
+                Hashing.sha256().hashString(signature.getValue(), StandardCharsets.UTF_8).toString());
+    }
+
+    private Cache<String, Boolean> getResults() {
+        Cache<String, Boolean> result = results;
+        if (result == null) {
+            synchronized (this) {
+                if (results == null) {
+                    results = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+                }
+                result = results;
+            }
+        }
+        return result;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "signature-validator-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the validation executor.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            executor = null;
+        }
+        log.info("[SignatureValidator] stopped, {}", this);
+    }
+
+    /**
+     * @return true if documents from peers must carry a valid signature.
+     */
+    public boolean isEnforce() {
+        return enforce;
+    }
+
+    /**
+     * @param enforce true if documents from peers must carry a valid signature.
+     */
+    public void setEnforce(boolean enforce) {
+        this.enforce = enforce;
+    }
+
+    /**
+     * @return true if signatures are validated under the JDK secure
+     *      validation policy.
+     */
+    public boolean isSecureValidation() {
+        return secureValidation;
+    }
+
+    /**
+     * @param secureValidation false to accept the rsa-sha1 signatures over
+     *      an http reference generated by DDS servers, which the JDK secure
+     *      validation policy forbids.
+     */
+    public void setSecureValidation(boolean secureValidation) {
+        this.secureValidation = secureValidation;
+    }
+
+    /**
+     * @return the number of validation threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads the number of validation threads.  Takes effect when the
+     *      executor is first used.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+    }
+
+    /**
+     * @return the maximum number of cached validation results.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @param cacheSize the maximum number of cached validation results.
+     *      Takes effect when the cache is first used.
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize > 0 ? cacheSize : DEFAULT_CACHE_SIZE;
+    }
+
+    /**
+     * @return the number of signatures verified.
+     */
+    public long getVerified() {
+        return verified.get();
+    }
+
+    /**
+     * @return the number of documents found to be unsigned or invalid.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of validations answered from the cache.
+     */
+    public long getCached() {
+        Cache<String, Boolean> result = results;
+        return result == null ? 0 : result.stats().hitCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("enforce=%b, verified=%d, cached=%d, rejected=%d", enforce, getVerified(), getCached(),
+                getRejected());
+    }
+}
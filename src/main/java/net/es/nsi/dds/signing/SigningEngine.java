@@ -0,0 +1,301 @@
+package net.es.nsi.dds.signing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.UnrecoverableEntryException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.keyinfo.KeyInfo;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.spring.SpringApplicationContext;
+import org.w3c.dom.Document;
+
+/**
+ * A long lived engine for signing documents that keeps everything needed to
+ * generate a signature between documents.
+ *
+ * The private key entry, KeyInfo, and signature algorithm are resolved once
+ * for the signing keystore and alias, and resolved again only if the
+ * configured keystore or alias changes.  The XMLSignatureFactory is not
+ * safe for concurrent use so each thread keeps its own factory created from
+ * a shared provider instance.
+ *
+ * Documents may be signed on the caller's thread or submitted to the
+ * engine's executor to sign a batch of documents in parallel.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SigningEngine {
+    // Defaults used if not configured in beans.xml.
+    public static final int DEFAULT_THREADS = 4;
+    public static final String DEFAULT_REFERENCE = "http://www.w3.org/TR/xml-stylesheet";
+
+    private int threads = DEFAULT_THREADS;
+    private String reference = DEFAULT_REFERENCE;
+    private ExecutorService executor = null;
+
+    // Signing state for the current keystore and alias.
+    private volatile Signer signer = null;
+
+    // Engine statistics.
+    private final AtomicLong signed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    /**
+     * Get a reference to the signing engine singleton bean.
+     *
+     * @return The signing engine.
+     */
+    public static SigningEngine getInstance() {
+        return SpringApplicationContext.getBean("signingEngine", SigningEngine.class);
+    }
+
+    /**
+     * Generate a detached signature using the private key identified by
+     * alias in the provided keystore.
+     *
+     * @param keyStoreHandler The keystore holding the signing key.
+     * @param alias The alias of the signing key.
+     * @param dom The document being signed.
+     * @return A new document holding the signature.
+     * @throws KeyStoreException If the signing key could not be loaded.
+     * @throws XMLSignatureException If the signature could not be generated.
+     */
+    public Document generateExternalSignature(KeyStoreHandler keyStoreHandler, String alias, Document dom)
+            throws KeyStoreException, XMLSignatureException {
+        try {
+            Document result = getSigner(keyStoreHandler, alias).sign(reference);
+            signed.incrementAndGet();
+            return result;
+        } catch (KeyStoreException | XMLSignatureException | RuntimeException ex) {
+            failed.incrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the executor used to sign documents in parallel.
+     *
+     * @return The signing executor.
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "signing-engine-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the signing executor.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            executor = null;
+        }
+        log.info("[SigningEngine] stopped, {}", this);
+    }
+
+    private Signer getSigner(KeyStoreHandler keyStoreHandler, String alias) throws KeyStoreException {
+        Signer current = signer;
+        if (current == null || current.keyStoreHandler != keyStoreHandler || !current.alias.equals(alias)) {
+            synchronized (this) {
+                current = signer;
+                if (current == null || current.keyStoreHandler != keyStoreHandler || !current.alias.equals(alias)) {
+                    current = new Signer(keyStoreHandler, alias);
+                    signer = current;
+                    log.info("[SigningEngine] loaded signing key alias={}", alias);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the number of signing threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads the number of signing threads.  Takes effect when the
+     *      executor is first used.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+    }
+
+    /**
+     * @return the external reference signed for each document.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * @param reference the external reference signed for each document.
+     */
+    public void setReference(String reference) {
+        this.reference = reference == null || reference.isEmpty() ? DEFAULT_REFERENCE : reference;
+    }
+
+    /**
+     * @return the number of signatures generated.
+     */
+    public long getSigned() {
+        return signed.get();
+    }
+
+    /**
+     * @return the number of signatures that failed.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("threads=%d, signed=%d, failed=%d", threads, getSigned(), getFailed());
+    }
+
+    /**
+     * The signing objects resolved for a keystore and alias.
+     */
+    private static class Signer {
+        final KeyStoreHandler keyStoreHandler;
+        final String alias;
+
+        private final Provider provider;
+        private final KeyStore.PrivateKeyEntry keyEntry;
+        private final KeyInfo keyInfo;
+        private final String signatureAlgorithm;
+
+        private final ThreadLocal<XMLSignatureFactory> factories;
+        private final ThreadLocal<DocumentBuilder> builders;
+
+        Signer(KeyStoreHandler keyStoreHandler, String alias) throws KeyStoreException {
+            this.keyStoreHandler = keyStoreHandler;
+            this.alias = alias;
+
+            try {
+                provider = SignatureFactory.getProvider();
+            } catch (NoSuchMethodException | InvocationTargetException ex) {
+                log.error("[SigningEngine] could not instantiate a jsr105Provider", ex);
+                throw new RuntimeException(ex);
+            }
+            factories = ThreadLocal.withInitial(() -> XMLSignatureFactory.getInstance("DOM", provider));
+            builders = ThreadLocal.withInitial(Signer::newDocumentBuilder);
+
+            // Open the keystore and load the private key corresponding to alias.
+            XMLSignatureFactory fac = factories.get();
+            try {
+                keyEntry = keyStoreHandler.getPrivateKeyEntry(alias);
+                if (keyEntry == null) {
+                    throw new KeyStoreException("No private key for alias=\"" + alias + "\"");
+                }
+                keyInfo = keyStoreHandler.getKeyInfo(alias, fac);
+            } catch (NoSuchAlgorithmException | UnrecoverableEntryException | KeyStoreException ex) {
+                log.error("[SigningEngine] could not locate private key for alias=\"" + alias + "\"", ex);
+                throw new KeyStoreException(ex);
+            }
+
+            // Check the algorithms are supported before the first signature.
+            signatureAlgorithm = SignatureFactory.getSignatureMethod(keyEntry.getPrivateKey());
+            newSignedInfo(fac, DEFAULT_REFERENCE);
+        }
+
+        Document sign(String reference) throws XMLSignatureException {
+            XMLSignatureFactory fac = factories.get();
+            XMLSignature signature = fac.newXMLSignature(newSignedInfo(fac, reference), keyInfo);
+
+            // Create the Document that will hold the resulting XMLSignature.
+            Document doc = builders.get().newDocument();
+            DOMSignContext signContext = new DOMSignContext(keyEntry.getPrivateKey(), doc);
+            signContext.setURIDereferencer(CachingURIDereferencer.getInstance());
+            try {
+                signature.sign(signContext);
+            } catch (MarshalException | XMLSignatureException ex) {
+                log.error("[SigningEngine] could not create signature", ex);
+                throw new XMLSignatureException(ex);
+            }
+
+            // Validate document before returning.  We chose the reference and
+            // algorithms so the check is made outside the secure validation
+            // policy, which forbids both.
+            try {
+                Validate.validateEnveloped(doc, false);
+            }
+            catch (Exception ex) {
+                log.error("[SigningEngine] failed to validate signature", ex);
+                throw new RuntimeException(ex);
+            }
+
+            return doc;
+        }
+
+        /**
+         * The signature method caches its java.security.Signature and the
+         * reference holds the digest it computes, so neither can be shared
+         * between concurrent signatures and both are created each time.
+         */
+        private SignedInfo newSignedInfo(XMLSignatureFactory fac, String reference) {
+            try {
+                CanonicalizationMethod canonicalizationMethod = fac.newCanonicalizationMethod(
+                        CanonicalizationMethod.INCLUSIVE_WITH_COMMENTS, (C14NMethodParameterSpec) null);
+                SignatureMethod signatureMethod = fac.newSignatureMethod(signatureAlgorithm, null);
+                Reference ref = fac.newReference(reference, fac.newDigestMethod(DigestMethod.SHA512, null));
+                return fac.newSignedInfo(canonicalizationMethod, signatureMethod, Collections.singletonList(ref));
+            } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException ex) {
+                log.error("[SigningEngine] configured signature algorithms not supported", ex);
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private static DocumentBuilder newDocumentBuilder() {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true); // must be set
+            dbf.setValidating(true);
+            dbf.setExpandEntityReferences(true);
+            dbf.setXIncludeAware(true);
+            try {
+                return dbf.newDocumentBuilder();
+            } catch (ParserConfigurationException ex) {
+                log.error("[SigningEngine] could not create document builder", ex);
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+}
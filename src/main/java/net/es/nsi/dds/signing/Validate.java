@@ -21,8 +21,30 @@ import org.w3c.dom.NodeList;
  */
 @Slf4j
 public class Validate {
+    // The key selector is stateless so is shared, while an XMLSignatureFactory
+    // is not safe for concurrent use so one is kept per thread.
+    private static final X509KeySelector keySelector = new X509KeySelector();
+    private static final ThreadLocal<XMLSignatureFactory> factories =
+            ThreadLocal.withInitial(() -> XMLSignatureFactory.getInstance("DOM"));
+
+    // Context property controlling the JDK secure validation policy.
+    private static final String SECURE_VALIDATION = "org.jcp.xml.dsig.secureValidation";
 
     public static boolean validateEnveloped(Document doc) throws Exception {
+        return validateEnveloped(doc, true);
+    }
+
+    /**
+     * Validate an enveloped signature.
+     *
+     * @param doc The document holding the signature.
+     * @param secure false to validate outside the JDK secure validation
+     *      policy, which forbids the rsa-sha1 signatures over an http
+     *      reference generated by DDS servers.
+     * @return true if the signature is valid.
+     * @throws Exception If the signature could not be validated.
+     */
+    public static boolean validateEnveloped(Document doc, boolean secure) throws Exception {
 
         // Find Signature element
         NodeList nl = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
@@ -30,15 +52,17 @@ public class Validate {
             throw new Exception("Cannot find Signature element");
         }
 
-        // Create a DOM XMLSignatureFactory that will be used to unmarshal the
+        // Get the DOM XMLSignatureFactory that will be used to unmarshal the
         // document containing the XMLSignature
-        XMLSignatureFactory fac = XMLSignatureFactory.getInstance("DOM");
+        XMLSignatureFactory fac = factories.get();
 
         // Create a DOMValidateContext and specify a KeyValue KeySelector
         // and document context.
-        DOMValidateContext valContext = new DOMValidateContext(new X509KeySelector(), nl.item(0));
+        DOMValidateContext valContext = new DOMValidateContext(keySelector, nl.item(0));
+        valContext.setURIDereferencer(CachingURIDereferencer.getInstance());
 
         valContext.setProperty("javax.xml.crypto.dsig.cacheReference", Boolean.TRUE);
+        valContext.setProperty(SECURE_VALIDATION, secure);
 
         // Unmarshal the XMLSignature
         XMLSignature signature = fac.unmarshalXMLSignature(valContext);
@@ -69,19 +93,40 @@ public class Validate {
     }
 
     public static boolean validateExternal(Document doc, Document sig) throws Exception {
+        return validateExternal(sig);
+    }
+
+    public static boolean validateExternal(Document sig) throws Exception {
+        return validateExternal(sig, true);
+    }
+
+    /**
+     * Validate a detached signature.  The signature references an external
+     * resource rather than the signed document so only the signature is
+     * needed.
+     *
+     * @param sig The document holding the signature.
+     * @param secure false to validate outside the JDK secure validation
+     *      policy.
+     * @return true if the signature is valid.
+     * @throws Exception If the signature could not be validated.
+     */
+    public static boolean validateExternal(Document sig, boolean secure) throws Exception {
         // Find Signature element
         NodeList nl = sig.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
         if (nl.getLength() == 0) {
             throw new Exception("Cannot find Signature element");
         }
 
-        // Create a DOM XMLSignatureFactory that will be used to unmarshal the
+        // Get the DOM XMLSignatureFactory that will be used to unmarshal the
         // document containing the XMLSignature
-        XMLSignatureFactory fac = XMLSignatureFactory.getInstance("DOM");
+        XMLSignatureFactory fac = factories.get();
 
         // Create a DOMValidateContext and specify a KeyValue KeySelector
         // and document context
-        DOMValidateContext valContext = new DOMValidateContext(new X509KeySelector(), nl.item(0));
+        DOMValidateContext valContext = new DOMValidateContext(keySelector, nl.item(0));
+        valContext.setURIDereferencer(CachingURIDereferencer.getInstance());
+        valContext.setProperty(SECURE_VALIDATION, secure);
 
         // Unmarshal the XMLSignature
         XMLSignature signature = fac.unmarshalXMLSignature(valContext);
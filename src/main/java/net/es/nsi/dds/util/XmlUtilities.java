@@ -7,18 +7,21 @@ import jakarta.xml.bind.Marshaller;
 import jakarta.xml.bind.Unmarshaller;
 import jakarta.xml.bind.annotation.XmlRootElement;
 import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.JaxbContextRegistry;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.concurrent.CopyOnWriteArrayList;
 import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
@@ -35,6 +38,32 @@ public class XmlUtilities {
     public final static long ONE_YEAR = 31536000000L;
     public final static long ONE_DAY = 86400000L;
 
+    // Looking up a DatatypeFactory is a service loader search, while the
+    // factory itself holds no state, so a single instance is shared.
+    private final static DatatypeFactory DATATYPE_FACTORY = newDatatypeFactory();
+
+    private static DatatypeFactory newDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException ex) {
+            log.error("[XmlUtilities] could not create DatatypeFactory", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the shared DatatypeFactory, which is safe to use concurrently.
+     *
+     * @return the shared DatatypeFactory.
+     * @throws DatatypeConfigurationException if no DatatypeFactory is available.
+     */
+    public static DatatypeFactory getDatatypeFactory() throws DatatypeConfigurationException {
+        if (DATATYPE_FACTORY == null) {
+            throw new DatatypeConfigurationException("No DatatypeFactory available");
+        }
+        return DATATYPE_FACTORY;
+    }
+
 	/**
 	 * Utility method to marshal a JAXB annotated java object to an XML
          * formatted string.  This class is generic enough to be used for any
@@ -69,8 +98,8 @@ public class XmlUtilities {
             StringWriter writer = new StringWriter();
             String result;
             try {
-                // We will use JAXB to marshal the java objects.
-                final JAXBContext jaxbContext = JAXBContext.newInstance(xmlClass);
+                // We will use the shared JAXB context to marshal the java objects.
+                final JAXBContext jaxbContext = JaxbContextRegistry.getContext(xmlClass);
 
                 // Marshal the object.
                 Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
@@ -90,7 +119,7 @@ public class XmlUtilities {
 	}
 
     public static Object xmlToJaxb(Class<?> xmlClass, String xml) throws JAXBException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(xmlClass);
+        JAXBContext jaxbContext = JaxbContextRegistry.getContext(xmlClass);
         Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
         JAXBElement<?> element;
         try (StringReader reader = new StringReader(xml)) {
@@ -100,7 +129,7 @@ public class XmlUtilities {
     }
 
     public static Object xmlToJaxb(Class<?> xmlClass, InputStream is) throws JAXBException, IOException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(xmlClass);
+        JAXBContext jaxbContext = JaxbContextRegistry.getContext(xmlClass);
         Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
         JAXBElement<?> element = (JAXBElement<?>) unmarshaller.unmarshal(is);
         is.close();
@@ -114,13 +143,13 @@ public class XmlUtilities {
 
         GregorianCalendar cal = new GregorianCalendar();
         cal.setTimeInMillis(time);
-        return DatatypeFactory.newInstance().newXMLGregorianCalendar(cal);
+        return getDatatypeFactory().newXMLGregorianCalendar(cal);
     }
 
     public static XMLGregorianCalendar xmlGregorianCalendar() {
       try {
         GregorianCalendar cal = new GregorianCalendar();
-        return DatatypeFactory.newInstance().newXMLGregorianCalendar(cal);
+        return getDatatypeFactory().newXMLGregorianCalendar(cal);
       } catch (DatatypeConfigurationException ex) {
         log.error("[XmlUtilities] xmlGregorianCalendar failed", ex);
         return null;
@@ -130,7 +159,45 @@ public class XmlUtilities {
     public static XMLGregorianCalendar xmlGregorianCalendar(Date date) throws DatatypeConfigurationException {
         GregorianCalendar cal = new GregorianCalendar();
         cal.setTime(date);
-        return DatatypeFactory.newInstance().newXMLGregorianCalendar(cal);
+        return getDatatypeFactory().newXMLGregorianCalendar(cal);
+    }
+
+    /**
+     * Convert an XMLGregorianCalendar to milliseconds since the epoch.  A
+     * complete date with a timezone is converted directly from its fields,
+     * anything else through a GregorianCalendar as toGregorianCalendar()
+     * would.
+     *
+     * @param cal The calendar to convert.
+     * @param defaultTime The value to return if cal is null.
+     * @return milliseconds since the epoch.
+     */
+    public static long xmlGregorianCalendarToLong(XMLGregorianCalendar cal, long defaultTime) {
+        if (cal == null) {
+            return defaultTime;
+        }
+
+        int year = cal.getYear();
+        int month = cal.getMonth();
+        int day = cal.getDay();
+        int timezone = cal.getTimezone();
+        if (cal.getEon() != null || year < 1583 || month == DatatypeConstants.FIELD_UNDEFINED || day == DatatypeConstants.FIELD_UNDEFINED
+                || timezone == DatatypeConstants.FIELD_UNDEFINED) {
+            // Before the Gregorian cutover or missing fields need the
+            // calendar's defaults.
+            return cal.toGregorianCalendar().getTimeInMillis();
+        }
+
+        long seconds = LocalDate.of(year, month, day).toEpochDay() * 86400L
+                + field(cal.getHour()) * 3600L
+                + field(cal.getMinute()) * 60L
+                + field(cal.getSecond())
+                - timezone * 60L;
+        return seconds * 1000L + field(cal.getMillisecond());
+    }
+
+    private static int field(int value) {
+        return value == DatatypeConstants.FIELD_UNDEFINED ? 0 : value;
     }
 
     public static Date xmlGregorianCalendarToDate(XMLGregorianCalendar cal) throws DatatypeConfigurationException {
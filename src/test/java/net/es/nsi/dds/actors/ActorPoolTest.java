@@ -0,0 +1,120 @@
+package net.es.nsi.dds.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.actor.UntypedAbstractActor;
+import akka.pattern.Patterns;
+import akka.routing.SmallestMailboxRoutingLogic;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify router pools run on their dispatcher and grow while busy.
+ *
+ * @author hacksaw
+ */
+public class ActorPoolTest {
+  private static final Set<String> threads = ConcurrentHashMap.newKeySet();
+  private ActorSystem system;
+
+  @Before
+  public void setUp() {
+    threads.clear();
+    system = ActorSystem.create("ActorPoolTest", ConfigFactory.parseString(
+            "test-dispatcher { type = Dispatcher, executor = thread-pool-executor, "
+            + "thread-pool-executor { fixed-pool-size = 8 }, throughput = 1 }")
+            .withFallback(ConfigFactory.load()));
+  }
+
+  @After
+  public void tearDown() {
+    system.terminate();
+  }
+
+  @Test
+  public void testResize() throws Exception {
+    CountDownLatch latch = new CountDownLatch(100);
+    ActorRef router = system.actorOf(Props.create(PoolRouter.class, "test-dispatcher", 2, 4, latch));
+    for (int i = 0; i < 100; i++) {
+      router.tell("work", ActorRef.noSender());
+    }
+
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+    int size = size(router);
+    assertTrue(size > 2 && size <= 4);
+    assertTrue(threads.stream().allMatch(t -> t.contains("test-dispatcher")));
+  }
+
+  @Test
+  public void testFixed() throws Exception {
+    CountDownLatch latch = new CountDownLatch(20);
+    ActorRef router = system.actorOf(Props.create(PoolRouter.class, "missing-dispatcher", 3, 0, latch));
+    for (int i = 0; i < 20; i++) {
+      router.tell("work", ActorRef.noSender());
+    }
+
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+    assertEquals(3, size(router));
+    assertTrue(threads.stream().noneMatch(t -> t.contains("missing-dispatcher")));
+
+    // A terminated worker is replaced.
+    router.tell("kill", ActorRef.noSender());
+    Thread.sleep(500);
+    assertEquals(3, size(router));
+  }
+
+  private static int size(ActorRef router) throws Exception {
+    return (Integer) Patterns.ask(router, "size", Duration.ofSeconds(5))
+            .toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+
+  public static class PoolRouter extends UntypedAbstractActor {
+    private final ActorPool pool;
+
+    public PoolRouter(String dispatcher, int poolSize, int maxPoolSize, CountDownLatch latch) {
+      pool = new ActorPool(getContext(), Props.create(Worker.class, latch), dispatcher,
+              new SmallestMailboxRoutingLogic(), poolSize, maxPoolSize);
+    }
+
+    @Override
+    public void onReceive(Object msg) {
+      if ("size".equals(msg)) {
+        getSender().tell(pool.size(), getSelf());
+      } else if ("kill".equals(msg)) {
+        pool.route(PoisonPill.getInstance(), getSelf());
+      } else if (msg instanceof Terminated) {
+        pool.terminated(((Terminated) msg).actor());
+      } else {
+        pool.route(msg, getSelf());
+      }
+    }
+  }
+
+  public static class Worker extends UntypedAbstractActor {
+    private final CountDownLatch latch;
+
+    public Worker(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void onReceive(Object msg) throws InterruptedException {
+      threads.add(Thread.currentThread().getName());
+      Thread.sleep(10);
+      latch.countDown();
+    }
+  }
+}
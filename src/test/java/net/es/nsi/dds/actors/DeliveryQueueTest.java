@@ -0,0 +1,68 @@
+package net.es.nsi.dds.actors;
+
+import java.util.List;
+import javax.xml.datatype.DatatypeConfigurationException;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.util.XmlUtilities;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify queued document events are coalesced per document.
+ *
+ * @author hacksaw
+ */
+public class DeliveryQueueTest {
+  private static final ObjectFactory factory = new ObjectFactory();
+
+  private static Document newDocument(String id, long version) throws DatatypeConfigurationException {
+    DocumentType document = factory.createDocumentType();
+    document.setNsa("urn:ogf:network:example.net:2013:nsa");
+    document.setType("vnd.ogf.nsi.topology.v2+xml");
+    document.setId(id);
+    document.setVersion(XmlUtilities.longToXMLGregorianCalendar(version));
+    document.setExpires(XmlUtilities.longToXMLGregorianCalendar(version + XmlUtilities.ONE_DAY));
+    return new Document(document, "https://localhost/dds");
+  }
+
+  @Test
+  public void testCoalesce() throws DatatypeConfigurationException {
+    long now = System.currentTimeMillis();
+    DeliveryQueue queue = new DeliveryQueue("subscription");
+
+    Document a1 = newDocument("a", now);
+    Document b1 = newDocument("b", now);
+    Document a2 = newDocument("a", now + 1000);
+    Document a0 = newDocument("a", now - 1000);
+
+    assertTrue(queue.add(DocumentEventType.NEW, a1));
+    assertTrue(queue.add(DocumentEventType.UPDATED, b1));
+    long bytes = queue.getBytes();
+    assertTrue(bytes > 0);
+
+    // A newer version replaces the queued one, an older version is dropped.
+    assertTrue(queue.add(DocumentEventType.UPDATED, a2));
+    assertFalse(queue.add(DocumentEventType.UPDATED, a0));
+    assertEquals(2, queue.size());
+    assertEquals(2, queue.getCoalesced());
+    assertEquals(bytes, queue.getBytes());
+
+    List<DeliveryQueue.Entry> entries = queue.drain();
+    assertEquals(2, entries.size());
+    assertSame(b1, entries.get(0).document);
+    assertSame(a2, entries.get(1).document);
+
+    // The peer has not seen the document yet so it remains new.
+    assertEquals(DocumentEventType.NEW, entries.get(1).event);
+
+    assertTrue(queue.isEmpty());
+    assertEquals(0, queue.getBytes());
+  }
+}
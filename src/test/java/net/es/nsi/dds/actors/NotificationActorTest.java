@@ -0,0 +1,240 @@
+package net.es.nsi.dds.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import javax.xml.datatype.DatatypeConfigurationException;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.client.CompressionStatistics;
+import net.es.nsi.dds.client.ContentCompression;
+import net.es.nsi.dds.client.RestClient;
+import net.es.nsi.dds.config.ConfigurationManager;
+import net.es.nsi.dds.jaxb.dds.ContentType;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.FilterCriteriaType;
+import net.es.nsi.dds.jaxb.dds.FilterType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.jaxb.dds.SubscriptionRequestType;
+import net.es.nsi.dds.messages.Notification;
+import net.es.nsi.dds.provider.DiscoveryProvider;
+import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.provider.Subscription;
+import net.es.nsi.dds.test.TestConfig;
+import net.es.nsi.dds.util.NsiConstants;
+import net.es.nsi.dds.util.XmlUtilities;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify non-blocking notification delivery keeps each subscription's
+ * notifications in order across retries.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class NotificationActorTest {
+  private static final ObjectFactory factory = new ObjectFactory();
+  private static final String NSA = "urn:ogf:network:example.net:2024:nsa";
+
+  // Document content that puts a notification list over the compression
+  // threshold.
+  private static final int CONTENT_SIZE = 4096;
+
+  private static TestConfig testConfig;
+  private static ActorSystem system;
+  private static RestClient restClient;
+  private static DiscoveryProvider discoveryProvider;
+
+  private HttpServer server;
+  private String callback;
+  private Subscription subscription;
+  private ActorRef actor;
+
+  // Failure responses to return before accepting notifications.
+  private final AtomicInteger failures = new AtomicInteger(0);
+
+  // The decoded notification lists received in order.
+  private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+  // Notification lists received compressed.
+  private final AtomicInteger compressed = new AtomicInteger(0);
+
+  @BeforeClass
+  public static void oneTimeSetUp() throws IllegalStateException, KeyManagementException, NoSuchAlgorithmException,
+          NoSuchProviderException, KeyStoreException, CertificateException, UnrecoverableKeyException {
+    testConfig = new TestConfig();
+    system = ActorSystem.create("NotificationActorTest");
+    restClient = RestClient.getInstance();
+    discoveryProvider = ConfigurationManager.INSTANCE.getDiscoveryProvider();
+  }
+
+  @AfterClass
+  public static void oneTimeTearDown() throws InterruptedException {
+    system.terminate();
+    testConfig.shutdown();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/notifications", exchange -> {
+      if ("gzip".equals(exchange.getRequestHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+        compressed.incrementAndGet();
+      }
+
+      try (InputStream is = "gzip".equals(exchange.getRequestHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))
+              ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+        received.add(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+      }
+
+      if (failures.getAndUpdate(f -> f > 0 ? f - 1 : f) != 0) {
+        exchange.getResponseHeaders().add(HttpHeaders.RETRY_AFTER, "1");
+        exchange.sendResponseHeaders(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), -1);
+      } else {
+        exchange.sendResponseHeaders(Response.Status.ACCEPTED.getStatusCode(), -1);
+      }
+      exchange.close();
+    });
+    server.start();
+    callback = "http://localhost:" + server.getAddress().getPort() + "/notifications";
+
+    FilterCriteriaType criteria = factory.createFilterCriteriaType();
+    criteria.getEvent().add(DocumentEventType.ALL);
+    FilterType filter = factory.createFilterType();
+    filter.getInclude().add(criteria);
+    SubscriptionRequestType request = factory.createSubscriptionRequestType();
+    request.setRequesterId(NSA);
+    request.setCallback(callback);
+    request.setFilter(filter);
+    subscription = discoveryProvider.addSubscription(request, NsiConstants.NSI_DDS_V1_XML);
+
+    // We send the notifications ourselves.
+    subscription.getAction().cancel();
+
+    actor = system.actorOf(Props.create(NotificationActor.class, NSA, restClient));
+  }
+
+  @After
+  public void tearDown() {
+    system.stop(actor);
+    try {
+      discoveryProvider.deleteSubscription(subscription.getId());
+    } catch (Exception ex) {
+      log.debug("NotificationActorTest: subscription already removed {}", subscription.getId());
+    }
+    server.stop(0);
+  }
+
+  @Test
+  public void testOrdering() throws Exception {
+    log.debug("@Test - testOrdering");
+    assertTrue(restClient.isAsync());
+
+    // The first delivery fails so is retried before the others are sent.
+    failures.set(1);
+    actor.tell(notification("first", CONTENT_SIZE), ActorRef.noSender());
+    actor.tell(notification("second", CONTENT_SIZE), ActorRef.noSender());
+    actor.tell(notification("third", CONTENT_SIZE), ActorRef.noSender());
+
+    assertContains("first", received.poll(10, TimeUnit.SECONDS));
+    assertContains("first", received.poll(10, TimeUnit.SECONDS));
+    assertContains("second", received.poll(10, TimeUnit.SECONDS));
+    assertContains("third", received.poll(10, TimeUnit.SECONDS));
+
+    // Each body was over the threshold so was compressed as it was sent.
+    assertEquals(4, compressed.get());
+    CompressionStatistics stats = restClient.getCompression().getStatistics(
+            ContentCompression.getPeer(URI.create(callback)));
+    assertNotNull(stats);
+    assertEquals(4, stats.getRequests());
+  }
+
+  @Test
+  public void testThreshold() throws Exception {
+    log.debug("@Test - testThreshold");
+    Notification small = notification("small", 0);
+    Notification large = notification("large", CONTENT_SIZE);
+    actor.tell(small, ActorRef.noSender());
+    actor.tell(large, ActorRef.noSender());
+
+    // Only the notification list over the threshold is compressed.
+    assertContains("small", received.poll(10, TimeUnit.SECONDS));
+    assertContains("large", received.poll(10, TimeUnit.SECONDS));
+    assertEquals(1, compressed.get());
+    assertEquals(1, restClient.getCompression().getStatistics(
+            ContentCompression.getPeer(URI.create(callback))).getRequests());
+  }
+
+  @Test
+  public void testDeleted() throws Exception {
+    log.debug("@Test - testDeleted");
+    failures.set(Integer.MAX_VALUE);
+    actor.tell(notification("first"), ActorRef.noSender());
+    actor.tell(notification("second"), ActorRef.noSender());
+    assertContains("first", received.poll(10, TimeUnit.SECONDS));
+
+    // The pending retry and the notification waiting on it are dropped.
+    discoveryProvider.deleteSubscription(subscription.getId());
+    assertNull(received.poll(3, TimeUnit.SECONDS));
+  }
+
+  private Notification notification(String name) throws DatatypeConfigurationException {
+    return notification(name, 0);
+  }
+
+  private Notification notification(String name, int contentSize) throws DatatypeConfigurationException {
+    long now = System.currentTimeMillis();
+    DocumentType document = factory.createDocumentType();
+    document.setNsa(NSA);
+    document.setType("vnd.ogf.nsi.topology.v2+xml");
+    document.setId("urn:ogf:network:example.net:2024:" + name);
+    document.setVersion(XmlUtilities.longToXMLGregorianCalendar(now));
+    document.setExpires(XmlUtilities.longToXMLGregorianCalendar(now + XmlUtilities.ONE_DAY));
+    if (contentSize > 0) {
+      ContentType content = factory.createContentType();
+      content.setContentType("application/xml");
+      content.setValue("x".repeat(contentSize));
+      document.setContent(content);
+    }
+
+    Notification notification = new Notification("NotificationActorTest");
+    notification.setEvent(DocumentEventType.NEW);
+    notification.setSubscription(subscription);
+    notification.setDocuments(List.of(new Document(document, "https://localhost/dds")));
+    return notification;
+  }
+
+  private static void assertContains(String name, String body) {
+    assertNotNull(body);
+    assertTrue(body.contains("urn:ogf:network:example.net:2024:" + name + "\""));
+  }
+}
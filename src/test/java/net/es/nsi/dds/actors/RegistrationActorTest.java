@@ -0,0 +1,205 @@
+package net.es.nsi.dds.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertificateException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.client.RestClient;
+import net.es.nsi.dds.dao.DdsConfiguration;
+import net.es.nsi.dds.dao.RemoteSubscription;
+import net.es.nsi.dds.dao.RemoteSubscriptionCache;
+import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import net.es.nsi.dds.jaxb.dds.SubscriptionListType;
+import net.es.nsi.dds.jaxb.dds.SubscriptionType;
+import net.es.nsi.dds.messages.RegistrationEvent;
+import net.es.nsi.dds.spring.SpringApplicationContext;
+import net.es.nsi.dds.test.TestConfig;
+import net.es.nsi.dds.util.NsiConstants;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify non-blocking registration with a peer DDS and the audit of the
+ * resulting subscription.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class RegistrationActorTest {
+  private static final ObjectFactory factory = new ObjectFactory();
+  private static final String ID = "subscription-1";
+
+  private static TestConfig testConfig;
+  private static ActorSystem system;
+
+  private HttpServer server;
+  private String peer;
+  private RemoteSubscriptionCache remoteSubscriptionCache;
+  private ActorRef actor;
+
+  // Requests received by the peer.
+  private final AtomicInteger registered = new AtomicInteger(0);
+  private final AtomicInteger audited = new AtomicInteger(0);
+
+  // Whether the peer still holds our subscription.
+  private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+  @BeforeClass
+  public static void oneTimeSetUp() throws IllegalStateException, KeyManagementException, NoSuchAlgorithmException,
+          NoSuchProviderException, KeyStoreException, CertificateException, UnrecoverableKeyException {
+    testConfig = new TestConfig();
+    system = ActorSystem.create("RegistrationActorTest");
+  }
+
+  @AfterClass
+  public static void oneTimeTearDown() throws InterruptedException {
+    system.terminate();
+    testConfig.shutdown();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    peer = "http://localhost:" + server.getAddress().getPort() + "/dds";
+    server.createContext("/dds/subscriptions", exchange -> {
+      try (InputStream is = exchange.getRequestBody()) {
+        is.readAllBytes();
+      }
+
+      try {
+        if ("POST".equals(exchange.getRequestMethod())) {
+          registered.incrementAndGet();
+          subscribed.set(true);
+          respond(exchange, Response.Status.CREATED, DdsParser.getInstance().subscription2Xml(subscription()));
+        } else if (exchange.getRequestURI().getPath().endsWith(ID)) {
+          audited.incrementAndGet();
+          respond(exchange, subscribed.get() ? Response.Status.NOT_MODIFIED : Response.Status.NOT_FOUND, null);
+        } else {
+          SubscriptionListType list = factory.createSubscriptionListType();
+          list.getSubscription().add(subscription());
+          respond(exchange, Response.Status.OK, DdsParser.getInstance().subscriptions2Xml(list));
+        }
+      } catch (JAXBException ex) {
+        throw new IOException(ex);
+      }
+    });
+    server.start();
+
+    remoteSubscriptionCache = new RemoteSubscriptionCache();
+    actor = system.actorOf(Props.create(RegistrationActor.class,
+            SpringApplicationContext.getBean("ddsConfiguration", DdsConfiguration.class), remoteSubscriptionCache));
+  }
+
+  @After
+  public void tearDown() {
+    system.stop(actor);
+    server.stop(0);
+  }
+
+  @Test
+  public void testRegister() throws Exception {
+    log.debug("@Test - testRegister");
+    assertTrue(RestClient.getInstance().isAsync());
+
+    actor.tell(event(RegistrationEvent.Event.Register), ActorRef.noSender());
+    RemoteSubscription remoteSubscription = await();
+    assertNotNull(remoteSubscription);
+    assertEquals(ID, remoteSubscription.getSubscription().getId());
+    assertEquals(1, registered.get());
+
+    // An unmodified subscription is left alone.
+    actor.tell(event(RegistrationEvent.Event.Update), ActorRef.noSender());
+    long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (audited.get() == 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100);
+    }
+    Thread.sleep(500);
+    assertEquals(1, audited.get());
+    assertEquals(1, registered.get());
+  }
+
+  @Test
+  public void testRegisterAgain() throws Exception {
+    log.debug("@Test - testRegisterAgain");
+    actor.tell(event(RegistrationEvent.Event.Register), ActorRef.noSender());
+    assertNotNull(await());
+
+    // The peer lost our subscription so the audit registers again.
+    subscribed.set(false);
+    actor.tell(event(RegistrationEvent.Event.Update), ActorRef.noSender());
+    long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (registered.get() < 2 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100);
+    }
+    assertEquals(1, audited.get());
+    assertEquals(2, registered.get());
+    assertNotNull(await());
+  }
+
+  private RemoteSubscription await() throws InterruptedException {
+    long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    RemoteSubscription remoteSubscription;
+    while ((remoteSubscription = remoteSubscriptionCache.get(peer)) == null
+            && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100);
+    }
+    return remoteSubscription;
+  }
+
+  private RegistrationEvent event(RegistrationEvent.Event type) {
+    RegistrationEvent event = new RegistrationEvent("RegistrationActorTest");
+    event.setEvent(type);
+    event.setUrl(peer);
+    return event;
+  }
+
+  private SubscriptionType subscription() {
+    SubscriptionType subscription = factory.createSubscriptionType();
+    subscription.setId(ID);
+    subscription.setHref(peer + "/subscriptions/" + ID);
+    subscription.setRequesterId("urn:ogf:network:example.net:2024:nsa");
+    subscription.setCallback("http://localhost:8801/dds/notifications");
+    return subscription;
+  }
+
+  private static void respond(HttpExchange exchange, Response.Status status, String body) throws IOException {
+    exchange.getResponseHeaders().add(HttpHeaders.LAST_MODIFIED, DateUtils.formatDate(new Date()));
+    if (body == null) {
+      exchange.sendResponseHeaders(status.getStatusCode(), -1);
+    } else {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, NsiConstants.NSI_DDS_V1_XML);
+      exchange.sendResponseHeaders(status.getStatusCode(), bytes.length);
+      exchange.getResponseBody().write(bytes);
+    }
+    exchange.close();
+  }
+}
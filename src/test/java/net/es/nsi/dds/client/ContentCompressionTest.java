@@ -0,0 +1,204 @@
+package net.es.nsi.dds.client;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.configuration.ContentEncodingType;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify request body compression applied by the REST client.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class ContentCompressionTest {
+  private HttpServer server;
+  private String url;
+
+  // What the server last received.
+  private volatile String contentEncoding;
+  private volatile byte[] body;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/notifications", exchange -> {
+      contentEncoding = exchange.getRequestHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+      try (InputStream is = exchange.getRequestBody()) {
+        body = is.readAllBytes();
+      }
+      exchange.sendResponseHeaders(Response.Status.ACCEPTED.getStatusCode(), -1);
+      exchange.close();
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/notifications";
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    log.debug("@Test - testGzip");
+    ContentCompression compression = new ContentCompression(ContentEncodingType.GZIP, 1024, 9);
+    String payload = payload(20000);
+    assertEquals(Response.Status.ACCEPTED.getStatusCode(), post(compression, payload));
+    assertEquals("gzip", contentEncoding);
+    assertEquals(payload, new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8));
+
+    CompressionStatistics stats = compression.getStatistics(ContentCompression.getPeer(URI.create(url)));
+    assertNotNull(stats);
+    assertEquals(1, stats.getRequests());
+    assertEquals(payload.length(), stats.getRawBytes());
+    assertEquals(body.length, stats.getEncodedBytes());
+    assertTrue(stats.getRatio() > 1.0);
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    log.debug("@Test - testDeflate");
+    ContentCompression compression = new ContentCompression(ContentEncodingType.DEFLATE, 1024, 1);
+    String payload = payload(20000);
+    assertEquals(Response.Status.ACCEPTED.getStatusCode(), post(compression, payload));
+    assertEquals("deflate", contentEncoding);
+    assertEquals(payload, new String(new InflaterInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testThreshold() {
+    log.debug("@Test - testThreshold");
+    ContentCompression compression = new ContentCompression(ContentEncodingType.GZIP, 1024, 6);
+    String payload = payload(500);
+    assertEquals(Response.Status.ACCEPTED.getStatusCode(), post(compression, payload));
+    assertNull(contentEncoding);
+    assertEquals(payload, new String(body, StandardCharsets.UTF_8));
+    assertTrue(compression.getStatistics().isEmpty());
+  }
+
+  @Test
+  public void testIdentity() {
+    log.debug("@Test - testIdentity");
+    ContentCompression compression = new ContentCompression(ContentEncodingType.IDENTITY, 0, 6);
+    String payload = payload(20000);
+    assertEquals(Response.Status.ACCEPTED.getStatusCode(), post(compression, payload));
+    assertNull(contentEncoding);
+    assertEquals(payload, new String(body, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testInvalidConfiguration() {
+    log.debug("@Test - testInvalidConfiguration");
+    ContentCompression compression = new ContentCompression(null, -1, 42);
+    assertEquals(ContentCompression.DEFAULT_ENCODING, compression.getEncoding());
+    assertEquals(ContentCompression.DEFAULT_THRESHOLD, compression.getThreshold());
+    assertEquals(ContentCompression.DEFAULT_LEVEL, compression.getLevel());
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    log.debug("@Test - testAsync");
+    RestClient restClient = new RestClient();
+    try {
+      ContentCompression compression = restClient.getCompression();
+      String payload = payload(20000);
+      byte[] encoded = payload.getBytes(StandardCharsets.UTF_8);
+      String encoding = compression.getContentEncoding(encoded);
+      assertEquals("gzip", encoding);
+      assertNull(compression.getContentEncoding(new byte[100]));
+
+      HttpRequest request = restClient.newRequest(URI.create(url))
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML)
+              .header(HttpHeaders.CONTENT_ENCODING, encoding)
+              .POST(HttpRequest.BodyPublishers.ofByteArray(compression.encode(URI.create(url), encoding, encoded)))
+              .build();
+      HttpResponse<Void> response = restClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+              .get(30, TimeUnit.SECONDS);
+      assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.statusCode());
+      assertEquals("gzip", contentEncoding);
+      assertEquals(payload, new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8));
+      assertEquals(1, compression.getStatistics(ContentCompression.getPeer(URI.create(url))).getRequests());
+    } finally {
+      restClient.close();
+    }
+  }
+
+  @Test
+  public void testPostAsync() throws Exception {
+    log.debug("@Test - testPostAsync");
+    RestClient restClient = new RestClient();
+    try {
+      // A body of several chunks is encoded as it is pulled by the client.
+      String payload = payload(100000);
+      byte[] encoded = payload.getBytes(StandardCharsets.UTF_8);
+      ChunkedEntity entity = new ChunkedEntity(List.of(
+              Arrays.copyOfRange(encoded, 0, 10),
+              Arrays.copyOfRange(encoded, 10, 60000),
+              Arrays.copyOfRange(encoded, 60000, encoded.length)));
+      assertEquals(encoded.length, entity.getSize());
+
+      HttpResponse<Void> response = restClient.postAsync(URI.create(url), MediaType.APPLICATION_XML, entity,
+              HttpResponse.BodyHandlers.discarding()).get(30, TimeUnit.SECONDS);
+      assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.statusCode());
+      assertEquals("gzip", contentEncoding);
+      assertEquals(payload, new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8));
+
+      CompressionStatistics stats = restClient.getCompression().getStatistics(ContentCompression.getPeer(URI.create(url)));
+      assertNotNull(stats);
+      assertEquals(1, stats.getRequests());
+      assertEquals(encoded.length, stats.getRawBytes());
+      assertEquals(body.length, stats.getEncodedBytes());
+    } finally {
+      restClient.close();
+    }
+  }
+
+  private int post(ContentCompression compression, String payload) {
+    Client client = ClientBuilder.newBuilder().withConfig(
+            RestClient.getClientConfig(new PoolingHttpClientConnectionManager(), 2, 2, compression)).build();
+    try {
+      Response response = client.target(url).request(MediaType.APPLICATION_XML)
+              .post(Entity.entity(payload, MediaType.APPLICATION_XML));
+      response.close();
+      return response.getStatus();
+    } finally {
+      client.close();
+    }
+  }
+
+  private static String payload(int size) {
+    StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append("<nsa:notification id=\"").append(sb.length()).append("\"/>");
+    }
+    return sb.substring(0, size);
+  }
+}
@@ -0,0 +1,87 @@
+package net.es.nsi.dds.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify the notification retry and circuit breaker policy.
+ *
+ * @author hacksaw
+ */
+public class DeliveryPolicyTest {
+  private static final String CALLBACK = "https://peer.example.net/dds/callback";
+
+  @Test
+  public void testCircuitBreaker() {
+    CircuitBreaker breaker = new CircuitBreaker(2, 1000, 4000);
+    assertTrue(breaker.allow(0));
+
+    // The circuit opens after two consecutive failures.
+    breaker.failure(0);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    breaker.failure(0);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allow(999));
+    assertEquals(1, breaker.getRemaining(999));
+
+    // A single trial is allowed once open interval has passed.
+    assertTrue(breaker.allow(1000));
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.allow(1001));
+
+    // A failed trial opens the circuit for twice as long.
+    breaker.failure(1001);
+    assertFalse(breaker.allow(2500));
+    assertTrue(breaker.allow(3001));
+
+    // A successful trial closes the circuit.
+    breaker.success();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getFailures());
+    assertTrue(breaker.allow(3002));
+  }
+
+  @Test
+  public void testBackoff() {
+    DeliveryPolicy policy = new DeliveryPolicy();
+    policy.setInitialBackoff(100);
+    policy.setMaxBackoff(1000);
+    policy.setMaxRetries(3);
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.getBackoff(CALLBACK, 1, 0) <= 100);
+      assertTrue(policy.getBackoff(CALLBACK, 3, 0) <= 400);
+      assertTrue(policy.getBackoff(CALLBACK, 40, 0) <= 1000);
+    }
+
+    // The peer's Retry-After is honoured.
+    assertTrue(policy.getBackoff(CALLBACK, 1, 5000) >= 5000);
+
+    assertTrue(policy.retry(3));
+    assertFalse(policy.retry(4));
+    assertEquals(1, policy.getAbandoned());
+  }
+
+  @Test
+  public void testFailFast() {
+    DeliveryPolicy policy = new DeliveryPolicy();
+    policy.setFailureThreshold(1);
+    policy.setOpenInterval(60000);
+
+    assertTrue(policy.allow(CALLBACK));
+    policy.failure(CALLBACK);
+    assertFalse(policy.allow(CALLBACK));
+    assertEquals(1, policy.getOpen());
+    assertEquals(1, policy.getRejected());
+
+    // Retries wait until the circuit allows a trial.
+    assertTrue(policy.getBackoff(CALLBACK, 1, 0) > 1000);
+
+    policy.remove(CALLBACK);
+    assertTrue(policy.allow(CALLBACK));
+    assertEquals(0, policy.getOpen());
+  }
+}
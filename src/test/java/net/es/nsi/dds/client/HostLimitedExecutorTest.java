@@ -0,0 +1,90 @@
+package net.es.nsi.dds.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verify requests are limited per host.
+ *
+ * @author hacksaw
+ */
+public class HostLimitedExecutorTest {
+  private static final String SLOW = "https://slow.example.net/nsa/topology/";
+  private static final String FAST = "https://fast.example.net:8443/nsa/topology";
+
+  private HostLimitedExecutor executor;
+
+  @Before
+  public void setUp() {
+    executor = new HostLimitedExecutor("test", 8, 2);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testLimit() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger running = new AtomicInteger(0);
+    AtomicInteger peak = new AtomicInteger(0);
+
+    List<CompletableFuture<Integer>> slow = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      final int n = i;
+      slow.add(executor.submit(SLOW + i, () -> {
+        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          release.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        return n;
+      }));
+    }
+
+    // Another host is not held up by the busy one.
+    assertEquals("fast", executor.submit(FAST, () -> "fast").get(10, TimeUnit.SECONDS));
+    assertEquals(2, executor.getRunning("slow.example.net:443"));
+
+    release.countDown();
+    for (int i = 0; i < slow.size(); i++) {
+      assertEquals(Integer.valueOf(i), slow.get(i).get(10, TimeUnit.SECONDS));
+    }
+
+    assertEquals(2, peak.get());
+    assertEquals(0, executor.getRunning("slow.example.net:443"));
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    CompletableFuture<String> result = executor.submit(FAST, () -> {
+      throw new IllegalStateException("failed");
+    });
+
+    try {
+      result.get(10, TimeUnit.SECONDS);
+      fail("expected failure");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+
+    // The failed request released its slot.
+    assertEquals("ok", executor.submit(FAST, () -> "ok").get(10, TimeUnit.SECONDS));
+    assertEquals(0, executor.getRunning("fast.example.net:8443"));
+  }
+}
@@ -1,10 +1,15 @@
 package net.es.nsi.dds.dao;
 
 import jakarta.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -12,11 +17,23 @@ import java.security.NoSuchProviderException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import lombok.extern.slf4j.Slf4j;
 import net.es.nsi.dds.config.Properties;
+import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.ContentType;
+import net.es.nsi.dds.jaxb.dds.DocumentListType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
 import net.es.nsi.dds.provider.Document;
+import net.es.nsi.dds.util.XmlUtilities;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -67,4 +84,456 @@ public class TestDocumentCache {
     Collection<Document> values = cache.values();
     assertTrue(values.isEmpty());
   }
+
+  @Test
+  public void testFindByIndex() throws JAXBException, IOException {
+    log.debug("@Test - testFindByIndex");
+    DocumentCache cache = new DocumentCache(new DdsProfile(config) {
+      @Override
+      public String getDirectory() {
+        return null;
+      }
+    });
+    assertFalse(cache.isEnabled());
+
+    Document nsa1 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+    Document topo1 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.topology.v2+xml", "1");
+    Document nsa2 = newDocument("urn:ogf:network:example.net:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "2");
+    nsa1.setLastDiscovered(new Date(1000));
+    topo1.setLastDiscovered(new Date(2000));
+    nsa2.setLastDiscovered(new Date(3000));
+    cache.put(nsa1.getId(), nsa1);
+    cache.put(topo1.getId(), topo1);
+    cache.put(nsa2.getId(), nsa2);
+
+    assertEquals(3, cache.find(null, null, null, null).size());
+    assertEquals(2, cache.find("URN:OGF:NETWORK:EXAMPLE.COM:2013:NSA", null, null, null).size());
+    assertEquals(2, cache.find(null, "VND.OGF.NSI.NSA.V1+XML", null, null).size());
+    assertEquals(1, cache.find("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", null, null).size());
+    assertEquals(1, cache.find(null, "vnd.ogf.nsi.nsa.v1+xml", "2", null).size());
+    assertEquals(2, cache.find(null, null, null, new Date(1000)).size());
+    assertEquals(1, cache.find("urn:ogf:network:example.com:2013:nsa", null, null, new Date(1000)).size());
+    assertTrue(cache.containsNsa("urn:ogf:network:EXAMPLE.net:2013:nsa"));
+    assertFalse(cache.containsNsa("urn:ogf:network:example.org:2013:nsa"));
+
+    // Replacing and removing documents must keep the indexes current.
+    Document nsa2v2 = newDocument("urn:ogf:network:example.net:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "2");
+    nsa2v2.setLastDiscovered(new Date(4000));
+    cache.update(nsa2v2.getId(), nsa2v2);
+    assertEquals(1, cache.find(null, null, null, new Date(3000)).size());
+    assertEquals(2, cache.find(null, "vnd.ogf.nsi.nsa.v1+xml", null, null).size());
+
+    cache.remove(nsa2v2.getId());
+    assertFalse(cache.containsNsa("urn:ogf:network:example.net:2013:nsa"));
+    assertTrue(cache.find(null, null, null, new Date(2000)).isEmpty());
+    assertEquals(1, cache.find(null, "vnd.ogf.nsi.nsa.v1+xml", null, null).size());
+  }
+
+  @Test
+  public void testChangeLog() throws JAXBException, IOException {
+    log.debug("@Test - testChangeLog");
+    DocumentCache cache = new DocumentCache(new DdsProfile(config) {
+      @Override
+      public String getDirectory() {
+        return null;
+      }
+    });
+    assertFalse(cache.isModifiedSince(new Date(0)));
+
+    Document doc1 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+    Document doc2 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "2");
+    doc1.setLastDiscovered(new Date(5000));
+    doc2.setLastDiscovered(new Date(5000));
+    cache.put(doc1.getId(), doc1);
+    cache.put(doc2.getId(), doc2);
+    long sequence = cache.getSequence();
+
+    assertTrue(cache.isModifiedSince(new Date(4999)));
+    assertFalse(cache.isModifiedSince(new Date(5000)));
+    assertEquals(5000, cache.getLastDiscovered().getTime());
+    assertEquals(2, cache.find(null, null, null, new Date(4999)).size());
+    assertTrue(cache.find(null, null, null, new Date(5000)).isEmpty());
+
+    // A newer version supersedes the previous change log entry.
+    Document doc1v2 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+    doc1v2.setLastDiscovered(new Date(6000));
+    cache.update(doc1v2.getId(), doc1v2);
+    assertTrue(cache.getSequence() > sequence);
+    assertEquals(1, cache.find(null, null, null, new Date(5000)).size());
+    assertEquals(2, cache.find(null, null, null, new Date(0)).size());
+
+    sequence = cache.getSequence();
+    cache.remove(doc1v2.getId());
+    assertTrue(cache.getSequence() > sequence);
+    assertFalse(cache.isModifiedSince(new Date(5000)));
+  }
+
+  @Test
+  public void testSnapshot() throws JAXBException, IOException {
+    log.debug("@Test - testSnapshot");
+    DocumentCache cache = new DocumentCache(new DdsProfile(config) {
+      @Override
+      public String getDirectory() {
+        return null;
+      }
+    });
+
+    for (int i = 0; i < 200; i++) {
+      Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", Integer.toString(i));
+      cache.put(doc.getId(), doc);
+    }
+
+    DocumentSnapshot before = cache.snapshot();
+    assertEquals(200, before.size());
+    assertEquals(200, before.stream().count());
+    assertEquals(200, cache.getDocuments().entrySet().size());
+
+    // Changes must not be visible in a previously published snapshot.
+    Document first = before.iterator().next();
+    cache.remove(first.getId());
+    Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "new");
+    cache.put(doc.getId(), doc);
+
+    DocumentSnapshot after = cache.snapshot();
+    assertTrue(after.getVersion() > before.getVersion());
+    assertEquals(200, before.size());
+    assertTrue(before.containsKey(first.getId()));
+    assertFalse(before.containsKey(doc.getId()));
+    assertEquals(200, after.size());
+    assertFalse(after.containsKey(first.getId()));
+    assertEquals(doc, cache.getDocuments().get(doc.getId()));
+  }
+
+  @Test
+  public void testEncodedFragments() throws JAXBException, IOException {
+    log.debug("@Test - testEncodedFragments");
+    Document doc1 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+    Document doc2 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "2");
+    ContentType content = new ObjectFactory().createContentType();
+    content.setValue("document contents");
+    doc1.getDocument().setContent(content);
+
+    // Serialized forms are cached until the document is replaced.
+    byte[] encoded = doc1.getEncoded(false);
+    assertTrue(encoded == doc1.getEncoded(false));
+    doc1.setDocument(doc1.getDocument());
+    assertFalse(encoded == doc1.getEncoded(false));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DdsParser.getInstance().documents2Xml(List.of(doc1.getEncoded(false), doc2.getEncoded(false)), os);
+    DocumentListType full = DdsParser.getInstance().xml2Documents(os.toString(StandardCharsets.UTF_8));
+    assertEquals(2, full.getDocument().size());
+    assertEquals("1", full.getDocument().get(0).getId());
+    assertEquals("document contents", full.getDocument().get(0).getContent().getValue());
+    assertEquals(doc1.getDocument().getHref(), full.getDocument().get(0).getHref());
+
+    os.reset();
+    DdsParser.getInstance().documents2Xml(List.of(doc1.getEncoded(true)), os);
+    DocumentListType summary = DdsParser.getInstance().xml2Documents(os.toString(StandardCharsets.UTF_8));
+    assertEquals(1, summary.getDocument().size());
+    assertNull(summary.getDocument().get(0).getContent());
+  }
+
+  @Test
+  public void testWriteBehind() throws JAXBException, IOException {
+    log.debug("@Test - testWriteBehind");
+    Path dir = Files.createTempDirectory("dds-cache");
+    FileDocumentStore store = new FileDocumentStore();
+    // Long enough that the background thread will not flush during the test.
+    store.setFlushInterval(60000);
+    store.setSyncPolicy(DocumentStore.SyncPolicy.DIRECTORY);
+    DocumentCache cache = newCache(dir, store);
+
+    try {
+      // Repeated updates to a document are coalesced into a single write.
+      Document doc = null;
+      for (int i = 0; i < 5; i++) {
+        doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+        cache.put(doc.getId(), doc);
+      }
+      assertEquals(1, store.getPending());
+      assertEquals(4, store.getCoalesced());
+      assertEquals(0, countFiles(dir));
+
+      cache.flush();
+      assertEquals(1, store.getWritten());
+      assertEquals(1, countFiles(dir));
+      assertEquals("1", DdsParser.getInstance().readDocument(doc.getFilename()).getId());
+
+      // A removal cancels a pending write and deletes the existing file.
+      Document doc2 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "2");
+      cache.put(doc2.getId(), doc2);
+      cache.remove(doc2.getId());
+      cache.remove(doc.getId());
+      cache.shutdown();
+      assertEquals(1, store.getWritten());
+      assertEquals(1, store.getDeleted());
+      assertEquals(0, countFiles(dir));
+    } finally {
+      cache.shutdown();
+      deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testWriteBehindReplace() throws JAXBException, IOException {
+    log.debug("@Test - testWriteBehindReplace");
+    Path dir = Files.createTempDirectory("dds-cache");
+    FileDocumentStore store = new FileDocumentStore();
+    store.setFlushInterval(60000);
+    DocumentCache cache = newCache(dir, store);
+
+    try {
+      Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+      cache.put(doc.getId(), doc);
+      cache.flush();
+      assertEquals(1, countFiles(dir));
+
+      // A document removed and added again before a flush keeps only the new file.
+      cache.remove(doc.getId());
+      Document doc2 = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+      cache.put(doc2.getId(), doc2);
+      cache.flush();
+      assertEquals(1, countFiles(dir));
+      assertTrue(Files.exists(Path.of(doc2.getFilename())));
+      assertFalse(Files.exists(Path.of(doc.getFilename())));
+    } finally {
+      cache.shutdown();
+      deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testWriteBehindRetry() throws JAXBException, IOException {
+    log.debug("@Test - testWriteBehindRetry");
+    Path dir = Files.createTempDirectory("dds-cache");
+    FileDocumentStore store = new FileDocumentStore();
+    store.setFlushInterval(60000);
+    store.open(dir.toString());
+    Path blocker = dir.resolve("blocker");
+
+    try {
+      // A file where the document's directory should be fails the write.
+      Files.createFile(blocker);
+      Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "1");
+      doc.setFilename(blocker.resolve("1.xml").toString());
+      store.write(doc.getId(), doc);
+      store.flush();
+      assertEquals(1, store.getFailed());
+      assertEquals(1, store.getPending());
+
+      // The failed write is retried on the next flush.
+      Files.delete(blocker);
+      store.flush();
+      assertEquals(1, store.getWritten());
+      assertEquals(0, store.getPending());
+      assertTrue(Files.exists(Path.of(doc.getFilename())));
+    } finally {
+      store.close();
+      if (Files.isDirectory(blocker)) {
+        deleteDirectory(blocker);
+      }
+      deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testSegmentStore() throws JAXBException, IOException {
+    log.debug("@Test - testSegmentStore");
+    Path dir = Files.createTempDirectory("dds-segments");
+    try {
+      SegmentDocumentStore store = newSegmentStore();
+      DocumentCache cache = newCache(dir, store);
+      for (int version = 0; version < 4; version++) {
+        for (int i = 0; i < 50; i++) {
+          Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", Integer.toString(i));
+          cache.put(doc.getId(), doc);
+        }
+      }
+      for (int i = 0; i < 10; i++) {
+        cache.remove(key(Integer.toString(i)));
+      }
+      assertTrue(store.getSegments() > 1);
+      assertEquals(40, store.size());
+      cache.shutdown();
+
+      // A torn record at the end of the log is dropped on open.
+      try (Stream<Path> files = Files.list(dir)) {
+        Path last = files.sorted().reduce((a, b) -> b).orElseThrow();
+        Files.write(last, new byte[] { 0, 0, 1, 0, 1, 2 }, StandardOpenOption.APPEND);
+      }
+
+      // Restart reads the latest version of every remaining document.
+      store = newSegmentStore();
+      cache = newCache(dir, store);
+      cache.load();
+      assertEquals(40, cache.values().size());
+      assertNull(cache.get(key("0")));
+      assertEquals("49", cache.get(key("49")).getDocument().getId());
+
+      // Compaction leaves only live records in the sealed segments.
+      long before = store.getTotalBytes();
+      store.compact();
+      assertEquals(1, store.getCompactions());
+      assertTrue(store.getTotalBytes() < before);
+      Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "new");
+      cache.put(doc.getId(), doc);
+      cache.remove(key("10"));
+      cache.shutdown();
+
+      cache = newCache(dir, newSegmentStore());
+      cache.load();
+      assertEquals(40, cache.values().size());
+      assertNull(cache.get(key("10")));
+      assertEquals("new", cache.get(key("new")).getDocument().getId());
+      cache.shutdown();
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testParallelLoad() throws Exception {
+    log.debug("@Test - testParallelLoad");
+    Path dir = Files.createTempDirectory("dds-cache");
+    try {
+      // Two stored versions of every document plus an unreadable file.
+      long now = System.currentTimeMillis();
+      for (int i = 0; i < 50; i++) {
+        for (int v = 0; v < 2; v++) {
+          Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", "" + i);
+          doc.getDocument().setVersion(XmlUtilities.longToXMLGregorianCalendar(now + v * 1000));
+          doc.getDocument().setExpires(XmlUtilities.longToXMLGregorianCalendar(now + XmlUtilities.ONE_YEAR));
+          DdsParser.getInstance().writeDocument(dir.resolve(i + "-" + v + ".xml").toString(), doc.getDocument());
+        }
+      }
+      Files.writeString(dir.resolve("corrupt.xml"), "<document");
+
+      DocumentCache cache = newCache(dir, new FileDocumentStore());
+      cache.setLoadThreads(4);
+      cache.setLoadAsync(true);
+      cache.load();
+      assertEquals(cache, cache.getLoaded().get(30, TimeUnit.SECONDS));
+
+      // The newest version of each document survives and the rest are removed.
+      assertEquals(DocumentCache.LoadState.READY, cache.getLoadState());
+      assertEquals(50, cache.values().size());
+      assertEquals(50, cache.getLoadCount());
+      assertEquals(50, cache.getDiscardCount());
+      assertEquals(50, countFiles(dir));
+      for (Document doc : cache.values()) {
+        assertEquals(now + 1000, doc.getDocument().getVersion().toGregorianCalendar().getTimeInMillis());
+        assertTrue(doc.getFilename().endsWith("-1.xml"));
+      }
+      cache.shutdown();
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testSnapshotRestore() throws Exception {
+    log.debug("@Test - testSnapshotRestore");
+    Path dir = Files.createTempDirectory("dds-cache");
+    try {
+      long now = System.currentTimeMillis();
+      DocumentCache cache = newCache(dir, new FileDocumentStore());
+      cache.setSnapshotInterval(60000);
+      cache.load();
+      for (int i = 0; i < 20; i++) {
+        cache.put(key("" + i), newVersion("" + i, now));
+      }
+      cache.shutdown();
+      assertTrue(Files.exists(dir.resolve("documents.snapshot")));
+
+      // Change the store behind the snapshot's back.
+      DocumentCache offline = newCache(dir, new FileDocumentStore());
+      offline.load();
+      offline.remove(key("0"));
+      offline.put(key("1"), newVersion("1", now + 1000));
+      offline.shutdown();
+
+      cache = newCache(dir, new FileDocumentStore());
+      cache.setSnapshotInterval(60000);
+      cache.load();
+      assertEquals(DocumentCache.LoadState.READY, cache.getLoadState());
+      assertEquals(0, cache.getRestored());
+      assertEquals(19, cache.values().size());
+      assertNull(cache.get(key("0")));
+      assertEquals(now + 1000, cache.get(key("1")).getMetadata().getVersion().toGregorianCalendar().getTimeInMillis());
+      assertTrue(cache.get(key("1")).isMaterialized());
+
+      // Restored documents are served without being unmarshalled.
+      Document doc = cache.get(key("2"));
+      assertFalse(doc.isMaterialized());
+      assertTrue(doc.getFilename().endsWith(".xml"));
+      assertEquals(now, doc.getDocumentSummary().getVersion().toGregorianCalendar().getTimeInMillis());
+      assertEquals(1, cache.find("urn:ogf:network:example.com:2013:nsa", null, "2", null).size());
+      String encoded = new String(doc.getEncoded(false), StandardCharsets.UTF_8);
+      assertTrue(encoded.contains("<content"));
+      assertFalse(doc.isMaterialized());
+      assertEquals("2", doc.getDocument().getId());
+      assertTrue(doc.isMaterialized());
+      assertEquals(encoded, new String(DdsParser.getInstance().document2Fragment(doc.getDocument()), StandardCharsets.UTF_8));
+      cache.shutdown();
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  private Document newVersion(String id, long version) throws Exception {
+    Document doc = newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", id);
+    doc.getDocument().setVersion(XmlUtilities.longToXMLGregorianCalendar(version));
+    doc.getDocument().setExpires(XmlUtilities.longToXMLGregorianCalendar(version + XmlUtilities.ONE_YEAR));
+    ContentType content = new ObjectFactory().createContentType();
+    content.setValue("content " + id);
+    doc.getDocument().setContent(content);
+    return doc;
+  }
+
+  private String key(String id) {
+    return newDocument("urn:ogf:network:example.com:2013:nsa", "vnd.ogf.nsi.nsa.v1+xml", id).getId();
+  }
+
+  private SegmentDocumentStore newSegmentStore() {
+    SegmentDocumentStore store = new SegmentDocumentStore();
+    store.setSegmentSize(4096);
+    store.setCompress(true);
+    store.setCompactionInterval(0);
+    return store;
+  }
+
+  private DocumentCache newCache(Path dir, DocumentStore store) throws FileNotFoundException {
+    DocumentCache cache = new DocumentCache(new DdsProfile(config) {
+      @Override
+      public String getDirectory() {
+        return dir.toString();
+      }
+    });
+    cache.setStore(store);
+    return cache;
+  }
+
+  private static void deleteDirectory(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : files.toList()) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(dir);
+  }
+
+  private static long countFiles(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+
+  private Document newDocument(String nsa, String type, String id) {
+    DocumentType document = new ObjectFactory().createDocumentType();
+    document.setNsa(nsa);
+    document.setType(type);
+    document.setId(id);
+    return new Document(document, config.getBaseURL());
+  }
 }
@@ -26,6 +26,7 @@ import net.es.nsi.dds.client.TestServer;
 import net.es.nsi.dds.config.http.HttpConfig;
 import net.es.nsi.dds.dao.DdsConfiguration;
 import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.dds.CollectionType;
 import net.es.nsi.dds.jaxb.dds.DocumentEventType;
 import net.es.nsi.dds.jaxb.dds.DocumentListType;
 import net.es.nsi.dds.jaxb.dds.DocumentType;
@@ -252,6 +253,38 @@ public class DiscoveryTest {
     }
   }
 
+  /**
+   * Queries the collection of all documents and subscriptions.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void dCollection() throws Exception {
+    log.debug("************************** Running dCollection test ********************************");
+    Response response = discovery.request(NsiConstants.NSI_DDS_V1_XML).get();
+    assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    CollectionType collection = response.readEntity(CollectionType.class);
+    response.close();
+
+    assertNotNull(collection.getDocuments());
+    assertNotNull(collection.getLocal());
+    assertNotNull(collection.getSubscriptions());
+    assertFalse(collection.getDocuments().getDocument().isEmpty());
+    for (DocumentType document : collection.getDocuments().getDocument()) {
+      assertFalse(document.getContent().getValue().isEmpty());
+    }
+
+    response = discovery.queryParam("summary", "true").request(NsiConstants.NSI_DDS_V1_XML).get();
+    assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    CollectionType summary = response.readEntity(CollectionType.class);
+    response.close();
+
+    assertEquals(collection.getDocuments().getDocument().size(), summary.getDocuments().getDocument().size());
+    for (DocumentType document : summary.getDocuments().getDocument()) {
+      assertTrue(document.getContent() == null || Strings.isNullOrEmpty(document.getContent().getValue()));
+    }
+  }
+
   @Test
   public void eDocumentNotFound() throws Exception {
     log.debug("************************** Running eDocumentNotFound test ********************************");
@@ -17,6 +17,7 @@ import java.security.cert.CertificateException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -51,6 +52,11 @@ public class HealthTest {
 
         HealthStatusType health = response.readEntity(HealthStatusType.class);
         assertNotNull(health);
+        assertTrue(health.getComponents().getComponent().stream()
+                .anyMatch(c -> "requestCompression".equals(c.getName())));
+        assertTrue(health.getComponents().getComponent().stream()
+                .filter(c -> "jaxbPools".equals(c.getName()))
+                .anyMatch(c -> !c.getDetails().getDetail().isEmpty()));
 
         log.debug("[HealthTest].testHealthXML: received response, id = {}", health.getStatus());
 
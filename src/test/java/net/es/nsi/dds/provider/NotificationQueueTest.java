@@ -0,0 +1,126 @@
+package net.es.nsi.dds.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.NotificationType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test cases for the inbound notification queue.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class NotificationQueueTest {
+  private static final String ESNET = "urn:ogf:network:es.net:2013:nsa";
+  private static final String NSA_TYPE = "vnd.ogf.nsi.nsa.v1+xml";
+
+  private final ObjectFactory factory = new ObjectFactory();
+
+  @Test
+  public void testOrdering() throws InterruptedException {
+    log.debug("@Test - testOrdering");
+    List<String> applied = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(20);
+    DiscoveryProvider provider = mock(DiscoveryProvider.class);
+    doAnswer(invocation -> {
+      NotificationType notification = invocation.getArgument(0);
+      if ("fail".equals(notification.getDocument().getId())) {
+        done.countDown();
+        throw new IllegalArgumentException("bad document");
+      }
+      applied.add(notification.getDocument().getId() + "/" + notification.getEvent());
+      done.countDown();
+      return null;
+    }).when(provider).processNotification(any(NotificationType.class));
+
+    NotificationQueue queue = new NotificationQueue(provider);
+    queue.setWorkers(4);
+    queue.start();
+    try {
+      // Updates to the same document must be applied in order.
+      for (int i = 0; i < 9; i++) {
+        assertTrue(queue.offer(notification(Integer.toString(i % 3), i < 3 ? DocumentEventType.NEW : DocumentEventType.UPDATED)));
+      }
+      assertTrue(queue.offer(notification("fail", DocumentEventType.NEW)));
+      for (int i = 0; i < 10; i++) {
+        assertTrue(queue.offer(notification("other-" + i, DocumentEventType.NEW)));
+      }
+
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      for (String id : List.of("0", "1", "2")) {
+        List<String> events = applied.stream().filter(a -> a.startsWith(id + "/")).toList();
+        assertEquals(List.of(id + "/" + DocumentEventType.NEW, id + "/" + DocumentEventType.UPDATED,
+                id + "/" + DocumentEventType.UPDATED), events);
+      }
+
+      assertEquals(20, queue.getAccepted());
+      assertEquals(0, queue.getRejected());
+    } finally {
+      queue.shutdown();
+    }
+
+    assertEquals(19, queue.getProcessed());
+    assertEquals(1, queue.getFailed());
+    assertFalse(queue.isRunning());
+    assertFalse(queue.offer(notification("late", DocumentEventType.NEW)));
+  }
+
+  @Test
+  public void testBackPressure() throws InterruptedException {
+    log.debug("@Test - testBackPressure");
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    DiscoveryProvider provider = mock(DiscoveryProvider.class);
+    doAnswer(invocation -> {
+      blocked.countDown();
+      release.await();
+      return null;
+    }).when(provider).processNotification(any(NotificationType.class));
+
+    NotificationQueue queue = new NotificationQueue(provider);
+    queue.setWorkers(1);
+    queue.setQueueSize(2);
+    queue.start();
+    try {
+      // The worker holds one notification while two more fill the queue.
+      assertTrue(queue.offer(notification("1", DocumentEventType.NEW)));
+      assertTrue(blocked.await(10, TimeUnit.SECONDS));
+      assertTrue(queue.offer(notification("2", DocumentEventType.NEW)));
+      assertTrue(queue.offer(notification("3", DocumentEventType.NEW)));
+      assertFalse(queue.isAccepting());
+      assertFalse(queue.offer(notification("4", DocumentEventType.NEW)));
+      assertEquals(1, queue.getRejected());
+      assertEquals(2, queue.getQueued());
+    } finally {
+      release.countDown();
+      queue.shutdown();
+    }
+
+    assertEquals(3, queue.getProcessed());
+  }
+
+  private NotificationType notification(String id, DocumentEventType event) {
+    DocumentType document = factory.createDocumentType();
+    document.setNsa(ESNET);
+    document.setType(NSA_TYPE);
+    document.setId(id);
+    NotificationType notification = factory.createNotificationType();
+    notification.setEvent(event);
+    notification.setDocument(document);
+    return notification;
+  }
+}
@@ -0,0 +1,126 @@
+package net.es.nsi.dds.provider;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.jaxb.dds.FilterAndType;
+import net.es.nsi.dds.jaxb.dds.FilterCriteriaType;
+import net.es.nsi.dds.jaxb.dds.FilterOrType;
+import net.es.nsi.dds.jaxb.dds.FilterType;
+import net.es.nsi.dds.jaxb.dds.ObjectFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test cases for subscription filter evaluation and indexing.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SubscriptionFilterTest {
+  private static final String NSA_TYPE = "vnd.ogf.nsi.nsa.v1+xml";
+  private static final String TOPOLOGY_TYPE = "vnd.ogf.nsi.topology.v2+xml";
+  private static final String ESNET = "urn:ogf:network:es.net:2013:nsa";
+  private static final String GEANT = "urn:ogf:network:geant.net:2013:nsa";
+
+  private final ObjectFactory factory = new ObjectFactory();
+
+  @Test
+  public void testMatchAll() {
+    log.debug("@Test - testMatchAll");
+    SubscriptionFilter filter = SubscriptionFilter.compile(null);
+    assertTrue(filter == SubscriptionFilter.ALL);
+    assertTrue(filter.matches(DocumentEventType.NEW, document(ESNET, NSA_TYPE, "1")));
+    assertTrue(SubscriptionFilter.compile(factory.createFilterType()) == SubscriptionFilter.ALL);
+  }
+
+  @Test
+  public void testIncludeExclude() {
+    log.debug("@Test - testIncludeExclude");
+
+    // Include NSA and topology documents, but exclude anything from GEANT.
+    FilterType filter = factory.createFilterType();
+    FilterCriteriaType include = criteria(DocumentEventType.ALL);
+    FilterOrType or = factory.createFilterOrType();
+    or.getNsaOrTypeOrId().add(factory.createFilterOrTypeType(NSA_TYPE.toUpperCase()));
+    or.getNsaOrTypeOrId().add(factory.createFilterOrTypeType(TOPOLOGY_TYPE));
+    include.getOr().add(or);
+    filter.getInclude().add(include);
+
+    FilterCriteriaType exclude = criteria(DocumentEventType.ALL);
+    FilterAndType and = factory.createFilterAndType();
+    and.setNsa(GEANT);
+    exclude.getAnd().add(and);
+    filter.getExclude().add(exclude);
+
+    SubscriptionFilter compiled = SubscriptionFilter.compile(filter);
+    assertTrue(compiled.matches(DocumentEventType.NEW, document(ESNET, NSA_TYPE, "1")));
+    assertTrue(compiled.matches(null, document(ESNET, TOPOLOGY_TYPE, "1")));
+    assertFalse(compiled.matches(DocumentEventType.UPDATED, document(ESNET, "vnd.ogf.nsi.other", "1")));
+    assertFalse(compiled.matches(DocumentEventType.NEW, document(GEANT, NSA_TYPE, "1")));
+
+    // Equivalent filters compile to equal objects.
+    assertEquals(compiled, SubscriptionFilter.compile(filter));
+    assertEquals(compiled.hashCode(), SubscriptionFilter.compile(filter).hashCode());
+  }
+
+  @Test
+  public void testEventAndClause() {
+    log.debug("@Test - testEventAndClause");
+    FilterType filter = factory.createFilterType();
+    FilterCriteriaType include = criteria(DocumentEventType.NEW);
+    FilterAndType and = factory.createFilterAndType();
+    and.setNsa(ESNET);
+    and.setType(TOPOLOGY_TYPE);
+    include.getAnd().add(and);
+    filter.getInclude().add(include);
+
+    SubscriptionFilter compiled = SubscriptionFilter.compile(filter);
+    assertTrue(compiled.matches(DocumentEventType.NEW, document(ESNET, TOPOLOGY_TYPE, "1")));
+    assertFalse(compiled.matches(DocumentEventType.UPDATED, document(ESNET, TOPOLOGY_TYPE, "1")));
+    assertFalse(compiled.matches(DocumentEventType.NEW, document(ESNET, NSA_TYPE, "1")));
+    assertTrue(compiled.matches(null, document(ESNET, TOPOLOGY_TYPE, "1")));
+  }
+
+  @Test
+  public void testIndex() {
+    log.debug("@Test - testIndex");
+    SubscriptionIndex index = new SubscriptionIndex();
+
+    FilterType nsaOnly = factory.createFilterType();
+    FilterCriteriaType include = criteria(DocumentEventType.ALL);
+    FilterOrType or = factory.createFilterOrType();
+    or.getNsaOrTypeOrId().add(factory.createFilterOrTypeType(NSA_TYPE));
+    include.getOr().add(or);
+    nsaOnly.getInclude().add(include);
+
+    index.put("all", null);
+    index.put("nsa", nsaOnly);
+
+    assertEquals(2, index.match(DocumentEventType.NEW, document(ESNET, NSA_TYPE, "1")).size());
+    assertEquals(1, index.match(DocumentEventType.NEW, document(ESNET, TOPOLOGY_TYPE, "1")).size());
+
+    // Replace the filter then remove the subscription.
+    index.put("all", nsaOnly);
+    assertFalse(index.match(DocumentEventType.NEW, document(ESNET, TOPOLOGY_TYPE, "1")).contains("all"));
+    index.remove("nsa");
+    assertEquals(1, index.match(DocumentEventType.NEW, document(ESNET, NSA_TYPE, "1")).size());
+    assertTrue(index.getFilter("nsa") == null);
+  }
+
+  private FilterCriteriaType criteria(DocumentEventType event) {
+    FilterCriteriaType criteria = factory.createFilterCriteriaType();
+    criteria.getEvent().add(event);
+    return criteria;
+  }
+
+  private DocumentType document(String nsa, String type, String id) {
+    DocumentType document = factory.createDocumentType();
+    document.setNsa(nsa);
+    document.setType(type);
+    document.setId(id);
+    return document;
+  }
+}
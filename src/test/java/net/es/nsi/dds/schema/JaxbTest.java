@@ -1,19 +1,37 @@
 package net.es.nsi.dds.schema;
 
+import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
 import lombok.extern.slf4j.Slf4j;
 import net.es.nsi.dds.jaxb.DdsParser;
+import net.es.nsi.dds.jaxb.JaxbContextRegistry;
+import net.es.nsi.dds.jaxb.JaxbPool;
 import net.es.nsi.dds.jaxb.NmlParser;
 import net.es.nsi.dds.jaxb.NsaParser;
 import net.es.nsi.dds.jaxb.dds.CollectionType;
+import net.es.nsi.dds.jaxb.dds.DocumentEventType;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
 import net.es.nsi.dds.jaxb.dds.FilterCriteriaType;
 import net.es.nsi.dds.jaxb.dds.FilterOrType;
+import net.es.nsi.dds.jaxb.dds.NotificationListType;
+import net.es.nsi.dds.jaxb.dds.NotificationType;
 import net.es.nsi.dds.jaxb.dds.SubscriptionType;
 import net.es.nsi.dds.jaxb.nml.NmlTopologyType;
 import net.es.nsi.dds.jaxb.nsa.NsaType;
+import net.es.nsi.dds.util.XmlUtilities;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 /**
@@ -80,6 +98,213 @@ public class JaxbTest {
         assertTrue(found);
     }
 
+    /**
+     * Test marshaling of a notification list directly to a stream.
+     *
+     * @throws JAXBException
+     */
+    @Test
+    public void notificationsStreamTest() throws JAXBException {
+        NotificationListType list = ddsFactory.createNotificationListType();
+        list.setId("stream-test");
+        list.setProviderId("urn:ogf:network:es.net:2013:nsa");
+        for (int i = 0; i < 3; i++) {
+            DocumentType document = ddsFactory.createDocumentType();
+            document.setId("document-" + i);
+            document.setNsa("urn:ogf:network:es.net:2013:nsa");
+            document.setType("vnd.ogf.nsi.nsa.v1+xml");
+            NotificationType notification = ddsFactory.createNotificationType();
+            notification.setEvent(DocumentEventType.NEW);
+            notification.setDocument(document);
+            list.getNotification().add(notification);
+        }
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DdsParser.getInstance().notifications2Xml(list, os);
+        String xml = os.toString(StandardCharsets.UTF_8);
+
+        // Formatted output is off on the wire.
+        assertFalse(xml.contains("\n"));
+
+        NotificationListType result = DdsParser.getInstance().xml2Notifications(xml);
+        assertEquals("stream-test", result.getId());
+        assertEquals(3, result.getNotification().size());
+        assertEquals("document-2", result.getNotification().get(2).getDocument().getId());
+    }
+
+    /**
+     * Test assembly of a notification list from shared notification fragments.
+     *
+     * @throws JAXBException
+     * @throws IOException
+     */
+    @Test
+    public void notificationFragmentsTest() throws JAXBException, IOException {
+        List<byte[]> fragments = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            DocumentType document = ddsFactory.createDocumentType();
+            document.setId("document-" + i);
+            document.setNsa("urn:ogf:network:es.net:2013:nsa");
+            document.setType("vnd.ogf.nsi.nsa.v1+xml");
+            NotificationType notification = ddsFactory.createNotificationType();
+            notification.setEvent(DocumentEventType.ALL);
+            notification.setDocument(document);
+            fragments.add(DdsParser.getInstance().notification2Fragment(notification));
+        }
+
+        // Each subscriber gets its own envelope around the shared fragments.
+        NotificationListType envelope = ddsFactory.createNotificationListType();
+        envelope.setId("subscription&<1>");
+        envelope.setHref("https://example.com/dds/subscriptions/1?a=\"b\"");
+        envelope.setProviderId("urn:ogf:network:es.net:2013:nsa");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DdsParser.getInstance().notifications2Xml(envelope, fragments, os);
+        NotificationListType result = DdsParser.getInstance().xml2Notifications(os.toString(StandardCharsets.UTF_8));
+        assertEquals(envelope.getId(), result.getId());
+        assertEquals(envelope.getHref(), result.getHref());
+        assertEquals(envelope.getProviderId(), result.getProviderId());
+        assertEquals(2, result.getNotification().size());
+        assertEquals("document-1", result.getNotification().get(1).getDocument().getId());
+        assertEquals(DocumentEventType.ALL, result.getNotification().get(1).getEvent());
+    }
+
+    /**
+     * Test reuse of pooled unmarshallers across parse operations.
+     *
+     * @throws JAXBException
+     */
+    @Test
+    public void notificationsStreamParseTest() throws JAXBException, IOException, XMLStreamException {
+        NotificationListType list = ddsFactory.createNotificationListType();
+        list.setId("stream");
+        list.setHref("https://example.com/dds/subscriptions/stream");
+        list.setProviderId("urn:ogf:network:es.net:2013:nsa");
+        List<byte[]> fragments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            DocumentType document = ddsFactory.createDocumentType();
+            document.setId("document-" + i);
+            document.setNsa("urn:ogf:network:es.net:2013:nsa");
+            document.setType("vnd.ogf.nsi.nsa.v1+xml");
+            NotificationType notification = ddsFactory.createNotificationType();
+            notification.setEvent(DocumentEventType.UPDATED);
+            notification.setDocument(document);
+            list.getNotification().add(notification);
+            fragments.add(DdsParser.getInstance().notification2Fragment(notification));
+        }
+
+        // Formatted output with whitespace between notifications.
+        String formatted = DdsParser.getInstance().notifications2Xml(list);
+        List<String> ids = new ArrayList<>();
+        List<NotificationListType> envelopes = new ArrayList<>();
+        DdsParser.NotificationHandler handler = new DdsParser.NotificationHandler() {
+            @Override
+            public void start(NotificationListType envelope) {
+                envelopes.add(envelope);
+            }
+
+            @Override
+            public void notification(NotificationType notification) {
+                ids.add(notification.getDocument().getId());
+            }
+        };
+
+        assertEquals(3, DdsParser.getInstance().xml2Notifications(
+                new ByteArrayInputStream(formatted.getBytes(StandardCharsets.UTF_8)), handler));
+        assertEquals(List.of("document-0", "document-1", "document-2"), ids);
+        assertEquals(1, envelopes.size());
+        assertEquals(list.getHref(), envelopes.get(0).getHref());
+        assertEquals(list.getProviderId(), envelopes.get(0).getProviderId());
+        assertTrue(envelopes.get(0).getNotification().isEmpty());
+
+        // Compact output with adjacent notifications and an unknown element.
+        fragments.add(1, "<dds:unknown xmlns:dds=\"http://example.com\"><a/></dds:unknown>".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DdsParser.getInstance().notifications2Xml(list, fragments, os);
+        ids.clear();
+        assertEquals(3, DdsParser.getInstance().xml2Notifications(new ByteArrayInputStream(os.toByteArray()), handler));
+        assertEquals(List.of("document-0", "document-1", "document-2"), ids);
+
+        // A handler failure stops parsing.
+        ids.clear();
+        try {
+            DdsParser.getInstance().xml2Notifications(new ByteArrayInputStream(os.toByteArray()),
+                    new DdsParser.NotificationHandler() {
+                @Override
+                public void start(NotificationListType envelope) {
+                    throw new IllegalStateException("unknown subscription");
+                }
+
+                @Override
+                public void notification(NotificationType notification) {
+                    ids.add(notification.getDocument().getId());
+                }
+            });
+            fail("Expected handler exception");
+        } catch (IllegalStateException ex) {
+            assertTrue(ids.isEmpty());
+        }
+
+        // Any other root element is rejected.
+        try {
+            DdsParser.getInstance().xml2Notifications(new ByteArrayInputStream(
+                    NSA_DOCUMENT.getBytes(StandardCharsets.UTF_8)), handler);
+            fail("Expected JAXBException");
+        } catch (JAXBException ex) {
+            log.debug("Rejected document: {}", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void poolTest() throws JAXBException {
+        JaxbPool<Unmarshaller> pool = NsaParser.getInstance().getUnmarshallers();
+
+        // Make sure an instance is idle in the pool then parse again.
+        NsaParser.getInstance().xml2Jaxb(NsaType.class, NSA_DOCUMENT);
+        long hits = pool.getHits();
+        long misses = pool.getMisses();
+        NsaParser.getInstance().xml2Jaxb(NsaType.class, NSA_DOCUMENT);
+        log.debug("Unmarshaller pool: {}", pool);
+        assertEquals(hits + 1, pool.getHits());
+        assertEquals(misses, pool.getMisses());
+        assertTrue(pool.getIdle() > 0);
+
+        // A full pool discards returned instances.
+        JaxbPool<Object> bounded = new JaxbPool<>("test", 1, Object::new);
+        Object first = bounded.borrow();
+        Object second = bounded.borrow();
+        assertEquals(2, bounded.getMisses());
+        bounded.release(first);
+        bounded.release(second);
+        assertEquals(1, bounded.getIdle());
+        assertTrue(first == bounded.borrow());
+        assertEquals(1, bounded.getHits());
+    }
+
+    @Test
+    public void contextRegistryTest() throws JAXBException, IOException {
+        // Parsers and JAXB classes of the same package share one context.
+        JAXBContext jc = JaxbContextRegistry.getContext("net.es.nsi.dds.jaxb.dds");
+        assertTrue(jc == JaxbContextRegistry.getContext(NotificationListType.class));
+        assertTrue(jc == DdsParser.getInstance().getContext());
+        assertTrue(NsaParser.getInstance().getContext() == JaxbContextRegistry.getContext(NsaType.class));
+
+        JaxbContextRegistry.warm();
+        int size = JaxbContextRegistry.size();
+        assertTrue(size >= JaxbContextRegistry.PACKAGES.length);
+
+        // XmlUtilities uses the shared context without creating new ones.
+        NotificationListType list = new NotificationListType();
+        list.setId("registry");
+        list.setHref("http://localhost:8401/dds/subscriptions/registry");
+        list.setProviderId("urn:ogf:network:es.net:2013:nsa");
+        String xml = DdsParser.getInstance().notifications2Xml(list);
+        NotificationListType result = (NotificationListType) XmlUtilities.xmlToJaxb(NotificationListType.class, xml);
+        assertEquals(list.getId(), result.getId());
+        assertTrue(XmlUtilities.jaxbToXml(NotificationListType.class, list).contains("registry"));
+        assertEquals(size, JaxbContextRegistry.size());
+    }
+
     final String NSA_DOCUMENT = """
         <ns5:nsa xmlns:nml="http://schemas.ogf.org/nml/2013/05/base#"\s
             xmlns:vc="urn:ietf:params:xml:ns:vcard-4.0"\s
@@ -0,0 +1,154 @@
+package net.es.nsi.dds.signing;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.parsers.DocumentBuilderFactory;
+import lombok.extern.slf4j.Slf4j;
+import net.es.nsi.dds.jaxb.dds.DocumentType;
+import net.es.nsi.dds.lib.DocumentBuilder;
+import net.es.nsi.dds.util.XmlUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify signature validation of peer documents and the cache of results.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SignatureValidatorTest {
+  private static final String NSA = "urn:ogf:network:example.net:2024:nsa";
+
+  private HttpServer server;
+  private KeyStoreHandler keyStore;
+  private SigningEngine engine;
+  private SignatureValidator validator;
+
+  @Before
+  public void setUp() throws Exception {
+    server = SigningEngineTest.referenceServer();
+    keyStore = new KeyStoreHandler(SigningEngineTest.KEYSTORE, SigningEngineTest.PASSWORD, "JKS");
+    engine = new SigningEngine();
+    engine.setReference(SigningEngineTest.reference(server));
+    validator = new SignatureValidator();
+    validator.setSecureValidation(false);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    validator.shutdown();
+    engine.shutdown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testValid() throws Exception {
+    log.debug("@Test - testValid");
+    DocumentType document = document(XmlUtilities.xmlGregorianCalendar(), false);
+    assertTrue(validator.isValid(document));
+    assertEquals(1, validator.getVerified());
+    assertEquals(0, validator.getRejected());
+  }
+
+  @Test
+  public void testTampered() throws Exception {
+    log.debug("@Test - testTampered");
+    DocumentType document = document(XmlUtilities.xmlGregorianCalendar(), true);
+    assertFalse(validator.isValid(document));
+    assertEquals(1, validator.getRejected());
+  }
+
+  @Test
+  public void testUnsigned() throws Exception {
+    log.debug("@Test - testUnsigned");
+    DocumentType document = document(XmlUtilities.xmlGregorianCalendar(), false);
+    document.setSignature(null);
+    assertFalse(validator.isValid(document));
+    assertEquals(0, validator.getVerified());
+  }
+
+  @Test
+  public void testSecureValidation() throws Exception {
+    log.debug("@Test - testSecureValidation");
+    // The JDK policy forbids the algorithms and reference DDS signs with.
+    validator.setSecureValidation(true);
+    assertFalse(validator.isValid(document(XmlUtilities.xmlGregorianCalendar(), false)));
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    log.debug("@Test - testCache");
+    XMLGregorianCalendar version = XmlUtilities.xmlGregorianCalendar();
+    DocumentType document = document(version, false);
+    assertTrue(validator.isValid(document));
+    assertTrue(validator.isValid(document));
+    assertEquals(1, validator.getVerified());
+    assertEquals(1, validator.getCached());
+
+    // A tampered signature on the same document version is verified again.
+    DocumentType tampered = document(version, true);
+    assertFalse(validator.isValid(tampered));
+    assertEquals(2, validator.getVerified());
+
+    // As is a new version of the document.
+    XMLGregorianCalendar newer = (XMLGregorianCalendar) version.clone();
+    newer.setYear(version.getYear() + 1);
+    document.setVersion(newer);
+    assertTrue(validator.isValid(document));
+    assertEquals(3, validator.getVerified());
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    log.debug("@Test - testParallel");
+    validator.setThreads(4);
+    DocumentType document = document(XmlUtilities.xmlGregorianCalendar(), false);
+
+    // Concurrent requests for one document share a single verification.
+    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      results.add(validator.validateAsync(document));
+    }
+
+    for (CompletableFuture<Boolean> result : results) {
+      assertTrue(result.get(30, TimeUnit.SECONDS));
+    }
+    assertEquals(1, validator.getVerified());
+  }
+
+  private DocumentType document(XMLGregorianCalendar version, boolean tamper) throws Exception {
+    Document sig = engine.generateExternalSignature(keyStore, SigningEngineTest.ALIAS, null);
+    if (tamper) {
+      SigningEngineTest.tamper(sig);
+    }
+
+    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    dbf.setNamespaceAware(true);
+    Document contents = dbf.newDocumentBuilder().parse(
+            new ByteArrayInputStream("<nsa id=\"test\"/>".getBytes(StandardCharsets.UTF_8)));
+
+    XMLGregorianCalendar expires = (XMLGregorianCalendar) version.clone();
+    expires.setYear(version.getYear() + 10);
+    return new DocumentBuilder()
+            .withNsaId(NSA)
+            .withType("vnd.ogf.nsi.nsa.v1+xml")
+            .withId(NSA)
+            .withVersion(version)
+            .withExpires(expires)
+            .withContents(contents)
+            .withSignature(sig)
+            .build();
+  }
+}
@@ -0,0 +1,127 @@
+package net.es.nsi.dds.signing;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStoreException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.xml.crypto.dsig.XMLSignature;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verify documents signed by the signing engine validate, and tampered
+ * signatures do not.
+ *
+ * @author hacksaw
+ */
+@Slf4j
+public class SigningEngineTest {
+  static final String KEYSTORE = "src/test/resources/config/server.jks";
+  static final String PASSWORD = "changeit";
+  static final String ALIAS = "1";
+
+  private HttpServer server;
+  private KeyStoreHandler keyStore;
+  private SigningEngine engine;
+
+  @Before
+  public void setUp() throws Exception {
+    server = referenceServer();
+    keyStore = new KeyStoreHandler(KEYSTORE, PASSWORD, "JKS");
+    engine = new SigningEngine();
+    engine.setReference(reference(server));
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    engine.shutdown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testSignAndVerify() throws Exception {
+    log.debug("@Test - testSignAndVerify");
+    Document sig = engine.generateExternalSignature(keyStore, ALIAS, null);
+    assertTrue(Validate.validateExternal(sig, false));
+    assertEquals(1, engine.getSigned());
+    assertEquals(0, engine.getFailed());
+  }
+
+  @Test
+  public void testTampered() throws Exception {
+    log.debug("@Test - testTampered");
+    Document sig = engine.generateExternalSignature(keyStore, ALIAS, null);
+    tamper(sig);
+    assertFalse(Validate.validateExternal(sig, false));
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    log.debug("@Test - testParallel");
+    List<Future<Document>> results = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      results.add(engine.getExecutor().submit(() -> engine.generateExternalSignature(keyStore, ALIAS, null)));
+    }
+
+    for (Future<Document> result : results) {
+      assertTrue(Validate.validateExternal(result.get(30, TimeUnit.SECONDS), false));
+    }
+    assertEquals(16, engine.getSigned());
+  }
+
+  @Test
+  public void testUnknownAlias() {
+    log.debug("@Test - testUnknownAlias");
+    try {
+      engine.generateExternalSignature(keyStore, "unknown", null);
+      fail("expected KeyStoreException");
+    } catch (KeyStoreException ex) {
+      assertEquals(1, engine.getFailed());
+    } catch (Exception ex) {
+      fail("unexpected exception " + ex);
+    }
+  }
+
+  /**
+   * Serve the external resource covered by the signatures locally.
+   */
+  static HttpServer referenceServer() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/reference", exchange -> {
+      byte[] body = "<stylesheet/>".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    return server;
+  }
+
+  static String reference(HttpServer server) {
+    return "http://localhost:" + server.getAddress().getPort() + "/reference";
+  }
+
+  /**
+   * Flip a bit in the signature value.
+   */
+  static void tamper(Document sig) {
+    Node value = sig.getElementsByTagNameNS(XMLSignature.XMLNS, "SignatureValue").item(0);
+    byte[] bytes = Base64.getMimeDecoder().decode(value.getTextContent());
+    bytes[0] ^= 1;
+    value.setTextContent(Base64.getEncoder().encodeToString(bytes));
+  }
+}
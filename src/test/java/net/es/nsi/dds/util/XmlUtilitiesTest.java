@@ -0,0 +1,39 @@
+package net.es.nsi.dds.util;
+
+import org.junit.Test;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlUtilitiesTest {
+  @Test
+  public void testXmlGregorianCalendarToLong() throws DatatypeConfigurationException {
+    DatatypeFactory factory = XmlUtilities.getDatatypeFactory();
+    String[] values = {
+        "2024-02-29T23:59:59.999Z",
+        "2016-03-04T12:30:00-05:00",
+        "2016-03-04T12:30:00.5+10:30",
+        "2016-03-04T24:00:00Z",
+        "1970-01-01T00:00:00Z",
+        "2016-03-04T12:30:00",
+        "2016-03-04Z",
+        "1500-06-01T00:00:00Z"
+    };
+
+    for (String value : values) {
+      assertEquals(factory.newXMLGregorianCalendar(value).toGregorianCalendar().getTimeInMillis(),
+          XmlUtilities.xmlGregorianCalendarToLong(factory.newXMLGregorianCalendar(value), 0), value);
+    }
+
+    assertEquals(Long.MAX_VALUE, XmlUtilities.xmlGregorianCalendarToLong(null, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testLongToXMLGregorianCalendar() throws DatatypeConfigurationException {
+    long now = System.currentTimeMillis();
+    assertEquals(now, XmlUtilities.xmlGregorianCalendarToLong(XmlUtilities.longToXMLGregorianCalendar(now), 0));
+    assertNull(XmlUtilities.longToXMLGregorianCalendar(0));
+  }
+}